@@ -0,0 +1,82 @@
+package dmg.cells.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression algorithms for messages sent through tunnels.
+ *
+ * Domains advertise the names of the algorithms they can decompress
+ * when establishing a tunnel. Algorithms are listed in order of
+ * preference.
+ */
+public enum Compression
+{
+    DEFLATE {
+        @Override
+        public OutputStream compress(OutputStream out)
+        {
+            return new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED)) {
+                @Override
+                public void close() throws IOException
+                {
+                    try {
+                        super.close();
+                    } finally {
+                        def.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(InputStream in)
+        {
+            return new InflaterInputStream(in);
+        }
+    };
+
+    /**
+     * Returns a stream compressing the data written to it into out.
+     * The returned stream must be closed.
+     */
+    public abstract OutputStream compress(OutputStream out);
+
+    /**
+     * Returns a stream decompressing the data read from in. The
+     * returned stream must be closed.
+     */
+    public abstract InputStream decompress(InputStream in);
+
+    /**
+     * Returns the names of all algorithms.
+     */
+    public static List<String> names()
+    {
+        List<String> names = new ArrayList<>();
+        for (Compression compression : values()) {
+            names.add(compression.name());
+        }
+        return names;
+    }
+
+    /**
+     * Returns the first algorithm whose name is in names, or null if
+     * there is none.
+     */
+    public static Compression select(List<String> names)
+    {
+        for (Compression compression : values()) {
+            if (names.contains(compression.name())) {
+                return compression;
+            }
+        }
+        return null;
+    }
+}
@@ -1,20 +1,27 @@
 package dmg.cells.network;
 
+import com.google.common.io.CountingOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Serializable;
 import java.net.Socket;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import dmg.cells.nucleus.CellAdapter;
 import dmg.cells.nucleus.CellDomainInfo;
@@ -61,6 +68,20 @@ public class LocationMgrTunnel
 
     private final OutputStream _rawOut;
     private final InputStream _rawIn;
+    private final AtomicLong _bytesSent = new AtomicLong();
+    private final AtomicLong _bytesReceived = new AtomicLong();
+
+    /**
+     * Messages with a payload of at least this many bytes are
+     * compressed. Compression is disabled if zero.
+     */
+    private final int _compressionThreshold;
+
+    /**
+     * Compression used for sending messages. Null if compression is
+     * disabled or not supported by the peer.
+     */
+    private volatile Compression _compression;
 
     private ObjectSource _input;
     private ObjectSink _output;
@@ -72,6 +93,8 @@ public class LocationMgrTunnel
     //
     private int  _messagesToTunnel;
     private int  _messagesToSystem;
+    private final AtomicLong _bytesSavedToTunnel = new AtomicLong();
+    private final AtomicLong _bytesSavedToSystem = new AtomicLong();
 
     public LocationMgrTunnel(String cellName, StreamEngine engine, Args args)
         throws IOException
@@ -83,9 +106,12 @@ public class LocationMgrTunnel
             _socket = engine.getSocket();
             _socket.setTcpNoDelay(true);
 
-            _rawOut = new BufferedOutputStream(engine.getOutputStream());
-            _rawIn = new BufferedInputStream(engine.getInputStream());
-        } catch (IOException e) {
+            _rawOut = new BufferedOutputStream(
+                    new MeteredOutputStream(engine.getOutputStream(), _bytesSent));
+            _rawIn = new BufferedInputStream(
+                    new MeteredInputStream(engine.getInputStream(), _bytesReceived));
+            _compressionThreshold = getArgs().getIntOption("compressionThreshold", 0);
+        } catch (IOException | IllegalArgumentException e) {
             start();
             kill();
             throw e;
@@ -98,7 +124,8 @@ public class LocationMgrTunnel
         try  {
             ObjectOutputStream out = new ObjectOutputStream(_rawOut);
             out.writeObject(new CellDomainInfo(_nucleus.getCellDomainName(),
-                    Version.of(LocationMgrTunnel.class).getVersion()));
+                    Version.of(LocationMgrTunnel.class).getVersion(),
+                    Compression.names()));
             out.flush();
             ObjectInputStream in = new ObjectInputStream(_rawIn);
 
@@ -108,6 +135,8 @@ public class LocationMgrTunnel
                 throw new IOException("EOS encountered while reading DomainInfo");
             }
 
+            _compression = negotiateCompression(_compressionThreshold, _remoteDomainInfo);
+
             _input = new JavaObjectSource(in);
             _output = new JavaObjectSink(out);
         } catch (ClassNotFoundException e) {
@@ -117,6 +146,16 @@ public class LocationMgrTunnel
         _log.debug("Established tunnel to {}", getRemoteDomainName());
     }
 
+    /**
+     * Returns the compression to use for sending messages to the peer
+     * described by remote, or null if messages are to be sent
+     * uncompressed.
+     */
+    static Compression negotiateCompression(int threshold, CellDomainInfo remote)
+    {
+        return (threshold > 0) ? Compression.select(remote.getCompression()) : null;
+    }
+
     synchronized private void setDown(boolean down)
     {
         _down = down;
@@ -210,9 +249,14 @@ public class LocationMgrTunnel
     @Override
     public CellTunnelInfo getCellTunnelInfo()
     {
+        long bytesSent = _bytesSent.get();
+        long bytesReceived = _bytesReceived.get();
         return new CellTunnelInfo(getCellName(),
                 new CellDomainInfo(_nucleus.getCellDomainName()),
-                                  _remoteDomainInfo);
+                                  _remoteDomainInfo,
+                                  bytesSent, bytesReceived,
+                                  bytesSent + _bytesSavedToTunnel.get(),
+                                  bytesReceived + _bytesSavedToSystem.get());
     }
 
     protected String getRemoteDomainName()
@@ -234,6 +278,15 @@ public class LocationMgrTunnel
         pw.println("-> Tunnel     : " + _messagesToTunnel);
         pw.println("-> Domain     : " + _messagesToSystem);
         pw.println("Peer          : " + getRemoteDomainName());
+        pw.println("Compression   : " +
+                   ((_compression == null)
+                    ? "none"
+                    : (_compression + " from " + _compressionThreshold + " bytes")));
+        CellTunnelInfo info = getCellTunnelInfo();
+        pw.println(String.format("Bytes sent    : %d (ratio %.2f)",
+                                 info.getBytesSent(), info.getSendCompressionRatio()));
+        pw.println(String.format("Bytes received: %d (ratio %.2f)",
+                                 info.getBytesReceived(), info.getReceiveCompressionRatio()));
     }
 
     @Override
@@ -350,7 +403,133 @@ public class LocationMgrTunnel
         void writeObject(CellMessage message) throws IOException;
     }
 
-    private static class JavaObjectSource implements ObjectSource
+    /**
+     * Output stream adding the number of bytes written to a counter.
+     * The counter may be read by other threads.
+     */
+    private static class MeteredOutputStream extends FilterOutputStream
+    {
+        private final AtomicLong _count;
+
+        private MeteredOutputStream(OutputStream out, AtomicLong count)
+        {
+            super(out);
+            _count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            _count.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            _count.addAndGet(len);
+        }
+    }
+
+    /**
+     * Input stream adding the number of bytes read to a counter. The
+     * counter may be read by other threads.
+     */
+    private static class MeteredInputStream extends FilterInputStream
+    {
+        private final AtomicLong _count;
+
+        private MeteredInputStream(InputStream in, AtomicLong count)
+        {
+            super(in);
+            _count = count;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = in.read();
+            if (b != -1) {
+                _count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                _count.addAndGet(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = in.skip(n);
+            _count.addAndGet(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+    }
+
+    /**
+     * A serialized CellMessage compressed with the given algorithm.
+     */
+    static class CompressedMessage implements Serializable
+    {
+        private static final long serialVersionUID = 7314869812716413432L;
+
+        private final Compression _compression;
+        private final byte[] _data;
+
+        /** Size of the uncompressed serialized CellMessage. */
+        private final long _size;
+
+        private CompressedMessage(Compression compression, byte[] data, long size)
+        {
+            _compression = compression;
+            _data = data;
+            _size = size;
+        }
+
+        static CompressedMessage compress(Compression compression, CellMessage message)
+            throws IOException
+        {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            CountingOutputStream uncompressed =
+                    new CountingOutputStream(compression.compress(buffer));
+            try (ObjectOutputStream out = new ObjectOutputStream(uncompressed)) {
+                out.writeObject(message);
+            }
+            return new CompressedMessage(compression, buffer.toByteArray(),
+                                         uncompressed.getCount());
+        }
+
+        CellMessage decompress() throws IOException, ClassNotFoundException
+        {
+            try (ObjectInputStream in = new ObjectInputStream(
+                    _compression.decompress(new ByteArrayInputStream(_data)))) {
+                return (CellMessage) in.readObject();
+            }
+        }
+
+        /** Returns the number of bytes saved by compression. */
+        long getBytesSaved()
+        {
+            return _size - _data.length;
+        }
+    }
+
+    private class JavaObjectSource implements ObjectSource
     {
         private ObjectInputStream in;
 
@@ -362,11 +541,17 @@ public class LocationMgrTunnel
         @Override
         public CellMessage readObject() throws IOException, ClassNotFoundException
         {
-            return (CellMessage) in.readObject();
+            Object object = in.readObject();
+            if (object instanceof CompressedMessage) {
+                CompressedMessage message = (CompressedMessage) object;
+                _bytesSavedToSystem.addAndGet(message.getBytesSaved());
+                return message.decompress();
+            }
+            return (CellMessage) object;
         }
     }
 
-    private static class JavaObjectSink implements ObjectSink
+    private class JavaObjectSink implements ObjectSink
     {
         private ObjectOutputStream out;
 
@@ -385,8 +570,19 @@ public class LocationMgrTunnel
              * we reset the stream. Notice that resetting the stream sends
              * a reset messsage. Hence we reset the stream before flushing
              * it.
+             *
+             * Large messages are compressed if the peer accepts
+             * compression.
              */
-            out.writeObject(message);
+            if (_compression != null &&
+                    message.getEncodedSize() >= _compressionThreshold) {
+                CompressedMessage compressed =
+                        CompressedMessage.compress(_compression, message);
+                _bytesSavedToTunnel.addAndGet(compressed.getBytesSaved());
+                out.writeObject(compressed);
+            } else {
+                out.writeObject(message);
+            }
             out.reset();
             out.flush();
         }
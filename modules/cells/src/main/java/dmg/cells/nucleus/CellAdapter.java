@@ -679,6 +679,23 @@ public class   CellAdapter extends CommandInterpreter
         }
     }
 
+    @Command(name = "show message lanes",
+             hint = "display message queue statistics",
+             description = "Messages waiting for delivery are queued in lanes selected by the " +
+                     "type of the message.  Lanes are served in proportion to their weights. " +
+                     "Displays the weight, current and maximum queue length, number of " +
+                     "delivered messages, and average and maximum wait time of each lane, " +
+                     "followed by the number of requests per message type that were refused " +
+                     "or discarded because their time to live would be or was exceeded.")
+    public class ShowMessageLanesCommand implements Callable<String>
+    {
+        @Override
+        public String call()
+        {
+            return _nucleus.getMessageLanesInfo();
+        }
+    }
+
     @Command(name = "dump pinboard", hint = "write pinboard to file",
              description = "Writes the pinboard log to FILE on the local file system of the service.")
     public class DumpPinboardCommand implements Callable<String>
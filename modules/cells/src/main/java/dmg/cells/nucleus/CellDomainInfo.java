@@ -1,6 +1,8 @@
 package dmg.cells.nucleus;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,6 +15,12 @@ public class CellDomainInfo implements Serializable
     private String _domainName = "Unknown";
     private String _version;
 
+    /**
+     * Names of the compression algorithms the domain accepts on a
+     * tunnel. Null for domains not supporting compression.
+     */
+    private ArrayList<String> _compression;
+
     public CellDomainInfo(String name)
     {
         _domainName = name;
@@ -24,6 +32,12 @@ public class CellDomainInfo implements Serializable
         _version = version;
     }
 
+    public CellDomainInfo(String name, String version, List<String> compression)
+    {
+        this(name, version);
+        _compression = new ArrayList<>(compression);
+    }
+
     void setCellDomainName(String name)
     {
         _domainName = name;
@@ -34,6 +48,17 @@ public class CellDomainInfo implements Serializable
         return _version;
     }
 
+    /**
+     * Returns the names of the compression algorithms the domain accepts
+     * on a tunnel, in order of preference.
+     */
+    public List<String> getCompression()
+    {
+        return (_compression == null)
+                ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(_compression);
+    }
+
     public String getCellDomainName()
     {
         return _domainName;
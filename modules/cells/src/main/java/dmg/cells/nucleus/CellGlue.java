@@ -36,6 +36,7 @@ class CellGlue {
 
     private final String    _cellDomainName      ;
     private final ConcurrentMap<String, CellNucleus> _cellList = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, CellNucleus> _aliases = Maps.newConcurrentMap();
     private final Set<CellNucleus> _killedCells = Collections.newSetFromMap(Maps.<CellNucleus, Boolean>newConcurrentMap());
     private final Map<String,List<CellEventListener>> _cellEventListener =
        CollectionFactory.newConcurrentHashMap();
@@ -94,6 +95,25 @@ class CellGlue {
       sendToAll( new CellEvent( name , CellEvent.CELL_CREATED_EVENT ) ) ;
    }
 
+    /**
+     * Registers an additional name under which messages are delivered to
+     * a cell. The alias is only used for routing; it does not appear in
+     * the list of cells. Messages for the alias are delivered with the
+     * alias as their current destination.
+     */
+    void addAlias(String alias, CellNucleus cell)
+        throws IllegalArgumentException
+    {
+        if (_cellList.containsKey(alias) || _aliases.putIfAbsent(alias, cell) != null) {
+            throw new IllegalArgumentException("Name Mismatch ( cell " + alias + " exist )");
+        }
+    }
+
+    void removeAlias(String alias, CellNucleus cell)
+    {
+        _aliases.remove(alias, cell);
+    }
+
     void setSystemNucleus(CellNucleus nucleus)
     {
         _systemNucleus = nucleus;
@@ -412,6 +432,7 @@ class CellGlue {
    synchronized void destroy(CellNucleus nucleus)
    {
        _cellList.remove(nucleus.getCellName());
+       _aliases.values().removeAll(Collections.singleton(nucleus));
        _killedCells.remove(nucleus);
        LOGGER.trace("destroy : sendToAll : killed {}", nucleus.getCellName());
        notifyAll();
@@ -518,6 +539,9 @@ class CellGlue {
          //  now we try to find the destination cell in our domain
          //
          CellNucleus destNucleus = _cellList.get( cellName ) ;
+         if (destNucleus == null) {
+             destNucleus = _aliases.get(cellName);
+         }
          if (destNucleus != null && _killedCells.contains(destNucleus)) {
              destNucleus = null;
          }
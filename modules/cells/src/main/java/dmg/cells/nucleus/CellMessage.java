@@ -2,11 +2,13 @@ package dmg.cells.nucleus ;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InvalidClassException;
 import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
 import java.io.Serializable;
 
 import static com.google.common.base.Preconditions.checkState;
@@ -192,6 +194,55 @@ public boolean equals( Object obj ){
         return decoded;
     }
 
+    /**
+     * Returns the size in bytes of the serialized message object of an
+     * encoded message.
+     */
+    public int getEncodedSize()
+    {
+        checkState(_mode == STREAM_MODE);
+        return _messageStream.length;
+    }
+
+    /**
+     * Returns the class name of the message object, or null if the
+     * message object is null or its class cannot be determined.
+     *
+     * For encoded messages the name is read from the header of the
+     * serialized object rather than by deserializing the object.
+     */
+    public String getMessageObjectClassName()
+    {
+        if (_mode == ORIGINAL_MODE) {
+            return (_message == null) ? null : _message.getClass().getName();
+        }
+        if (_messageStream == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(_messageStream))) {
+            if (in.readShort() != ObjectStreamConstants.STREAM_MAGIC ||
+                    in.readShort() != ObjectStreamConstants.STREAM_VERSION) {
+                return null;
+            }
+            switch (in.readByte()) {
+            case ObjectStreamConstants.TC_STRING:
+            case ObjectStreamConstants.TC_LONGSTRING:
+                return String.class.getName();
+            case ObjectStreamConstants.TC_OBJECT:
+            case ObjectStreamConstants.TC_ARRAY:
+            case ObjectStreamConstants.TC_ENUM:
+                if (in.readByte() != ObjectStreamConstants.TC_CLASSDESC) {
+                    return null;
+                }
+                return in.readUTF();
+            default:
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     public void addSourceAddress( CellAddressCore source ){
       _source.add(source) ;
   }
@@ -78,6 +78,29 @@ public class CellNucleus implements ThreadFactory
     private volatile ExecutorService _messageExecutor;
     private final AtomicInteger _eventQueueSize = new AtomicInteger();
 
+    /**
+     * Domain context key of the definition of message lanes.
+     *
+     * @see MessageLanes
+     */
+    public static final String MESSAGE_LANES_KEY = "messageLanes";
+
+    /**
+     * Domain context key of whether requests that would expire while
+     * queued are refused. Disabled unless set to true.
+     *
+     * @see MessageLanes#offer
+     */
+    public static final String ADMISSION_CONTROL_KEY = "messageAdmissionControl";
+
+    /**
+     * Events waiting for delivery by the message executor. There is
+     * one task in the executor for each event; the task delivers
+     * whichever event the lanes select at the time it runs.
+     */
+    private final MessageLanes _messageLanes;
+    private final boolean _isAdmissionControlEnabled;
+
     /**
      * Timer for periodic low-priority maintenance tasks. Shared among
      * all cell instances. Since a Timer is single-threaded,
@@ -165,6 +188,10 @@ public class CellNucleus implements ThreadFactory
 
         _threads = new ThreadGroup(__cellGlue.getMasterThreadGroup(), _cellName + "-threads");
 
+        _messageLanes = createMessageLanes();
+        _isAdmissionControlEnabled =
+                "true".equals(String.valueOf(getDomainContext(ADMISSION_CONTROL_KEY)));
+
         _messageExecutor =
                 new ThreadPoolExecutor(1, 1,
                         0L, TimeUnit.MILLISECONDS,
@@ -183,6 +210,28 @@ public class CellNucleus implements ThreadFactory
         LOGGER.info("Created {}", name);
     }
 
+    private MessageLanes createMessageLanes()
+    {
+        Object definition = getDomainContext(MESSAGE_LANES_KEY);
+        if (definition != null) {
+            try {
+                return new MessageLanes(definition.toString());
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("Ignoring message lanes: {}", e.getMessage());
+            }
+        }
+        return new MessageLanes("");
+    }
+
+    /**
+     * Returns the queue length and wait time statistics of the message
+     * lanes of this cell, as well as the number of shed requests.
+     */
+    public String getMessageLanesInfo()
+    {
+        return _messageLanes.getInfo();
+    }
+
     /**
      * Start the timeout task.
      *
@@ -828,22 +877,57 @@ public class CellNucleus implements ThreadFactory
                         synchronized (_waitHash) {
                             _waitHash.put(msg.getLastUOID(), lock);
                         }
-                        throw e;
+                        LOGGER.error("Callback queue overflow. Dropping {}", msg);
                     }
                     return;
                 }
             }     // end of : msg != null
 
+            String className = (msg == null) ? null : msg.getMessageObjectClassName();
+            long remaining = _isAdmissionControlEnabled ? getRemainingTtl(ce) : Long.MAX_VALUE;
+            if (!_messageLanes.offer(ce, className, remaining)) {
+                LOGGER.warn("Refusing {} because its time to live would be exceeded " +
+                                    "before it is delivered.", className);
+                return;
+            }
             EventLogger.queueBegin(ce);
             _eventQueueSize.incrementAndGet();
-            _messageExecutor.execute(new DeliverMessageTask(ce));
+            _messageExecutor.execute(new DeliverMessageTask());
         } catch (RejectedExecutionException e) {
-            EventLogger.queueEnd(ce);
-            _eventQueueSize.decrementAndGet();
-            LOGGER.error("Message queue overflow. Dropping {}", ce);
+            /* Delivery tasks are not bound to particular events, thus
+             * ce may already have been taken by another task. To keep
+             * the number of queued events equal to the number of
+             * tasks we drop ce if it is still queued and otherwise
+             * the latest event of the least important lane.
+             */
+            CellEvent dropped = _messageLanes.remove(ce) ? ce : _messageLanes.removeLast();
+            if (dropped != null) {
+                EventLogger.queueEnd(dropped);
+                _eventQueueSize.decrementAndGet();
+                LOGGER.error("Message queue overflow. Dropping {}", dropped);
+            }
         }
     }
 
+    /**
+     * Returns the time in milliseconds left until the sender of a
+     * request gives up on it, or Long.MAX_VALUE for events that must
+     * not be shed. Replies, messages routed through this cell and
+     * messages without a time to live are never shed.
+     */
+    private static long getRemainingTtl(CellEvent event)
+    {
+        if (!(event instanceof MessageEvent) || event instanceof RoutedMessageEvent ||
+                event instanceof LastMessageEvent) {
+            return Long.MAX_VALUE;
+        }
+        CellMessage msg = ((MessageEvent) event).getMessage();
+        if (msg == null || msg.isReply() || msg.getTtl() == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return msg.getAdjustedTtl() - msg.getLocalAge();
+    }
+
     void shutdown(KillEvent event)
     {
         LOGGER.trace("Received {}", event);
@@ -972,6 +1056,19 @@ public class CellNucleus implements ThreadFactory
     //
     // the routing stuff
     //
+    /**
+     * Registers an additional name in this domain under which messages
+     * are delivered to this cell. Such messages carry the alias as their
+     * current destination.
+     *
+     * @throws IllegalArgumentException if the name is already in use
+     */
+    public void addAlias(String alias) throws IllegalArgumentException {
+        __cellGlue.addAlias(alias, this);
+    }
+    public void removeAlias(String alias) {
+        __cellGlue.removeAlias(alias, this);
+    }
     public void routeAdd(CellRoute  route) throws IllegalArgumentException {
         __cellGlue.routeAdd(route);
     }
@@ -1050,28 +1147,32 @@ public class CellNucleus implements ThreadFactory
 
     private class DeliverMessageTask extends AbstractNucleusTask
     {
-        private final CellEvent _event;
-
-        public DeliverMessageTask(CellEvent event)
-        {
-            _event = event;
-        }
-
         @Override
         public void innerRun()
         {
-            EventLogger.queueEnd(_event);
+            CellEvent event = _messageLanes.poll();
+            if (event == null) {
+                return;
+            }
+            EventLogger.queueEnd(event);
             _eventQueueSize.decrementAndGet();
 
-            if (_event instanceof LastMessageEvent) {
+            if (event instanceof LastMessageEvent) {
                 LOGGER.trace("messageThread : LastMessageEvent arrived");
-                _cell.messageArrived((MessageEvent) _event);
-            } else if (_event instanceof RoutedMessageEvent) {
+                _cell.messageArrived((MessageEvent) event);
+            } else if (event instanceof RoutedMessageEvent) {
                 LOGGER.trace("messageThread : RoutedMessageEvent arrived");
-                _cell.messageArrived((RoutedMessageEvent) _event);
-            } else if (_event instanceof MessageEvent) {
-                MessageEvent msgEvent = (MessageEvent) _event;
+                _cell.messageArrived((RoutedMessageEvent) event);
+            } else if (event instanceof MessageEvent) {
+                MessageEvent msgEvent = (MessageEvent) event;
                 LOGGER.trace("messageThread : MessageEvent arrived");
+                if (getRemainingTtl(msgEvent) < 0) {
+                    String className = msgEvent.getMessage().getMessageObjectClassName();
+                    _messageLanes.expired(className);
+                    LOGGER.warn("Discarding {} because its time to live has been exceeded.",
+                                className);
+                    return;
+                }
                 CellMessage msg;
                 try {
                     msg = msgEvent.getMessage().decode();
@@ -18,17 +18,59 @@ public class CellTunnelInfo implements Serializable {
    private final CellDomainInfo _remote ;
    private final CellDomainInfo _local ;
    final String _tunnelName ;
+   private final long _bytesSent ;
+   private final long _bytesReceived ;
+   private final long _uncompressedBytesSent ;
+   private final long _uncompressedBytesReceived ;
 
    public CellTunnelInfo( String tunnelName ,
                           CellDomainInfo local ,
                           CellDomainInfo remote ){
+      this( tunnelName , local , remote , 0 , 0 , 0 , 0 ) ;
+   }
+   /**
+    * Creates tunnel info with traffic counters. The uncompressed byte
+    * counts are the number of bytes that would have been transferred
+    * without compression.
+    */
+   public CellTunnelInfo( String tunnelName ,
+                          CellDomainInfo local ,
+                          CellDomainInfo remote ,
+                          long bytesSent ,
+                          long bytesReceived ,
+                          long uncompressedBytesSent ,
+                          long uncompressedBytesReceived ){
       _remote     = remote ;
       _local      = local ;
       _tunnelName = tunnelName ;
-
+      _bytesSent  = bytesSent ;
+      _bytesReceived = bytesReceived ;
+      _uncompressedBytesSent = uncompressedBytesSent ;
+      _uncompressedBytesReceived = uncompressedBytesReceived ;
    }
    public CellDomainInfo getRemoteCellDomainInfo(){ return _remote ; }
    public CellDomainInfo getLocalCellDomainInfo(){  return _local ; }
+   public long getBytesSent(){ return _bytesSent ; }
+   public long getBytesReceived(){ return _bytesReceived ; }
+   public long getUncompressedBytesSent(){ return _uncompressedBytesSent ; }
+   public long getUncompressedBytesReceived(){ return _uncompressedBytesReceived ; }
+   /**
+    * Returns the ratio of uncompressed to transferred bytes sent, or 1
+    * if nothing was sent.
+    */
+   public double getSendCompressionRatio(){
+      return ratio( _uncompressedBytesSent , _bytesSent ) ;
+   }
+   /**
+    * Returns the ratio of uncompressed to transferred bytes received,
+    * or 1 if nothing was received.
+    */
+   public double getReceiveCompressionRatio(){
+      return ratio( _uncompressedBytesReceived , _bytesReceived ) ;
+   }
+   private static double ratio( long uncompressed , long bytes ){
+      return ( bytes == 0 || uncompressed == 0 ) ? 1.0 : (double) uncompressed / bytes ;
+   }
    public String toString(){
       return _tunnelName+" L["+(_local!=null?_local.toString():"Unknown")+
              "];R["+(_remote!=null?_remote.toString():"Unknown")+"]" ;
@@ -0,0 +1,332 @@
+package dmg.cells.nucleus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Queue of events waiting for delivery to a cell, divided into lanes.
+ *
+ * Each lane has a weight and a set of message classes. Messages are
+ * queued in the lane of the class of their message object; all other
+ * events are queued in the default lane. Within a lane events are
+ * delivered in FIFO order. Among the lanes holding events, events are
+ * taken in proportion to the weights of the lanes using smooth
+ * weighted round robin. Thus cheap control messages in a lane of their
+ * own do not have to wait behind a long queue of expensive requests.
+ *
+ * Lanes are defined by a string of space separated lane definitions
+ * of the form NAME:WEIGHT[:CLASS[,CLASS...]]. A lane called default
+ * with weight 1 is added unless it is defined.
+ *
+ * Each lane keeps a moving average of the time between events leaving
+ * it while it is busy, i.e. of the service time of the lane as seen by
+ * its queue. This includes time spent serving other lanes and reflects
+ * the number of threads delivering events. A request is refused when
+ * offered if the number of events queued ahead of it times the service
+ * time exceeds its remaining time to live, since its sender would give
+ * up on it before it is delivered. As the estimate is based on the
+ * current queue length, it follows the queue as it grows and drains.
+ * The number of refused and expired requests is recorded per message
+ * class.
+ *
+ * The class is thread safe.
+ */
+class MessageLanes
+{
+    public static final String DEFAULT_LANE = "default";
+
+    /** Weight of the last sample in the moving average of service times. */
+    private static final double SERVICE_TIME_GAIN = 0.2;
+
+    private static class Entry
+    {
+        final CellEvent event;
+        final long enqueued;
+
+        Entry(CellEvent event, long enqueued)
+        {
+            this.event = event;
+            this.enqueued = enqueued;
+        }
+    }
+
+    private static class Lane
+    {
+        final String name;
+        final int weight;
+        final Deque<Entry> queue = new ArrayDeque<>();
+
+        /** Current weight used by smooth weighted round robin. */
+        int current;
+
+        /** Statistics of dequeued events. */
+        long count;
+        long totalWait;
+        long maxWait;
+        int maxLength;
+
+        /** Moving average of the service time in milliseconds. */
+        double serviceTime = Double.NaN;
+
+        /** Time the last event left the lane. */
+        long lastDeparture;
+
+        /**
+         * Returns the estimated time in milliseconds until an event
+         * added now would leave the lane.
+         */
+        double getEstimatedWait()
+        {
+            return Double.isNaN(serviceTime) ? 0 : queue.size() * serviceTime;
+        }
+
+        Lane(String name, int weight)
+        {
+            this.name = name;
+            this.weight = weight;
+        }
+    }
+
+    private final List<Lane> _lanes = new ArrayList<>();
+    private final Map<String,Lane> _lanesByClass = new HashMap<>();
+    private final Lane _defaultLane;
+
+    /** Number of requests shed per message class. */
+    private final SortedMap<String,Shed> _shed = new TreeMap<>();
+
+    private static class Shed
+    {
+        long refused;
+        long expired;
+    }
+
+    /**
+     * Creates lanes according to a definition.
+     *
+     * @throws IllegalArgumentException if the definition is invalid
+     */
+    MessageLanes(String definition) throws IllegalArgumentException
+    {
+        Lane defaultLane = null;
+        for (String s : definition.trim().split("\\s+")) {
+            if (s.isEmpty()) {
+                continue;
+            }
+            String[] fields = s.split(":");
+            if (fields.length < 2 || fields.length > 3) {
+                throw new IllegalArgumentException("Invalid lane definition: " + s);
+            }
+            int weight;
+            try {
+                weight = Integer.parseInt(fields[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight of lane " + fields[0] + ": " + fields[1]);
+            }
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weight of lane " + fields[0] + " must be positive");
+            }
+            for (Lane lane : _lanes) {
+                if (lane.name.equals(fields[0])) {
+                    throw new IllegalArgumentException("Duplicate lane: " + fields[0]);
+                }
+            }
+            Lane lane = new Lane(fields[0], weight);
+            _lanes.add(lane);
+            if (lane.name.equals(DEFAULT_LANE)) {
+                defaultLane = lane;
+            }
+            if (fields.length == 3) {
+                for (String className : fields[2].split(",")) {
+                    _lanesByClass.put(className, lane);
+                }
+            }
+        }
+        if (defaultLane == null) {
+            defaultLane = new Lane(DEFAULT_LANE, 1);
+            _lanes.add(defaultLane);
+        }
+        _defaultLane = defaultLane;
+    }
+
+    /**
+     * Adds an event to the lane of the given message class.
+     *
+     * @param className Class name of the message object or null
+     */
+    synchronized void add(CellEvent event, String className)
+    {
+        offer(event, className, Long.MAX_VALUE);
+    }
+
+    /**
+     * Adds an event to the lane of the given message class unless the
+     * estimated wait in that lane exceeds the remaining time to live of
+     * the event. The wait is estimated as the number of queued events
+     * times the service time of the lane.
+     *
+     * @param className Class name of the message object or null
+     * @param remaining Remaining time to live in milliseconds or
+     *                  Long.MAX_VALUE if the event must not be refused
+     * @return true if the event was added, false if it was refused
+     */
+    synchronized boolean offer(CellEvent event, String className, long remaining)
+    {
+        Lane lane = (className == null) ? null : _lanesByClass.get(className);
+        if (lane == null) {
+            lane = _defaultLane;
+        }
+        if (remaining < Long.MAX_VALUE && lane.getEstimatedWait() > remaining) {
+            getShed(className).refused++;
+            return false;
+        }
+        lane.queue.add(new Entry(event, System.currentTimeMillis()));
+        lane.maxLength = Math.max(lane.maxLength, lane.queue.size());
+        return true;
+    }
+
+    /**
+     * Records that a polled request was discarded because its time to
+     * live was exceeded.
+     */
+    synchronized void expired(String className)
+    {
+        getShed(className).expired++;
+    }
+
+    private Shed getShed(String className)
+    {
+        String key = (className == null) ? "-" : className;
+        Shed shed = _shed.get(key);
+        if (shed == null) {
+            shed = new Shed();
+            _shed.put(key, shed);
+        }
+        return shed;
+    }
+
+    /**
+     * Removes and returns the next event to deliver, or null if all
+     * lanes are empty.
+     */
+    synchronized CellEvent poll()
+    {
+        Lane selected = null;
+        int total = 0;
+        for (Lane lane : _lanes) {
+            if (!lane.queue.isEmpty()) {
+                lane.current += lane.weight;
+                total += lane.weight;
+                if (selected == null || lane.current > selected.current) {
+                    selected = lane;
+                }
+            }
+        }
+        if (selected == null) {
+            return null;
+        }
+        selected.current -= total;
+
+        Entry entry = selected.queue.remove();
+        if (selected.queue.isEmpty()) {
+            selected.current = 0;
+        }
+        long now = System.currentTimeMillis();
+        long wait = now - entry.enqueued;
+        selected.count++;
+        selected.totalWait += wait;
+        selected.maxWait = Math.max(selected.maxWait, wait);
+
+        /* The lane has been busy with this event since the previous
+         * event left or, if the lane was empty, since this event arrived.
+         */
+        long serviceTime = now - Math.max(selected.lastDeparture, entry.enqueued);
+        selected.serviceTime = Double.isNaN(selected.serviceTime)
+                ? serviceTime
+                : selected.serviceTime + SERVICE_TIME_GAIN * (serviceTime - selected.serviceTime);
+        selected.lastDeparture = now;
+        return entry.event;
+    }
+
+    /**
+     * Removes an event that has not been polled yet.
+     *
+     * @return true if the event was queued, false otherwise
+     */
+    synchronized boolean remove(CellEvent event)
+    {
+        for (Lane lane : _lanes) {
+            Iterator<Entry> i = lane.queue.iterator();
+            while (i.hasNext()) {
+                if (i.next().event == event) {
+                    i.remove();
+                    if (lane.queue.isEmpty()) {
+                        lane.current = 0;
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes and returns the most recently queued event of the
+     * non-empty lane with the lowest weight, or null if all lanes are
+     * empty.
+     */
+    synchronized CellEvent removeLast()
+    {
+        Lane selected = null;
+        for (Lane lane : _lanes) {
+            if (!lane.queue.isEmpty() && (selected == null || lane.weight < selected.weight)) {
+                selected = lane;
+            }
+        }
+        if (selected == null) {
+            return null;
+        }
+        Entry entry = selected.queue.removeLast();
+        if (selected.queue.isEmpty()) {
+            selected.current = 0;
+        }
+        return entry.event;
+    }
+
+    /**
+     * Returns a table with the queue length, the wait time statistics
+     * and the service time of each lane, followed by a table with the number of
+     * shed requests of each message class.
+     */
+    synchronized String getInfo()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-12s %6s %8s %8s %10s %10s %10s %10s\n",
+                                "Lane", "Weight", "Queued", "MaxQueue",
+                                "Delivered", "AvgWaitMs", "MaxWaitMs", "ServiceMs"));
+        for (Lane lane : _lanes) {
+            sb.append(String.format("%-12s %6d %8d %8d %10d %10d %10d %10.1f\n",
+                                    lane.name, lane.weight, lane.queue.size(),
+                                    lane.maxLength, lane.count,
+                                    (lane.count == 0) ? 0 : lane.totalWait / lane.count,
+                                    lane.maxWait,
+                                    Double.isNaN(lane.serviceTime) ? 0 : lane.serviceTime));
+        }
+        if (!_shed.isEmpty()) {
+            sb.append('\n');
+            sb.append(String.format("%-60s %10s %10s\n", "Message", "Refused", "Expired"));
+            for (Map.Entry<String,Shed> entry : _shed.entrySet()) {
+                sb.append(String.format("%-60s %10d %10d\n", entry.getKey(),
+                                        entry.getValue().refused,
+                                        entry.getValue().expired));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -1033,7 +1033,8 @@ public class LocationManager extends CellAdapter {
          }else{
             protocol = securityContext ;
          }
-         String cellArgs  = ""+port+" "+cellClass+" "+protocol+" -lm="+getCellName();
+         String cellArgs  = ""+port+" "+cellClass+" "+protocol+" -lm="+getCellName()+
+                            getCompressionThresholdOption();
          _log.info(" LocationManager starting acceptor with "+cellArgs ) ;
          Cell c = _nucleus.createNewCell( inetClass , cellName , cellArgs , true ) ;
          _log.info( "Created : "+c ) ;
@@ -1056,13 +1057,25 @@ public class LocationManager extends CellAdapter {
              "-domain=" + remoteDomain + " "
              + "-lm=" + getCellName() + " "
              + clientKey + " "
-             + clientName;
+             + clientName
+             + getCompressionThresholdOption();
 
          _log.info("LocationManager starting connector with " + cellArgs);
          Cell c = _nucleus.createNewCell(cellClass, cellName, cellArgs, true);
          _log.info("Created : " + c);
        }
 
+      /**
+       * Returns the option passing the compression threshold of tunnels
+       * on to listeners and connectors, or the empty string if not set.
+       */
+      private String getCompressionThresholdOption()
+      {
+          String threshold = _args.getOpt("compressionThreshold");
+          return ( threshold != null ) && ( threshold.length() > 0 ) ?
+                 ( " -compressionThreshold=" + threshold ) : "";
+      }
+
       private void setDefaultRoute( String domain )
       {
           _nucleus.routeAdd( new CellRoute( null ,  "*@"+domain , CellRoute.DEFAULT ) ) ;
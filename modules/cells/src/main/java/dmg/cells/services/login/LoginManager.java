@@ -28,24 +28,36 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import dmg.cells.nucleus.CDC;
 import dmg.cells.nucleus.CellAdapter;
+import dmg.cells.nucleus.CellAddressCore;
 import dmg.cells.nucleus.CellEvent;
 import dmg.cells.nucleus.CellEventListener;
+import dmg.cells.nucleus.CellInfo;
 import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellMessageAnswerable;
 import dmg.cells.nucleus.CellNucleus;
 import dmg.cells.nucleus.CellPath;
 import dmg.cells.nucleus.CellVersion;
+import dmg.cells.nucleus.LastMessageEvent;
+import dmg.cells.nucleus.MessageEvent;
 import dmg.cells.nucleus.NoRouteToCellException;
+import dmg.cells.nucleus.SerializationException;
 import dmg.util.KeepAliveListener;
 import dmg.util.StreamEngine;
 import dmg.util.UserValidatable;
@@ -91,6 +103,11 @@ public class LoginManager
     private final String _protocol;
     private final Class<?> _authClass;
     private final LoginCellFactory _loginCellFactory;
+    private final boolean _isSessionMode;
+    private final ConcurrentMap<String, Session> _sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger _sessionCounter = new AtomicInteger();
+    private final ExecutorService _sessionExecutor;
+    private final Args _childArgs;
 
     private volatile boolean _sending;
     private volatile int _maxLogin = -1;
@@ -131,6 +148,7 @@ public class LoginManager
                                 " [-maxLogin=<n>|-1]" +
                                 " [-keepAlive=<seconds>]" +
                                 " [-acceptErrorWait=<msecs>]" +
+                                " [-sessions] [-sessionThreads=<n>]" +
                                 " [args givenToLoginClass]");
             }
 
@@ -140,6 +158,7 @@ public class LoginManager
             Args childArgs = new Args(argString.replaceFirst("(^|\\s)-export(=true|=false)?($|\\s)", " "));
             childArgs.shift();
             childArgs.shift();
+            _childArgs = childArgs;
 
             _protocol = checkProtocol(_args.getOpt("prot"));
             LOGGER.info("Using protocol : {}", _protocol);
@@ -186,6 +205,18 @@ public class LoginManager
                     .build();
             _version = new CellVersion(Version.of(_loginCellFactory));
 
+            String sessions = _args.getOpt("sessions");
+            _isSessionMode = sessions != null && !sessions.equals("false");
+            if (_isSessionMode) {
+                checkArgument(_loginCellFactory instanceof LoginSessionFactory,
+                              _loginCellFactory.getName() + " does not support session mode");
+                int threads = _args.getIntOption("sessionThreads", 16);
+                _sessionExecutor = Executors.newFixedThreadPool(threads, _nucleus);
+                LOGGER.info("Session mode enabled with {} message threads", threads);
+            } else {
+                _sessionExecutor = null;
+            }
+
             _scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
 
             String loginBroker = _args.getOpt("loginBroker");
@@ -481,6 +512,10 @@ public class LoginManager
         pw.println("  Logins failed  : " + _loginFailures);
         pw.println("  Logins denied  : " + _connectionDeniedCounter);
         pw.println("  KeepAlive      : " + (_keepAlive.getKeepAlive() / 1000L));
+        pw.println("  Session mode   : " + _isSessionMode);
+        if (_isSessionMode) {
+            pw.println("  Sessions       : " + _sessions.size());
+        }
 
         if (_maxLogin > -1) {
             pw.println("  Logins/max     : " + _children.size() + "/" + _maxLogin);
@@ -522,6 +557,9 @@ public class LoginManager
         if (_scheduledExecutor != null) {
             _scheduledExecutor.shutdown();
         }
+        if (_sessionExecutor != null) {
+            _sessionExecutor.shutdown();
+        }
         LOGGER.info("Bye Bye");
     }
 
@@ -749,6 +787,14 @@ public class LoginManager
         private void awaitTerminationOfChildren()
         {
             try {
+                synchronized (_sessions) {
+                    long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+                    long timeout;
+                    while (!_sessions.isEmpty() &&
+                            (timeout = deadline - System.currentTimeMillis()) > 0) {
+                        _sessions.wait(timeout);
+                    }
+                }
                 for (Object child : _children.values()) {
                     if (child instanceof CellAdapter) {
                         getNucleus().join(((CellAdapter) child).getCellName());
@@ -761,6 +807,9 @@ public class LoginManager
 
         private void terminateChildren()
         {
+            for (Session session : _sessions.values()) {
+                session.shutdown();
+            }
             for (Object child : _children.values()) {
                 if (child instanceof CellAdapter) {
                     getNucleus().kill(((CellAdapter) child).getCellName());
@@ -871,6 +920,11 @@ public class LoginManager
                     userName = p == 0 ? "unknown" : userName.substring(0, p);
                 }
 
+                if (_isSessionMode) {
+                    runSession(engine, userName);
+                    return;
+                }
+
                 Object cell = _loginCellFactory.newCell(engine, userName);
                 if (_maxLogin > -1) {
                     try {
@@ -913,6 +967,239 @@ public class LoginManager
         }
     }
 
+    /**
+     * Serves a connection as a session within this cell. Blocks until the
+     * session terminates.
+     *
+     * The session name is registered as an alias of this cell, thus the
+     * session is addressable as a child of the login manager like a
+     * login cell would be.
+     */
+    private void runSession(StreamEngine engine, String userName)
+            throws InvocationTargetException
+    {
+        String name = getCellName() + "-" + userName + "-" + _sessionCounter.incrementAndGet();
+        Session session = new Session(name);
+        getNucleus().addAlias(name);
+        _sessions.put(name, session);
+        _children.put(name, session);
+        loadChanged();
+        _loginCounter.incrementAndGet();
+        try (CDC ignored = CDC.reset(name, getCellDomainName())) {
+            session.setLoginSession(
+                    ((LoginSessionFactory) _loginCellFactory).newSession(engine, userName, session));
+            session.run();
+        } finally {
+            getNucleus().removeAlias(name);
+            _children.remove(name, session);
+            synchronized (_sessions) {
+                _sessions.remove(name);
+                _sessions.notifyAll();
+            }
+            loadChanged();
+            LOGGER.info("Session {} terminated", name);
+        }
+    }
+
+    /**
+     * Messages addressed to the alias of a session are delivered to the
+     * session; all others are processed as usual.
+     */
+    @Override
+    public void messageArrived(MessageEvent me)
+    {
+        if (_isSessionMode && !(me instanceof LastMessageEvent)) {
+            CellMessage envelope = me.getMessage();
+            Session session = _sessions.get(envelope.getDestinationPath().getCurrent().getCellName());
+            if (session != null) {
+                session.deliver(envelope);
+                return;
+            }
+        }
+        super.messageArrived(me);
+    }
+
+    /**
+     * Replies to messages sent by a session carry the session as the hop
+     * following this cell. Such messages are delivered to the session; all
+     * others are forwarded as usual.
+     */
+    @Override
+    public void messageToForward(CellMessage envelope)
+    {
+        if (_isSessionMode) {
+            CellPath path = (CellPath) envelope.getDestinationPath().clone();
+            if (path.next()) {
+                Session session = _sessions.get(path.getCurrent().getCellName());
+                if (session != null) {
+                    envelope.nextDestination();
+                    session.deliver(envelope);
+                    return;
+                }
+            }
+        }
+        super.messageToForward(envelope);
+    }
+
+    /**
+     * Context of a login session. Messages for the session are queued and
+     * delivered in order on the executor shared by all sessions. Messages
+     * arriving before the login session has been created are delivered
+     * once it has been.
+     */
+    private class Session implements LoginSessionContext, Runnable
+    {
+        private final String _name;
+        private final CellAddressCore _address;
+        private final Queue<CellMessage> _messages = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean _isDelivering = new AtomicBoolean();
+        private volatile LoginSession _session;
+
+        private Session(String name)
+        {
+            _name = name;
+            _address = new CellAddressCore(name, getCellDomainName());
+        }
+
+        private void setLoginSession(LoginSession session)
+        {
+            _session = session;
+            scheduleDelivery();
+        }
+
+        @Override
+        public void run()
+        {
+            _session.run();
+        }
+
+        private void shutdown()
+        {
+            LoginSession session = _session;
+            if (session != null) {
+                session.shutdown();
+            }
+        }
+
+        private void deliver(CellMessage envelope)
+        {
+            _messages.add(envelope);
+            scheduleDelivery();
+        }
+
+        private void scheduleDelivery()
+        {
+            final LoginSession session = _session;
+            if (session != null && !_messages.isEmpty() && _isDelivering.compareAndSet(false, true)) {
+                try {
+                    _sessionExecutor.execute(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try (CDC ignored = CDC.reset(_name, getCellDomainName())) {
+                                CellMessage envelope;
+                                while ((envelope = _messages.poll()) != null) {
+                                    try {
+                                        session.messageArrived(envelope);
+                                    } catch (RuntimeException e) {
+                                        LOGGER.error("Session {} failed to process message: {}",
+                                                     _name, e.toString(), e);
+                                    }
+                                }
+                            } finally {
+                                _isDelivering.set(false);
+                                scheduleDelivery();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    _isDelivering.set(false);
+                    LOGGER.warn("Dropping message for session {}: {}", _name, e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public String getSessionName()
+        {
+            return _name;
+        }
+
+        @Override
+        public CellPath getSessionPath()
+        {
+            return new CellPath(_address);
+        }
+
+        @Override
+        public Executor getExecutor()
+        {
+            return _sessionExecutor;
+        }
+
+        @Override
+        public void sendMessage(CellMessage envelope)
+                throws SerializationException, NoRouteToCellException
+        {
+            envelope.addSourceAddress(_address);
+            LoginManager.this.sendMessage(envelope);
+        }
+
+        @Override
+        public void sendMessage(CellMessage envelope, CellMessageAnswerable callback,
+                                Executor executor, long timeout)
+                throws SerializationException
+        {
+            /* The reply is correlated with the callback by the nucleus, but
+             * other messages sent in response, e.g. by a pool at the end
+             * of a transfer, must reach the session too.
+             */
+            envelope.addSourceAddress(_address);
+            LoginManager.this.sendMessage(envelope, callback, executor, timeout);
+        }
+
+        @Override
+        public void sendMessageWithRetryOnNoRouteToCell(CellMessage envelope,
+                                                        CellMessageAnswerable callback,
+                                                        Executor executor, long timeout)
+                throws SerializationException
+        {
+            envelope.addSourceAddress(_address);
+            LoginManager.this.sendMessageWithRetryOnNoRouteToCell(envelope, callback, executor, timeout);
+        }
+
+        /**
+         * Returns the information of the login manager cell, but with the
+         * name of the session as the cell name.
+         */
+        @Override
+        public CellInfo getCellInfo()
+        {
+            CellInfo info = new CellInfo(LoginManager.this.getCellInfo());
+            info.setCellName(_name);
+            return info;
+        }
+
+        @Override
+        public Map<String, Object> getDomainContext()
+        {
+            return LoginManager.this.getDomainContext();
+        }
+
+        @Override
+        public Args getArgs()
+        {
+            return _childArgs;
+        }
+
+        @Override
+        public String toString()
+        {
+            return _name;
+        }
+    }
+
     private void loadChanged()
     {
         int children = _children.size();
@@ -0,0 +1,36 @@
+package dmg.cells.services.login;
+
+import dmg.cells.nucleus.CellMessage;
+
+/**
+ * A login session served by the login manager cell rather than by a
+ * cell of its own.
+ *
+ * Sessions are created by a {@link LoginSessionFactory} when the login
+ * manager runs in session mode. They avoid the nucleus, thread group and
+ * message executor a login cell would otherwise need.
+ */
+public interface LoginSession
+{
+    /**
+     * Serves the session, typically by reading commands from the client
+     * connection until the client disconnects. The session is removed
+     * from the login manager when this method returns.
+     */
+    void run();
+
+    /**
+     * Delivers a message addressed to this session. This includes replies
+     * to messages the session sent without a callback and commands sent to
+     * the session name. Messages are delivered one at a time and in order
+     * of arrival on an executor shared by all sessions of the login
+     * manager, hence implementations must not block.
+     */
+    void messageArrived(CellMessage envelope);
+
+    /**
+     * Asks the session to terminate, causing {@link #run} to return. May be
+     * called from any thread.
+     */
+    void shutdown();
+}
@@ -0,0 +1,45 @@
+package dmg.cells.services.login;
+
+import java.util.concurrent.Executor;
+
+import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellPath;
+import dmg.cells.nucleus.NoRouteToCellException;
+import dmg.cells.nucleus.SerializationException;
+
+/**
+ * The view of a login session onto the login manager cell hosting it.
+ *
+ * Messages sent through the context carry the address of the session in
+ * their source path, thus replies are routed back to
+ * {@link LoginSession#messageArrived}. Replies to messages sent with a
+ * callback are delivered to the callback. As the context is a
+ * CellEndpoint, it can back a CellStub.
+ *
+ * {@link #getCellInfo} reports the session name as the cell name. Other
+ * cells may address the session by that name as if it was a cell.
+ */
+public interface LoginSessionContext extends CellEndpoint
+{
+    /**
+     * Returns the name of the session. The name is unique within the login
+     * manager and is reported as a child of the login manager.
+     */
+    String getSessionName();
+
+    /**
+     * Returns a path by which other cells can address this session.
+     */
+    CellPath getSessionPath();
+
+    /**
+     * Returns the executor shared by all sessions of the login manager.
+     * Tasks submitted to it must not block for long.
+     */
+    Executor getExecutor();
+
+    @Override
+    void sendMessage(CellMessage envelope)
+            throws SerializationException, NoRouteToCellException;
+}
@@ -0,0 +1,29 @@
+package dmg.cells.services.login;
+
+import java.lang.reflect.InvocationTargetException;
+
+import dmg.util.StreamEngine;
+
+/**
+ * Factory for login sessions.
+ *
+ * A LoginCellFactory may implement this interface to indicate that it can
+ * serve connections as lightweight sessions within the login manager cell.
+ * Session mode is enabled with the {@code -sessions} option of the login
+ * manager.
+ */
+public interface LoginSessionFactory extends LoginCellFactory
+{
+    /**
+     * Creates a new login session for the given connection and user.
+     *
+     * @param engine A network connection
+     * @param userName Optional user name of the user that created the connection
+     * @param context Means for the session to communicate with other cells
+     * @return A new login session
+     *
+     * @throws InvocationTargetException If the session cannot be created
+     */
+    LoginSession newSession(StreamEngine engine, String userName, LoginSessionContext context)
+            throws InvocationTargetException;
+}
@@ -0,0 +1,97 @@
+package dmg.cells.network;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import dmg.cells.network.LocationMgrTunnel.CompressedMessage;
+import dmg.cells.nucleus.CellDomainInfo;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellPath;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LocationMgrTunnelTest
+{
+    private static Object transfer(Object object)
+        throws IOException, ClassNotFoundException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(object);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(buffer.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+
+    @Test
+    public void compressedMessageShouldSurviveRoundTrip() throws Exception
+    {
+        String payload = Strings.repeat("compressible ", 10000);
+        CellMessage message =
+                new CellMessage(new CellPath("PnfsManager"), payload).encode();
+
+        CompressedMessage compressed =
+                CompressedMessage.compress(Compression.DEFLATE, message);
+        CellMessage received =
+                ((CompressedMessage) transfer(compressed)).decompress();
+
+        assertThat(compressed.getBytesSaved(), is(greaterThan(0L)));
+        assertThat(received.getUOID(), is(message.getUOID()));
+        assertThat(received.getDestinationPath(), is(message.getDestinationPath()));
+        assertThat(received.decode().getMessageObject(), is((Object) payload));
+    }
+
+    @Test
+    public void shouldCompressIfPeerSupportsCompression() throws Exception
+    {
+        CellDomainInfo peer = (CellDomainInfo) transfer(
+                new CellDomainInfo("peer", "2.10", Compression.names()));
+
+        assertThat(LocationMgrTunnel.negotiateCompression(1024, peer),
+                   is(Compression.DEFLATE));
+    }
+
+    @Test
+    public void shouldNotCompressIfDisabled() throws Exception
+    {
+        CellDomainInfo peer = (CellDomainInfo) transfer(
+                new CellDomainInfo("peer", "2.10", Compression.names()));
+
+        assertThat(LocationMgrTunnel.negotiateCompression(0, peer),
+                   is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotCompressIfPeerDoesNotSupportCompression() throws Exception
+    {
+        CellDomainInfo peer = (CellDomainInfo) transfer(
+                new CellDomainInfo("peer", "2.9"));
+
+        assertThat(LocationMgrTunnel.negotiateCompression(1024, peer),
+                   is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotCompressIfPeerSupportsNoKnownAlgorithm() throws Exception
+    {
+        CellDomainInfo peer = (CellDomainInfo) transfer(
+                new CellDomainInfo("peer", "2.11", Arrays.asList("LZ4")));
+
+        assertThat(LocationMgrTunnel.negotiateCompression(1024, peer),
+                   is(nullValue()));
+        assertThat(LocationMgrTunnel.negotiateCompression(1024,
+                new CellDomainInfo("peer", "2.11", Collections.<String>emptyList())),
+                   is(nullValue()));
+    }
+}
@@ -0,0 +1,161 @@
+package dmg.cells.nucleus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class MessageLanesTest
+{
+    @Test
+    public void eventsOfUnknownClassesShouldBeDeliveredInOrder()
+    {
+        MessageLanes lanes = new MessageLanes("control:10:java.lang.String");
+        CellEvent first = new CellEvent();
+        CellEvent second = new CellEvent();
+        lanes.add(first, "java.lang.Integer");
+        lanes.add(second, null);
+
+        assertThat(lanes.poll(), is(sameInstance(first)));
+        assertThat(lanes.poll(), is(sameInstance(second)));
+        assertThat(lanes.poll(), is(nullValue()));
+    }
+
+    @Test
+    public void lanesShouldBeServedInProportionToTheirWeights()
+    {
+        MessageLanes lanes = new MessageLanes("control:3:java.lang.String");
+        List<CellEvent> control = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            CellEvent event = new CellEvent();
+            lanes.add(event, "java.lang.Integer");
+        }
+        for (int i = 0; i < 6; i++) {
+            CellEvent event = new CellEvent();
+            control.add(event);
+            lanes.add(event, "java.lang.String");
+        }
+
+        int delivered = 0;
+        for (int i = 0; i < 8; i++) {
+            if (control.contains(lanes.poll())) {
+                delivered++;
+            }
+        }
+        assertThat(delivered, is(6));
+    }
+
+    @Test
+    public void requestsShouldBeAdmittedToEmptyLanes()
+    {
+        MessageLanes lanes = new MessageLanes("");
+        CellEvent event = new CellEvent();
+
+        assertThat(lanes.offer(event, null, 0), is(true));
+        assertThat(lanes.poll(), is(sameInstance(event)));
+    }
+
+    @Test
+    public void requestsShouldBeRefusedIfTheyWouldExpireWhileQueued() throws Exception
+    {
+        MessageLanes lanes = new MessageLanes("");
+        lanes.add(new CellEvent(), null);
+        Thread.sleep(50);
+        lanes.poll();
+        lanes.add(new CellEvent(), null);
+
+        assertThat(lanes.offer(new CellEvent(), "java.lang.String", 1), is(false));
+        assertThat(lanes.offer(new CellEvent(), "java.lang.String", Long.MAX_VALUE), is(true));
+        assertThat(lanes.getInfo().contains("java.lang.String"), is(true));
+    }
+
+    @Test
+    public void requestsShouldBeAdmittedIfQueueIsShortEnough() throws Exception
+    {
+        MessageLanes lanes = new MessageLanes("");
+        lanes.add(new CellEvent(), null);
+        Thread.sleep(50);
+        lanes.poll();
+        lanes.add(new CellEvent(), null);
+
+        assertThat(lanes.offer(new CellEvent(), "java.lang.String", 10000), is(true));
+    }
+
+    @Test
+    public void estimatedWaitShouldGrowWithQueueLength() throws Exception
+    {
+        MessageLanes lanes = new MessageLanes("");
+        lanes.add(new CellEvent(), null);
+        Thread.sleep(50);
+        lanes.poll();
+        lanes.add(new CellEvent(), null);
+
+        assertThat(lanes.offer(new CellEvent(), "java.lang.String", 120), is(true));
+        lanes.add(new CellEvent(), null);
+        assertThat(lanes.offer(new CellEvent(), "java.lang.String", 120), is(false));
+    }
+
+    @Test
+    public void requestsShouldBeAdmittedOnceQueueHasDrained() throws Exception
+    {
+        MessageLanes lanes = new MessageLanes("");
+        lanes.add(new CellEvent(), null);
+        Thread.sleep(50);
+        lanes.poll();
+
+        assertThat(lanes.offer(new CellEvent(), "java.lang.String", 1), is(true));
+    }
+
+    @Test
+    public void queuedEventsShouldBeRemovable()
+    {
+        MessageLanes lanes = new MessageLanes("control:10:java.lang.String");
+        CellEvent first = new CellEvent();
+        CellEvent second = new CellEvent();
+        lanes.add(first, "java.lang.String");
+        lanes.add(second, null);
+
+        assertThat(lanes.remove(first), is(true));
+        assertThat(lanes.remove(first), is(false));
+        assertThat(lanes.poll(), is(sameInstance(second)));
+        assertThat(lanes.poll(), is(nullValue()));
+    }
+
+    @Test
+    public void removeLastShouldTakeLatestEventOfLightestLane()
+    {
+        MessageLanes lanes = new MessageLanes("control:10:java.lang.String");
+        CellEvent control = new CellEvent();
+        CellEvent first = new CellEvent();
+        CellEvent second = new CellEvent();
+        lanes.add(first, null);
+        lanes.add(control, "java.lang.String");
+        lanes.add(second, null);
+
+        assertThat(lanes.removeLast(), is(sameInstance(second)));
+        assertThat(lanes.removeLast(), is(sameInstance(first)));
+        assertThat(lanes.removeLast(), is(sameInstance(control)));
+        assertThat(lanes.removeLast(), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveWeightsShouldBeRejected()
+    {
+        new MessageLanes("control:0:java.lang.String");
+    }
+
+    @Test
+    public void classNameOfEncodedMessageShouldBeKnown() throws Exception
+    {
+        CellMessage string = new CellMessage(new CellPath("a"), "ping").encode();
+        CellMessage path = new CellMessage(new CellPath("a"), new CellPath("b")).encode();
+
+        assertThat(string.getMessageObjectClassName(), is("java.lang.String"));
+        assertThat(path.getMessageObjectClassName(), is(CellPath.class.getName()));
+    }
+}
@@ -17,6 +17,7 @@
 package org.dcache.chimera;
 
 import java.io.Closeable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -86,6 +87,17 @@ public interface FileSystemProvider extends Closeable {
     public abstract DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(FsInode dir)
             throws ChimeraFsException;
 
+    /**
+     * Get a stream of the entries of a directory with names following
+     * <code>startAfter</code>, ordered by name. Allows a listing to be
+     * resumed after the last entry returned previously.
+     * @param dir
+     * @param startAfter
+     * @throws ChimeraFsException
+     */
+    public abstract DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(FsInode dir, String startAfter)
+            throws ChimeraFsException;
+
     public abstract void remove(String path) throws ChimeraFsException;
 
     public abstract void remove(FsInode parent, String name)
@@ -327,6 +339,15 @@ public interface FileSystemProvider extends Closeable {
      */
     public abstract FsStat getFsStat() throws ChimeraFsException;
 
+    /**
+     * Recalculate the file system statistic from the inodes. The
+     * statistic is maintained incrementally; this is only needed if
+     * the file system was modified without maintaining the statistic.
+     *
+     * @return {@link FsStat} of the file system
+     */
+    public abstract FsStat reconcileFsStat() throws ChimeraFsException;
+
     /**
      * Get list of Access Control Entries for specified inode.
      * @param inode
@@ -335,6 +356,14 @@ public interface FileSystemProvider extends Closeable {
      */
     public abstract List<ACE> getACL(FsInode inode) throws ChimeraFsException;
 
+    /**
+     * Get lists of Access Control Entries for several inodes at once.
+     * @param inodes
+     * @return map of the given inodes to their ordered list of {@link ACE}.
+     * @throws ChimeraFsException
+     */
+    public abstract Map<FsInode, List<ACE>> getACLs(Collection<? extends FsInode> inodes) throws ChimeraFsException;
+
     /**
      * Set Access Control Entries list for specified inode.
      * @param inode
@@ -32,6 +32,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -85,7 +86,13 @@ class FsSqlDriver {
         }
 
     }
-    private static final String sqlUsedSpace = "SELECT SUM(isize) AS usedSpace FROM t_inodes WHERE itype=32768";
+    /**
+     * Number of rows of t_usage. Must match the rows created by the
+     * database schema.
+     */
+    private static final int USAGE_SHARDS = 16;
+
+    private static final String sqlUsedSpace = "SELECT SUM(isize) AS usedSpace FROM t_usage";
 
     /**
      *
@@ -113,7 +120,7 @@ class FsSqlDriver {
 
         return usedSpace;
     }
-    private static final String sqlUsedFiles = "SELECT count(ipnfsid) AS usedFiles FROM t_inodes WHERE itype=32768";
+    private static final String sqlUsedFiles = "SELECT SUM(ifiles) AS usedFiles FROM t_usage";
 
     /**
      *
@@ -142,6 +149,95 @@ class FsSqlDriver {
         return usedFiles;
     }
 
+    private static final String sqlAddUsage = "UPDATE t_usage SET ifiles=ifiles+?, isize=isize+? WHERE ishard=?";
+
+    /**
+     * Adjusts the usage counters. The counters are split over several
+     * rows to avoid contention on a single row. A thread always
+     * updates the same row, thus a transaction never locks more than
+     * one row and concurrent transactions cannot deadlock on the
+     * counters.
+     *
+     * Callers modify t_inodes before adjusting the counters, which
+     * allows reconcileUsage to compute exact values without blocking
+     * updates of t_inodes.
+     *
+     * @param dbConnection
+     * @param files change in the number of regular files
+     * @param size change in the total size of regular files
+     * @throws SQLException
+     */
+    void addUsage(Connection dbConnection, long files, long size) throws SQLException {
+        if (files == 0 && size == 0) {
+            return;
+        }
+
+        PreparedStatement ps = null;
+        try {
+            ps = dbConnection.prepareStatement(sqlAddUsage);
+            ps.setLong(1, files);
+            ps.setLong(2, size);
+            ps.setInt(3, (int) (Thread.currentThread().getId() % USAGE_SHARDS));
+            ps.executeUpdate();
+        } finally {
+            SqlHelper.tryToClose(ps);
+        }
+    }
+
+    private static final String sqlSizeOfRegularFile = "SELECT isize FROM t_inodes WHERE ipnfsid=? AND itype=32768";
+
+    /**
+     *
+     * @param dbConnection
+     * @param inode
+     * @return size of the inode, or -1 if the inode is not a regular file
+     * @throws SQLException
+     */
+    private long sizeOfRegularFile(Connection dbConnection, FsInode inode) throws SQLException {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = dbConnection.prepareStatement(sqlSizeOfRegularFile);
+            ps.setString(1, inode.toString());
+            rs = ps.executeQuery();
+            return rs.next() ? rs.getLong("isize") : -1;
+        } finally {
+            SqlHelper.tryToClose(rs);
+            SqlHelper.tryToClose(ps);
+        }
+    }
+
+    private static final String sqlResetUsage = "UPDATE t_usage SET ifiles=0, isize=0";
+    private static final String sqlRecalculateUsage =
+            "UPDATE t_usage SET " +
+            "ifiles=(SELECT COUNT(*) FROM t_inodes WHERE itype=32768), " +
+            "isize=(SELECT COALESCE(SUM(isize), 0) FROM t_inodes WHERE itype=32768) " +
+            "WHERE ishard=0";
+
+    /**
+     * Recalculates the usage counters from t_inodes. Resetting the
+     * counters first locks all rows of t_usage, so the recalculation
+     * sees all modifications that adjusted the counters before, while
+     * later modifications adjust the recalculated counters. Must be
+     * called within a transaction.
+     *
+     * @param dbConnection
+     * @throws SQLException
+     */
+    void reconcileUsage(Connection dbConnection) throws SQLException {
+        PreparedStatement ps = null;
+        try {
+            ps = dbConnection.prepareStatement(sqlResetUsage);
+            ps.executeUpdate();
+            SqlHelper.tryToClose(ps);
+
+            ps = dbConnection.prepareStatement(sqlRecalculateUsage);
+            ps.executeUpdate();
+        } finally {
+            SqlHelper.tryToClose(ps);
+        }
+    }
+
     /**
      *
      *  creates a new inode and an entry name in parent directory.
@@ -262,6 +358,38 @@ class FsSqlDriver {
          */
     }
 
+    private static final String sqlListDirFullFrom = sqlListDirFull
+            + " AND t_dirs.iname > ? ORDER BY t_dirs.iname";
+
+    /**
+     * the same as newDirectoryStream, but only entries with names following
+     * <code>startAfter</code> are returned, in the order of their names. Allows
+     * a listing to be resumed without reading the preceding entries again.
+     *
+     * @param dbConnection
+     * @param dir
+     * @param startAfter
+     * @throws SQLException
+     * @return
+     */
+    DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(Connection dbConnection, FsInode dir, String startAfter) throws SQLException {
+
+        ResultSet result;
+        PreparedStatement stListDirectoryFull;
+
+        stListDirectoryFull = dbConnection.prepareStatement(sqlListDirFullFrom);
+        stListDirectoryFull.setFetchSize(50);
+        stListDirectoryFull.setString(1, dir.toString());
+        stListDirectoryFull.setString(2, startAfter);
+
+        result = stListDirectoryFull.executeQuery();
+        return new DirectoryStreamImpl(dir, dbConnection, stListDirectoryFull, result);
+        /*
+         * DB resources freed by
+         * DirectoryStreamB.close()
+         */
+    }
+
     void remove(Connection dbConnection, FsInode parent, String name) throws ChimeraFsException, SQLException {
 
         FsInode inode = inodeOf(dbConnection, parent, name);
@@ -669,6 +797,9 @@ class FsSqlDriver {
             SqlHelper.tryToClose(stCreateInode);
         }
 
+        if (type == UnixPermission.S_IFREG) {
+            addUsage(dbConnection, 1, 0);
+        }
     }
 
     /**
@@ -714,6 +845,7 @@ class FsSqlDriver {
         int rc = 0;
         PreparedStatement stRemoveInode = null; //remove inode from t_inodes
 
+        long size = sizeOfRegularFile(dbConnection, inode);
         try {
 
             stRemoveInode = dbConnection.prepareStatement(sqlRemoveInode);
@@ -726,6 +858,10 @@ class FsSqlDriver {
             SqlHelper.tryToClose(stRemoveInode);
         }
 
+        if (rc > 0 && size >= 0) {
+            addUsage(dbConnection, -1, -size);
+        }
+
         return rc > 0;
     }
 
@@ -1002,6 +1138,7 @@ class FsSqlDriver {
 
         PreparedStatement ps = null;
 
+        long oldSize = sizeOfRegularFile(dbConnection, inode);
         try {
 
             ps = dbConnection.prepareStatement(sqlSetFileSize);
@@ -1015,6 +1152,10 @@ class FsSqlDriver {
         } finally {
             SqlHelper.tryToClose(ps);
         }
+
+        if (oldSize >= 0) {
+            addUsage(dbConnection, 0, newSize - oldSize);
+        }
     }
     private static final String sqlSetFileOwner = "UPDATE t_inodes SET iuid=?,ictime=?,igeneration=igeneration+1 WHERE ipnfsid=?";
 
@@ -1067,6 +1208,8 @@ class FsSqlDriver {
     void setInodeAttributes(Connection dbConnection, FsInode inode, int level, Stat stat) throws SQLException {
 
         PreparedStatement ps = null;
+        long oldSize = -1;
+        int rc;
 
         try {
 
@@ -1077,6 +1220,7 @@ class FsSqlDriver {
              */
             if (level == 0) {
 
+                oldSize = sizeOfRegularFile(dbConnection, inode);
                 ps = dbConnection.prepareStatement(sqlSetInodeAttributes);
 
                 ps.setTimestamp(1, new Timestamp(stat.getATime()));
@@ -1102,11 +1246,18 @@ class FsSqlDriver {
                 ps.setString(6, inode.toString());
             }
 
-            ps.executeUpdate();
+            rc = ps.executeUpdate();
 
         } finally {
             SqlHelper.tryToClose(ps);
         }
+
+        if (level == 0 && rc > 0) {
+            boolean isRegularFile = (stat.getMode() & UnixPermission.S_TYPE) == UnixPermission.S_IFREG;
+            long files = (isRegularFile ? 1 : 0) - (oldSize >= 0 ? 1 : 0);
+            long size = (isRegularFile ? stat.getSize() : 0) - Math.max(oldSize, 0);
+            addUsage(dbConnection, files, size);
+        }
     }
     private static final String sqlSetFileATime = "UPDATE t_inodes SET iatime=?,igeneration=igeneration+1 WHERE ipnfsid=?";
 
@@ -1317,6 +1468,7 @@ class FsSqlDriver {
                 }
 
                 // correct file size
+                long oldSize = sizeOfRegularFile(dbConnection, inode);
                 String writeStream = "UPDATE t_inodes SET isize=? WHERE ipnfsid=?";
 
                 ps = dbConnection.prepareStatement(writeStream);
@@ -1326,6 +1478,10 @@ class FsSqlDriver {
 
                 ps.executeUpdate();
 
+                if (oldSize >= 0) {
+                    addUsage(dbConnection, 0, len - oldSize);
+                }
+
             } else {
 
                 // if level does not exist, create it
@@ -2621,14 +2777,7 @@ class FsSqlDriver {
 
             rs = stGetAcl.executeQuery();
             while (rs.next()) {
-
-                int type = rs.getInt("type");
-                acl.add(new ACE(type == 0 ? AceType.ACCESS_ALLOWED_ACE_TYPE : AceType.ACCESS_DENIED_ACE_TYPE,
-                        rs.getInt("flags"),
-                        rs.getInt("access_msk"),
-                        Who.valueOf(rs.getInt("who")),
-                        rs.getInt("who_id"),
-                        rs.getString("address_msk")));
+                acl.add(toACE(rs));
             }
 
         }finally{
@@ -2638,6 +2787,63 @@ class FsSqlDriver {
         return acl;
     }
 
+    /**
+     * Maximum number of inodes for which ACLs are fetched by a single query.
+     */
+    private static final int ACL_BATCH_SIZE = 100;
+
+    /**
+     * Get the Access Control Lists of several inodes. The returned map contains
+     * an entry for every inode; an empty list is mapped to inodes without ACL.
+     * @param dbConnection
+     * @param inodes
+     * @return
+     * @throws SQLException
+     */
+    Map<FsInode,List<ACE>> getACLs(Connection dbConnection, Collection<? extends FsInode> inodes)
+            throws SQLException {
+        Map<FsInode,List<ACE>> acls = new HashMap<>();
+        Map<String,List<ACE>> byId = new HashMap<>();
+        for (FsInode inode : inodes) {
+            List<ACE> acl = byId.get(inode.toString());
+            if (acl == null) {
+                acl = new ArrayList<>();
+                byId.put(inode.toString(), acl);
+            }
+            acls.put(inode, acl);
+        }
+
+        for (List<String> ids : Lists.partition(new ArrayList<>(byId.keySet()), ACL_BATCH_SIZE)) {
+            StringBuilder sql = new StringBuilder("SELECT * FROM t_acl WHERE rs_id IN (?");
+            for (int i = 1; i < ids.size(); i++) {
+                sql.append(",?");
+            }
+            sql.append(") ORDER BY rs_id, ace_order");
+
+            try (PreparedStatement stGetAcls = dbConnection.prepareStatement(sql.toString())) {
+                for (int i = 0; i < ids.size(); i++) {
+                    stGetAcls.setString(i + 1, ids.get(i));
+                }
+                try (ResultSet rs = stGetAcls.executeQuery()) {
+                    while (rs.next()) {
+                        byId.get(rs.getString("rs_id")).add(toACE(rs));
+                    }
+                }
+            }
+        }
+        return acls;
+    }
+
+    private static ACE toACE(ResultSet rs) throws SQLException {
+        int type = rs.getInt("type");
+        return new ACE(type == 0 ? AceType.ACCESS_ALLOWED_ACE_TYPE : AceType.ACCESS_DENIED_ACE_TYPE,
+                rs.getInt("flags"),
+                rs.getInt("access_msk"),
+                Who.valueOf(rs.getInt("who")),
+                rs.getInt("who_id"),
+                rs.getString("address_msk"));
+    }
+
     private static final String sqlDeleteACL = "DELETE FROM t_acl WHERE rs_id = ?";
     private static final String sqlAddACL = "INSERT INTO t_acl VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
     /**
@@ -0,0 +1,119 @@
+/*
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.chimera;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded cache of data associated with inodes, keyed by the id
+ * of the inode. Disabled unless a size is configured.
+ *
+ * Values must be immutable. Since data may be modified by other
+ * instances sharing the database, cached values expire after a
+ * timeout.
+ *
+ * A generation counter is incremented on every invalidation. A value
+ * read from the database is only cached if no invalidation happened
+ * since the read started, thus values read concurrently with a
+ * modification are not cached.
+ */
+class InodeCache<V>
+{
+    private volatile Cache<String,V> _cache =
+            CacheBuilder.newBuilder().maximumSize(0).build();
+    private final AtomicLong _generation = new AtomicLong();
+    private long _size;
+    private long _timeout = 60;
+    private TimeUnit _timeoutUnit = TimeUnit.SECONDS;
+
+    synchronized void setMaximumSize(long size)
+    {
+        _size = size;
+        build();
+    }
+
+    synchronized void setTimeout(long timeout)
+    {
+        _timeout = timeout;
+        build();
+    }
+
+    synchronized void setTimeoutUnit(TimeUnit unit)
+    {
+        _timeoutUnit = unit;
+        build();
+    }
+
+    private void build()
+    {
+        _cache = CacheBuilder.newBuilder()
+                .maximumSize(_size)
+                .expireAfterWrite(_timeout, _timeoutUnit)
+                .build();
+    }
+
+    V getIfPresent(String id)
+    {
+        return _cache.getIfPresent(id);
+    }
+
+    /**
+     * Returns the current generation. Must be called before reading the
+     * value to be passed to {@link #put} from the database.
+     */
+    long getGeneration()
+    {
+        return _generation.get();
+    }
+
+    /**
+     * Caches a value read from the database unless an invalidation
+     * happened since {@code generation} was obtained.
+     */
+    void put(String id, V value, long generation)
+    {
+        Cache<String,V> cache = _cache;
+        cache.put(id, value);
+        if (_generation.get() != generation) {
+            cache.invalidate(id);
+        }
+    }
+
+    /**
+     * Invalidates the value of a single inode. Must be called after the
+     * modification was committed.
+     */
+    void invalidate(String id)
+    {
+        _generation.incrementAndGet();
+        _cache.invalidate(id);
+    }
+
+    /**
+     * Invalidates all values. Must be called after the modification was
+     * committed.
+     */
+    void invalidateAll()
+    {
+        _generation.incrementAndGet();
+        _cache.invalidateAll();
+    }
+}
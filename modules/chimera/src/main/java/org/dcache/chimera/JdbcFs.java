@@ -16,6 +16,8 @@
  */
 package org.dcache.chimera;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.zaxxer.hikari.HikariDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,11 +30,15 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
 
 import diskCacheV111.util.AccessLatency;
 import diskCacheV111.util.RetentionPolicy;
@@ -88,11 +94,20 @@ public class JdbcFs implements FileSystemProvider {
      * Database connection pool
      */
     private final DataSource _dbConnectionsPool;
-    private final FsStatCache _fsStatCache;
     /**
      * current fs id
      */
     private final int _fsId;
+
+    /**
+     * Cache of the tags of directories.
+     */
+    private final InodeCache<ImmutableMap<String,byte[]>> _tagCache = new InodeCache<>();
+
+    /**
+     * Cache of access control lists.
+     */
+    private final InodeCache<ImmutableList<ACE>> _aclCache = new InodeCache<>();
     /**
      * available space (1 Exabyte)
      */
@@ -128,7 +143,54 @@ public class JdbcFs implements FileSystemProvider {
         } catch (Exception e) {
         }
         _wormID = wormID;
-        _fsStatCache = new FsStatCache(this);
+    }
+
+    /**
+     * Sets the maximum number of directories for which tags are cached.
+     * Zero disables the cache.
+     */
+    public void setTagCacheSize(long size) {
+        _tagCache.setMaximumSize(size);
+    }
+
+    /**
+     * Sets the time after which cached tags expire. Since tags may be
+     * modified by other instances sharing the database, this bounds the
+     * time such modifications may go unnoticed.
+     */
+    public void setTagCacheTimeout(long timeout) {
+        _tagCache.setTimeout(timeout);
+    }
+
+    public void setTagCacheTimeoutUnit(TimeUnit unit) {
+        _tagCache.setTimeoutUnit(unit);
+    }
+
+    /**
+     * Sets the maximum number of inodes for which access control lists
+     * are cached. Zero disables the cache.
+     */
+    public void setAclCacheSize(long size) {
+        _aclCache.setMaximumSize(size);
+    }
+
+    /**
+     * Sets the time after which cached access control lists expire.
+     */
+    public void setAclCacheTimeout(long timeout) {
+        _aclCache.setTimeout(timeout);
+    }
+
+    public void setAclCacheTimeoutUnit(TimeUnit unit) {
+        _aclCache.setTimeoutUnit(unit);
+    }
+
+    private static Map<String,byte[]> copyOf(Map<String,byte[]> tags) {
+        Map<String,byte[]> copy = new HashMap<>(tags.size());
+        for (Map.Entry<String,byte[]> tag : tags.entrySet()) {
+            copy.put(tag.getKey(), tag.getValue().clone());
+        }
+        return copy;
     }
 
     private FsInode getWormID() throws ChimeraFsException {
@@ -639,6 +701,34 @@ public class JdbcFs implements FileSystemProvider {
          */
     }
 
+    @Override
+    public DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(FsInode dir, String startAfter) throws IOHimeraFsException {
+
+        Connection dbConnection;
+        try {
+            // get from pool
+            dbConnection = _dbConnectionsPool.getConnection();
+        } catch (SQLException e) {
+            throw new BackEndErrorHimeraFsException(e.getMessage());
+        }
+
+        try {
+
+            // read only
+            dbConnection.setAutoCommit(true);
+
+            return _sqlDriver.newDirectoryStream(dbConnection, dir, startAfter);
+
+        } catch (SQLException se) {
+            _log.error("list full: ", se);
+            tryToClose(dbConnection);
+            throw new IOHimeraFsException(se.getMessage());
+        }
+        /*
+         * Database resources are close by  DirectoryStreamB.close()
+         */
+    }
+
     @Override
     public void remove(String path) throws ChimeraFsException {
 
@@ -2053,6 +2143,19 @@ public class JdbcFs implements FileSystemProvider {
 
     @Override
     public Map<String, byte[]> getAllTags(FsInode inode) throws ChimeraFsException {
+        String id = inode.toString();
+        ImmutableMap<String,byte[]> cached = _tagCache.getIfPresent(id);
+        if (cached != null) {
+            return copyOf(cached);
+        }
+
+        long generation = _tagCache.getGeneration();
+        Map<String,byte[]> tags = loadAllTags(inode);
+        _tagCache.put(id, ImmutableMap.copyOf(copyOf(tags)), generation);
+        return tags;
+    }
+
+    private Map<String, byte[]> loadAllTags(FsInode inode) throws ChimeraFsException {
         Connection dbConnection;
         try {
             // get from pool
@@ -2094,6 +2197,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.createTag(dbConnection, inode, name, uid, gid, mode);
             dbConnection.commit();
+            _tagCache.invalidate(inode.toString());
         } catch (SQLException e) {
             _log.error("createTag", e);
             try {
@@ -2123,6 +2227,10 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.setTag(dbConnection, inode, tagName, data, offset, len);
             dbConnection.commit();
+            /* Directories share the values of inherited tags, thus
+             * writing a tag may affect any number of directories.
+             */
+            _tagCache.invalidateAll();
         } catch (SQLException e) {
             _log.error("setTag", e);
             try {
@@ -2158,6 +2266,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.removeTag(dbConnection, dir, tagName);
             dbConnection.commit();
+            _tagCache.invalidate(dir.toString());
         } catch (SQLException e) {
             _log.error("removeTag", e);
             try {
@@ -2187,6 +2296,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.removeTag(dbConnection, dir);
             dbConnection.commit();
+            _tagCache.invalidate(dir.toString());
         } catch (SQLException e) {
             _log.error("removeTag", e);
             try {
@@ -2663,6 +2773,12 @@ public class JdbcFs implements FileSystemProvider {
      */
     @Override
     public List<ACE> getACL(FsInode inode) throws ChimeraFsException {
+        String id = inode.toString();
+        ImmutableList<ACE> cached = _aclCache.getIfPresent(id);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
+
         Connection dbConnection;
         try {
             // get from pool
@@ -2675,7 +2791,9 @@ public class JdbcFs implements FileSystemProvider {
         try {
             dbConnection.setAutoCommit(true);
 
+            long generation = _aclCache.getGeneration();
             acl = _sqlDriver.getACL(dbConnection, inode);
+            _aclCache.put(id, ImmutableList.copyOf(acl), generation);
 
         } catch (SQLException e) {
             _log.error("Failed go getACL:", e);
@@ -2686,6 +2804,48 @@ public class JdbcFs implements FileSystemProvider {
         return acl;
     }
 
+    @Override
+    public Map<FsInode, List<ACE>> getACLs(Collection<? extends FsInode> inodes) throws ChimeraFsException {
+        Map<FsInode, List<ACE>> acls = new HashMap<>();
+        List<FsInode> missing = new ArrayList<>();
+        for (FsInode inode : inodes) {
+            ImmutableList<ACE> cached = _aclCache.getIfPresent(inode.toString());
+            if (cached != null) {
+                acls.put(inode, new ArrayList<>(cached));
+            } else {
+                missing.add(inode);
+            }
+        }
+        if (missing.isEmpty()) {
+            return acls;
+        }
+
+        Connection dbConnection;
+        try {
+            // get from pool
+            dbConnection = _dbConnectionsPool.getConnection();
+        } catch (SQLException e) {
+            throw new BackEndErrorHimeraFsException(e.getMessage());
+        }
+
+        try {
+            dbConnection.setAutoCommit(true);
+
+            long generation = _aclCache.getGeneration();
+            Map<FsInode, List<ACE>> loaded = _sqlDriver.getACLs(dbConnection, missing);
+            for (Map.Entry<FsInode, List<ACE>> entry : loaded.entrySet()) {
+                _aclCache.put(entry.getKey().toString(), ImmutableList.copyOf(entry.getValue()), generation);
+                acls.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+        } catch (SQLException e) {
+            _log.error("Failed go getACLs:", e);
+            throw new IOHimeraFsException(e.getMessage());
+        } finally {
+            tryToClose(dbConnection);
+        }
+        return acls;
+    }
+
     /**
      * Set inode's Access Control List. The existing ACL will be replaced.
      * @param dbConnection
@@ -2707,6 +2867,7 @@ public class JdbcFs implements FileSystemProvider {
 
             _sqlDriver.setACL(dbConnection, inode, acl);
             dbConnection.commit();
+            _aclCache.invalidate(inode.toString());
 
         } catch (SQLException e) {
             _log.error("Failed to set ACL: ", e);
@@ -2727,41 +2888,59 @@ public class JdbcFs implements FileSystemProvider {
         }
     }
 
-    /**
-     * internal class to hide caching mechanism.
-     */
-    static class FsStatCache {
-
-        private FsStat _fsStatCached;
-        private long _fsStatLastUpdate;
-        // FIXME: make it configurable
-        private long _fsStateLifetime = 3600000;
-        private final JdbcFs _fs;
+    @Override
+    public FsStat getFsStat() throws ChimeraFsException {
+        Connection dbConnection;
+        try {
+            // get from pool
+            dbConnection = _dbConnectionsPool.getConnection();
+        } catch (SQLException e) {
+            throw new BackEndErrorHimeraFsException(e.getMessage());
+        }
 
-        FsStatCache(JdbcFs fs) {
-            _fs = fs;
+        try {
+            // read only
+            dbConnection.setAutoCommit(true);
+            return new FsStat(AVAILABLE_SPACE,
+                              TOTAL_FILES,
+                              _sqlDriver.usedSpace(dbConnection),
+                              _sqlDriver.usedFiles(dbConnection));
+        } catch (SQLException se) {
+            _log.error("getFsStat: ", se);
+            throw new IOHimeraFsException(se.getMessage());
+        } finally {
+            tryToClose(dbConnection);
         }
+    }
 
-        public synchronized FsStat getFsStat() throws ChimeraFsException {
+    @Override
+    public FsStat reconcileFsStat() throws ChimeraFsException {
+        Connection dbConnection;
+        try {
+            // get from pool
+            dbConnection = _dbConnectionsPool.getConnection();
+        } catch (SQLException e) {
+            throw new BackEndErrorHimeraFsException(e.getMessage());
+        }
 
-            if (_fsStatLastUpdate == 0 || _fsStatLastUpdate + _fsStateLifetime < System.currentTimeMillis()) {
-                _fsStatCached = new FsStat(AVAILABLE_SPACE,
-                                           TOTAL_FILES,
-                                           _fs.usedSpace(),
-                                           _fs.usedFiles());
-                _log.debug("updateing cached value of FsStat");
-                _fsStatLastUpdate = System.currentTimeMillis();
-            } else {
-                _log.debug("using cached value of FsStat");
+        try {
+            // read/write only
+            dbConnection.setAutoCommit(false);
+            _sqlDriver.reconcileUsage(dbConnection);
+            dbConnection.commit();
+        } catch (SQLException e) {
+            _log.error("reconcileFsStat", e);
+            try {
+                dbConnection.rollback();
+            } catch (SQLException e1) {
+                _log.error("reconcileFsStat rollback", e1);
             }
-
-            return _fsStatCached;
+            throw new IOHimeraFsException(e.getMessage());
+        } finally {
+            tryToClose(dbConnection);
         }
-    }
 
-    @Override
-    public FsStat getFsStat() throws ChimeraFsException {
-        return _fsStatCache.getFsStat();
+        return getFsStat();
     }
 
     ///////////////////////////////////////////////////////////////
@@ -8,7 +8,9 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -42,6 +44,51 @@ public class BasicTest extends ChimeraTestCaseHelper {
         assertFalse(levelInode.exists());
     }
 
+    @Test
+    public void testFsStatIsUpdated() throws Exception {
+        FsStat before = _fs.getFsStat();
+
+        FsInode inode = _rootInode.create("testFsStatIsUpdated", 0, 0, 0644);
+        _fs.setFileSize(inode, 17);
+        _rootInode.mkdir("testFsStatIsUpdatedDir");
+
+        FsStat stat = _fs.getFsStat();
+        assertEquals("file not counted", before.getUsedFiles() + 1, stat.getUsedFiles());
+        assertEquals("size not counted", before.getUsedSpace() + 17, stat.getUsedSpace());
+
+        _fs.remove(_rootInode, "testFsStatIsUpdated");
+
+        stat = _fs.getFsStat();
+        assertEquals("removed file counted", before.getUsedFiles(), stat.getUsedFiles());
+        assertEquals("size of removed file counted", before.getUsedSpace(), stat.getUsedSpace());
+    }
+
+    @Test
+    public void testFsStatIsNotUpdatedForRemovedInode() throws Exception {
+        FsInode inode = _rootInode.create("testFsStatIsNotUpdatedForRemovedInode", 0, 0, 0644);
+        Stat stat = inode.stat();
+        _fs.remove(_rootInode, "testFsStatIsNotUpdatedForRemovedInode");
+        FsStat before = _fs.getFsStat();
+
+        stat.setSize(17);
+        _fs.setInodeAttributes(inode, 0, stat);
+
+        FsStat after = _fs.getFsStat();
+        assertEquals("removed file counted", before.getUsedFiles(), after.getUsedFiles());
+        assertEquals("size of removed file counted", before.getUsedSpace(), after.getUsedSpace());
+    }
+
+    @Test
+    public void testReconcileFsStat() throws Exception {
+        FsInode inode = _rootInode.create("testReconcileFsStat", 0, 0, 0644);
+        _fs.setFileSize(inode, 42);
+        FsStat stat = _fs.getFsStat();
+
+        FsStat reconciled = _fs.reconcileFsStat();
+        assertEquals(stat.getUsedFiles(), reconciled.getUsedFiles());
+        assertEquals(stat.getUsedSpace(), reconciled.getUsedSpace());
+    }
+
     @Test
     public void testLs() throws Exception {
 
@@ -50,6 +97,23 @@ public class BasicTest extends ChimeraTestCaseHelper {
 
     }
 
+    @Test
+    public void testLsStartAfter() throws Exception {
+
+        FsInode dir = _rootInode.mkdir("junit");
+        dir.create("c", 0, 0, 0644);
+        dir.create("a", 0, 0, 0644);
+        dir.create("b", 0, 0, 0644);
+
+        List<String> names = new ArrayList<>();
+        try (DirectoryStreamB<HimeraDirectoryEntry> stream = _fs.newDirectoryStream(dir, "a")) {
+            for (HimeraDirectoryEntry entry : stream) {
+                names.add(entry.getName());
+            }
+        }
+        assertEquals(Arrays.asList("b", "c"), names);
+    }
+
     @Test
     public void testMkDir() throws Exception {
 
@@ -856,6 +920,28 @@ public class BasicTest extends ChimeraTestCaseHelper {
         assertTrue(_fs.getACL(dirInode).isEmpty());
     }
 
+    @Test
+    public void testGetAcls() throws Exception {
+        ((JdbcFs) _fs).setAclCacheSize(100);
+
+        FsInode dirInode = _rootInode.mkdir("testDir", 0, 0, 0755);
+        FsInode fileInode = dirInode.create("testFile", 0, 0, 0644);
+
+        List<ACE> aces = new ArrayList<>();
+        aces.add(new ACE(AceType.ACCESS_ALLOWED_ACE_TYPE, 0,
+                AccessMask.ADD_FILE.getValue(), Who.USER, 1001,
+                ACE.DEFAULT_ADDRESS_MSK));
+        _fs.setACL(dirInode, aces);
+
+        Map<FsInode, List<ACE>> acls = _fs.getACLs(Arrays.asList(dirInode, fileInode));
+        assertEquals(aces, acls.get(dirInode));
+        assertTrue(acls.get(fileInode).isEmpty());
+
+        _fs.setACL(dirInode, new ArrayList<ACE>());
+        assertTrue(_fs.getACL(dirInode).isEmpty());
+        assertTrue(_fs.getACLs(Arrays.asList(dirInode)).get(dirInode).isEmpty());
+    }
+
     @Test(expected=FileNotFoundHimeraFsException.class)
     public void testGetInodeByPathNotExist() throws Exception {
         _fs.path2inode("/some/nonexisting/path");
@@ -1001,6 +1087,27 @@ public class BasicTest extends ChimeraTestCaseHelper {
         assertTrue(statBefore.getMTime() != statAfter.getMTime());
     }
 
+    @Test
+    public void testTagCacheIsInvalidatedOnInheritedTagUpdate() throws Exception {
+        ((JdbcFs) _fs).setTagCacheSize(100);
+
+        final String tagName = "myTag";
+        final byte[] data1 = "some data".getBytes();
+        final byte[] data2 = "some other data".getBytes();
+
+        FsInode base = _rootInode.mkdir("junit");
+        _fs.createTag(base, tagName);
+        _fs.setTag(base, tagName, data1, 0, data1.length);
+        FsInode dir = base.mkdir("dir");
+        assertThat(_fs.getAllTags(dir), hasEntry(tagName, data1));
+
+        _fs.setTag(base, tagName, data2, 0, data2.length);
+        assertThat(_fs.getAllTags(dir), hasEntry(tagName, data2));
+
+        _fs.removeTag(dir, tagName);
+        assertTrue(_fs.getAllTags(dir).isEmpty());
+    }
+
     @Test
     public void testSetAttribitesOnTag() throws Exception {
         final String tagName = "myTag";
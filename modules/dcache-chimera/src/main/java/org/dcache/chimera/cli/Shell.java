@@ -48,6 +48,7 @@ import org.dcache.chimera.FileNotFoundHimeraFsException;
 import org.dcache.chimera.FileSystemProvider;
 import org.dcache.chimera.FsFactory;
 import org.dcache.chimera.FsInode;
+import org.dcache.chimera.FsStat;
 import org.dcache.chimera.HimeraDirectoryEntry;
 import org.dcache.chimera.NotDirChimeraException;
 import org.dcache.chimera.UnixPermission;
@@ -227,6 +228,28 @@ public class Shell extends ShellApplication
         }
     }
 
+    @Command(name = "df", hint = "display file system usage",
+             description = "Displays the number and total size of regular files. The usage is " +
+                     "maintained incrementally as files are created, removed and resized.")
+    public class DfCommand implements Callable<Serializable>
+    {
+        @Option(name = "reconcile",
+                usage = "Recalculate the usage from the inodes first. This scans all inodes and " +
+                        "is only needed if the name space was modified without maintaining the usage.")
+        boolean reconcile;
+
+        @Override
+        public Serializable call() throws IOException
+        {
+            FsStat stat = reconcile ? fs.reconcileFsStat() : fs.getFsStat();
+            console.printString("files: " + stat.getUsedFiles());
+            console.printNewline();
+            console.printString("bytes: " + stat.getUsedSpace());
+            console.printNewline();
+            return null;
+        }
+    }
+
     @Command(name = "ls", hint = "list directory contents")
     public class LsCommand implements Callable<Serializable>
     {
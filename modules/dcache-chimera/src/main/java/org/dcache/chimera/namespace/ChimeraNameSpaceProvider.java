@@ -73,6 +73,12 @@ public class ChimeraNameSpaceProvider
 {
     private static final int SYMLINK_MODE = 0777;
 
+    /**
+     * Number of directory entries for which attributes are fetched together
+     * when listing a directory.
+     */
+    private static final int LIST_BATCH_SIZE = 100;
+
     public static final String TAG_EXPECTED_SIZE = "ExpectedSize";
     public static final String TAG_PATH = "Path";
     public static final String TAG_WRITE_TOKEN = "WriteToken";
@@ -982,6 +988,14 @@ public class ChimeraNameSpaceProvider
     public void list(Subject subject, String path, Glob glob, Range<Integer> range,
                      Set<FileAttribute> attrs, ListHandler handler)
         throws CacheException
+    {
+        list(subject, path, glob, null, range, attrs, handler);
+    }
+
+    @Override
+    public void list(Subject subject, String path, Glob glob, String startAfter,
+                     Range<Integer> range, Set<FileAttribute> attrs, ListHandler handler)
+        throws CacheException
     {
         try {
             Pattern pattern = (glob == null) ? null : glob.toPattern();
@@ -1002,30 +1016,29 @@ public class ChimeraNameSpaceProvider
             }
 
             int counter = 0;
-            try (DirectoryStreamB<HimeraDirectoryEntry> dirStream = dir
-                    .newDirectoryStream()) {
+            List<String> names = new ArrayList<>(LIST_BATCH_SIZE);
+            List<ExtendedInode> inodes = new ArrayList<>(LIST_BATCH_SIZE);
+            try (DirectoryStreamB<HimeraDirectoryEntry> dirStream =
+                         (startAfter == null)
+                                 ? dir.newDirectoryStream()
+                                 : _fs.newDirectoryStream(dir, startAfter)) {
                 for (HimeraDirectoryEntry entry : dirStream) {
-                    try {
-                        String name = entry.getName();
-                        if (!name.equals(".") && !name.equals("..") &&
-                                (pattern == null || pattern.matcher(name)
-                                        .matches()) &&
-                                range.contains(counter++)) {
-                            // FIXME: actually, HimeraDirectoryEntry
-                            // already contains most of attributes
-                            FileAttributes fa =
-                                    attrs.isEmpty()
-                                            ? null
-                                            : getFileAttributes(new ExtendedInode(entry.getInode()), attrs);
-                            handler.addEntry(name, fa);
+                    String name = entry.getName();
+                    if (!name.equals(".") && !name.equals("..") &&
+                            (pattern == null || pattern.matcher(name)
+                                    .matches()) &&
+                            range.contains(counter++)) {
+                        names.add(name);
+                        inodes.add(new ExtendedInode(entry.getInode()));
+                        if (names.size() == LIST_BATCH_SIZE) {
+                            addEntries(names, inodes, attrs, handler);
+                            names.clear();
+                            inodes.clear();
                         }
-                    } catch (FileNotFoundHimeraFsException e) {
-                        /* Not an error; files may be deleted during the
-                         * list operation.
-                         */
                     }
                 }
             }
+            addEntries(names, inodes, attrs, handler);
 
         } catch (FileNotFoundHimeraFsException e) {
             throw new FileNotFoundCacheException("No such file or directory: " + path);
@@ -1035,6 +1048,37 @@ public class ChimeraNameSpaceProvider
         }
     }
 
+    /**
+     * Adds a batch of directory entries to a listing. If requested, ACLs of
+     * all entries are fetched with a single query.
+     */
+    private void addEntries(List<String> names, List<ExtendedInode> inodes,
+                            Set<FileAttribute> attrs, ListHandler handler)
+        throws IOException, CacheException
+    {
+        if (names.isEmpty()) {
+            return;
+        }
+        if (_aclEnabled && attrs.contains(FileAttribute.ACL)) {
+            ExtendedInode.prefetchAcls(_fs, inodes);
+        }
+        for (int i = 0; i < names.size(); i++) {
+            try {
+                // FIXME: actually, HimeraDirectoryEntry
+                // already contains most of attributes
+                FileAttributes fa =
+                        attrs.isEmpty()
+                                ? null
+                                : getFileAttributes(inodes.get(i), attrs);
+                handler.addEntry(names.get(i), fa);
+            } catch (FileNotFoundHimeraFsException e) {
+                /* Not an error; files may be deleted during the
+                 * list operation.
+                 */
+            }
+        }
+    }
+
     private ExtendedInode mkdir(Subject subject, ExtendedInode parent, String name, int uid, int gid, int mode)
             throws IOException, CacheException
     {
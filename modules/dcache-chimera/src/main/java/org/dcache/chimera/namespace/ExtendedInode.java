@@ -27,7 +27,9 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteSource;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import diskCacheV111.util.AccessLatency;
@@ -35,6 +37,7 @@ import diskCacheV111.util.FsPath;
 import diskCacheV111.util.PnfsId;
 import diskCacheV111.util.RetentionPolicy;
 
+import org.dcache.acl.ACE;
 import org.dcache.acl.ACL;
 import org.dcache.acl.enums.RsType;
 import org.dcache.chimera.ChimeraFsException;
@@ -64,6 +67,7 @@ public class ExtendedInode extends FsInode
     private Optional<AccessLatency> al;
     private Optional<RetentionPolicy> rp;
     private ACL acl;
+    private List<ACE> aces;
     private HashMap<Integer, ExtendedInode> levels;
     private InodeStorageInformation storageInfo;
     private Optional<ExtendedInode> parent;
@@ -222,11 +226,24 @@ public class ExtendedInode extends FsInode
     {
         if (acl == null) {
             RsType rsType = isDirectory() ? RsType.DIR : RsType.FILE;
-            acl = new ACL(rsType, _fs.getACL(this));
+            acl = new ACL(rsType, (aces != null) ? aces : _fs.getACL(this));
         }
         return acl;
     }
 
+    /**
+     * Fetches the ACLs of several inodes at once, thus avoiding a query
+     * per inode when {@link #getAcl} is called on each of them.
+     */
+    public static void prefetchAcls(FileSystemProvider fs, Collection<ExtendedInode> inodes)
+            throws ChimeraFsException
+    {
+        Map<FsInode,List<ACE>> acls = fs.getACLs(inodes);
+        for (ExtendedInode inode : inodes) {
+            inode.aces = acls.get(inode);
+        }
+    }
+
     public ExtendedInode getLevel(int level)
     {
         if (levels == null) {
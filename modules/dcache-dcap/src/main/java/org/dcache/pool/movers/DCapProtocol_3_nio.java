@@ -1,5 +1,7 @@
 package org.dcache.pool.movers;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,14 +10,21 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.ChecksumFactory;
@@ -27,12 +36,14 @@ import diskCacheV111.vehicles.PoolPassiveIoFileMessage;
 import diskCacheV111.vehicles.ProtocolInfo;
 import diskCacheV111.vehicles.StorageInfo;
 
+import dmg.cells.nucleus.CDC;
 import dmg.cells.nucleus.CellEndpoint;
 import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellPath;
 
 import org.dcache.net.ProtocolConnectionPool;
 import org.dcache.net.ProtocolConnectionPoolFactory;
+import org.dcache.pool.classic.Cancellable;
 import org.dcache.pool.repository.Allocator;
 import org.dcache.pool.repository.RepositoryChannel;
 import org.dcache.util.Args;
@@ -41,14 +52,23 @@ import org.dcache.util.ChecksumType;
 import org.dcache.util.NetworkUtils;
 import org.dcache.vehicles.FileAttributes;
 
+import static com.google.common.base.Throwables.propagateIfInstanceOf;
 
-public class DCapProtocol_3_nio implements MoverProtocol, ChecksumMover {
+public class DCapProtocol_3_nio implements EventDrivenMoverProtocol, ChecksumMover {
 
     private static Logger _log = LoggerFactory.getLogger(DCapProtocol_3_nio.class);
     private static Logger _logSocketIO = LoggerFactory.getLogger("logger.dev.org.dcache.io.socket");
     private final static Logger _logSpaceAllocation = LoggerFactory.getLogger("logger.dev.org.dcache.poolspacemonitor." + DCapProtocol_3_nio.class.getName());
     private static final int INC_SPACE  =  (50*1024*1024);
 
+    private static final Runnable NOP = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+        }
+    };
+
     private final Args          _args   ;
     private final Map<String,Object> _context;
     private final CellEndpoint     _cell;
@@ -184,12 +204,14 @@ public class DCapProtocol_3_nio implements MoverProtocol, ChecksumMover {
         private RequestBlock(){
             _buffer = ByteBuffer.allocate(16384);
         }
-        private void read(SocketChannel channel) throws Exception {
+        private ByteBuffer prepareSize(){
 
             _commandSize = _commandCode = 0;
 
             _buffer.clear().limit(4);
-            fillBuffer(channel);
+            return _buffer;
+        }
+        private ByteBuffer prepareCommand() throws CacheException {
             _buffer.rewind();
             _commandSize = _buffer.getInt();
 
@@ -204,7 +226,9 @@ public class DCapProtocol_3_nio implements MoverProtocol, ChecksumMover {
         	_log.error("Command size excided command block size : " + _commandSize + "/" + _buffer.capacity());
         	throw iae;
             }
-            fillBuffer(channel);
+            return _buffer;
+        }
+        private void commandReceived(){
             _buffer.rewind();
             _commandCode = _buffer.getInt();
         }
@@ -212,14 +236,6 @@ public class DCapProtocol_3_nio implements MoverProtocol, ChecksumMover {
         private int getCommandCode(){ return _commandCode; }
         private int nextInt(){ return _buffer.getInt(); }
         private long nextLong(){ return _buffer.getLong(); }
-        private void fillBuffer( SocketChannel channel) throws Exception{
-            while(_buffer.hasRemaining()){
-                if(channel.read(_buffer) < 0) {
-                    throw new
-                            EOFException("EOF on input socket (fillBuffer)");
-                }
-            }
-        }
         private void skip(int skip){
             _buffer.position(_buffer.position()+skip);
         }
@@ -282,6 +298,12 @@ public class DCapProtocol_3_nio implements MoverProtocol, ChecksumMover {
         return _cell.getCellInfo().getDomainName();
     }
 
+    /**
+     * Runs the transfer as a state machine on a private selector loop and
+     * waits for it to complete. Disk I/O is performed by the calling
+     * thread. Thus the blocking and the event driven mode share the
+     * implementation of the protocol.
+     */
     @Override
     public void runIO(FileAttributes fileAttributes,
                       RepositoryChannel  fileChannel,
@@ -290,8 +312,82 @@ public class DCapProtocol_3_nio implements MoverProtocol, ChecksumMover {
                       IoMode          access  )
         throws Exception
     {
-        Exception ioException         = null;
+        final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+        final SettableFuture<Void> result = SettableFuture.create();
+        Executor executor = new Executor()
+        {
+            @Override
+            public void execute(Runnable task)
+            {
+                tasks.add(task);
+            }
+        };
+
+        final SelectorLoop loop = new SelectorLoop();
+        Thread thread = new Thread("dcap-mover-io") {
+            @Override
+            public void run() {
+                loop.run();
+            }
+        };
+        thread.start();
+        try {
+            Cancellable transfer = start(fileAttributes, fileChannel, protocol, allocator, access,
+                    loop, executor, executor, new CompletionHandler<Void,Void>()
+                    {
+                        @Override
+                        public void completed(Void ignored, Void attachment)
+                        {
+                            result.set(null);
+                            tasks.add(NOP);
+                        }
 
+                        @Override
+                        public void failed(Throwable t, Void attachment)
+                        {
+                            result.setException(t);
+                            tasks.add(NOP);
+                        }
+                    });
+
+            boolean isInterrupted = false;
+            while (!result.isDone()) {
+                try {
+                    tasks.take().run();
+                } catch (InterruptedException e) {
+                    if (!isInterrupted) {
+                        isInterrupted = true;
+                        transfer.cancel();
+                    }
+                }
+            }
+        } finally {
+            loop.shutdown();
+            thread.join();
+            loop.close();
+        }
+
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            propagateIfInstanceOf(cause, Exception.class);
+            throw Throwables.propagate(cause);
+        }
+    }
+
+    @Override
+    public Cancellable start(FileAttributes fileAttributes,
+                             RepositoryChannel  fileChannel,
+                             ProtocolInfo protocol,
+                             Allocator    allocator,
+                             IoMode          access,
+                             SelectorLoop loop,
+                             Executor diskExecutor,
+                             Executor allocationExecutor,
+                             CompletionHandler<Void,Void> completionHandler)
+        throws Exception
+    {
         if(! (protocol instanceof DCapProtocolInfo)) {
             throw new
                     CacheException(44, "protocol info not DCapProtocolInfo");
@@ -334,499 +430,1104 @@ public class DCapProtocol_3_nio implements MoverProtocol, ChecksumMover {
 //        allocates the _bigBuffer
         initialiseBuffer(bufferSize);
 
-        SocketChannel socketChannel = null;
-        DCapOutputByteBuffer cntOut = new DCapOutputByteBuffer(1024);
-
         _sessionId  = dcapProtocolInfo.getSessionId();
 
-        if(! dcapProtocolInfo.isPassive()) {
+        Transfer transfer = new Transfer(fileChannel, dcapProtocolInfo, storage, access,
+                                         loop, diskExecutor, allocationExecutor, completionHandler);
+        transfer.connect(bufferSize);
+        return transfer;
+    }
 
-            socketChannel = SocketChannel.open();
-            socketChannel.configureBlocking(true);
+    /**
+     * Blocking disk operation of a transfer.
+     */
+    private interface DiskOperation {
+        void run() throws Exception;
+    }
 
-            Socket socket = socketChannel.socket();
-            socket.setKeepAlive(true);
-            socket.setTcpNoDelay(true);
-            if (bufferSize.getRecvBufferSize() > 0) {
-                socket.setReceiveBufferSize(bufferSize
-                        .getRecvBufferSize());
+    /**
+     * The state machine of a single transfer.
+     *
+     * All steps are executed by the thread of the selector loop, one at
+     * a time. At any time the transfer waits for at most one of: the
+     * connection to be established, input from the client, output to be
+     * flushed, or a disk operation to complete. Disk operations use the
+     * shared _bigBuffer, which is therefore never queued for output while
+     * a disk operation is in progress.
+     */
+    private class Transfer implements Cancellable, SelectorLoop.Handler {
+
+        private final RepositoryChannel _fileChannel;
+        private final DCapProtocolInfo _protocolInfo;
+        private final StorageInfo _storage;
+        private final IoMode _access;
+        private final SelectorLoop _loop;
+        private final Executor _diskExecutor;
+        private final Executor _allocationExecutor;
+        private final CompletionHandler<Void,Void> _completionHandler;
+        private final CDC _cdc = new CDC();
+
+        private final RequestBlock _requestBlock = new RequestBlock();
+        private final RequestBlock _dataBlock = new RequestBlock();
+        private final DCapOutputByteBuffer _cntOut = new DCapOutputByteBuffer(1024);
+        private final Deque<ByteBuffer> _output = new ArrayDeque<>();
+
+        private MoverIoBuffer _bufferSize;
+        private SocketChannel _socketChannel;
+        private SelectionKey _key;
+        private ProtocolConnectionPool _pcp;
+        private DCapProrocolChallenge _challenge;
+
+        private boolean _isConnecting;
+        private boolean _isStarted;
+        private boolean _isOffloading;
+        private boolean _isDone;
+        private Exception _failure;
+
+        private ByteBuffer _input;
+        private boolean _isInputFully;
+        private Step _onReceived;
+        private Step _onFlushed;
+
+        /* State of the current command, shared with disk operations.
+         */
+        private long _rest;
+        private long _position;
+        private long _size;
+        private int _rc;
+        private long _bytesAdded;
+        private Exception _locateError;
+        private long[] _readvOffsets;
+        private int[] _readvCounts;
+        private int _readvIndex;
+        private long _readvOffset;
+        private int _readvCount;
+        private int _readvLength;
+
+        /* Guarded by this. */
+        private boolean _isCancelled;
+        private Thread _diskThread;
+
+        /**
+         * A step of the transfer. Failures of a step fail the transfer.
+         */
+        private abstract class Step implements Runnable {
+            protected abstract void step() throws Exception;
+
+            @Override
+            public void run() {
+                if (_isDone) {
+                    return;
+                }
+                CDC cdc = _cdc.restore();
+                try {
+                    step();
+                    pump();
+                } catch (Exception e) {
+                    fail(e);
+                } finally {
+                    cdc.close();
+                }
             }
-            if (bufferSize.getSendBufferSize() > 0) {
-                socket.setSendBufferSize(bufferSize
-                        .getSendBufferSize());
+        }
+
+        private final Step _io = new Step() {
+            @Override
+            protected void step() throws Exception {
+                if (_key.isConnectable() && _socketChannel.finishConnect()) {
+                    _isConnecting = false;
+                    connected();
+                }
+                if (_onReceived != null && _key.isReadable()) {
+                    int n = _socketChannel.read(_input);
+                    if (n < 0) {
+                        throw new EOFException("EOF on input socket");
+                    }
+                    if (_isInputFully ? !_input.hasRemaining() : n > 0) {
+                        Step next = _onReceived;
+                        _onReceived = null;
+                        _input = null;
+                        next.step();
+                    }
+                }
+            }
+        };
+
+        private final Step _nextCommand = new Step() {
+            @Override
+            protected void step() throws Exception {
+                if (!_io_ok) {
+                    finish();
+                } else {
+                    readRequest(_requestBlock, _command);
+                }
+            }
+        };
+
+        private final Step _command = new Step() {
+            @Override
+            protected void step() throws Exception {
+                _log.debug("Request Block : {}", _requestBlock);
+                _lastTransferred = System.currentTimeMillis();
+                executeCommand(_requestBlock);
+            }
+        };
+
+        private Transfer(RepositoryChannel fileChannel, DCapProtocolInfo protocolInfo,
+                         StorageInfo storage, IoMode access, SelectorLoop loop,
+                         Executor diskExecutor, Executor allocationExecutor,
+                         CompletionHandler<Void,Void> completionHandler) {
+            _fileChannel = fileChannel;
+            _protocolInfo = protocolInfo;
+            _storage = storage;
+            _access = access;
+            _loop = loop;
+            _diskExecutor = diskExecutor;
+            _allocationExecutor = allocationExecutor;
+            _completionHandler = completionHandler;
+        }
+
+        ////////////////////////////////////////////////////////////////////
+        //
+        //   Connection setup
+        //
+        private void connect(MoverIoBuffer bufferSize) throws Exception {
+            _bufferSize = bufferSize;
+            if(! _protocolInfo.isPassive()) {
+
+                final SocketChannel socketChannel = SocketChannel.open();
+                _socketChannel = socketChannel;
+
+                Socket socket = socketChannel.socket();
+                socket.setKeepAlive(true);
+                socket.setTcpNoDelay(true);
+                if (bufferSize.getRecvBufferSize() > 0) {
+                    socket.setReceiveBufferSize(bufferSize
+                            .getRecvBufferSize());
+                }
+                if (bufferSize.getSendBufferSize() > 0) {
+                    socket.setSendBufferSize(bufferSize
+                            .getSendBufferSize());
+                }
+
+                _loop.execute(new Step() {
+                    @Override
+                    protected void step() throws Exception {
+                        register(socketChannel);
+                        if (socketChannel.connect(_protocolInfo.getSocketAddress())) {
+                            connected();
+                        } else {
+                            _isConnecting = true;
+                        }
+                    }
+                });
+            }else{ // passive connection
+                _pcp = protocolConnectionPoolFactory.getConnectionPool(bufferSize.getRecvBufferSize());
+
+                InetAddress localAddress = NetworkUtils.
+                        getLocalAddress(_protocolInfo.getSocketAddress().getAddress());
+                InetSocketAddress socketAddress =
+                    new  InetSocketAddress(localAddress,
+                                           _pcp.getLocalPort());
+
+                byte[] challenge = UUID.randomUUID().toString().getBytes();
+                PoolPassiveIoFileMessage<byte[]> msg = new PoolPassiveIoFileMessage<>("pool",
+                        socketAddress, challenge);
+                msg.setId(_protocolInfo.getSessionId());
+                _log.info("waiting for client to connect ({}:{})",
+                          localAddress, _pcp.getLocalPort());
+
+                _challenge = new DCapProrocolChallenge(_sessionId, challenge);
+                _pcp.getSocket(_challenge, new CompletionHandler<SocketChannel,Object>() {
+                    @Override
+                    public void completed(final SocketChannel socketChannel, Object challenge) {
+                        _loop.execute(new Step() {
+                            @Override
+                            public void run() {
+                                if (_isDone) {
+                                    try {
+                                        socketChannel.close();
+                                    } catch (IOException ignored) {
+                                    }
+                                } else {
+                                    super.run();
+                                }
+                            }
+
+                            @Override
+                            protected void step() throws Exception {
+                                accepted(socketChannel);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void failed(final Throwable t, Object challenge) {
+                        _loop.execute(new Step() {
+                            @Override
+                            protected void step() throws Exception {
+                                throw new IOException("Failed to accept connection: " + t.getMessage(), t);
+                            }
+                        });
+                    }
+                });
+
+                CellPath cellpath = _protocolInfo.door();
+                _cell.sendMessage (new CellMessage(cellpath, msg));
             }
+        }
 
-            socketChannel.connect(dcapProtocolInfo.getSocketAddress());
+        private void register(SocketChannel socketChannel) throws IOException {
+            _key = _loop.register(socketChannel, 0, this);
+        }
 
+        private void connected() throws IOException {
+            Socket socket = _socketChannel.socket();
             if (_logSocketIO.isDebugEnabled()) {
                 _logSocketIO.debug("Socket OPEN remote = {}:{} local = {}:{}", socket.getInetAddress(), socket.getPort(),
                                    socket.getLocalAddress(), socket.getLocalPort());
             }
             _log.info("Using : Buffer Sizes (send/recv/io) : {}/{}/{}", socket.getSendBufferSize(), socket.getReceiveBufferSize(),
                       _bigBuffer.capacity());
-            _log.info("Connected to {}", dcapProtocolInfo.getSocketAddress());
+            _log.info("Connected to {}", _protocolInfo.getSocketAddress());
 
             //
             // send the sessionId and our (for now) 0 byte security challenge.
             //
-            _bigBuffer.clear();
-            _bigBuffer.putInt(_sessionId).putInt(0);
-            _bigBuffer.flip();
-            socketChannel.write(_bigBuffer);
-        }else{ // passive connection
-            ProtocolConnectionPool pcp =
-                protocolConnectionPoolFactory.getConnectionPool(bufferSize.getRecvBufferSize());
-
-            InetAddress localAddress = NetworkUtils.
-                    getLocalAddress(dcapProtocolInfo.getSocketAddress().getAddress());
-            InetSocketAddress socketAddress =
-                new  InetSocketAddress(localAddress,
-                                       pcp.getLocalPort());
-
-            byte[] challenge = UUID.randomUUID().toString().getBytes();
-            PoolPassiveIoFileMessage<byte[]> msg = new PoolPassiveIoFileMessage<>("pool",
-                    socketAddress, challenge);
-            msg.setId(dcapProtocolInfo.getSessionId());
-            _log.info("waiting for client to connect ({}:{})",
-                      localAddress, pcp.getLocalPort());
-
-            CellPath cellpath = dcapProtocolInfo.door();
-            _cell.sendMessage (new CellMessage(cellpath, msg));
-            DCapProrocolChallenge dcapChallenge = new DCapProrocolChallenge(_sessionId, challenge);
-            socketChannel = pcp.getSocket(dcapChallenge);
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            buffer.putInt(_sessionId).putInt(0);
+            buffer.flip();
+            send(buffer);
+
+            started();
+        }
+
+        private void accepted(SocketChannel socketChannel) throws IOException {
+            _socketChannel = socketChannel;
 
             Socket socket = socketChannel.socket();
             socket.setKeepAlive(true);
             socket.setTcpNoDelay(true);
-            if (bufferSize.getSendBufferSize() > 0) {
-                socket.setSendBufferSize(bufferSize.getSendBufferSize());
+            if (_bufferSize.getSendBufferSize() > 0) {
+                socket.setSendBufferSize(_bufferSize.getSendBufferSize());
             }
+            register(socketChannel);
+
+            started();
         }
 
+        private void started() {
+            _isStarted = true;
+            _transferStarted  = System.currentTimeMillis();
+            _bytesTransferred = 0;
+            _lastTransferred  = _transferStarted;
+
+            offload(new DiskOperation() {
+                @Override
+                public void run() throws Exception {
+                    _spaceMonitorHandler.setInitialSpace(_fileChannel.size());
+                }
+            }, _nextCommand);
+        }
+
+        ////////////////////////////////////////////////////////////////////
         //
+        //   Primitives
         //
-        _transferStarted  = System.currentTimeMillis();
-        _bytesTransferred = 0;
-        _lastTransferred  = _transferStarted;
 
-        _spaceMonitorHandler.setInitialSpace(fileChannel.size());
-
-        boolean      notDone      = true;
-        RequestBlock requestBlock = new RequestBlock();
+        /**
+         * Queues buffer for output. The buffer must not be modified until
+         * the output has been flushed.
+         */
+        private void send(ByteBuffer buffer) {
+            _output.add(buffer);
+        }
 
-        try{
-            while(notDone && _io_ok){
+        /**
+         * Queues the message in _cntOut for output.
+         */
+        private void reply() {
+            ByteBuffer message = _cntOut.buffer();
+            ByteBuffer copy = ByteBuffer.allocate(message.remaining());
+            copy.put(message).flip();
+            send(copy);
+        }
 
-                if(Thread.interrupted()) {
-                    throw new
-                            InterruptedException("Interrupted By Operator");
-                }
+        /**
+         * Continues with next once all output has been sent.
+         */
+        private void flush(Step next) {
+            _onFlushed = next;
+        }
 
-                //
-                // get size of next command
-                //
-                try{
+        /**
+         * Continues with next once input has been read into buffer. If
+         * fully is true, the buffer is filled; otherwise at least one byte
+         * is read.
+         */
+        private void receive(ByteBuffer buffer, boolean fully, Step next) {
+            _input = buffer;
+            _isInputFully = fully;
+            _onReceived = next;
+        }
 
-                    requestBlock.read(socketChannel);
+        /**
+         * Submits operation to the disk executor and continues with next
+         * once it has completed.
+         */
+        private void offload(DiskOperation operation, Step next) {
+            offload(_diskExecutor, operation, next);
+        }
 
-                    _log.debug("Request Block : {}", requestBlock);
+        /**
+         * Like offload, but for operations that may wait for space to be
+         * allocated.
+         */
+        private void allocate(DiskOperation operation, Step next) {
+            offload(_allocationExecutor, operation, next);
+        }
 
-                }catch(EOFException eofe){
-                    _log.debug("Dataconnection closed by peer : {}", eofe.toString());
-                    throw eofe;
-                }catch(BufferUnderflowException bue){
-                    throw new
-                        CacheException(43,"Protocol Violation (csl<4)");
+        private void offload(Executor executor, final DiskOperation operation, final Step next) {
+            _isOffloading = true;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Exception failure = null;
+                    try (CDC ignored = _cdc.restore()) {
+                        beginDiskOperation();
+                        try {
+                            operation.run();
+                        } finally {
+                            endDiskOperation();
+                        }
+                    } catch (ClosedByInterruptException e) {
+                        failure = new InterruptedException(e.getMessage());
+                    } catch (Exception e) {
+                        failure = e;
+                    }
+                    final Exception cause = failure;
+                    _loop.execute(new Step() {
+                        @Override
+                        protected void step() throws Exception {
+                            _isOffloading = false;
+                            if (cause != null) {
+                                throw cause;
+                            }
+                            if (_failure != null) {
+                                finish();
+                            } else {
+                                next.step();
+                            }
+                        }
+                    });
                 }
+            });
+        }
 
-                _lastTransferred    = System.currentTimeMillis();
+        private synchronized void beginDiskOperation() throws InterruptedException {
+            if (_isCancelled) {
+                throw new InterruptedException("Interrupted By Operator");
+            }
+            _diskThread = Thread.currentThread();
+        }
 
-                switch(requestBlock.getCommandCode()){
-                    //-------------------------------------------------------------
-                    //
-                    //                     The Write
-                    //
-                case DCapConstants.IOCMD_WRITE :
-                    //
-                    // no further arguments (yet)
-                    //
-                    if(! _io_ok){
+        private synchronized void endDiskOperation() {
+            _diskThread = null;
+            if (_isCancelled) {
+                // clear interrupted state
+                Thread.interrupted();
+            }
+        }
 
-                        String errmsg = "WRITE denied (IO not ok)";
-                        _log.error(errmsg);
-                        cntOut.writeACK(DCapConstants.IOCMD_WRITE,CacheException.ERROR_IO_DISK,errmsg);
-                        socketChannel.write(cntOut.buffer());
-
-                    }else if(access == IoMode.WRITE){
-
-                        //
-                        //   The 'REQUEST ACK'
-                        //
-                        cntOut.writeACK(DCapConstants.IOCMD_WRITE);
-                        socketChannel.write(cntOut.buffer());
-                        //
-                        doTheWrite(fileChannel,
-                                    cntOut,
-                                    socketChannel);
-                        //
-                        //
-                        if(_io_ok){
-                            cntOut.writeFIN(DCapConstants.IOCMD_WRITE);
-                            socketChannel.write(cntOut.buffer());
-                        }else{
-                            _log.error("Reporting IO problem to client");
-                            cntOut.writeFIN(DCapConstants.IOCMD_WRITE,CacheException.ERROR_IO_DISK,
-                                            "[2]Problem in writing");
-                            socketChannel.write(cntOut.buffer());
-                        }
+        /**
+         * Sends queued output and updates the interest set of the channel.
+         */
+        private void pump() throws IOException {
+            if (_isDone || _key == null) {
+                return;
+            }
 
-                    }else{
+            int ops;
+            if (_isConnecting) {
+                ops = SelectionKey.OP_CONNECT;
+            } else {
+                while (!_output.isEmpty()) {
+                    ByteBuffer buffer = _output.peek();
+                    _socketChannel.write(buffer);
+                    if (buffer.hasRemaining()) {
+                        break;
+                    }
+                    _output.remove();
+                }
+                if (_output.isEmpty() && _onFlushed != null) {
+                    Step next = _onFlushed;
+                    _onFlushed = null;
+                    _loop.execute(next);
+                }
+                ops = 0;
+                if (!_output.isEmpty()) {
+                    ops |= SelectionKey.OP_WRITE;
+                }
+                if (_onReceived != null) {
+                    ops |= SelectionKey.OP_READ;
+                }
+            }
+            if (_key.interestOps() != ops) {
+                _key.interestOps(ops);
+            }
+        }
 
-                        String errmsg = "WRITE denied (not allowed)";
-                        _log.error(errmsg);
-                        cntOut.writeACK(DCapConstants.IOCMD_WRITE,CacheException.ERROR_IO_DISK,errmsg);
-                        socketChannel.write(cntOut.buffer());
+        @Override
+        public void ready(SelectionKey key) {
+            _io.run();
+        }
 
-                    }
-                    break;
-                    //-------------------------------------------------------------
-                    //
-                    //                     The Read
-                    //
-                case DCapConstants.IOCMD_READ :
-                    //
-                    //
-                    _digest = null;
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                _isCancelled = true;
+                if (_diskThread != null) {
+                    _diskThread.interrupt();
+                }
+            }
+            _loop.execute(new Step() {
+                @Override
+                protected void step() throws Exception {
+                    throw new InterruptedException("Interrupted By Operator");
+                }
+            });
+        }
 
-                    long blockSize = requestBlock.nextLong();
+        private void fail(Exception e) {
+            if (e instanceof ClosedByInterruptException) {
+                // clear interrupted state
+                Thread.interrupted();
+                e = new InterruptedException(e.getMessage());
+            }
+            if (_failure == null) {
+                _failure = e;
+            }
+            if (!_isOffloading) {
+                finish();
+            }
+        }
 
-                    _log.debug("READ byte={}", blockSize);
+        private void finish() {
+            if (_isDone) {
+                return;
+            }
+            _isDone = true;
 
-                    if(_io_ok){
+            if (_socketChannel == null) {
+                if (_challenge != null) {
+                    _pcp.cancel(_challenge);
+                }
+            } else {
+                try{
+                    _logSocketIO.debug("Socket CLOSE remote = {}:{} local {}:{}",
+                            _socketChannel.socket().getInetAddress(), _socketChannel.socket().getPort(),
+                            _socketChannel.socket().getLocalAddress(), _socketChannel.socket().getLocalPort());
+                    _socketChannel.close();
+                }catch(Exception xe){}
+            }
 
-                        cntOut.writeACK(DCapConstants.IOCMD_READ);
-                        socketChannel.write(cntOut.buffer());
+            Exception ioException = _failure;
 
-                        doTheRead(fileChannel, cntOut, socketChannel,  blockSize);
+            if (_isStarted) {
+                _protocolInfo.setBytesTransferred(_bytesTransferred);
 
-                        if(_io_ok){
-                            cntOut.writeFIN(DCapConstants.IOCMD_READ);
-                            socketChannel.write(cntOut.buffer());
-                        }else{
-                            String errmsg = "FIN : READ failed (IO not ok)";
-                            _log.error(errmsg);
-                            cntOut.writeFIN(DCapConstants.IOCMD_READ,CacheException.ERROR_IO_DISK,errmsg);
-                            socketChannel.write(cntOut.buffer());
-                        }
-                    }else{
+                _transferTime = System.currentTimeMillis() -
+                    _transferStarted;
+                _protocolInfo.setTransferTime(_transferTime);
 
-                        String errmsg = "ACK : READ denied (IO not ok)";
-                        _log.error(errmsg);
-                        cntOut.writeACK(DCapConstants.IOCMD_READ,CacheException.ERROR_IO_DISK,errmsg);
-                        socketChannel.write(cntOut.buffer());
+                _log.info("(Transfer finished : {} bytes in {} seconds) ",
+                        _bytesTransferred, _transferTime/1000);
+            }
 
-                    }
+            if (ioException instanceof RuntimeException) {
+                _log.error("Problem in command block : "+_requestBlock, ioException);
+            } else if (ioException instanceof EOFException) {
+                _log.debug("Dataconnection closed by peer : {}", ioException.toString());
+            }
 
-                    break;
-                    //-------------------------------------------------------------
-                    //
-                    //                     The Seek
-                    //
-                case DCapConstants.IOCMD_SEEK :
+            //
+            // if we got an EOF from the inputstream
+            // we cancel the request but we don't want to
+            // disable the pool, unless client is gone while
+            // got an IO error report from pool.
+            //
 
-                    _digest = null;
+            if(! _io_ok) {
+                _completionHandler.failed(new
+                        DiskErrorCacheException(
+                                   "Disk I/O Error " +
+                                   (ioException!=null?ioException.toString():"")), null);
+            }else if (ioException != null && !(ioException instanceof EOFException)) {
+                _log.warn("Problem in command block : {} {}", _requestBlock, ioException.toString());
+                _completionHandler.failed(ioException, null);
+            }else{
+                _completionHandler.completed(null, null);
+            }
+        }
 
-                    long offset = requestBlock.nextLong();
-                    int  whence = requestBlock.nextInt();
+        ////////////////////////////////////////////////////////////////////
+        //
+        //   Commands
+        //
+        private void readRequest(final RequestBlock requestBlock, final Step next) {
+            receive(requestBlock.prepareSize(), true, new Step() {
+                @Override
+                protected void step() throws Exception {
+                    receive(requestBlock.prepareCommand(), true, new Step() {
+                        @Override
+                        protected void step() throws Exception {
+                            requestBlock.commandReceived();
+                            next.step();
+                        }
+                    });
+                }
+            });
+        }
 
-                    doTheSeek(fileChannel , whence, offset, (access == IoMode.WRITE) );
+        private void commandDone() {
+            flush(_nextCommand);
+        }
 
-                    if(_io_ok){
+        private void ack(int command) {
+            _cntOut.writeACK(command);
+            reply();
+        }
 
-                        cntOut.writeACK(fileChannel.position());
-                        socketChannel.write(cntOut.buffer());
+        private void deny(int command, int returnCode, String errmsg) throws IOException {
+            _log.error(errmsg);
+            _cntOut.writeACK(command, returnCode, errmsg);
+            reply();
+            commandDone();
+        }
 
+        private Step fin(final int command, final String errmsg) {
+            return new Step() {
+                @Override
+                protected void step() throws Exception {
+                    if(_io_ok){
+                        _cntOut.writeFIN(command);
                     }else{
-
-                        String errmsg = "SEEK failed : IOError ";
                         _log.error(errmsg);
-                        cntOut.writeACK(DCapConstants.IOCMD_SEEK,6,errmsg);
-                        socketChannel.write(cntOut.buffer());
-
+                        _cntOut.writeFIN(command,CacheException.ERROR_IO_DISK,errmsg);
                     }
+                    reply();
+                    commandDone();
+                }
+            };
+        }
 
-                    break;
-                    //-------------------------------------------------------------
+        private void executeCommand(RequestBlock requestBlock) throws Exception {
+            long offset;
+            int whence;
+            final long blockSize;
+            switch(requestBlock.getCommandCode()){
+                //-------------------------------------------------------------
+                //
+                //                     The Write
+                //
+            case DCapConstants.IOCMD_WRITE :
+                //
+                // no further arguments (yet)
+                //
+                if(! _io_ok){
+                    deny(DCapConstants.IOCMD_WRITE, CacheException.ERROR_IO_DISK, "WRITE denied (IO not ok)");
+                }else if(_access == IoMode.WRITE){
                     //
-                    //                     The IOCMD_SEEK_AND_READ
+                    //   The 'REQUEST ACK'
                     //
-                case DCapConstants.IOCMD_SEEK_AND_READ :
-
-                    _digest = null;
+                    ack(DCapConstants.IOCMD_WRITE);
+                    doTheWrite(fin(DCapConstants.IOCMD_WRITE, "[2]Problem in writing"));
+                }else{
+                    deny(DCapConstants.IOCMD_WRITE, CacheException.ERROR_IO_DISK, "WRITE denied (not allowed)");
+                }
+                break;
+                //-------------------------------------------------------------
+                //
+                //                     The Read
+                //
+            case DCapConstants.IOCMD_READ :
+                //
+                //
+                _digest = null;
 
-                    offset    = requestBlock.nextLong();
-                    whence    = requestBlock.nextInt();
-                    blockSize = requestBlock.nextLong();
+                blockSize = requestBlock.nextLong();
 
-                    if(_io_ok){
+                _log.debug("READ byte={}", blockSize);
 
-                        cntOut.writeACK(DCapConstants.IOCMD_SEEK_AND_READ);
-                        socketChannel.write(cntOut.buffer());
+                if(_io_ok){
+                    ack(DCapConstants.IOCMD_READ);
+                    doTheRead(blockSize, fin(DCapConstants.IOCMD_READ, "FIN : READ failed (IO not ok)"));
+                }else{
+                    deny(DCapConstants.IOCMD_READ, CacheException.ERROR_IO_DISK, "ACK : READ denied (IO not ok)");
+                }
+                break;
+                //-------------------------------------------------------------
+                //
+                //                     The Seek
+                //
+            case DCapConstants.IOCMD_SEEK :
 
-                        doTheSeek(fileChannel, whence, offset, (access == IoMode.WRITE) );
+                _digest = null;
 
-                        if(_io_ok) {
-                            doTheRead(fileChannel, cntOut, socketChannel, blockSize);
-                        }
+                offset = requestBlock.nextLong();
+                whence = requestBlock.nextInt();
 
+                seek(whence, offset, new Step() {
+                    @Override
+                    protected void step() throws Exception {
                         if(_io_ok){
-                            cntOut.writeFIN(DCapConstants.IOCMD_SEEK_AND_READ);
-                            socketChannel.write(cntOut.buffer());
+                            _cntOut.writeACK(_position);
+                            reply();
+                            commandDone();
                         }else{
-                            String errmsg = "FIN : SEEK_READ failed (IO not ok)";
-                            _log.error(errmsg);
-                            cntOut.writeFIN(DCapConstants.IOCMD_SEEK_AND_READ,CacheException.ERROR_IO_DISK,errmsg);
-                            socketChannel.write(cntOut.buffer());
+                            deny(DCapConstants.IOCMD_SEEK, 6, "SEEK failed : IOError ");
                         }
-
-                    }else{
-                        String errmsg = "SEEK_AND_READ denied : IOError " ;
-                        _log.error(errmsg);
-                        cntOut.writeACK(DCapConstants.IOCMD_SEEK_AND_READ,CacheException.ERROR_IO_DISK,errmsg);
-                        socketChannel.write(cntOut.buffer());
                     }
-                    break;
-                    //-------------------------------------------------------------
-                    //
-                    //                     The IOCMD_SEEK_AND_WRITE
-                    //
-                case DCapConstants.IOCMD_SEEK_AND_WRITE :
-
-                    _digest = null;
-                    offset    = requestBlock.nextLong();
-                    whence    = requestBlock.nextInt();
-
-                    if(!_io_ok) {
-                        String errmsg = "SEEK_AND_WRITE denied : IOError";
-                        _log.error(errmsg);
-                        cntOut.writeACK(DCapConstants.IOCMD_SEEK_AND_WRITE, CacheException.ERROR_IO_DISK, errmsg);
-                        socketChannel.write(cntOut.buffer());
-                    } else if (access != IoMode.WRITE) {
-                        String errmsg = "SEEK_AND_WRITE denied (not allowed)";
-                        _log.error(errmsg);
-                        cntOut.writeACK(DCapConstants.IOCMD_SEEK_AND_WRITE, CacheException.ERROR_IO_DISK, errmsg);
-                        socketChannel.write(cntOut.buffer());
-                    } else {
+                });
+                break;
+                //-------------------------------------------------------------
+                //
+                //                     The IOCMD_SEEK_AND_READ
+                //
+            case DCapConstants.IOCMD_SEEK_AND_READ :
 
-                        cntOut.writeACK(DCapConstants.IOCMD_SEEK_AND_WRITE);
-                        socketChannel.write(cntOut.buffer());
+                _digest = null;
 
-                        doTheSeek(fileChannel, whence, offset, (access == IoMode.WRITE) );
+                offset    = requestBlock.nextLong();
+                whence    = requestBlock.nextInt();
+                blockSize = requestBlock.nextLong();
 
-                        if(_io_ok) {
-                            doTheWrite(fileChannel,
-                                    cntOut,
-                                    socketChannel);
+                if(_io_ok){
+                    ack(DCapConstants.IOCMD_SEEK_AND_READ);
+
+                    final Step fin = fin(DCapConstants.IOCMD_SEEK_AND_READ, "FIN : SEEK_READ failed (IO not ok)");
+                    seek(whence, offset, new Step() {
+                        @Override
+                        protected void step() throws Exception {
+                            if(_io_ok) {
+                                doTheRead(blockSize, fin);
+                            } else {
+                                fin.step();
+                            }
                         }
-
-                        if(_io_ok){
-                            cntOut.writeFIN(DCapConstants.IOCMD_SEEK_AND_WRITE);
-                            socketChannel.write(cntOut.buffer());
-                        }else{
-                            String errmsg = "SEEK_AND_WRITE failed : IOError";
-                            _log.error(errmsg);
-                            cntOut.writeFIN(DCapConstants.IOCMD_SEEK_AND_WRITE,CacheException.ERROR_IO_DISK,errmsg);
-                            socketChannel.write(cntOut.buffer());
+                    });
+                }else{
+                    deny(DCapConstants.IOCMD_SEEK_AND_READ, CacheException.ERROR_IO_DISK, "SEEK_AND_READ denied : IOError ");
+                }
+                break;
+                //-------------------------------------------------------------
+                //
+                //                     The IOCMD_SEEK_AND_WRITE
+                //
+            case DCapConstants.IOCMD_SEEK_AND_WRITE :
+
+                _digest = null;
+                offset    = requestBlock.nextLong();
+                whence    = requestBlock.nextInt();
+
+                if(!_io_ok) {
+                    deny(DCapConstants.IOCMD_SEEK_AND_WRITE, CacheException.ERROR_IO_DISK, "SEEK_AND_WRITE denied : IOError");
+                } else if (_access != IoMode.WRITE) {
+                    deny(DCapConstants.IOCMD_SEEK_AND_WRITE, CacheException.ERROR_IO_DISK, "SEEK_AND_WRITE denied (not allowed)");
+                } else {
+                    ack(DCapConstants.IOCMD_SEEK_AND_WRITE);
+
+                    final Step fin = fin(DCapConstants.IOCMD_SEEK_AND_WRITE, "SEEK_AND_WRITE failed : IOError");
+                    seek(whence, offset, new Step() {
+                        @Override
+                        protected void step() throws Exception {
+                            if(_io_ok) {
+                                doTheWrite(fin);
+                            } else {
+                                fin.step();
+                            }
                         }
+                    });
+                }
+                break;
+                //-------------------------------------------------------------
+                //
+                //                     The IOCMD_CLOSE
+                //
+            case DCapConstants.IOCMD_CLOSE :
 
-                    }
-                    break;
-                    //-------------------------------------------------------------
-                    //
-                    //                     The IOCMD_CLOSE
-                    //
-                case DCapConstants.IOCMD_CLOSE :
+                if(_io_ok){
+                    ack(DCapConstants.IOCMD_CLOSE);
 
-                    if(_io_ok){
-                        cntOut.writeACK(DCapConstants.IOCMD_CLOSE);
-                        socketChannel.write(cntOut.buffer());
+                    try{
+                        while(requestBlock.remaining() > 4){
+                            scanCloseBlock(requestBlock,_storage);
+                        }
+                    }catch(Exception ee){
+                        _log.error("Problem in close block {}", ee.toString());
+                    }
+                }else{
+                    _cntOut.writeACK(DCapConstants.IOCMD_CLOSE,CacheException.ERROR_IO_DISK,"IOError");
+                    reply();
+                }
+                flush(new Step() {
+                    @Override
+                    protected void step() {
+                        finish();
+                    }
+                });
+                break;
+                //-------------------------------------------------------------
+                //
+                //                     The IOCMD_LOCATE
+                //
+            case DCapConstants.IOCMD_LOCATE :
 
+                offload(new DiskOperation() {
+                    @Override
+                    public void run() {
                         try{
-                            while(requestBlock.remaining() > 4){
-                                scanCloseBlock(requestBlock,storage);
-                            }
-                        }catch(Exception ee){
-                            _log.error("Problem in close block {}", ee.toString());
+                            _position = _fileChannel.position();
+                            _size = _fileChannel.size();
+                            _locateError = null;
+                        }catch(Exception e){
+                            _locateError = e;
                         }
-                    }else{
-                        cntOut.writeACK(DCapConstants.IOCMD_CLOSE,CacheException.ERROR_IO_DISK,"IOError");
-                        socketChannel.write(cntOut.buffer());
                     }
-                    notDone = false;
-                    break;
-                    //-------------------------------------------------------------
-                    //
-                    //                     The IOCMD_LOCATE
-                    //
-                case DCapConstants.IOCMD_LOCATE :
+                }, new Step() {
+                    @Override
+                    protected void step() throws Exception {
+                        if (_locateError == null) {
+                            _log.debug("LOCATE : size={};position={}", _position, _size);
+                            _cntOut.writeACK(_size, _position);
+                        } else {
+                            _cntOut.writeACK(DCapConstants.IOCMD_LOCATE,-1,_locateError.toString());
+                        }
+                        reply();
+                        commandDone();
+                    }
+                });
+                break;
+                //-------------------------------------------------------------
+                //
+                //                     The IOCMD_READV (vector read)
+                //
+            case DCapConstants.IOCMD_READV :
 
-                    try{
-                        long size     = fileChannel.position();
-                        long location = fileChannel.size();
-                        _log.debug("LOCATE : size={};position={}", size, location);
-                        cntOut.writeACK(location, size);
-                        socketChannel.write(cntOut.buffer());
-                    }catch(Exception e){
-                        cntOut.writeACK(DCapConstants.IOCMD_LOCATE,-1,e.toString());
-                        socketChannel.write(cntOut.buffer());
+                try{
+                    int blocks = requestBlock.nextInt();
+                    _log.debug("READV: {} to read", blocks);
+                    _readvOffsets = new long[blocks];
+                    _readvCounts = new int[blocks];
+                    for(int i = 0; i < blocks; i++) {
+                        _readvOffsets[i] = requestBlock.nextLong();
+                        _readvCounts[i] = requestBlock.nextInt();
                     }
+                }catch(RuntimeException e){
+                    _cntOut.writeACK(DCapConstants.IOCMD_READV,-1,e.toString());
+                    reply();
+                    commandDone();
                     break;
-                    //-------------------------------------------------------------
-                    //
-                    //                     The IOCMD_READV (vector read)
-                    //
-                case DCapConstants.IOCMD_READV :
-
-                    try{
+                }
 
-                        if(_io_ok){
+                if(_io_ok){
+                    ack(DCapConstants.IOCMD_READV);
+                    doTheReadv(fin(DCapConstants.IOCMD_READV, "FIN : READV failed (IO not ok)"));
+                }else{
+                    deny(DCapConstants.IOCMD_READV, CacheException.ERROR_IO_DISK, "ACK : READV denied (IO not ok)");
+                }
+                break;
+            default :
+                _cntOut.writeACK(666, 9,"Invalid mover command : "+requestBlock);
+                reply();
+                commandDone();
+            }
+        }
 
-                            cntOut.writeACK(DCapConstants.IOCMD_READV);
-                            socketChannel.write(cntOut.buffer());
+        private void seek(final int whence, final long offset, Step next) {
+            allocate(new DiskOperation() {
+                @Override
+                public void run() throws Exception {
+                    doTheSeek(_fileChannel, whence, offset, (_access == IoMode.WRITE));
+                    _position = _fileChannel.position();
+                }
+            }, next);
+        }
 
-                            doTheReadv(fileChannel, cntOut, socketChannel, requestBlock);
+        private void doTheReadv(Step done) throws Exception {
+            _cntOut.writeDATA_HEADER();
+            reply();
 
-                            if(_io_ok){
-                                cntOut.writeFIN(DCapConstants.IOCMD_READV);
-                                socketChannel.write(cntOut.buffer());
-                            }else{
-                                String errmsg = "FIN : READV failed (IO not ok)";
-                                _log.error(errmsg);
-                                cntOut.writeFIN(DCapConstants.IOCMD_READV,CacheException.ERROR_IO_DISK,errmsg);
-                                socketChannel.write(cntOut.buffer());
-                            }
-                        }else{
+            _readvIndex = 0;
+            nextReadvBlock(done);
+        }
 
-                            String errmsg = "ACK : READV denied (IO not ok)";
-                            _log.error(errmsg);
-                            cntOut.writeACK(DCapConstants.IOCMD_READV,CacheException.ERROR_IO_DISK,errmsg);
-                            socketChannel.write(cntOut.buffer());
+        private void nextReadvBlock(Step done) throws Exception {
+            if (_readvIndex == _readvOffsets.length) {
+                done.step();
+                return;
+            }
+            _readvOffset = _readvOffsets[_readvIndex];
+            _readvCount = _readvCounts[_readvIndex];
+            _readvLength = _readvCount;
+            _readvIndex++;
 
-                        }
+            _log.debug("READV: offset/len: {}/{}", _readvOffset, _readvCount);
 
-                    }catch(Exception e){
-                        cntOut.writeACK(DCapConstants.IOCMD_READV,-1,e.toString());
-                        socketChannel.write(cntOut.buffer());
-                    }
-                    break;
-                default :
-                    cntOut.writeACK(666, 9,"Invalid mover command : "+requestBlock);
-                    socketChannel.write(cntOut.buffer());
+            readvData(done);
+        }
 
+        private void readvData(final Step done) throws Exception {
+            if (_readvCount <= 0) {
+                nextReadvBlock(done);
+                return;
+            }
 
+            final int maxBuffer = _bigBuffer.capacity() - 4;
+            final int bytesToRead = maxBuffer > _readvCount ? _readvCount : maxBuffer;
+            offload(new DiskOperation() {
+                @Override
+                public void run() throws Exception {
+                    try{
+                        _bigBuffer.clear().limit(bytesToRead+4);
+                        _bigBuffer.position(4);
+                        _rc = _fileChannel.read(_bigBuffer, _readvOffset + (_readvLength - _readvCount));
+                    }catch (ClosedByInterruptException ee) {
+                        // clear interrupted state
+                        Thread.interrupted();
+                        throw new InterruptedException(ee.getMessage());
+                    }catch(IOException ee){
+                        _io_ok = false;
+                        _rc = -1;
+                    }
                 }
+            }, new Step() {
+                @Override
+                protected void step() throws Exception {
+                    int rc = _rc;
+                    if(rc <= 0) {
+                        nextReadvBlock(done);
+                        return;
+                    }
 
-            }
-        }catch(RuntimeException e){
-            _log.error("Problem in command block : "+requestBlock, e);
-            ioException = e;
-        } catch (ClosedByInterruptException ee) {
-            // clear interrupted state
-            Thread.interrupted();
-            ioException = new InterruptedException(ee.getMessage());
-        }catch(Exception e){
-            ioException = e;
-        }finally{
-
-            try{
-                _logSocketIO.debug("Socket CLOSE remote = {}:{} local {}:{}",
-                        socketChannel.socket().getInetAddress(), socketChannel.socket().getPort(),
-                        socketChannel.socket().getLocalAddress(), socketChannel.socket().getLocalPort());
-                socketChannel.close();
-            }catch(Exception xe){}
-
-            dcapProtocolInfo.setBytesTransferred(_bytesTransferred);
-
-            _transferTime = System.currentTimeMillis() -
-                _transferStarted;
-            dcapProtocolInfo.setTransferTime(_transferTime);
-
-            _log.info("(Transfer finished : {} bytes in {} seconds) ",
-                    _bytesTransferred, _transferTime/1000);
+                    _bigBuffer.flip();
+                    _bigBuffer.putInt(rc).rewind();
+                    _log.debug("READV: sending: {} bytes", _bigBuffer.limit());
+                    send(_bigBuffer);
 
-            //
-            // if we got an EOF from the inputstream
-            // we cancel the request but we don't want to
-            // disable the pool, unless client is gone while
-            // got an IO error report from pool.
-            //
+                    _readvCount -= rc;
+                    _bytesTransferred += rc;
 
-            if(! _io_ok) {
-                throw new
-                        DiskErrorCacheException(
-                                   "Disk I/O Error " +
-                                   (ioException!=null?ioException.toString():""));
-            }else{
-                if (ioException != null && !(ioException instanceof EOFException)) {
-                     _log.warn("Problem in command block : {} {}", requestBlock, ioException.toString());
-                    throw ioException;
+                    flush(new Step() {
+                        @Override
+                        protected void step() throws Exception {
+                            readvData(done);
+                        }
+                    });
                 }
-            }
-
+            });
+        }
 
+        private void doTheWrite(final Step done) {
+            readRequest(_dataBlock, new Step() {
+                @Override
+                protected void step() throws Exception {
+                    if(_dataBlock.getCommandCode() != DCapConstants.IOCMD_DATA) {
+                        throw new
+                                IOException("Expecting : " + DCapConstants.IOCMD_DATA + "; got : " + _dataBlock
+                                .getCommandCode());
+                    }
+                    nextDataBlock(done);
+                }
+            });
         }
 
-    }
-    private void doTheReadv(RepositoryChannel fileChannel, DCapOutputByteBuffer cntOut,
-                            SocketChannel socketChannel, RequestBlock requestBLock) throws Exception {
+        private void nextDataBlock(final Step done) {
+            _status = "WaitingForSize";
 
+            _bigBuffer.clear().limit(4);
+            receive(_bigBuffer, true, new Step() {
+                @Override
+                protected void step() throws Exception {
+                    _bigBuffer.rewind();
+
+                    final int rest = _bigBuffer.getInt();
+                    _log.debug("Next data block : {} bytes", rest);
+                    allocate(new DiskOperation() {
+                        @Override
+                        public void run() throws Exception {
+                            //
+                            // if there is a space monitor, we use it
+                            //
+                            _position = _fileChannel.position();
+                            //
+                            // allocate the space
+                            //
+                            _spaceMonitorHandler.getSpace(_position + rest);
+                        }
+                    }, new Step() {
+                        @Override
+                        protected void step() throws Exception {
+                            //
+                            // we take whatever we get from the client
+                            // and at the end we tell'em that something went
+                            // terribly wrong.
+                            //
+                            if(rest == 0) {
+                                nextDataBlock(done);
+                            } else if(rest < 0) {
+                                _status = "Done";
+                                done.step();
+                            } else {
+                                _wasChanged = true;
+                                _rest = rest;
+                                _bytesAdded = 0L;
+                                receiveData(done);
+                            }
+                        }
+                    });
+                }
+            });
+        }
 
-        cntOut.writeDATA_HEADER();
-        socketChannel.write(cntOut.buffer());
+        private void receiveData(final Step done) {
+            if (_rest <= 0) {
+                _spaceMonitorHandler.newFilePosition(_position + _bytesAdded);
 
-        int blocks = requestBLock.nextInt();
-        _log.debug("READV: {} to read", blocks);
-        final int maxBuffer = _bigBuffer.capacity() - 4;
-        for(int i = 0; i < blocks; i++) {
+                _log.debug("Block Done");
+                nextDataBlock(done);
+                return;
+            }
 
+            int size = _bigBuffer.capacity() > _rest ?
+                (int) _rest : _bigBuffer.capacity();
 
-            long offset = requestBLock.nextLong();
-            int count = requestBLock.nextInt();
-            int len = count;
+            _status = "WaitingForInput";
 
-            _log.debug("READV: offset/len: {}/{}", offset, count);
+            _bigBuffer.clear().limit(size);
+            receive(_bigBuffer, false, new Step() {
+                @Override
+                protected void step() {
+                    final int rc = _bigBuffer.position();
 
-            while(count > 0) {
+                    if(_io_ok){
 
-                int bytesToRead = maxBuffer > count ? count : maxBuffer;
-                int rc;
-                try{
-                    _bigBuffer.clear().limit(bytesToRead+4);
-                    _bigBuffer.position(4);
-                    rc = fileChannel.read(_bigBuffer, offset + (len - count));
-                    if(rc <= 0) {
-                        break;
+                        _status = "WaitingForWrite";
+
+                        offload(new DiskOperation() {
+                            @Override
+                            public void run() throws Exception {
+                                try{
+
+                                    _bigBuffer.flip();
+                                    _bytesAdded += _fileChannel.write(_bigBuffer);
+                                    updateChecksum(_bigBuffer);
+                                } catch (ClosedByInterruptException ee) {
+                                    // clear interrupted state
+                                    Thread.interrupted();
+                                    throw new InterruptedException(ee.getMessage());
+                                }catch(IOException ioe){
+                                    _log.error("IOException in writing data to disk : {}", ioe.toString());
+                                    _io_ok = false;
+                                }
+                            }
+                        }, new Step() {
+                            @Override
+                            protected void step() {
+                                dataReceived(rc, done);
+                            }
+                        });
+                    } else {
+                        dataReceived(rc, done);
                     }
-                }catch (ClosedByInterruptException ee) {
-                    // clear interrupted state
-                    Thread.interrupted();
-                    throw new InterruptedException(ee.getMessage());
-                }catch(IOException ee){
-                    _io_ok = false;
-                    break;
                 }
+            });
+        }
 
-                _bigBuffer.flip();
-                _bigBuffer.putInt(rc).rewind();
-                _log.debug("READV: sending: {} bytes", _bigBuffer.limit());
-                socketChannel.write(_bigBuffer);
-
-                count -= rc;
-                _bytesTransferred += rc;
+        private void dataReceived(int rc, Step done) {
+            _rest -= rc;
+            _bytesTransferred += rc;
+            if((_ioError > 0L) &&
+                (_bytesTransferred > _ioError)){ _io_ok = false; }
+            receiveData(done);
+        }
 
+        private void doTheRead(long blockSize, Step done) throws Exception {
+            //
+            // REQUEST WRITE
+            //
+            _cntOut.writeDATA_HEADER();
+            reply();
+            //
+            //
+            if(blockSize == 0){
+                _cntOut.writeEND_OF_BLOCK();
+                reply();
+                done.step();
+                return;
             }
+            _rest = blockSize;
+            readData(done);
+        }
+
+        private void readData(final Step done) {
+            final int maxBuffer = _bigBuffer.capacity() - 4;
+            final int size = maxBuffer > _rest ? (int)_rest : maxBuffer;
+
+            offload(new DiskOperation() {
+                @Override
+                public void run() throws Exception {
+                    try{
+                        _bigBuffer.clear().limit(size+4);
+                        _bigBuffer.position(4);
+                        _rc = _fileChannel.read(_bigBuffer);
+                    } catch (ClosedByInterruptException ee) {
+                        // clear interrupted state
+                        Thread.interrupted();
+                        throw new InterruptedException(ee.getMessage());
+                    }catch(IOException ee){
+                        _io_ok = false;
+                        _rc = -1;
+                    }
+                }
+            }, new Step() {
+                @Override
+                protected void step() throws Exception {
+                    int rc = _rc;
+                    if(rc <= 0) {
+                        dataTrailer(done);
+                        return;
+                    }
+                    _bigBuffer.flip();
+                    _bigBuffer.putInt(rc).rewind();
+                    send(_bigBuffer);
+                    _rest -= rc;
+                    _bytesTransferred += rc;
+                    if((_ioError > 0L) && (_bytesTransferred > _ioError)){
+                        _io_ok = false;
+                        dataTrailer(done);
+                    } else if(_rest <= 0) {
+                        dataTrailer(done);
+                    } else {
+                        flush(new Step() {
+                            @Override
+                            protected void step() {
+                                readData(done);
+                            }
+                        });
+                    }
+                }
+            });
         }
 
+        private void dataTrailer(Step done) throws Exception {
+            //
+            // data chain delimiter
+            //
+            _cntOut.writeDATA_TRAILER();
+            reply();
+            done.step();
+        }
     }
     private void scanCloseBlock(RequestBlock requestBlock, StorageInfo storage) {
 
@@ -935,103 +1636,6 @@ public class DCapProtocol_3_nio implements MoverProtocol, ChecksumMover {
         }
 
 
-    }
-    private void doTheWrite(RepositoryChannel          fileChannel,
-                             DCapOutputByteBuffer cntOut,
-                             SocketChannel        socketChannel ) throws Exception{
-
-        int     rest;
-        int     size, rc;
-
-        RequestBlock requestBlock = new RequestBlock();
-        requestBlock.read(socketChannel);
-
-        if(requestBlock.getCommandCode() != DCapConstants.IOCMD_DATA) {
-            throw new
-                    IOException("Expecting : " + DCapConstants.IOCMD_DATA + "; got : " + requestBlock
-                    .getCommandCode());
-        }
-
-        while(! Thread.currentThread().isInterrupted()){
-
-            _status = "WaitingForSize";
-
-            _bigBuffer.clear().limit(4);
-            while(_bigBuffer.hasRemaining()){
-                if(socketChannel.read(_bigBuffer) < 0) {
-                    throw new
-                            EOFException("EOF on input socket");
-                }
-            }
-            _bigBuffer.rewind();
-
-            rest = _bigBuffer.getInt();
-            _log.debug("Next data block : {} bytes", rest);
-            //
-            // if there is a space monitor, we use it
-            //
-            long position = fileChannel.position();
-            //
-            // allocate the space
-            //
-            _spaceMonitorHandler.getSpace(position + rest);
-            //
-            // we take whatever we get from the client
-            // and at the end we tell'em that something went
-            // terribly wrong.
-            //
-            long bytesAdded = 0L;
-            if(rest == 0) {
-                continue;
-            }
-            if(rest < 0) {
-                break;
-            }
-            _wasChanged = true;
-            while(rest > 0 ){
-
-                size = _bigBuffer.capacity() > rest ?
-                    rest : _bigBuffer.capacity();
-
-                _status = "WaitingForInput";
-
-                _bigBuffer.clear().limit(size);
-
-                rc = socketChannel.read(_bigBuffer);
-
-                if(rc <= 0) {
-                    break;
-                }
-
-                if(_io_ok){
-
-                    _status = "WaitingForWrite";
-
-                    try{
-
-                        _bigBuffer.flip();
-                        bytesAdded += fileChannel.write(_bigBuffer);
-                        updateChecksum(_bigBuffer);
-                    } catch (ClosedByInterruptException ee) {
-                        // clear interrupted state
-                        Thread.interrupted();
-                        throw new InterruptedException(ee.getMessage());
-                    }catch(IOException ioe){
-                        _log.error("IOException in writing data to disk : {}", ioe.toString());
-                        _io_ok = false;
-                    }
-                }
-                rest -= rc;
-                _bytesTransferred += rc;
-                if((_ioError > 0L) &&
-                    (_bytesTransferred > _ioError)){ _io_ok = false; }
-            }
-            _spaceMonitorHandler.newFilePosition(position + bytesAdded);
-
-            _log.debug("Block Done");
-        }
-        _status = "Done";
-
     }
     private void updateChecksum(ByteBuffer buffer){
         if (_digest != null) {
@@ -1040,67 +1644,6 @@ public class DCapProtocol_3_nio implements MoverProtocol, ChecksumMover {
         }
     }
 
-    private void doTheRead(RepositoryChannel           fileChannel,
-                            DCapOutputByteBuffer  cntOut,
-                            SocketChannel         socketChannel,
-                            long                  blockSize) throws Exception{
-
-        //
-        // REQUEST WRITE
-        //
-        cntOut.writeDATA_HEADER();
-        socketChannel.write(cntOut.buffer());
-        //
-        //
-        if(blockSize == 0){
-            cntOut.writeEND_OF_BLOCK();
-            socketChannel.write(cntOut.buffer());
-            return;
-        }
-        long    rest = blockSize;
-        int     size, rc;
-
-        final int maxBuffer = _bigBuffer.capacity() - 4;
-
-        while(! Thread.currentThread().isInterrupted()){
-
-            size = maxBuffer > rest ? (int)rest : maxBuffer;
-
-            try{
-                _bigBuffer.clear().limit(size+4);
-                _bigBuffer.position(4);
-                rc = fileChannel.read(_bigBuffer);
-                if(rc <= 0) {
-                    break;
-                }
-            } catch (ClosedByInterruptException ee) {
-                // clear interrupted state
-                Thread.interrupted();
-                throw new InterruptedException(ee.getMessage());
-            }catch(IOException ee){
-                _io_ok = false;
-                break;
-            }
-            _bigBuffer.flip();
-            _bigBuffer.putInt(rc).rewind();
-            socketChannel.write(_bigBuffer);
-            rest -= rc;
-            _bytesTransferred += rc;
-            if((_ioError > 0L) && (_bytesTransferred > _ioError)){
-                _io_ok = false;
-                break;
-            }
-            if(rest <= 0) {
-                break;
-            }
-        }
-        //
-        // data chain delimiter
-        //
-        cntOut.writeDATA_TRAILER();
-        socketChannel.write(cntOut.buffer());
-
-    }
     @Override
     public long getLastTransferred() { return _lastTransferred; }
     @Override
@@ -0,0 +1,166 @@
+package org.dcache.pool.movers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.DCapProtocolInfo;
+import diskCacheV111.vehicles.GenericStorageInfo;
+
+import dmg.cells.nucleus.CellEndpoint;
+
+import org.dcache.pool.repository.FileRepositoryChannel;
+import org.dcache.pool.repository.RepositoryChannel;
+import org.dcache.util.Args;
+import org.dcache.vehicles.FileAttributes;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class DCapProtocol_3_nioTest
+{
+    private static final int SESSION_ID = 42;
+
+    private ServerSocket listener;
+    private ExecutorService executor;
+    private File file;
+    private byte[] data;
+    private DCapProtocol_3_nio mover;
+    private DCapProtocolInfo info;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        data = new byte[100000];
+        new Random(42).nextBytes(data);
+        file = File.createTempFile("dcap", ".data");
+        Files.write(file.toPath(), data);
+
+        listener = new ServerSocket(0);
+        executor = Executors.newSingleThreadExecutor();
+
+        CellEndpoint cell = mock(CellEndpoint.class);
+        given(cell.getArgs()).willReturn(new Args(""));
+        given(cell.getDomainContext()).willReturn(Collections.<String,Object>emptyMap());
+        mover = new DCapProtocol_3_nio(cell);
+
+        info = new DCapProtocolInfo("DCap", 3, 0,
+                new InetSocketAddress("localhost", listener.getLocalPort()));
+        info.setSessionId(SESSION_ID);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        executor.shutdownNow();
+        listener.close();
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private Future<Void> runIO()
+    {
+        return executor.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                FileAttributes attributes = new FileAttributes();
+                attributes.setPnfsId(new PnfsId("000000000000000000000000000000000001"));
+                attributes.setStorageInfo(new GenericStorageInfo("osm", "test:disk"));
+                try (RepositoryChannel channel = new FileRepositoryChannel(file, "r")) {
+                    mover.runIO(attributes, channel, info, null, IoMode.READ);
+                }
+                return null;
+            }
+        });
+    }
+
+    private static void expectReply(DataInputStream in, int type, int command)
+            throws IOException
+    {
+        assertThat(in.readInt(), is(12));
+        assertThat(in.readInt(), is(type));
+        assertThat(in.readInt(), is(command));
+        assertThat(in.readInt(), is(0));
+    }
+
+    @Test
+    public void shouldServeReadAndCloseInBlockingMode() throws Exception
+    {
+        Future<Void> result = runIO();
+
+        try (Socket socket = listener.accept()) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+            assertThat(in.readInt(), is(SESSION_ID));
+            assertThat(in.readInt(), is(0));
+
+            out.writeInt(12);
+            out.writeInt(DCapConstants.IOCMD_READ);
+            out.writeLong(data.length);
+            out.flush();
+
+            expectReply(in, DCapConstants.IOCMD_ACK, DCapConstants.IOCMD_READ);
+            assertThat(in.readInt(), is(4));
+            assertThat(in.readInt(), is(DCapConstants.IOCMD_DATA));
+            byte[] received = new byte[data.length];
+            int position = 0;
+            int length;
+            while ((length = in.readInt()) != -1) {
+                in.readFully(received, position, length);
+                position += length;
+            }
+            assertThat(position, is(data.length));
+            assertThat(received, is(data));
+            expectReply(in, DCapConstants.IOCMD_FIN, DCapConstants.IOCMD_READ);
+
+            out.writeInt(4);
+            out.writeInt(DCapConstants.IOCMD_CLOSE);
+            out.flush();
+
+            expectReply(in, DCapConstants.IOCMD_ACK, DCapConstants.IOCMD_CLOSE);
+
+            result.get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(mover.getBytesTransferred(), is((long) data.length));
+        assertThat(info.getBytesTransferred(), is((long) data.length));
+    }
+
+    @Test
+    public void shouldCloseConnectionWhenInterrupted() throws Exception
+    {
+        Future<Void> result = runIO();
+
+        try (Socket socket = listener.accept()) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertThat(in.readInt(), is(SESSION_ID));
+            assertThat(in.readInt(), is(0));
+
+            result.cancel(true);
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+            assertThat(in.read(), is(-1));
+        }
+    }
+}
@@ -110,16 +110,64 @@ public class LineBasedDoor
         executor.execute(this);
     }
 
-    private synchronized void shutdownInputStream()
+    /**
+     * Shuts down the input of the control channel, causing command
+     * processing to terminate.
+     */
+    static void shutdownInputStream(StreamEngine engine)
+    {
+        synchronized (engine) {
+            try {
+                Socket socket = engine.getSocket();
+                if (!socket.isClosed() && !socket.isInputShutdown()) {
+                    socket.shutdownInput();
+                }
+            } catch (IOException e) {
+                LOGGER.info("Failed to shut down input stream of the " +
+                        "control channel: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads lines from the control channel and submits them to the
+     * interpreter until end of stream. The interpreter is shut down
+     * before returning.
+     */
+    static void processCommands(StreamEngine engine, LineBasedInterpreter interpreter,
+                                Executor executor)
     {
+        SequentialExecutor commands = new SequentialExecutor(executor);
         try {
-            Socket socket = engine.getSocket();
-            if (!socket.isClosed() && !socket.isInputShutdown()) {
-                socket.shutdownInput();
+            /* Notice that we do not close the input stream, as
+             * doing so would close the socket as well. We don't
+             * want to do that until the caller is done with it.
+             *
+             * REVISIT: I hope that the StreamEngine does not
+             * maintain any resources that do not get
+             * automatically freed when the socket is closed.
+             */
+            BufferedReader in =
+                new BufferedReader(new InputStreamReader(engine.getInputStream(), "UTF-8"));
+
+            String s = in.readLine();
+            while (s != null) {
+                commands.execute(new Command(engine, interpreter, s));
+                s = in.readLine();
             }
         } catch (IOException e) {
-            LOGGER.info("Failed to shut down input stream of the " +
-                    "control channel: {}", e.getMessage());
+            LOGGER.error("Got error reading data: {}", e.getMessage());
+        } finally {
+            try {
+                commands.shutdownNow();
+                interpreter.shutdown();
+                commands.awaitTermination();
+            } catch (InterruptedException e) {
+                LOGGER.error("Failed to shut down command processing: {}",
+                        e.getMessage());
+            }
+
+            LOGGER.debug("End of stream encountered");
         }
     }
 
@@ -144,38 +192,7 @@ public class LineBasedDoor
         awaitStart();
 
         try {
-            SequentialExecutor executor = new SequentialExecutor(this.executor);
-            try {
-                /* Notice that we do not close the input stream, as
-                 * doing so would close the socket as well. We don't
-                 * want to do that until cleanUp() is called.
-                 *
-                 * REVISIT: I hope that the StreamEngine does not
-                 * maintain any resources that do not get
-                 * automatically freed when the socket is closed.
-                 */
-                BufferedReader in =
-                    new BufferedReader(new InputStreamReader(engine.getInputStream(), "UTF-8"));
-
-                String s = in.readLine();
-                while (s != null) {
-                    executor.execute(new Command(s));
-                    s = in.readLine();
-                }
-            } catch (IOException e) {
-                LOGGER.error("Got error reading data: {}", e.getMessage());
-            } finally {
-                try {
-                    executor.shutdownNow();
-                    interpreter.shutdown();
-                    executor.awaitTermination();
-                } catch (InterruptedException e) {
-                    LOGGER.error("Failed to shut down command processing: {}",
-                            e.getMessage());
-                }
-
-                LOGGER.debug("End of stream encountered");
-            }
+            processCommands(engine, interpreter, executor);
         } finally {
             /* cleanUp() waits for us to open the gate.
              */
@@ -207,7 +224,7 @@ public class LineBasedDoor
          * happened at this point. However if the cell is shut down
          * explicitly, then we have to shutdown the input stream here.
          */
-        shutdownInputStream();
+        shutdownInputStream(engine);
 
         /* The FTP command processing thread will open the gate after
          * shutdown.
@@ -256,12 +273,16 @@ public class LineBasedDoor
         void setExecutor(Executor executor);
     }
 
-    private class Command implements Runnable
+    private static class Command implements Runnable
     {
+        private final StreamEngine engine;
+        private final LineBasedInterpreter interpreter;
         private final String command;
 
-        public Command(String command)
+        public Command(StreamEngine engine, LineBasedInterpreter interpreter, String command)
         {
+            this.engine = engine;
+            this.interpreter = interpreter;
             this.command = command;
         }
 
@@ -271,7 +292,7 @@ public class LineBasedDoor
             try {
                 interpreter.execute(command);
             } catch (CommandExitException e) {
-                shutdownInputStream();
+                shutdownInputStream(engine);
             } catch (RuntimeException e) {
                 LOGGER.error("Bug detected", e);
             }
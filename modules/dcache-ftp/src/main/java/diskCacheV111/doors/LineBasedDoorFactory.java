@@ -10,12 +10,14 @@ import java.util.concurrent.Executors;
 import diskCacheV111.doors.LineBasedDoor.LineBasedInterpreter;
 
 import dmg.cells.nucleus.Cell;
-import dmg.cells.services.login.LoginCellFactory;
+import dmg.cells.services.login.LoginSession;
+import dmg.cells.services.login.LoginSessionContext;
+import dmg.cells.services.login.LoginSessionFactory;
 import dmg.util.StreamEngine;
 
 import org.dcache.util.Args;
 
-public class LineBasedDoorFactory extends AbstractService implements LoginCellFactory
+public class LineBasedDoorFactory extends AbstractService implements LoginSessionFactory
 {
     private final Class<? extends LineBasedInterpreter> interpreter;
     private final String parentCellName;
@@ -41,6 +43,17 @@ public class LineBasedDoorFactory extends AbstractService implements LoginCellFa
         return new LineBasedDoor(parentCellName + "*", args, interpreter, engine, executor);
     }
 
+    @Override
+    public LoginSession newSession(StreamEngine engine, String userName, LoginSessionContext context)
+            throws InvocationTargetException
+    {
+        try {
+            return new LineBasedSession(interpreter.newInstance(), engine, executor, context);
+        } catch (InstantiationException | IllegalAccessException | RuntimeException e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
     @Override
     protected void doStart()
     {
@@ -0,0 +1,149 @@
+package diskCacheV111.doors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+
+import diskCacheV111.doors.LineBasedDoor.LineBasedInterpreter;
+import diskCacheV111.vehicles.Message;
+
+import dmg.cells.nucleus.CellCommandListener;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellMessageReceiver;
+import dmg.cells.nucleus.CellMessageSender;
+import dmg.cells.services.login.LoginSession;
+import dmg.cells.services.login.LoginSessionContext;
+import dmg.util.CommandException;
+import dmg.util.CommandInterpreter;
+import dmg.util.CommandThrowableException;
+import dmg.util.StreamEngine;
+
+import org.dcache.cells.AbstractCell;
+import org.dcache.cells.CellMessageDispatcher;
+import org.dcache.util.Args;
+import org.dcache.util.CDCExecutorServiceDecorator;
+import org.dcache.util.Transfer;
+
+/**
+ * Login session for line based protocols.
+ *
+ * The session is used instead of LineBasedDoor when the login manager
+ * runs in session mode. The interpreter is initialised, fed with lines
+ * read from the StreamEngine and receives messages and commands just as
+ * in a door cell, but no cell is created for the connection.
+ */
+public class LineBasedSession implements LoginSession
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(LineBasedSession.class);
+
+    private final LineBasedInterpreter interpreter;
+
+    private final StreamEngine engine;
+
+    private final LoginSessionContext context;
+
+    /**
+     * Executor for processing commands.
+     */
+    private final ExecutorService executor;
+
+    private final CellMessageDispatcher messageDispatcher =
+            new CellMessageDispatcher("messageArrived");
+
+    private final CommandInterpreter commandInterpreter = new CommandInterpreter();
+
+    public LineBasedSession(LineBasedInterpreter interpreter, StreamEngine engine,
+                            ExecutorService executor, LoginSessionContext context)
+    {
+        this.interpreter = interpreter;
+        this.engine = engine;
+        this.executor = new CDCExecutorServiceDecorator<>(executor);
+        this.context = context;
+
+        Transfer.initSession();
+
+        LOGGER.debug("Client host: {}",
+                engine.getInetAddress().getHostAddress());
+
+        AbstractCell.parseOptions(interpreter, context.getArgs(), context.getDomainContext());
+        interpreter.setWriter(engine.getWriter());
+        interpreter.setRemoteAddress((InetSocketAddress) engine.getSocket().getRemoteSocketAddress());
+        interpreter.setLocalAddress((InetSocketAddress) engine.getSocket().getLocalSocketAddress());
+        interpreter.setExecutor(this.executor);
+        if (interpreter instanceof CellMessageSender) {
+            ((CellMessageSender) interpreter).setCellEndpoint(context);
+        }
+        interpreter.init();
+        if (interpreter instanceof CellCommandListener) {
+            commandInterpreter.addCommandListener(interpreter);
+        }
+        if (interpreter instanceof CellMessageReceiver) {
+            messageDispatcher.addMessageListener((CellMessageReceiver) interpreter);
+        }
+    }
+
+    /**
+     * Processes commands until the client disconnects or the session is
+     * shut down, then closes the socket.
+     */
+    @Override
+    public void run()
+    {
+        try {
+            LineBasedDoor.processCommands(engine, interpreter, executor);
+        } finally {
+            try {
+                engine.getSocket().close();
+            } catch (IOException e) {
+                LOGGER.error("Got I/O exception closing socket: {}",
+                        e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void shutdown()
+    {
+        LineBasedDoor.shutdownInputStream(engine);
+    }
+
+    /**
+     * Executes commands addressed to the session and dispatches all other
+     * messages to the interpreter. Replies are generated as in
+     * AbstractCell.
+     */
+    @Override
+    public void messageArrived(CellMessage envelope)
+    {
+        Serializable o = envelope.getMessageObject();
+        if (o instanceof String) {
+            if (!envelope.isReply()) {
+                executeCommand(envelope, (String) o);
+            }
+        } else {
+            Object result = messageDispatcher.call(envelope);
+            if (result != null && !(o instanceof Message && ((Message) o).isReply())) {
+                AbstractCell.sendReply(context, envelope, result);
+            }
+        }
+    }
+
+    private void executeCommand(CellMessage envelope, String command)
+    {
+        Serializable result;
+        try {
+            result = commandInterpreter.command(new Args(command));
+        } catch (CommandThrowableException e) {
+            result = e.getCause();
+        } catch (CommandException e) {
+            result = e;
+        }
+        if (result != null) {
+            AbstractCell.sendReply(context, envelope, result);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.dcache.ftp.data;
+
+/**
+ * Decision logic of adaptive tuning of mode E transfers.
+ *
+ * Throughput is measured every period. The first period includes
+ * connection establishment and TCP slow start and is discarded. The
+ * second period provides the baseline to which the first adjustment is
+ * compared. As long as the previous adjustment improved throughput by
+ * at least TUNING_GAIN, socket buffers are doubled up to the maximum
+ * buffer size and, once buffers are at that limit, the number of
+ * streams is doubled up to the maximum parallelism. Tuning stops with
+ * the first adjustment that did not pay off.
+ */
+class AdaptiveTuning
+{
+    enum Action
+    {
+        /** Keep measuring. */
+        NONE,
+
+        /** Double the socket buffers. */
+        GROW_BUFFERS,
+
+        /** Double the number of streams. */
+        ADD_STREAMS,
+
+        /** Tuning has stopped; reported once. */
+        CONVERGED
+    }
+
+    /**
+     * Minimum relative throughput improvement to consider an adjustment
+     * successful.
+     */
+    static final double TUNING_GAIN = 0.1;
+
+    private final int _maxParallelism;
+    private final int _maxBufferSize;
+    private final long _period;
+
+    /** Start of the current period, or -1 before the first sample. */
+    private long _periodStart = -1;
+
+    /** Bytes sent in the current period. */
+    private long _sent;
+
+    /** True while the first period is measured. */
+    private boolean _isWarmingUp = true;
+
+    /**
+     * Throughput in bytes per second of the previous period, or NaN
+     * before the baseline has been measured.
+     */
+    private double _lastThroughput = Double.NaN;
+
+    private boolean _isConverged;
+
+    /**
+     * @param maxParallelism largest number of streams to use
+     * @param maxBufferSize largest socket buffer size to use
+     * @param period milliseconds between decisions
+     */
+    AdaptiveTuning(int maxParallelism, int maxBufferSize, long period)
+    {
+        if (maxParallelism <= 0 || maxBufferSize < 0 || period <= 0) {
+            throw new IllegalArgumentException("Invalid tuning limits");
+        }
+        _maxParallelism = maxParallelism;
+        _maxBufferSize = maxBufferSize;
+        _period = period;
+    }
+
+    int getMaxBufferSize()
+    {
+        return _maxBufferSize;
+    }
+
+    int getMaxParallelism()
+    {
+        return _maxParallelism;
+    }
+
+    boolean isConverged()
+    {
+        return _isConverged;
+    }
+
+    /**
+     * Called after sending data.
+     *
+     * @param now current time in milliseconds
+     * @param bytes number of bytes sent
+     * @param bufferSize current socket buffer size, or zero if the
+     *                   buffers are tuned by the operating system
+     * @param parallelism current number of streams
+     * @param canAddStreams whether streams may still be added
+     * @return the adjustment to make
+     */
+    Action sent(long now, long bytes, int bufferSize, int parallelism,
+                boolean canAddStreams)
+    {
+        if (_isConverged) {
+            return Action.NONE;
+        }
+        if (_periodStart < 0) {
+            _periodStart = now;
+            return Action.NONE;
+        }
+        _sent += bytes;
+        long elapsed = now - _periodStart;
+        if (elapsed < _period) {
+            return Action.NONE;
+        }
+
+        double throughput = (1000.0 * _sent) / elapsed;
+        _periodStart = now;
+        _sent = 0;
+
+        if (_isWarmingUp) {
+            _isWarmingUp = false;
+            return Action.NONE;
+        }
+        if (!Double.isNaN(_lastThroughput) &&
+                throughput < _lastThroughput * (1 + TUNING_GAIN)) {
+            _isConverged = true;
+            return Action.CONVERGED;
+        }
+        _lastThroughput = throughput;
+
+        if (bufferSize > 0 && bufferSize < _maxBufferSize) {
+            return Action.GROW_BUFFERS;
+        }
+        if (parallelism < _maxParallelism && canAddStreams) {
+            return Action.ADD_STREAMS;
+        }
+        _isConverged = true;
+        return Action.CONVERGED;
+    }
+}
@@ -151,6 +151,18 @@ public abstract class Mode extends AbstractMultiplexerListener
         _parallelism = value;
     }
 
+    /** Returns the socket buffer size, or zero if auto tuning is enabled. */
+    public int getBufferSize()
+    {
+        return _bufferSize;
+    }
+
+    /** Returns the number of connections currently open. */
+    public int getConnections()
+    {
+        return _opened - _closed;
+    }
+
     /** Returns the starting position of the transfer. */
     public long getStartPosition()
     {
@@ -285,32 +297,13 @@ public abstract class Mode extends AbstractMultiplexerListener
              */
             SocketChannel channel = SocketChannel.open();
             try {
-                channel.configureBlocking(false);
-                if (_bufferSize > 0) {
-                    channel.socket().setReceiveBufferSize(_bufferSize);
-                    channel.socket().setSendBufferSize(_bufferSize);
-                }
-                channel.socket().setKeepAlive(true);
-
-                SelectionKey key =
-                    multiplexer.register(this, SelectionKey.OP_CONNECT, channel);
-
-                multiplexer.say("Connecting to " + _address);
-                if (channel.connect(_address)) {
-                    connect(multiplexer, key);
-                }
+                initiateConnection(multiplexer, channel);
             } catch (IOException e) {
                 // Any error is logged, but otherwise ignored.  As
                 // long as at least one connection succeeds, the
                 // transfer can be completed.
-                channel.close();
                 lastException = e;
-                multiplexer.esay(e.toString());
-                _failed++;
-
-                if (allConnectionsEstablished()) {
-                    enableDisabledKeys();
-                }
+                connectFailed(multiplexer, e);
             }
         }
 
@@ -319,6 +312,67 @@ public abstract class Mode extends AbstractMultiplexerListener
         }
     }
 
+    /**
+     * Opens an additional outgoing connection after the mode has been
+     * registered. Increments the parallelism by one. A failure to
+     * connect is logged, but otherwise ignored.
+     *
+     * This call is only valid if the direction of the mode is set to
+     * Outgoing.
+     */
+    protected void addOutgoingConnection(Multiplexer multiplexer)
+        throws Exception
+    {
+        if (_direction != Direction.Outgoing) {
+            throw new IllegalArgumentException("Call is only valid for outgoing connections");
+        }
+
+        _parallelism++;
+        try {
+            initiateConnection(multiplexer, SocketChannel.open());
+        } catch (IOException e) {
+            connectFailed(multiplexer, e);
+        }
+    }
+
+    /**
+     * Initiates the connection of channel to the remote address. The
+     * channel is closed if that fails.
+     */
+    private void initiateConnection(Multiplexer multiplexer, SocketChannel channel)
+        throws Exception
+    {
+        try {
+            channel.configureBlocking(false);
+            if (_bufferSize > 0) {
+                channel.socket().setReceiveBufferSize(_bufferSize);
+                channel.socket().setSendBufferSize(_bufferSize);
+            }
+            channel.socket().setKeepAlive(true);
+
+            SelectionKey key =
+                multiplexer.register(this, SelectionKey.OP_CONNECT, channel);
+
+            multiplexer.say("Connecting to " + _address);
+            if (channel.connect(_address)) {
+                connect(multiplexer, key);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void connectFailed(Multiplexer multiplexer, IOException e)
+    {
+        multiplexer.esay(e.toString());
+        _failed++;
+
+        if (allConnectionsEstablished()) {
+            enableDisabledKeys();
+        }
+    }
+
     /**
      * Register the mode for incomming connections.
      */
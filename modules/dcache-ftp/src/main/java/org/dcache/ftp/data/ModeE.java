@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.dcache.pool.repository.RepositoryChannel;
 
@@ -54,6 +56,12 @@ public class ModeE extends Mode
      */
     private long _eodc;
 
+    /** Adaptive tuning of outgoing transfers, or null if disabled. */
+    private AdaptiveTuning _tuning;
+
+    /** Senders created by this mode. */
+    private final List<Sender> _senders = new ArrayList<>();
+
     /**
      * Implementation of send in mode E. There will be an instance per
      * data channel. The sender repeatedly bites _blockSize bytes of
@@ -176,6 +184,7 @@ public class ModeE extends Mode
                 if (_count == 0) {
                     _state = PREPARE_BLOCK;
                 }
+                tune(multiplexer, nbytes);
                 break;
             }
         }
@@ -355,13 +364,88 @@ public class ModeE extends Mode
         _currentCount    = getSize();
     }
 
+    /**
+     * Enables adaptive tuning of outgoing transfers.
+     *
+     * Throughput is measured every period and adjustments are made as
+     * described for AdaptiveTuning. Tuning is disabled if the period
+     * is zero.
+     *
+     * Socket buffers are only grown if a buffer size was set, since
+     * setting a buffer size disables TCP auto tuning of the operating
+     * system.
+     */
+    public void setAdaptiveTuning(int maxParallelism, int maxBufferSize,
+                                  long period)
+    {
+        if (maxParallelism <= 0 || maxBufferSize < 0 || period < 0) {
+            throw new IllegalArgumentException("Invalid tuning limits");
+        }
+        setAdaptiveTuning((period == 0)
+                          ? null
+                          : new AdaptiveTuning(maxParallelism, maxBufferSize, period));
+    }
+
+    void setAdaptiveTuning(AdaptiveTuning tuning)
+    {
+        _tuning = tuning;
+    }
+
+    /**
+     * Called by senders after sending data. Adjusts socket buffers or
+     * the number of streams as decided by adaptive tuning.
+     *
+     * Streams are only added while data remains to be assigned to
+     * blocks. Until then the sender responsible for EOF cannot have
+     * sent the EOD count, thus the count will include the new
+     * streams.
+     */
+    private void tune(Multiplexer multiplexer, long nbytes) throws Exception
+    {
+        if (_tuning == null || _direction != Direction.Outgoing) {
+            return;
+        }
+
+        int bufferSize = getBufferSize();
+        boolean canAddStreams = _currentCount > (long) _blockSize * _parallelism;
+        switch (_tuning.sent(System.currentTimeMillis(), nbytes, bufferSize,
+                             _parallelism, canAddStreams)) {
+        case GROW_BUFFERS:
+            bufferSize = (int) Math.min(2L * bufferSize, _tuning.getMaxBufferSize());
+            multiplexer.say("Increasing buffer size to " + bufferSize);
+            setBufferSize(bufferSize);
+            for (Sender sender : _senders) {
+                if (sender._socket.isOpen()) {
+                    sender._socket.socket().setSendBufferSize(bufferSize);
+                }
+            }
+            break;
+        case ADD_STREAMS:
+            int streams = Math.min(_parallelism,
+                                   _tuning.getMaxParallelism() - _parallelism);
+            multiplexer.say("Adding " + streams + " streams");
+            for (int i = 0; i < streams; i++) {
+                addOutgoingConnection(multiplexer);
+            }
+            break;
+        case CONVERGED:
+            multiplexer.say(String.format("Tuning converged at %d streams with buffer size %d",
+                                          getConnections(), bufferSize));
+            break;
+        case NONE:
+            break;
+        }
+    }
+
     @Override
     public void newConnection(Multiplexer multiplexer, SocketChannel socket)
         throws Exception
     {
         switch (_role) {
         case Sender:
-            multiplexer.add(new Sender(socket));
+            Sender sender = new Sender(socket);
+            _senders.add(sender);
+            multiplexer.add(sender);
             break;
         case Receiver:
             multiplexer.add(new Receiver(socket));
@@ -177,6 +177,7 @@ import org.dcache.cells.CellStub;
 import org.dcache.cells.Option;
 import org.dcache.ftp.proxy.ActiveAdapter;
 import org.dcache.ftp.proxy.ProxyAdapter;
+import org.dcache.ftp.proxy.ProxyReactor;
 import org.dcache.ftp.proxy.SocketAdapter;
 import org.dcache.namespace.ACLPermissionHandler;
 import org.dcache.namespace.ChainedPermissionHandler;
@@ -718,6 +719,12 @@ public abstract class AbstractFtpDoorV1
     protected PortRange _passiveModePortRange;
     protected ServerSocketChannel _passiveModeServerSocket;
 
+    /**
+     * Reactor relaying proxied data channels. Acquired when the first
+     * proxy is created and released when the session ends.
+     */
+    private ProxyReactor _proxyReactor;
+
     private final Map<String,Method>  _methodDict =
         new HashMap<>();
     private final Map<String,Help>  _helpDict = new HashMap<>();
@@ -881,7 +888,7 @@ public abstract class AbstractFtpDoorV1
             switch (_mode) {
             case PASSIVE:
                 _adapter =
-                    new SocketAdapter(_passiveModeServerSocket);
+                    new SocketAdapter(_passiveModeServerSocket, getProxyReactor());
                 break;
 
             case ACTIVE:
@@ -975,13 +982,20 @@ public abstract class AbstractFtpDoorV1
                                          _offset,
                                          _size);
             } else {
+                /* Without an adapter the pool connects directly to
+                 * the client and may use adaptive tuning to open
+                 * additional streams up to the limit per client.
+                 */
+                int maxStreams = (_maxStreamsPerClient > 0)
+                        ? Math.max(_parallel, _maxStreamsPerClient)
+                        : Integer.MAX_VALUE;
                 protocolInfo =
                     new GFtpProtocolInfo("GFtp",
                                          _version, 0,
                                          _client,
                                          _parallel,
                                          _parallel,
-                                         _parallel,
+                                         maxStreams,
                                          _bufSize,
                                          _offset,
                                          _size);
@@ -1532,6 +1546,22 @@ public abstract class AbstractFtpDoorV1
         }
     }
 
+    private synchronized ProxyReactor getProxyReactor()
+    {
+        if (_proxyReactor == null) {
+            _proxyReactor = ProxyReactor.acquire();
+        }
+        return _proxyReactor;
+    }
+
+    private synchronized void releaseProxyReactor()
+    {
+        if (_proxyReactor != null) {
+            ProxyReactor.release();
+            _proxyReactor = null;
+        }
+    }
+
     @Override
     public void shutdown()
     {
@@ -1543,6 +1573,7 @@ public abstract class AbstractFtpDoorV1
         }
 
         closePassiveModeServerSocket();
+        releaseProxyReactor();
 
         if (ACCESS_LOGGER.isInfoEnabled()) {
             NetLoggerBuilder log = new NetLoggerBuilder(INFO, "org.dcache.ftp.disconnect").omitNullValues();
@@ -0,0 +1,81 @@
+package org.dcache.ftp.proxy;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct byte buffers used by the data channel proxy.
+ *
+ * Allocating direct buffers is expensive and they are only reclaimed
+ * by the garbage collector, hence buffers are recycled between streams
+ * and transfers. Buffers are pooled by capacity and at most a fixed
+ * number of buffers is retained per capacity.
+ */
+public class DirectBufferPool
+{
+    private static final DirectBufferPool INSTANCE = new DirectBufferPool(256);
+
+    private final int _maxRetained;
+    private final ConcurrentMap<Integer,Bucket> _buckets = new ConcurrentHashMap<>();
+
+    private static class Bucket
+    {
+        final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+    }
+
+    public DirectBufferPool(int maxRetained)
+    {
+        _maxRetained = maxRetained;
+    }
+
+    public static DirectBufferPool getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a cleared direct buffer with the given capacity.
+     */
+    public ByteBuffer acquire(int capacity)
+    {
+        ByteBuffer buffer = getBucket(capacity).buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        getBucket(capacity).size.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use the buffer
+     * afterwards.
+     */
+    public void release(ByteBuffer buffer)
+    {
+        Bucket bucket = getBucket(buffer.capacity());
+        if (bucket.size.incrementAndGet() <= _maxRetained) {
+            bucket.buffers.add(buffer);
+        } else {
+            bucket.size.decrementAndGet();
+        }
+    }
+
+    private Bucket getBucket(int capacity)
+    {
+        Bucket bucket = _buckets.get(capacity);
+        if (bucket == null) {
+            Bucket newBucket = new Bucket();
+            bucket = _buckets.putIfAbsent(capacity, newBucket);
+            if (bucket == null) {
+                bucket = newBucket;
+            }
+        }
+        return bucket;
+    }
+}
@@ -0,0 +1,243 @@
+package org.dcache.ftp.proxy;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of selector threads shared by all data channel proxies of
+ * a door.
+ *
+ * Each event loop owns a selector. Channels of a single transfer are all
+ * registered with the same event loop, thus handlers of one transfer never
+ * run concurrently and need no synchronization among themselves. The number
+ * of threads is independent of the number of transfers and streams.
+ *
+ * The reactor shared by the doors of a JVM is reference counted: it is
+ * created when the first door acquires it and shut down when the last
+ * door releases it.
+ */
+public class ProxyReactor
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProxyReactor.class);
+
+    private static final int THREADS =
+            Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Time to wait before selecting again after the selector failed.
+     */
+    private static final long SELECT_ERROR_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    private static ProxyReactor _shared;
+    private static int _references;
+
+    /**
+     * Callback invoked on the event loop thread when a registered channel
+     * is ready for the operations it is interested in.
+     */
+    public interface Handler
+    {
+        void handle(SelectionKey key) throws IOException;
+
+        /**
+         * Called on the event loop thread when {@code handle} failed. The
+         * key of the channel has already been cancelled.
+         */
+        void failed(Exception e);
+    }
+
+    private final EventLoop[] _loops;
+    private final AtomicInteger _next = new AtomicInteger();
+
+    public ProxyReactor(int threads)
+    {
+        ThreadFactory factory = new ThreadFactoryBuilder()
+                .setNameFormat("ftp-proxy-%d").setDaemon(true).build();
+        _loops = new EventLoop[Math.max(1, threads)];
+        for (int i = 0; i < _loops.length; i++) {
+            try {
+                _loops[i] = new EventLoop(Selector.open());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open selector: " + e.getMessage(), e);
+            }
+            factory.newThread(_loops[i]).start();
+        }
+    }
+
+    /**
+     * Returns the reactor shared by all proxies in this JVM, creating it
+     * if necessary. Every call must be matched by a call to
+     * {@link #release}.
+     */
+    public static synchronized ProxyReactor acquire()
+    {
+        if (_references == 0) {
+            _shared = new ProxyReactor(THREADS);
+        }
+        _references++;
+        return _shared;
+    }
+
+    /**
+     * Releases a reference obtained by {@link #acquire}. The shared
+     * reactor is shut down once the last reference is released.
+     */
+    public static synchronized void release()
+    {
+        if (_references == 0) {
+            throw new IllegalStateException("Proxy reactor is not acquired");
+        }
+        _references--;
+        if (_references == 0) {
+            _shared.shutdown();
+            _shared = null;
+        }
+    }
+
+    /**
+     * Stops all event loops. Channels still registered are not closed,
+     * but their handlers are failed.
+     */
+    public void shutdown()
+    {
+        for (EventLoop loop : _loops) {
+            loop.shutdown();
+        }
+    }
+
+    /**
+     * Returns the event loop to use for the next transfer. Loops are
+     * assigned round robin.
+     */
+    public EventLoop next()
+    {
+        return _loops[(_next.getAndIncrement() & Integer.MAX_VALUE) % _loops.length];
+    }
+
+    public static class EventLoop implements Runnable
+    {
+        private final Selector _selector;
+        private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean _isShutdown;
+
+        private EventLoop(Selector selector)
+        {
+            _selector = selector;
+        }
+
+        /**
+         * Executes a task on the event loop thread. Tasks submitted after
+         * the event loop was shut down are discarded.
+         */
+        public void execute(Runnable task)
+        {
+            _tasks.add(task);
+            _selector.wakeup();
+        }
+
+        private void shutdown()
+        {
+            _isShutdown = true;
+            _selector.wakeup();
+        }
+
+        /**
+         * Cancels all registered keys and fails their handlers.
+         */
+        private void failAll(Exception e)
+        {
+            for (SelectionKey key : _selector.keys()) {
+                if (key.isValid()) {
+                    key.cancel();
+                    ((Handler) key.attachment()).failed(e);
+                }
+            }
+        }
+
+        /**
+         * Registers a channel with this event loop. Must be called on the
+         * event loop thread, i.e. from within a task or a handler.
+         */
+        public SelectionKey register(SelectableChannel channel, int ops, Handler handler)
+                throws ClosedChannelException
+        {
+            return channel.register(_selector, ops, handler);
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                loop();
+            } finally {
+                failAll(new IOException("FTP proxy was shut down"));
+                _tasks.clear();
+                try {
+                    _selector.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to close proxy selector: {}", e.getMessage());
+                }
+            }
+        }
+
+        private void loop()
+        {
+            while (!_isShutdown) {
+                try {
+                    _selector.select();
+                } catch (IOException e) {
+                    /* A broken selector would fail again right away.
+                     * Fail the registered channels such that their
+                     * transfers do not hang and back off before
+                     * retrying.
+                     */
+                    LOGGER.error("Proxy selector failed: {}", e.toString());
+                    failAll(new IOException("Proxy selector failed: " + e, e));
+                    try {
+                        Thread.sleep(SELECT_ERROR_DELAY);
+                    } catch (InterruptedException ignored) {
+                        return;
+                    }
+                    continue;
+                }
+
+                Runnable task;
+                while ((task = _tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Bug detected in FTP proxy: {}", e.toString(), e);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Handler handler = (Handler) key.attachment();
+                    try {
+                        if (key.isValid()) {
+                            handler.handle(key);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        key.cancel();
+                        handler.failed(e);
+                    }
+                }
+            }
+        }
+    }
+}
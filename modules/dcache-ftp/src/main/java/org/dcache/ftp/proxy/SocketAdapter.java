@@ -75,11 +75,11 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.Random;
-
-import org.dcache.cells.AbstractCell;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * Data channel proxy for FTP door. The proxy will run at the GridFTP
@@ -87,6 +87,10 @@ import org.dcache.cells.AbstractCell;
  * mode E are supported. Mode E is only supported when data flows from
  * the client to the pool.
  *
+ * Connections are accepted by a thread per adapter, while data is
+ * relayed by the event loops of a {@link ProxyReactor}. Thus
+ * the number of threads does not depend on the number of streams.
+ *
  * The class is also used to establish data channels for transfering
  * directory listings. This use should be reconsidered, at it is
  * unrelated to the proxy functionality.
@@ -101,6 +105,9 @@ public class SocketAdapter implements Runnable, ProxyAdapter
     /** Channel listening for connections from the pool. */
     private final ServerSocketChannel _poolListenerChannel;
 
+    /** Reactor relaying the data channels. */
+    private final ProxyReactor _reactor;
+
     /** Current number of data channel connections. */
     private int _dataChannelConnections;
 
@@ -142,7 +149,7 @@ public class SocketAdapter implements Runnable, ProxyAdapter
     /**
      * Selector for doing asynchronous accept.
      */
-    private Selector _selector;
+    private volatile Selector _selector;
 
     /**
      * Size of the largest block allocated in mode E. Blocks larger
@@ -168,179 +175,316 @@ public class SocketAdapter implements Runnable, ProxyAdapter
     private final String _localAddress;
 
     /**
-     * A redirector moves data between an input channel and an ouput
-     * channel. This particular redirector does so in mode S.
+     * Size of the buffers used to relay mode S data.
+     */
+    private static final int MODE_S_BUFFER_SIZE = 128 * 1024;
+
+    /**
+     * Writes frames to the output channel without blocking. Frames are
+     * written in the order they are submitted and the submitter is
+     * notified once a frame has been written completely. All methods
+     * must be called on the event loop thread of the adapter.
      */
-    class StreamRedirector extends Thread
+    private class OutputSink implements ProxyReactor.Handler
     {
-        private SocketChannel _input, _output;
+        private final SocketChannel _channel;
+        private final String _address;
+        private final Deque<ByteBuffer[]> _frames = new ArrayDeque<>();
+        private final Deque<Runnable> _callbacks = new ArrayDeque<>();
+        private SelectionKey _key;
+
+        OutputSink(SocketChannel channel)
+        {
+            _channel = channel;
+            _address = channel.socket().getRemoteSocketAddress().toString();
+        }
+
+        void register(ProxyReactor.EventLoop loop) throws IOException
+        {
+            _key = loop.register(_channel, 0, this);
+        }
+
+        void write(ByteBuffer[] frame, Runnable onWritten)
+        {
+            _frames.add(frame);
+            _callbacks.add(onWritten);
+            if (_frames.size() == 1) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    _key.cancel();
+                    failed(e);
+                }
+            }
+        }
+
+        private void flush() throws IOException
+        {
+            while (!_frames.isEmpty()) {
+                ByteBuffer[] frame = _frames.peek();
+                _channel.write(frame);
+                if (frame[frame.length - 1].hasRemaining()) {
+                    _key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                _frames.remove();
+                _callbacks.remove().run();
+            }
+            if (_key.isValid()) {
+                _key.interestOps(0);
+            }
+        }
+
+        @Override
+        public void handle(SelectionKey key) throws IOException
+        {
+            flush();
+        }
+
+        @Override
+        public void failed(Exception e)
+        {
+            setError("Error on socket to " + _address + ": " + e.getMessage());
+        }
+    }
 
-        public StreamRedirector(SocketChannel input, SocketChannel output)
+    /**
+     * A relay moves data from an input channel to the output sink. A
+     * relay only reads while it has no data in flight, thus the socket
+     * buffers of the input provide back pressure towards the sender.
+     * All methods are called on the event loop thread of the adapter.
+     */
+    private abstract class Relay implements ProxyReactor.Handler
+    {
+        protected final SocketChannel _input;
+        protected final String _inputAddress;
+        protected final OutputSink _output;
+        protected ByteBuffer _buffer;
+        private SelectionKey _key;
+        private boolean _done;
+
+        Relay(SocketChannel input, OutputSink output, int bufferSize)
         {
-            super("ModeS-Proxy-" + _localAddress);
             _input = input;
+            _inputAddress = input.socket().getRemoteSocketAddress().toString();
             _output = output;
+            _buffer = DirectBufferPool.getInstance().acquire(bufferSize);
         }
 
-        @Override
-        public void run()
+        void register(ProxyReactor.EventLoop loop) throws IOException
         {
-            String inputAddress =
-                    _input.socket().getRemoteSocketAddress().toString();
-            String outputAddress =
-                    _output.socket().getRemoteSocketAddress().toString();
-            boolean reading = true;
-            try {
-                LOGGER.info("Starting mode S proxy from {} to {}",
-                            inputAddress, outputAddress);
-                ByteBuffer buffer = ByteBuffer.allocate(128 * 1024);
-                while (_input.read(buffer) != -1) {
-                    buffer.flip();
-                    reading = false;
-                    _output.write(buffer);
-                    reading = true;
-                    buffer.clear();
-                }
-                _input.close();
-            } catch (IOException e) {
-                if (reading) {
-                    setError("Error on socket to " + inputAddress + ": "
-                                     + e.getMessage());
-                } else {
-                    setError("Error on socket to " + outputAddress + ": "
-                                     + e.getMessage());
+            _key = loop.register(_input, SelectionKey.OP_READ, this);
+        }
+
+        protected void pause()
+        {
+            _key.interestOps(0);
+        }
+
+        protected void resume()
+        {
+            if (_key.isValid()) {
+                _key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Closes the input and accounts for the completed data channel.
+         */
+        protected void finish()
+        {
+            if (!_done) {
+                _done = true;
+                try {
+                    _input.close();
+                } catch (IOException e) {
+                    LOGGER.debug("Failed to close {}: {}", _inputAddress, e.getMessage());
                 }
-            } finally {
+                release();
                 subtractDataChannel();
             }
         }
+
+        /**
+         * Returns the buffer to the pool. Must only be called when no data
+         * is in flight or the output channel has been closed.
+         */
+        void release()
+        {
+            if (_buffer != null) {
+                DirectBufferPool.getInstance().release(_buffer);
+                _buffer = null;
+            }
+        }
+
+        @Override
+        public void failed(Exception e)
+        {
+            setError("Error on socket to " + _inputAddress + ": " + e.getMessage());
+            finish();
+        }
     }
 
     /**
-     * A redirector moves data between an input channel and an ouput
-     * channel. This particular redirector does so in mode E.
+     * Relays data in mode S.
      */
-    class ModeERedirector extends Thread
+    private class StreamRelay extends Relay
     {
-        private SocketChannel _input, _output;
+        private final Runnable _onWritten = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                _buffer.clear();
+                resume();
+            }
+        };
 
-        public ModeERedirector(SocketChannel input, SocketChannel output)
+        StreamRelay(SocketChannel input, OutputSink output)
         {
-            super("ModeE-Proxy-" + _localAddress);
-            _input  = input;
-            _output = output;
+            super(input, output, MODE_S_BUFFER_SIZE);
+            LOGGER.info("Starting mode S proxy from {}", _inputAddress);
         }
 
         @Override
-        public void run()
+        public void handle(SelectionKey key) throws IOException
         {
-            boolean eod = false;
-            boolean used = false;
-            ByteBuffer header = ByteBuffer.allocate(17);
-            EDataBlockNio block = new EDataBlockNio(getName());
-            String inputAddress =
-                    _input.socket().getRemoteSocketAddress().toString();
-            String outputAddress =
-                    _output.socket().getRemoteSocketAddress().toString();
-            boolean reading = true;
-
-            long count, position;
-
-            try {
-                LOGGER.info("Starting mode E proxy from {} to {}",
-                            inputAddress, outputAddress);
-
-                loop: while (!eod && block.readHeader(_input) > -1) {
-                    used = true;
-
-                    /* EOF blocks are never forwarded as they do not
-                     * contain any data and the SocketAdapter sends an
-                     * EOF at the beginning of the stream. Other
-                     * blocks are forwarded if they are not empty.
-                     */
-                    if (block.isDescriptorSet(EDataBlockNio.EOF_DESCRIPTOR)) {
-                        setEODExpected(block.getDataChannelCount());
-                        count = position = 0;
-                    } else {
-                        count = block.getSize();
-                        position = block.getOffset();
-                    }
+            int n = _input.read(_buffer);
+            if (n == -1) {
+                finish();
+            } else if (n > 0) {
+                _buffer.flip();
+                pause();
+                _output.write(new ByteBuffer[] { _buffer }, _onWritten);
+            }
+        }
+    }
 
-                    /* Read and send a single block. To limit memory
-                     * usage, we will read at most _maxBlockSize bytes
-                     * at a time. Larger blocks are divided into
-                     * multiple blocks.
-                     */
-                    while (count > 0) {
-                        long len = Math.min(count, _maxBlockSize);
-                        if (block.readData(_input, len) != len) {
-                            break loop;
-                        }
+    /**
+     * Relays data in mode E. Blocks are parsed incrementally as data
+     * arrives. Blocks larger than the maximum block size are divided
+     * into several blocks. EOF blocks are not forwarded as the adapter
+     * sends an EOF at the beginning of the stream.
+     */
+    private class ModeERelay extends Relay
+    {
+        private final ByteBuffer _header = ByteBuffer.allocate(EDataBlockNio.HEADER_LENGTH);
+        private final ByteBuffer _outputHeader = ByteBuffer.allocate(EDataBlockNio.HEADER_LENGTH);
+        private boolean _readingHeader = true;
+        private boolean _used;
+        private boolean _eod;
+        private boolean _eodPending;
+        private long _count;
+        private long _position;
+
+        private final Runnable _onWritten = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                int len = _buffer.limit();
+                _count -= len;
+                _position += len;
+                if (_count > 0) {
+                    prepareData();
+                } else {
+                    completeBlock();
+                }
+                if (!_eod) {
+                    resume();
+                }
+            }
+        };
 
-                        /* Generate output header.
-                         */
-                        header.clear();
-                        header.put((byte)0);
-                        header.putLong(len);
-                        header.putLong(position);
-
-                        /* Write output.
-                         */
-                        ByteBuffer[] buffers = {
-                                header,
-                                block.getData()
-                        };
-                        buffers[0].flip();
-                        buffers[1].flip();
-                        reading = false;
-                        _output.write(buffers);
-                        reading = true;
-
-                        /* Update counters.
-                         */
-                        count = count - len;
-                        position = position + len;
-                    }
+        ModeERelay(SocketChannel input, OutputSink output)
+        {
+            super(input, output, _maxBlockSize);
+            LOGGER.info("Starting mode E proxy from {}", _inputAddress);
+        }
 
-                    /* Check for EOD mark.
-                     */
-                    if (block.isDescriptorSet(EDataBlockNio.EOD_DESCRIPTOR)) {
-                        eod = true;
+        @Override
+        public void handle(SelectionKey key) throws IOException
+        {
+            while (!_eod) {
+                if (_readingHeader) {
+                    if (_input.read(_header) == -1) {
+                        endOfStream();
+                        return;
+                    }
+                    if (_header.hasRemaining()) {
+                        return;
+                    }
+                    _used = true;
+                    byte descriptors = _header.get(0);
+                    if ((descriptors & EDataBlockNio.EOF_DESCRIPTOR) != 0) {
+                        setEODExpected(_header.getLong(9));
+                        _count = _position = 0;
+                    } else {
+                        _count = _header.getLong(1);
+                        _position = _header.getLong(9);
+                    }
+                    _eodPending = (descriptors & EDataBlockNio.EOD_DESCRIPTOR) != 0;
+                    if (_count > 0) {
+                        _readingHeader = false;
+                        prepareData();
+                    } else {
+                        completeBlock();
+                    }
+                } else {
+                    if (_input.read(_buffer) == -1) {
+                        endOfStream();
+                        return;
+                    }
+                    if (_buffer.hasRemaining()) {
+                        return;
                     }
+                    _outputHeader.clear();
+                    _outputHeader.put((byte) 0);
+                    _outputHeader.putLong(_buffer.position());
+                    _outputHeader.putLong(_position);
+                    _outputHeader.flip();
+                    _buffer.flip();
+                    pause();
+                    _output.write(new ByteBuffer[] { _outputHeader, _buffer }, _onWritten);
+                    return;
                 }
+            }
+        }
 
-                if (eod) {
-                    addEODSeen();
-                } else if (used) {
-                    setError("Data channel from " + inputAddress
-                                     + " was closed before EOD marker");
-                }
+        private void prepareData()
+        {
+            _buffer.clear();
+            _buffer.limit((int) Math.min(_count, _buffer.capacity()));
+        }
 
-		/* In case of an error, SocketAdapter will close the
-		 * channel instead. We only call close here to free up
-		 * sockets as early as possible when everything went
-		 * as expected.
-		 */
-                _input.close();
-            } catch (Exception e) {
-                if (reading) {
-                    setError("Error on socket to " + inputAddress + ": "
-                                     + e.getMessage());
-                } else {
-                    setError("Error on socket to " + outputAddress + ": "
-                                     + e.getMessage());
-                }
-            } finally {
-                LOGGER.info("Redirector done, EOD = {}, used = {}", eod, used);
-                subtractDataChannel();
+        private void completeBlock()
+        {
+            _readingHeader = true;
+            _header.clear();
+            if (_eodPending) {
+                _eod = true;
+                LOGGER.info("Relay from {} done, EOD = true", _inputAddress);
+                addEODSeen();
+                finish();
+            }
+        }
+
+        private void endOfStream()
+        {
+            LOGGER.info("Relay from {} done, EOD = false, used = {}", _inputAddress, _used);
+            if (_used) {
+                setError("Data channel from " + _inputAddress
+                                 + " was closed before EOD marker");
             }
+            finish();
         }
     }
 
-    public SocketAdapter(ServerSocketChannel clientListenerChannel)
+    public SocketAdapter(ServerSocketChannel clientListenerChannel, ProxyReactor reactor)
             throws IOException
     {
         _clientListenerChannel = clientListenerChannel;
+        _reactor = reactor;
         _poolListenerChannel = ServerSocketChannel.open();
         _poolListenerChannel.socket().bind(null);
 
@@ -378,15 +522,19 @@ public class SocketAdapter implements Runnable, ProxyAdapter
     protected synchronized void setEODExpected(long count)
     {
         LOGGER.trace("Setting data channel count to {}", count);
-        _selector.wakeup();
+        Selector selector = _selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
         _eodc = (int)count;
     }
 
-    /** Called whenever a redirector finishes. Thread safe. */
+    /** Called whenever a relay finishes. Thread safe. */
     protected synchronized void subtractDataChannel()
     {
         _dataChannelConnections--;
         _dataChannelsClosed++;
+        notifyAll();
 
         if (_eodc < Integer.MAX_VALUE) {
             LOGGER.trace("Closing redirector {}, remaining: {}, eodc says there will be: {}",
@@ -397,12 +545,23 @@ public class SocketAdapter implements Runnable, ProxyAdapter
         }
     }
 
-    /** Called whenever a new redirector is created. Thread safe. */
+    /** Called whenever a new relay is created. Thread safe. */
     protected synchronized void addDataChannel()
     {
         _dataChannelConnections++;
     }
 
+    /**
+     * Blocks until all relays have finished. Thread safe.
+     */
+    protected synchronized void awaitDataChannels()
+            throws InterruptedException
+    {
+        while (_dataChannelConnections > 0) {
+            wait();
+        }
+    }
+
     /**
      * Returns the current number of concurrent data channel
      * connections. Thread safe.
@@ -542,12 +701,15 @@ public class SocketAdapter implements Runnable, ProxyAdapter
         ServerSocketChannel inputSock;
         ServerSocketChannel outputSock;
 
-        /** All redirectores created by the SocketAdapter. */
-        List<Thread> redirectors = new ArrayList<>();
+        /** All relays created by the SocketAdapter. */
+        final List<Relay> relays = new ArrayList<>();
 
         /** All sockets created by the SocketAdapter. */
         List<SocketChannel> sockets     = new ArrayList<>();
 
+        /** Event loop driving all data channels of this adapter. */
+        final ProxyReactor.EventLoop loop = _reactor.next();
+
         try {
             _selector = Selector.open();
 
@@ -590,6 +752,24 @@ public class SocketAdapter implements Runnable, ProxyAdapter
                 output.write(block);
             }
 
+            /* From here on the output channel is driven by the event
+             * loop.
+             */
+            output.configureBlocking(false);
+            final OutputSink sink = new OutputSink(output);
+            loop.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        sink.register(loop);
+                    } catch (IOException e) {
+                        sink.failed(e);
+                    }
+                }
+            });
+
             /* Keep accepting connections on the input socket as long
              * as we have not reached the number of streams the client
              * told us we should expect.
@@ -611,6 +791,9 @@ public class SocketAdapter implements Runnable, ProxyAdapter
                 for (SelectionKey key : _selector.selectedKeys()) {
                     if (key.isAcceptable()) {
                         SocketChannel input = inputSock.accept();
+                        if (input == null) {
+                            continue;
+                        }
                         sockets.add(input);
                         LOGGER.debug("Opened {}", input.socket());
 
@@ -618,17 +801,29 @@ public class SocketAdapter implements Runnable, ProxyAdapter
                             input.socket().setSendBufferSize(_bufferSize);
                         }
                         input.socket().setKeepAlive(true);
+                        input.configureBlocking(false);
 
                         addDataChannel();
 
-                        Thread redir;
+                        final Relay relay;
                         if (_modeE) {
-                            redir = new ModeERedirector(input, output);
+                            relay = new ModeERelay(input, sink);
                         } else {
-                            redir = new StreamRedirector(input, output);
+                            relay = new StreamRelay(input, sink);
                         }
-                        redir.start();
-                        redirectors.add(redir);
+                        relays.add(relay);
+                        loop.execute(new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                try {
+                                    relay.register(loop);
+                                } catch (IOException e) {
+                                    relay.failed(e);
+                                }
+                            }
+                        });
 
                         totalStreams++;
                     }
@@ -636,14 +831,11 @@ public class SocketAdapter implements Runnable, ProxyAdapter
                 _selector.selectedKeys().clear();
             }
 
-            /* Block until all redirector threads have terminated.
+            /* Block until all relays have finished.
              */
-            LOGGER.trace("Waiting for all redirectors to finish");
-            for (Thread redirector : redirectors) {
-                redirector.join();
-            }
-            redirectors.clear();
-            LOGGER.trace("All redirectors have finished");
+            LOGGER.trace("Waiting for all relays to finish");
+            awaitDataChannels();
+            LOGGER.trace("All relays have finished");
 
             /* Send the EOD (remember that we already sent the EOF
              * earlier).
@@ -654,12 +846,28 @@ public class SocketAdapter implements Runnable, ProxyAdapter
                 } else if (getEODSeen() != getEODExpected()) {
                     setError("Did not see enough EOD markers. Transfer failed.");
                 } else {
-                    ByteBuffer block = ByteBuffer.allocate(17);
+                    final ByteBuffer block = ByteBuffer.allocate(17);
                     block.put((byte)EDataBlockNio.EOD_DESCRIPTOR);
                     block.putLong(0);
                     block.putLong(0);
                     block.flip();
-                    output.write(block);
+                    final CountDownLatch written = new CountDownLatch(1);
+                    loop.execute(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            sink.write(new ByteBuffer[] { block }, new Runnable()
+                            {
+                                @Override
+                                public void run()
+                                {
+                                    written.countDown();
+                                }
+                            });
+                        }
+                    });
+                    written.await();
                 }
             }
         } catch (InterruptedException e) {
@@ -682,19 +890,10 @@ public class SocketAdapter implements Runnable, ProxyAdapter
                 }
             }
 
-            /* Tell any thread still alive to stop. In principal this
-             * should not be necessary since closing the channels
-             * below should cause all redirectors to break out. On the
-             * other hand it doesn't hurt and better safe than
-             * sorry...
-             */
-            for (Thread redirector : redirectors) {
-                redirector.interrupt();
-            }
-
-            /* Close all channels. The redirectors may already have
-             * closed the channels, however close() is a noop if the
-             * channel is already closed.
+            /* Close all channels. This cancels the registrations with
+             * the event loop. The relays may already have closed their
+             * channels, however close() is a noop if the channel is
+             * already closed.
              */
             for (SocketChannel channel : sockets) {
                 try {
@@ -703,6 +902,21 @@ public class SocketAdapter implements Runnable, ProxyAdapter
                     setError(e.getMessage());
                 }
             }
+
+            /* Once the output is closed no data is in flight and the
+             * buffers of all relays can be recycled. This has to
+             * happen on the event loop to not race with a handler.
+             */
+            loop.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (Relay relay : relays) {
+                        relay.release();
+                    }
+                }
+            });
         }
     }
 
@@ -717,7 +931,7 @@ public class SocketAdapter implements Runnable, ProxyAdapter
 
         /* Interrupting this thread is enough to cause
          * SocketAdapter.run() to break. SocketAdapter.run() will in
-         * turn interrupt all redirectors.
+         * turn close all data channels.
          */
         _thread.interrupt();
 
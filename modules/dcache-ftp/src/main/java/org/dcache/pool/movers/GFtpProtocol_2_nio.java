@@ -1,5 +1,6 @@
 package org.dcache.pool.movers;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.Iterables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,7 +15,10 @@ import java.nio.channels.UnresolvedAddressException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.ChecksumFactory;
@@ -84,6 +88,17 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
      */
     public final static int MODE_X_DEFAULT_BLOCK_SIZE = 128 * 1024;
 
+    /**
+     * Default period between throughput samples and adaptive tuning
+     * decisions in milliseconds.
+     */
+    public final static long DEFAULT_TUNING_PERIOD = 5000;
+
+    /**
+     * The number of throughput samples kept for the current transfer.
+     */
+    public final static int MAX_SAMPLES = 20;
+
     /** The cell owning this mover. Log messages are sent to it. */
     protected CellEndpoint  _cell;
 
@@ -192,6 +207,49 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
      */
     protected boolean      _inProgress;
 
+    /**
+     * Whether mode E senders adapt the number of streams and the
+     * socket buffer size to the measured throughput.
+     */
+    protected boolean      _adaptiveTuning;
+
+    /**
+     * Upper limit of the number of streams opened by adaptive tuning.
+     * The limit provided by the door applies too.
+     */
+    protected int          _maxStreams = 1;
+
+    /**
+     * Upper limit of the socket buffer size used by adaptive tuning.
+     */
+    protected int          _maxBufferSize;
+
+    /**
+     * Milliseconds between throughput samples and adaptive tuning
+     * decisions.
+     */
+    protected long         _tuningPeriod = DEFAULT_TUNING_PERIOD;
+
+    /**
+     * The mode of the current transfer.
+     */
+    protected volatile Mode _mode;
+
+    /**
+     * Throughput samples of the current transfer, oldest first.
+     */
+    private final Deque<String> _timeline = new ArrayDeque<>();
+
+    /**
+     * The time stamp of the last throughput sample.
+     */
+    private long _lastSampled;
+
+    /**
+     * The number of bytes transferred at the last throughput sample.
+     */
+    private long _bytesSampled;
+
     /**
      * Random number generator used when binding sockets.
      */
@@ -219,6 +277,18 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
                 _blockSize =
                         Integer.valueOf(args.getOpt("gsiftpBlockSize"));
             }
+
+            if (args.hasOption("ftpAdaptiveTuning")) {
+                _adaptiveTuning =
+                        Boolean.parseBoolean(args.getOpt("ftpAdaptiveTuning"));
+                _maxStreams =
+                        Integer.parseInt(args.getOpt("ftpAdaptiveTuningMaxStreams"));
+                _maxBufferSize =
+                        Integer.parseInt(args.getOpt("ftpAdaptiveTuningMaxBufferSize"));
+                _tuningPeriod =
+                        TimeUnit.valueOf(args.getOpt("ftpAdaptiveTuningPeriodUnit")).toMillis(
+                                Long.parseLong(args.getOpt("ftpAdaptiveTuningPeriod")));
+            }
         }
     }
 
@@ -279,7 +349,13 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
 
     @Override
     public String toString() {
-        return "SU=" + _spaceUsed + ";SA=" + _reservedSpace + ";S=" + _status;
+        String s = "SU=" + _spaceUsed + ";SA=" + _reservedSpace + ";S=" + _status;
+        synchronized (_timeline) {
+            if (!_timeline.isEmpty()) {
+                s += ";T=" + Joiner.on(',').join(_timeline);
+            }
+        }
+        return s;
     }
 
     /**
@@ -299,6 +375,12 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
         _reservedSpace    = 0;
         _spaceUsed        = 0;
         _status           = "None";
+        _mode             = mode;
+        _lastSampled      = System.currentTimeMillis();
+        _bytesSampled     = 0;
+        synchronized (_timeline) {
+            _timeline.clear();
+        }
         DigestThread digestThread = null;
 
         /* Startup the transfer. The transfer is performed on a single
@@ -555,6 +637,18 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
         }
         mode.setParallelism(parallelism);
 
+        /* Adaptive tuning is limited to senders connecting to the
+         * client or the door. The door may allow more streams than
+         * requested by the client.
+         */
+        if (_adaptiveTuning && mode instanceof ModeE && role == Role.Sender && !passive) {
+            int maxParallelism =
+                    Math.max(parallelism, Math.min(_maxStreams, gftpProtocolInfo.getMax()));
+            ((ModeE) mode).setAdaptiveTuning(maxParallelism,
+                                             Math.max(bufferSize, _maxBufferSize),
+                                             _tuningPeriod);
+        }
+
         /* Setup partial retrieve parameters. These settings have
          * already been checked by the door, but better safe than
          * sorry...
@@ -693,6 +787,7 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
         _blockLog.addBlock(position, size);
         _bytesTransferred += size;
         _lastTransferred = System.currentTimeMillis();
+        sample();
     }
 
     /** Part of the ConnectionMonitor interface. */
@@ -713,6 +808,36 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
         _blockLog.addBlock(position, size);
         _bytesTransferred += size;
         _lastTransferred = System.currentTimeMillis();
+        sample();
+    }
+
+    /**
+     * Adds a sample to the throughput timeline if a tuning period has
+     * passed since the last sample. A sample contains the time since
+     * the start of the transfer, the throughput since the last sample,
+     * the number of streams and the socket buffer size.
+     */
+    private void sample()
+    {
+        long elapsed = _lastTransferred - _lastSampled;
+        if (elapsed >= _tuningPeriod && elapsed > 0) {
+            double throughput =
+                    (1000.0 * (_bytesTransferred - _bytesSampled)) / (elapsed * 1024 * 1024);
+            int bufferSize = _mode.getBufferSize();
+            String sample =
+                    String.format("%ds=%.1fMB/s(%dx%s)",
+                                  (_lastTransferred - _transferStarted) / 1000,
+                                  throughput, _mode.getConnections(),
+                                  (bufferSize > 0) ? (bufferSize / 1024) + "k" : "auto");
+            synchronized (_timeline) {
+                if (_timeline.size() == MAX_SAMPLES) {
+                    _timeline.removeFirst();
+                }
+                _timeline.addLast(sample);
+            }
+            _lastSampled = _lastTransferred;
+            _bytesSampled = _bytesTransferred;
+        }
     }
 
     /**
@@ -0,0 +1,172 @@
+package diskCacheV111.doors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+
+import diskCacheV111.doors.LineBasedDoor.LineBasedInterpreter;
+
+import dmg.cells.nucleus.CDC;
+import dmg.cells.nucleus.CellCommandListener;
+import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellMessageReceiver;
+import dmg.cells.nucleus.CellMessageSender;
+import dmg.cells.nucleus.CellPath;
+import dmg.cells.services.login.LoginSessionContext;
+import dmg.util.StreamEngine;
+
+import org.dcache.util.Args;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class LineBasedSessionTest
+{
+    private CDC cdc;
+    private Socket socket;
+    private LoginSessionContext context;
+    private TestInterpreter interpreter;
+    private LineBasedSession session;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        cdc = CDC.reset("door-user-1", "domain");
+
+        socket = new Socket();
+        StreamEngine engine = mock(StreamEngine.class);
+        when(engine.getSocket()).thenReturn(socket);
+        when(engine.getInetAddress()).thenReturn(InetAddress.getLoopbackAddress());
+        when(engine.getWriter()).thenReturn(new StringWriter());
+
+        context = mock(LoginSessionContext.class);
+        when(context.getArgs()).thenReturn(new Args(""));
+        when(context.getDomainContext()).thenReturn(Collections.<String,Object>emptyMap());
+
+        interpreter = new TestInterpreter();
+        session = new LineBasedSession(interpreter, engine, mock(ExecutorService.class), context);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        socket.close();
+        cdc.close();
+    }
+
+    @Test
+    public void shouldInitialiseInterpreterWithContext()
+    {
+        assertThat(interpreter.isInitialised, is(true));
+        assertThat(interpreter.endpoint, is((CellEndpoint) context));
+    }
+
+    @Test
+    public void shouldReplyToCommandsAddressedToSession() throws Exception
+    {
+        CellMessage envelope = new CellMessage(new CellPath("door-user-1", "domain"), "hello");
+        envelope.getSourcePath().add("sender", "other");
+
+        session.messageArrived(envelope);
+
+        ArgumentCaptor<CellMessage> reply = ArgumentCaptor.forClass(CellMessage.class);
+        verify(context).sendMessage(reply.capture());
+        assertThat(reply.getValue().getMessageObject(), is((Serializable) "Hello world"));
+        assertThat(reply.getValue().getDestinationPath().getCurrent().getCellName(), is("sender"));
+    }
+
+    @Test
+    public void shouldDispatchMessagesToInterpreter() throws Exception
+    {
+        CellMessage envelope = new CellMessage(new CellPath("door-user-1", "domain"), new Greeting());
+        envelope.getSourcePath().add("sender", "other");
+
+        session.messageArrived(envelope);
+
+        ArgumentCaptor<CellMessage> reply = ArgumentCaptor.forClass(CellMessage.class);
+        verify(context).sendMessage(reply.capture());
+        assertThat(interpreter.greetings, is(1));
+        assertThat(reply.getValue().getMessageObject(), is((Serializable) "Welcome"));
+    }
+
+    public static class Greeting implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    public static class TestInterpreter implements LineBasedInterpreter,
+            CellCommandListener, CellMessageReceiver, CellMessageSender
+    {
+        boolean isInitialised;
+        CellEndpoint endpoint;
+        int greetings;
+
+        public static final String hh_hello = "# greets the caller";
+        public Object ac_hello(Args args)
+        {
+            return "Hello world";
+        }
+
+        public Object messageArrived(Greeting greeting)
+        {
+            greetings++;
+            return "Welcome";
+        }
+
+        @Override
+        public void setCellEndpoint(CellEndpoint endpoint)
+        {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void setWriter(Writer out)
+        {
+        }
+
+        @Override
+        public void execute(String cmd)
+        {
+        }
+
+        @Override
+        public void init()
+        {
+            isInitialised = true;
+        }
+
+        @Override
+        public void shutdown()
+        {
+        }
+
+        @Override
+        public void setRemoteAddress(InetSocketAddress remoteAddress)
+        {
+        }
+
+        @Override
+        public void setLocalAddress(InetSocketAddress localAddress)
+        {
+        }
+
+        @Override
+        public void setExecutor(Executor executor)
+        {
+        }
+    }
+}
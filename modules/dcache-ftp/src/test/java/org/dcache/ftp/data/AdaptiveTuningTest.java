@@ -0,0 +1,118 @@
+package org.dcache.ftp.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.dcache.ftp.data.AdaptiveTuning.Action;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class AdaptiveTuningTest
+{
+    private static final long PERIOD = 1000;
+
+    private AdaptiveTuning tuning;
+    private long now;
+
+    @Before
+    public void setUp()
+    {
+        tuning = new AdaptiveTuning(8, 4096, PERIOD);
+        now = 0;
+    }
+
+    /**
+     * Sends at the given rate for one period and returns the action
+     * taken at the end of the period.
+     */
+    private Action period(long bytesPerSecond, int bufferSize,
+                          int parallelism, boolean canAddStreams)
+    {
+        Action action = tuning.sent(now + PERIOD / 2, bytesPerSecond / 2,
+                                    bufferSize, parallelism, canAddStreams);
+        assertThat(action, is(Action.NONE));
+        now += PERIOD;
+        return tuning.sent(now, bytesPerSecond / 2,
+                           bufferSize, parallelism, canAddStreams);
+    }
+
+    private void startAndMeasureBaseline(long bytesPerSecond, int bufferSize,
+                                         int parallelism)
+    {
+        assertThat(tuning.sent(now, 0, bufferSize, parallelism, true),
+                   is(Action.NONE));
+        assertThat(period(bytesPerSecond, bufferSize, parallelism, true),
+                   is(Action.NONE));
+    }
+
+    @Test
+    public void shouldNotAdjustDuringWarmUp()
+    {
+        assertThat(tuning.sent(now, 0, 1024, 1, true), is(Action.NONE));
+        assertThat(period(1000, 1024, 1, true), is(Action.NONE));
+        assertThat(tuning.isConverged(), is(false));
+    }
+
+    @Test
+    public void shouldNotConvergeWhenBaselineIsSlowerThanWarmUp()
+    {
+        assertThat(tuning.sent(now, 0, 1024, 1, true), is(Action.NONE));
+        assertThat(period(1000000, 1024, 1, true), is(Action.NONE));
+        assertThat(period(1000, 1024, 1, true), is(Action.GROW_BUFFERS));
+    }
+
+    @Test
+    public void shouldGrowBuffersBeforeAddingStreams()
+    {
+        startAndMeasureBaseline(1000, 1024, 1);
+        assertThat(period(1000, 1024, 1, true), is(Action.GROW_BUFFERS));
+        assertThat(period(2000, 2048, 1, true), is(Action.GROW_BUFFERS));
+        assertThat(period(3000, 4096, 1, true), is(Action.ADD_STREAMS));
+        assertThat(period(6000, 4096, 2, true), is(Action.ADD_STREAMS));
+    }
+
+    @Test
+    public void shouldAddStreamsWhenBuffersAreTunedByOperatingSystem()
+    {
+        startAndMeasureBaseline(1000, 0, 1);
+        assertThat(period(1000, 0, 1, true), is(Action.ADD_STREAMS));
+    }
+
+    @Test
+    public void shouldConvergeWhenAdjustmentDoesNotPayOff()
+    {
+        startAndMeasureBaseline(1000, 1024, 1);
+        assertThat(period(1000, 1024, 1, true), is(Action.GROW_BUFFERS));
+        assertThat(period(1090, 2048, 1, true), is(Action.CONVERGED));
+        assertThat(tuning.isConverged(), is(true));
+        assertThat(period(100000, 2048, 1, true), is(Action.NONE));
+    }
+
+    @Test
+    public void shouldNotAddStreamsWhenNotAllowed()
+    {
+        startAndMeasureBaseline(1000, 0, 1);
+        assertThat(period(1000, 0, 1, false), is(Action.CONVERGED));
+    }
+
+    @Test
+    public void shouldNotExceedMaximumParallelism()
+    {
+        startAndMeasureBaseline(1000, 4096, 8);
+        assertThat(period(1000, 4096, 8, true), is(Action.CONVERGED));
+    }
+
+    @Test
+    public void shouldNotExceedMaximumBufferSize()
+    {
+        startAndMeasureBaseline(1000, 8192, 8);
+        assertThat(period(1000, 8192, 8, true), is(Action.CONVERGED));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectZeroPeriod()
+    {
+        new AdaptiveTuning(8, 4096, 0);
+    }
+}
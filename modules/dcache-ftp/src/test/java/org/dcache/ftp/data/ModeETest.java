@@ -0,0 +1,145 @@
+package org.dcache.ftp.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.dcache.pool.repository.FileRepositoryChannel;
+import org.dcache.pool.repository.RepositoryChannel;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ModeETest
+{
+    private static final int BLOCK_SIZE = 65536;
+
+    private static final ConnectionMonitor MONITOR = new ConnectionMonitor()
+    {
+        @Override
+        public void receivedBlock(long position, long size)
+        {
+        }
+
+        @Override
+        public void sentBlock(long position, long size)
+        {
+        }
+
+        @Override
+        public void preallocate(long position)
+        {
+        }
+    };
+
+    private static final ErrorListener LISTENER = new ErrorListener()
+    {
+        @Override
+        public void say(String msg)
+        {
+        }
+
+        @Override
+        public void esay(String msg)
+        {
+        }
+
+        @Override
+        public void esay(Throwable t)
+        {
+        }
+    };
+
+    private File source;
+    private File target;
+    private byte[] data;
+    private ServerSocketChannel listener;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        data = new byte[4 * 1024 * 1024];
+        new Random(42).nextBytes(data);
+        source = File.createTempFile("mode-e", ".source");
+        target = File.createTempFile("mode-e", ".target");
+        Files.write(source.toPath(), data);
+
+        listener = ServerSocketChannel.open();
+        listener.socket().bind(new InetSocketAddress("localhost", 0));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        listener.close();
+        Files.deleteIfExists(source.toPath());
+        Files.deleteIfExists(target.toPath());
+    }
+
+    @Test
+    public void shouldIncludeAddedStreamsInEodCount() throws Exception
+    {
+        try (RepositoryChannel in = new FileRepositoryChannel(source, "r");
+             RepositoryChannel out = new FileRepositoryChannel(target, "rw")) {
+            final ModeE receiver = new ModeE(Role.Receiver, out, MONITOR, BLOCK_SIZE);
+            receiver.setPassive(listener);
+            final Multiplexer receiverMultiplexer = new Multiplexer(LISTENER);
+            receiverMultiplexer.add(receiver);
+            final AtomicReference<Exception> failure = new AtomicReference<>();
+            Thread thread = new Thread("receiver") {
+                @Override
+                public void run()
+                {
+                    try {
+                        receiverMultiplexer.loop();
+                    } catch (Exception e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            thread.start();
+
+            ModeE sender = new ModeE(Role.Sender, in, MONITOR, BLOCK_SIZE);
+            sender.setActive(new InetSocketAddress("localhost", listener.socket().getLocalPort()));
+            sender.setAdaptiveTuning(new AdaptiveTuning(2, 0, 1) {
+                private boolean _isAdded;
+
+                @Override
+                Action sent(long now, long bytes, int bufferSize,
+                            int parallelism, boolean canAddStreams)
+                {
+                    if (_isAdded) {
+                        return Action.NONE;
+                    }
+                    _isAdded = true;
+                    return Action.ADD_STREAMS;
+                }
+            });
+            Multiplexer senderMultiplexer = new Multiplexer(LISTENER);
+            try {
+                senderMultiplexer.add(sender);
+                senderMultiplexer.loop();
+            } finally {
+                senderMultiplexer.close();
+            }
+
+            thread.join(10000);
+            receiverMultiplexer.close();
+
+            assertThat(thread.isAlive(), is(false));
+            assertThat(failure.get(), is(nullValue()));
+            assertThat(sender._opened, is(2));
+            assertThat(receiver._opened, is(2));
+        }
+
+        assertThat(Files.readAllBytes(target.toPath()), is(data));
+    }
+}
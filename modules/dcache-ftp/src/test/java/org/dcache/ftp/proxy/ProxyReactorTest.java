@@ -0,0 +1,105 @@
+package org.dcache.ftp.proxy;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ProxyReactorTest
+{
+    @Test
+    public void sharedReactorShouldLiveWhileReferenced()
+    {
+        ProxyReactor first = ProxyReactor.acquire();
+        ProxyReactor second = ProxyReactor.acquire();
+        assertThat(second, is(sameInstance(first)));
+
+        ProxyReactor.release();
+        ProxyReactor.release();
+
+        ProxyReactor third = ProxyReactor.acquire();
+        try {
+            assertThat(third, is(not(sameInstance(first))));
+        } finally {
+            ProxyReactor.release();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releaseWithoutAcquireShouldFail()
+    {
+        ProxyReactor.release();
+    }
+
+    @Test
+    public void shouldExecuteTasksOnEventLoop() throws Exception
+    {
+        ProxyReactor reactor = new ProxyReactor(1);
+        try {
+            final CountDownLatch executed = new CountDownLatch(1);
+            reactor.next().execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    executed.countDown();
+                }
+            });
+            assertThat(executed.await(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            reactor.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdownShouldFailRegisteredHandlers() throws Exception
+    {
+        ProxyReactor reactor = new ProxyReactor(1);
+        final ProxyReactor.EventLoop loop = reactor.next();
+        final CountDownLatch failed = new CountDownLatch(1);
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        try (final ServerSocketChannel channel = ServerSocketChannel.open()) {
+            channel.configureBlocking(false);
+            final CountDownLatch registered = new CountDownLatch(1);
+            loop.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        loop.register(channel, SelectionKey.OP_ACCEPT, new ProxyReactor.Handler()
+                        {
+                            @Override
+                            public void handle(SelectionKey key)
+                            {
+                            }
+
+                            @Override
+                            public void failed(Exception e)
+                            {
+                                error.set(e);
+                                failed.countDown();
+                            }
+                        });
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    registered.countDown();
+                }
+            });
+            assertThat(registered.await(10, TimeUnit.SECONDS), is(true));
+
+            reactor.shutdown();
+
+            assertThat(failed.await(10, TimeUnit.SECONDS), is(true));
+            assertThat(error.get(), is(instanceOf(IOException.class)));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.dcache.ftp.proxy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SocketAdapterTest
+{
+    private ProxyReactor reactor;
+    private ServerSocketChannel clientListener;
+    private SocketAdapter adapter;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        reactor = new ProxyReactor(2);
+        clientListener = ServerSocketChannel.open();
+        clientListener.socket().bind(new InetSocketAddress("localhost", 0));
+        adapter = new SocketAdapter(clientListener, reactor);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        adapter.close();
+        clientListener.close();
+        reactor.shutdown();
+    }
+
+    @Test
+    public void shouldRelayModeSUpload() throws Exception
+    {
+        byte[] data = randomData(1_000_000);
+        adapter.setModeE(false);
+        adapter.setDirClientToPool();
+        adapter.start();
+
+        try (Socket pool = connect(adapter.getPoolListenerPort());
+             Socket client = connect(adapter.getClientListenerPort())) {
+            client.getOutputStream().write(data);
+            client.close();
+
+            assertThat(readFully(pool.getInputStream()), is(data));
+        }
+        adapter.join(10000);
+
+        assertThat(adapter.isAlive(), is(false));
+        assertThat(adapter.hasError(), is(false));
+    }
+
+    @Test
+    public void shouldRelayModeSDownload() throws Exception
+    {
+        byte[] data = randomData(300_000);
+        adapter.setModeE(false);
+        adapter.setDirPoolToClient();
+        adapter.start();
+
+        try (Socket client = connect(adapter.getClientListenerPort());
+             Socket pool = connect(adapter.getPoolListenerPort())) {
+            pool.getOutputStream().write(data);
+            pool.close();
+
+            assertThat(readFully(client.getInputStream()), is(data));
+        }
+        adapter.join(10000);
+
+        assertThat(adapter.hasError(), is(false));
+    }
+
+    @Test
+    public void shouldMergeModeEStreams() throws Exception
+    {
+        byte[] data = randomData(500_000);
+        adapter.setModeE(true);
+        adapter.setMaxBlockSize(65536);
+        adapter.setDirClientToPool();
+        adapter.start();
+
+        try (Socket pool = connect(adapter.getPoolListenerPort());
+             Socket first = connect(adapter.getClientListenerPort());
+             Socket second = connect(adapter.getClientListenerPort())) {
+            DataOutputStream out1 = new DataOutputStream(first.getOutputStream());
+            DataOutputStream out2 = new DataOutputStream(second.getOutputStream());
+            writeBlock(out1, 0, data, 0, 200_000);
+            writeBlock(out2, 0, data, 200_000, 300_000);
+            writeBlock(out1, EDataBlockNio.EOF_DESCRIPTOR, data, 0, 0, 2);
+            writeBlock(out1, EDataBlockNio.EOD_DESCRIPTOR, data, 0, 0);
+            writeBlock(out2, EDataBlockNio.EOD_DESCRIPTOR, data, 0, 0);
+            out1.flush();
+            out2.flush();
+
+            byte[] received = new byte[data.length];
+            DataInputStream in = new DataInputStream(pool.getInputStream());
+            int eof = 0;
+            int eod = 0;
+            while (eod == 0) {
+                int descriptors = in.readUnsignedByte();
+                long count = in.readLong();
+                long offset = in.readLong();
+                if ((descriptors & EDataBlockNio.EOF_DESCRIPTOR) != 0) {
+                    eof++;
+                    assertThat(offset, is(1L));
+                } else {
+                    assertThat(count, is(lessThanOrEqualTo(65536L)));
+                    in.readFully(received, (int) offset, (int) count);
+                }
+                if ((descriptors & EDataBlockNio.EOD_DESCRIPTOR) != 0) {
+                    eod++;
+                }
+            }
+
+            assertThat(eof, is(1));
+            assertThat(received, is(data));
+        }
+        adapter.join(10000);
+
+        assertThat(adapter.hasError(), is(false));
+    }
+
+    @Test
+    public void shouldFailModeEStreamClosedBeforeEod() throws Exception
+    {
+        byte[] data = randomData(1000);
+        adapter.setModeE(true);
+        adapter.setDirClientToPool();
+        adapter.start();
+
+        try (Socket pool = connect(adapter.getPoolListenerPort());
+             Socket client = connect(adapter.getClientListenerPort())) {
+            DataOutputStream out = new DataOutputStream(client.getOutputStream());
+            writeBlock(out, 0, data, 0, data.length);
+            writeBlock(out, EDataBlockNio.EOF_DESCRIPTOR, data, 0, 0, 1);
+            out.flush();
+            client.close();
+
+            adapter.join(10000);
+        }
+
+        assertThat(adapter.hasError(), is(true));
+    }
+
+    private static Socket connect(int port) throws IOException
+    {
+        return new Socket("localhost", port);
+    }
+
+    private static byte[] randomData(int size)
+    {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeBlock(DataOutputStream out, int descriptors,
+                                   byte[] data, int offset, int count)
+            throws IOException
+    {
+        writeBlock(out, descriptors, data, offset, count, offset);
+    }
+
+    private static void writeBlock(DataOutputStream out, int descriptors,
+                                   byte[] data, int offset, int count, long position)
+            throws IOException
+    {
+        out.writeByte(descriptors);
+        out.writeLong(count);
+        out.writeLong(position);
+        out.write(Arrays.copyOfRange(data, offset, offset + count));
+    }
+}
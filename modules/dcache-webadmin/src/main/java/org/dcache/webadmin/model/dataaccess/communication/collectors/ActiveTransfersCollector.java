@@ -13,6 +13,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import diskCacheV111.util.CacheException;
 import diskCacheV111.vehicles.IoDoorEntry;
@@ -26,15 +27,43 @@ import dmg.cells.services.login.LoginManagerChildrenInfo;
 
 import org.dcache.admin.webadmin.datacollector.datatypes.MoverInfo;
 import org.dcache.cells.CellStub;
+import org.dcache.services.httpd.ActiveMoverTable;
 import org.dcache.util.backoff.IBackoffAlgorithm.Status;
 import org.dcache.webadmin.controller.util.BeanDataMapper;
 import org.dcache.webadmin.model.dataaccess.communication.ContextPaths;
 import org.dcache.webadmin.view.beans.ActiveTransfersBean;
 
+/**
+ * Collects the transfers of all doors and joins them with the movers of the
+ * pools.
+ *
+ * Movers are looked up in the ActiveMoverTable of the httpd service, which
+ * is kept up to date by the mover events of the pools. Pools are only asked
+ * for a full listing of their movers if the table is not in sync for that
+ * pool, or if the last listing is older than the synchronisation period.
+ */
 public class ActiveTransfersCollector extends Collector
 {
     private static final Logger _log = LoggerFactory.getLogger(ActiveTransfersCollector.class);
     private String[] _loginBrokerNames;
+    private ActiveMoverTable _moverTable;
+    private long _synchronisationPeriod = TimeUnit.MINUTES.toMillis(5);
+    private TimeUnit _synchronisationPeriodUnit = TimeUnit.MILLISECONDS;
+
+    public void setActiveMoverTable(ActiveMoverTable table)
+    {
+        _moverTable = table;
+    }
+
+    public void setSynchronisationPeriod(long period)
+    {
+        _synchronisationPeriod = period;
+    }
+
+    public void setSynchronisationPeriodUnit(TimeUnit unit)
+    {
+        _synchronisationPeriodUnit = unit;
+    }
 
     public void setLoginBrokerNames(String loginBrokerNames)
     {
@@ -45,7 +74,7 @@ public class ActiveTransfersCollector extends Collector
     @Override
     public Status call() throws InterruptedException
     {
-        _log.debug("Asking doors for 'doorClientList' (one by one)");
+        _log.debug("Asking doors for 'doorClientList'");
 
         /* Query login brokers for doors. */
         Set<CellAddressCore> doors = getDoors();
@@ -138,26 +167,43 @@ public class ActiveTransfersCollector extends Collector
             }
         }
 
-        /* Query mover info from each pool. */
-        Collection<ListenableFuture<IoJobInfo[]>> jobs = new ArrayList<>(pools.size());
+        /* Query mover info from pools not in sync with the mover table. */
+        long maxAge = _synchronisationPeriodUnit.toMillis(_synchronisationPeriod);
+        Map<String,ListenableFuture<IoJobInfo[]>> jobs = new HashMap<>();
         for (String poolName : pools) {
-            _log.debug("Asking pool {} for movers", poolName);
-            jobs.add(_cellStub.send(new CellPath(poolName), "mover ls -binary", IoJobInfo[].class));
+            if (_moverTable.needsSynchronisation(poolName, maxAge)) {
+                _log.debug("Asking pool {} for movers", poolName);
+                _moverTable.beginSynchronisation(poolName);
+                jobs.put(poolName, _cellStub.send(new CellPath(poolName), "mover ls -binary", IoJobInfo[].class));
+            }
         }
 
-        /* Inject the result info the mover info. */
-        for (ListenableFuture<IoJobInfo[]> future : jobs) {
+        for (Map.Entry<String,ListenableFuture<IoJobInfo[]>> job : jobs.entrySet()) {
+            boolean isSynchronised = false;
             try {
-                IoJobInfo[] infos = CellStub.get(future);
-                for (IoJobInfo info : infos) {
-                    String client = info.getClientName() + "#" + info.getClientId();
-                    MoverInfo mover = moverInfos.get(client);
-                    if (mover != null) {
-                        mover.setIoJobInfo(info);
-                    }
-                }
+                _moverTable.synchronise(job.getKey(), CellStub.get(job.getValue()));
+                isSynchronised = true;
             } catch (CacheException e) {
                 _log.debug("Failed to query pool: {}", e.toString());
+            } finally {
+                if (!isSynchronised) {
+                    _moverTable.abortSynchronisation(job.getKey());
+                }
+            }
+        }
+
+        /* Pools without events for several periods have most likely been
+         * removed; they are listed again should they reappear.
+         */
+        _moverTable.removeInactivePools(2 * maxAge);
+
+        /* Inject the movers into the mover info. */
+        for (MoverInfo mover : moverInfos.values()) {
+            IoDoorInfo door = mover.getIoDoorInfo();
+            IoJobInfo info = _moverTable.getMover(door.getCellName() + "@" + door.getDomainName(),
+                                                  mover.getIoDoorEntry().getSerialId());
+            if (info != null) {
+                mover.setIoJobInfo(info);
             }
         }
 
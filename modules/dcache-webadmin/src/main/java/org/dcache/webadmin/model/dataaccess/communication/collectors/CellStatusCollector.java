@@ -5,6 +5,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,6 +27,7 @@ import dmg.cells.nucleus.CellPath;
 import dmg.cells.services.login.LoginBrokerInfo;
 
 import org.dcache.admin.webadmin.datacollector.datatypes.CellStatus;
+import org.dcache.cells.CellStub;
 import org.dcache.util.backoff.IBackoffAlgorithm.Status;
 import org.dcache.webadmin.model.dataaccess.communication.ContextPaths;
 
@@ -44,13 +46,17 @@ public class CellStatusCollector extends Collector {
     private Map<CellAddressCore, CellStatus> _statusTargets = new HashMap<>();
     private static final Logger _log = LoggerFactory.getLogger(CellStatusCollector.class);
 
-    private Set<CellAddressCore> getDoorNamesFromBroker(String loginBrokerName)
-            throws InterruptedException {
+    private ListenableFuture<LoginBrokerInfo[]> requestDoorNamesFromBroker(String loginBrokerName) {
         _log.debug("Requesting doorInfo from LoginBroker {}", loginBrokerName);
+        return _cellStub.send(new CellPath(loginBrokerName), "ls -binary -all", LoginBrokerInfo[].class);
+    }
+
+    private Set<CellAddressCore> getDoorNamesFromBroker(String loginBrokerName,
+                                                        ListenableFuture<LoginBrokerInfo[]> future)
+            throws InterruptedException {
         Set<CellAddressCore> newDoors = new HashSet<>();
         try {
-            LoginBrokerInfo[] infos = _cellStub.sendAndWait(new CellPath(loginBrokerName),
-                    "ls -binary -all", LoginBrokerInfo[].class);
+            LoginBrokerInfo[] infos = CellStub.get(future);
             for (LoginBrokerInfo info : infos) {
                 newDoors.add(new CellAddressCore(info.getCellName(), info.getDomainName()));
             }
@@ -61,13 +67,16 @@ public class CellStatusCollector extends Collector {
         return newDoors;
     }
 
-    private Set<CellAddressCore> getPoolCells() throws InterruptedException {
+    private ListenableFuture<PoolManagerCellInfo> requestPoolCells() {
         _log.debug("Requesting Pools from {}", _poolManagerName);
+        return _cellStub.send(new CellPath(_poolManagerName), "xgetcellinfo", PoolManagerCellInfo.class);
+    }
+
+    private Set<CellAddressCore> getPoolCells(ListenableFuture<PoolManagerCellInfo> future)
+            throws InterruptedException {
         Set<CellAddressCore> pools;
         try {
-            PoolManagerCellInfo info = _cellStub.sendAndWait(new CellPath(_poolManagerName),
-                    "xgetcellinfo",
-                    PoolManagerCellInfo.class);
+            PoolManagerCellInfo info = CellStub.get(future);
             pools = info.getPoolCells();
             _log.debug("Pools found: {}", pools);
         } catch (CacheException ex) {
@@ -83,18 +92,23 @@ public class CellStatusCollector extends Collector {
         cellNames.add(new CellAddressCore(_gPlazmaName));
     }
 
-    private void addLoginBrokerTargets(Set<CellAddressCore> targetCells, String broker)
-            throws InterruptedException {
-        targetCells.addAll(getDoorNamesFromBroker(broker));
-        targetCells.add(new CellAddressCore(broker));
-    }
-
+    /**
+     * Queries the login brokers and the pool manager concurrently for
+     * the doors and pools to query.
+     */
     private Set<CellAddressCore> getTargetCells() throws InterruptedException {
-        Set<CellAddressCore> targetCells = new HashSet<>();
+        Map<String, ListenableFuture<LoginBrokerInfo[]>> doors = new HashMap<>();
         for (String broker : _loginBrokerNames) {
-            addLoginBrokerTargets(targetCells, broker);
+            doors.put(broker, requestDoorNamesFromBroker(broker));
+        }
+        ListenableFuture<PoolManagerCellInfo> pools = requestPoolCells();
+
+        Set<CellAddressCore> targetCells = new HashSet<>();
+        for (Map.Entry<String, ListenableFuture<LoginBrokerInfo[]>> broker : doors.entrySet()) {
+            targetCells.addAll(getDoorNamesFromBroker(broker.getKey(), broker.getValue()));
+            targetCells.add(new CellAddressCore(broker.getKey()));
         }
-        targetCells.addAll(getPoolCells());
+        targetCells.addAll(getPoolCells(pools));
         addStandardNames(targetCells);
         return targetCells;
     }
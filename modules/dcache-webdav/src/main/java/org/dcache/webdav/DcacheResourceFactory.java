@@ -79,6 +79,7 @@ import org.dcache.cells.CellStub;
 import org.dcache.missingfiles.AlwaysFailMissingFileStrategy;
 import org.dcache.missingfiles.MissingFileStrategy;
 import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.FileAttributesCache;
 import org.dcache.util.Args;
 import org.dcache.util.PingMoversTask;
 import org.dcache.util.RedirectedTransfer;
@@ -159,6 +160,7 @@ public class DcacheResourceFactory
     private CellStub _poolManagerStub;
     private CellStub _billingStub;
     private PnfsHandler _pnfs;
+    private FileAttributesCache _attributesCache;
     private String _ioQueue;
     private FsPath _rootPath = new FsPath();
     private List<FsPath> _allowedPaths =
@@ -414,6 +416,18 @@ public class DcacheResourceFactory
     public void setPnfsStub(CellStub stub)
     {
         _pnfs = new PnfsHandler(stub);
+        _pnfs.setFileAttributesCache(_attributesCache);
+    }
+
+    /**
+     * Sets the cache for file attributes looked up in PnfsManager.
+     */
+    public void setFileAttributesCache(FileAttributesCache cache)
+    {
+        _attributesCache = cache;
+        if (_pnfs != null) {
+            _pnfs.setFileAttributesCache(cache);
+        }
     }
 
     /**
@@ -144,6 +144,14 @@ public class AbstractNameSpaceProvider
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void list(Subject subject, String path, Glob glob, String startAfter,
+                     Range<Integer> range, Set<FileAttribute> attrs, ListHandler handler)
+        throws CacheException
+    {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public FsPath createUploadPath(Subject subject, FsPath path, int uid, int gid, int mode,
                                    Long size,
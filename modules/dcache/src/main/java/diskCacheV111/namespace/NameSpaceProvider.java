@@ -216,6 +216,30 @@ public interface NameSpaceProvider
               Set<FileAttribute> attrs, ListHandler handler)
         throws CacheException;
 
+    /**
+     * Lists the entries of a directory in the order of their names,
+     * starting with the first entry whose name follows
+     * <code>startAfter</code>.
+     *
+     * Unlike a listing bracketed by a range alone, this allows a large
+     * directory to be listed in pages without the entries of earlier
+     * pages being read again: the next page starts after the last
+     * name of the previous page. The range is applied to the entries
+     * following <code>startAfter</code>.
+     *
+     * @param subject Subject of user who invoked this method
+     * @param path Path to directory to list
+     * @param glob Pattern to limit the result set; may be null
+     * @param startAfter Name after which to start; the empty string
+     *                   starts with the first entry
+     * @param range The range of entries to return; may be null
+     * @param attrs The file attributes to query for each entry
+     * @param handler Handler called for each entry
+     */
+    void list(Subject subject, String path, Glob glob, String startAfter,
+              Range<Integer> range, Set<FileAttribute> attrs, ListHandler handler)
+        throws CacheException;
+
     /**
      * Set up a temporary upload location for a file.
      *
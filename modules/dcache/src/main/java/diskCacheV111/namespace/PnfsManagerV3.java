@@ -23,6 +23,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.ChecksumFactory;
@@ -80,7 +81,9 @@ import org.dcache.util.ChecksumType;
 import org.dcache.util.MathUtils;
 import org.dcache.util.PrefixMap;
 import org.dcache.vehicles.FileAttributes;
+import org.dcache.vehicles.PnfsBatchMessage;
 import org.dcache.vehicles.PnfsCreateSymLinkMessage;
+import org.dcache.vehicles.PnfsEntryModifiedMessage;
 import org.dcache.vehicles.PnfsGetFileAttributes;
 import org.dcache.vehicles.PnfsListDirectoryMessage;
 import org.dcache.vehicles.PnfsRemoveChecksumMessage;
@@ -158,6 +161,7 @@ public class PnfsManagerV3
 
     private CellPath _cacheModificationRelay;
     private CellPath _pnfsDeleteNotificationRelay;
+    private CellPath _namespaceEventDestination;
 
     private PermissionHandler _permissionHandler;
     private NameSpaceProvider _nameSpaceProvider;
@@ -226,6 +230,18 @@ public class PnfsManagerV3
                   (_cacheModificationRelay == null) ? "NONE" : _cacheModificationRelay.toString());
     }
 
+    /**
+     * Sets the address to which a PnfsEntryModifiedMessage is sent whenever
+     * a name space entry is modified. Doors caching file attributes
+     * subscribe to these notifications. An empty address disables the
+     * notifications.
+     */
+    public void setNamespaceEventDestination(String path)
+    {
+        _namespaceEventDestination =
+            Strings.isNullOrEmpty(path) ? null : new CellPath(path);
+    }
+
     @Required
     public void setPnfsDeleteNotificationRelay(String path)
     {
@@ -1466,11 +1482,21 @@ public class PnfsManagerV3
             ListHandlerImpl handler =
                 new ListHandlerImpl(source, envelope.getUOID(),
                                     msg, initialDelay, delay);
-            _nameSpaceProvider.list(msg.getSubject(), path,
-                                    msg.getPattern(),
-                                    msg.getRange(),
-                                    msg.getRequestedAttributes(),
-                                    handler);
+            if (msg.getStartAfter() == null) {
+                _nameSpaceProvider.list(msg.getSubject(), path,
+                                        msg.getPattern(),
+                                        msg.getRange(),
+                                        msg.getRequestedAttributes(),
+                                        handler);
+            } else {
+                msg.setStartAfterHonoured(true);
+                _nameSpaceProvider.list(msg.getSubject(), path,
+                                        msg.getPattern(),
+                                        msg.getStartAfter(),
+                                        msg.getRange(),
+                                        msg.getRequestedAttributes(),
+                                        handler);
+            }
             msg.setSucceeded(handler.getMessageCount() + 1);
         } catch (FileNotFoundCacheException | NotDirCacheException e) {
             msg.setFailed(e.getRc(), e.getMessage());
@@ -1525,6 +1551,9 @@ public class PnfsManagerV3
                                Thread.currentThread().getName()+" : "+
                                processException );
                 } finally {
+                    if (message instanceof BatchEntry) {
+                        ((BatchEntry) message).done();
+                    }
                     CDC.clearMessageContext();
                 }
             }
@@ -1549,6 +1578,10 @@ public class PnfsManagerV3
                         _foldedCounters.incrementRequests(message.getClass());
 
                         i.remove();
+                        if (envelope instanceof BatchEntry) {
+                            ((BatchEntry) envelope).done();
+                            continue;
+                        }
                         envelope.revertDirection();
 
                         try {
@@ -1582,8 +1615,92 @@ public class PnfsManagerV3
         }
     }
 
+    /**
+     * The envelope of a message of a PnfsBatchMessage. Entries are queued
+     * like individually received messages, but instead of replying to an
+     * entry, the batch is replied to once all its entries are done.
+     */
+    private class BatchEntry extends CellMessage
+    {
+        private static final long serialVersionUID = 2405375036734958087L;
+
+        private final Batch _batch;
+
+        BatchEntry(Batch batch, PnfsMessage message)
+        {
+            super(new CellPath(getCellName(), getCellDomainName()), message);
+            _batch = batch;
+            addSourceAddress(batch.getEnvelope().getSourceAddress());
+            setSession(batch.getEnvelope().getSession());
+            setTtl(batch.getEnvelope().getTtl());
+        }
+
+        void done()
+        {
+            _batch.done();
+        }
+    }
+
+    private class Batch
+    {
+        private final CellMessage _envelope;
+        private final AtomicInteger _remaining;
+
+        Batch(CellMessage envelope, int size)
+        {
+            _envelope = envelope;
+            _remaining = new AtomicInteger(size);
+        }
+
+        CellMessage getEnvelope()
+        {
+            return _envelope;
+        }
+
+        void done()
+        {
+            if (_remaining.decrementAndGet() == 0) {
+                _envelope.revertDirection();
+                try {
+                    sendMessage(_envelope);
+                } catch (NoRouteToCellException e) {
+                    _log.warn("Failed to send reply: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public void messageArrived(CellMessage envelope, PnfsBatchMessage message)
+        throws CacheException
+    {
+        List<PnfsMessage> messages = message.getMessages();
+        for (PnfsMessage entry : messages) {
+            if (entry instanceof PnfsBatchMessage || entry instanceof PnfsListDirectoryMessage) {
+                throw new InvalidMessageCacheException("Unsupported message in batch: " +
+                                                       entry.getClass().getSimpleName());
+            }
+        }
+
+        Batch batch = new Batch(envelope, messages.size());
+        for (PnfsMessage entry : messages) {
+            entry.setReplyRequired(false);
+            try {
+                queue(new BatchEntry(batch, entry), entry);
+            } catch (CacheException e) {
+                entry.setFailed(e.getRc(), e.getMessage());
+                batch.done();
+            }
+        }
+    }
+
     public void messageArrived(CellMessage envelope, PnfsMessage message)
         throws CacheException
+    {
+        queue(envelope, message);
+    }
+
+    private void queue(CellMessage envelope, PnfsMessage message)
+        throws CacheException
     {
         PnfsId pnfsId = message.getPnfsId();
         String path = message.getPnfsPath();
@@ -1656,6 +1773,10 @@ public class PnfsManagerV3
     {
         long ctime = System.currentTimeMillis();
 
+        /* Processing replaces the attributes of the request. */
+        boolean isPermissionChange = pnfsMessage instanceof PnfsSetFileAttributes &&
+                ((PnfsSetFileAttributes) pnfsMessage).isPermissionChange();
+
         if (pnfsMessage instanceof PnfsAddCacheLocationMessage){
             addCacheLocation((PnfsAddCacheLocationMessage)pnfsMessage);
         }
@@ -1723,6 +1844,10 @@ public class PnfsManagerV3
             _log.error("Inconsistent message " + pnfsMessage.getClass() + " received form " + message.getSourcePath() );
         }
 
+        if (pnfsMessage.getReturnCode() == 0) {
+            notifyModification(pnfsMessage, isPermissionChange);
+        }
+
         long duration = System.currentTimeMillis() - ctime;
         _gauges.update(pnfsMessage.getClass(), duration);
         String logMsg = pnfsMessage.getClass() + " processed in " + duration + " ms";
@@ -1744,6 +1869,40 @@ public class PnfsManagerV3
         }
     }
 
+    private void notifyModification(PnfsMessage message, boolean isPermissionChange)
+    {
+        if (_namespaceEventDestination == null) {
+            return;
+        }
+
+        PnfsEntryModifiedMessage event;
+        if (message instanceof PnfsRenameMessage) {
+            event = new PnfsEntryModifiedMessage(message.getPnfsId(), message.getPnfsPath(),
+                                                 ((PnfsRenameMessage) message).newName());
+        } else if (message instanceof PnfsCommitUpload) {
+            event = new PnfsEntryModifiedMessage(message.getPnfsId(),
+                                                 ((PnfsCommitUpload) message).getPath().toString());
+        } else if (message instanceof PnfsSetFileAttributes ||
+                   message instanceof PnfsDeleteEntryMessage ||
+                   message instanceof PnfsSetChecksumMessage ||
+                   message instanceof PnfsRemoveChecksumMessage ||
+                   message instanceof PoolFileFlushedMessage ||
+                   (message instanceof PnfsFlagMessage &&
+                    ((PnfsFlagMessage) message).getOperation() != PnfsFlagMessage.FlagOperation.GET)) {
+            event = new PnfsEntryModifiedMessage(message.getPnfsId(), message.getPnfsPath());
+            event.setPermissionChange(isPermissionChange);
+        } else {
+            return;
+        }
+
+        try {
+            sendMessage(new CellMessage(_namespaceEventDestination, event));
+        } catch (NoRouteToCellException e) {
+            _log.debug("Failed to send {} to {}: {}", event,
+                       _namespaceEventDestination, e.getMessage());
+        }
+    }
+
     public void processFlushMessage(PoolFileFlushedMessage pnfsMessage)
     {
         try {
@@ -1906,9 +2065,9 @@ public class PnfsManagerV3
     private void sendTimeout(CellMessage envelope, String error)
     {
         Message msg = (Message) envelope.getMessageObject();
+        msg.setFailed(CacheException.TIMEOUT, error);
         if (msg.getReplyRequired()) {
             try {
-                msg.setFailed(CacheException.TIMEOUT, error);
                 envelope.revertDirection();
                 sendMessage(envelope);
             } catch (NoRouteToCellException e) {
@@ -17,6 +17,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 import diskCacheV111.pools.CostCalculatable;
@@ -61,20 +63,22 @@ public class CostModuleV1
 
     private static final long serialVersionUID = -267023006449629909L;
 
-    private final Map<String, Entry> _hash = new HashMap<>() ;
-    private boolean _isActive = true ;
-    private boolean _update = true ;
-    private boolean _magic = true ;
-    private boolean _debug;
-    private boolean _cachedPercentileCostCutIsValid;
-    private double _cachedPercentileCostCut;
-    private double _cachedPercentileFraction;
+    private final ConcurrentMap<String, Entry> _hash = new ConcurrentHashMap<>() ;
+    private volatile boolean _isActive = true ;
+    private volatile boolean _update = true ;
+    private volatile boolean _magic = true ;
+    private volatile boolean _debug;
+    private transient CostDistribution _costs = new CostDistribution();
     private transient CellMessageDispatcher _handlers =
         new CellMessageDispatcher("messageToForward");
 
 
     /**
      * Information about some specific pool.
+     *
+     * Entries are never modified once published in the map; updates
+     * replace the entry with one holding a modified copy of the cost
+     * information. Readers thus always see a consistent snapshot.
      */
    private static class Entry implements Serializable
    {
@@ -82,7 +86,8 @@ public class CostModuleV1
 
        private final long timestamp;
        private final PoolCostInfo _info;
-       private double _fakeCpu = -1.0;
+       private final double _performanceCost;
+       private volatile double _fakeCpu = -1.0;
        private final ImmutableMap<String,String> _tagMap;
        private final CellAddressCore _address;
 
@@ -91,12 +96,27 @@ public class CostModuleV1
            timestamp = System.currentTimeMillis();
            _address = address;
            _info = info;
+           _performanceCost = CostModuleV1.getPerformanceCost(info);
            _tagMap =
                (tagMap == null)
                ? ImmutableMap.<String,String>of()
                : ImmutableMap.copyOf(tagMap);
        }
 
+       /**
+        * Creates an entry like {@code entry}, but with modified cost
+        * information.
+        */
+       public Entry(Entry entry, PoolCostInfo info)
+       {
+           timestamp = entry.timestamp;
+           _address = entry._address;
+           _tagMap = entry._tagMap;
+           _fakeCpu = entry._fakeCpu;
+           _info = info;
+           _performanceCost = CostModuleV1.getPerformanceCost(info);
+       }
+
        public boolean isValid()
        {
            return (System.currentTimeMillis() - timestamp) < 5*60*1000L;
@@ -107,6 +127,11 @@ public class CostModuleV1
            return _info;
        }
 
+       public double getPerformanceCost()
+       {
+           return _performanceCost;
+       }
+
        public ImmutableMap<String, String> getTagMap()
        {
            return _tagMap;
@@ -118,12 +143,87 @@ public class CostModuleV1
        }
    }
 
+    /**
+     * Modification of the cost information of a pool. Applied to a
+     * private copy of the current cost information.
+     */
+    private interface Modification
+    {
+        void apply(PoolCostInfo info);
+    }
+
+    /**
+     * The performance costs of all pools, kept in sorted order so that
+     * percentiles can be looked up without sorting the costs of all
+     * pools. Updating the cost of a pool is a binary search and an
+     * array copy.
+     */
+    private static class CostDistribution
+    {
+        private final Map<String,Double> _costs = new HashMap<>();
+        private double[] _sorted = new double[16];
+        private int _size;
+
+        public synchronized void put(String pool, double cost)
+        {
+            Double old = _costs.put(pool, cost);
+            if (old != null) {
+                removeCost(old);
+            }
+            insertCost(cost);
+        }
+
+        public synchronized void remove(String pool)
+        {
+            Double old = _costs.remove(pool);
+            if (old != null) {
+                removeCost(old);
+            }
+        }
+
+        public synchronized int size()
+        {
+            return _size;
+        }
+
+        /**
+         * Returns the cost of the n-th pool in order of increasing cost,
+         * with n = floor(fraction * number of pools), or 0 if no pools
+         * are known.
+         */
+        public synchronized double getPercentile(double fraction)
+        {
+            return (_size == 0) ? 0 : _sorted[(int) Math.floor(fraction * _size)];
+        }
+
+        private void insertCost(double cost)
+        {
+            if (_size == _sorted.length) {
+                _sorted = Arrays.copyOf(_sorted, 2 * _size);
+            }
+            int i = Arrays.binarySearch(_sorted, 0, _size, cost);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            System.arraycopy(_sorted, i, _sorted, i + 1, _size - i);
+            _sorted[i] = cost;
+            _size++;
+        }
+
+        private void removeCost(double cost)
+        {
+            int i = Arrays.binarySearch(_sorted, 0, _size, cost);
+            System.arraycopy(_sorted, i + 1, _sorted, i, _size - i - 1);
+            _size--;
+        }
+    }
+
     public CostModuleV1()
     {
         _handlers.addMessageListener(this);
     }
 
-    public synchronized void messageArrived(CellMessage envelope, PoolManagerPoolUpMessage msg)
+    public void messageArrived(CellMessage envelope, PoolManagerPoolUpMessage msg)
     {
         if (! _update) {
             return;
@@ -133,101 +233,102 @@ public class CostModuleV1
         String poolName = msg.getPoolName();
         PoolV2Mode poolMode = msg.getPoolMode();
         PoolCostInfo newInfo = msg.getPoolCostInfo();
-        Entry poolEntry = _hash.get(poolName);
-        boolean isNewPool = poolEntry == null;
 
         /* Whether the pool mentioned in the message should be removed */
         boolean shouldRemovePool = poolMode.getMode() == PoolV2Mode.DISABLED ||
                 poolMode.isDisabled(PoolV2Mode.DISABLED_STRICT) ||
                 poolMode.isDisabled(PoolV2Mode.DISABLED_DEAD);
 
-        if( isNewPool || shouldRemovePool) {
-            _cachedPercentileCostCutIsValid = false;
-        } else {
-            PoolCostInfo currentInfo = poolEntry.getPoolCostInfo();
-            considerInvalidatingCache(currentInfo, newInfo);
-        }
-
         if (shouldRemovePool) {
             _hash.remove(poolName);
         } else if (newInfo != null) {
             _hash.put(poolName, new Entry(poolAddress, newInfo, msg.getTagMap()));
-        }
-    }
-
-    private void considerInvalidatingCache(PoolCostInfo currentInfo, PoolCostInfo newInfo)
-    {
-        if( !_cachedPercentileCostCutIsValid) {
+        } else {
             return;
         }
-
-        double currentCost = getPerformanceCost(currentInfo);
-        double newCost = getPerformanceCost(newInfo);
-        considerInvalidatingCache(currentCost, newCost);
+        updateCost(poolName);
     }
 
-    private void considerInvalidatingCache(double currentCost, PoolCostInfo newInfo)
+    /**
+     * Applies a modification to the cost information of a pool. The
+     * entry of the pool is replaced by an entry with a modified copy of
+     * the cost information; the modification is reapplied if the entry
+     * was replaced concurrently.
+     *
+     * @return the new entry, or null if the pool is unknown
+     */
+    private Entry modify(String poolName, Modification modification)
     {
-        if( !_cachedPercentileCostCutIsValid) {
-            return;
+        while (true) {
+            Entry current = _hash.get(poolName);
+            if (current == null) {
+                return null;
+            }
+            PoolCostInfo info = new PoolCostInfo(current.getPoolCostInfo());
+            modification.apply(info);
+            Entry entry = new Entry(current, info);
+            if (_hash.replace(poolName, current, entry)) {
+                updateCost(poolName);
+                return entry;
+            }
         }
-
-        double newCost = getPerformanceCost(newInfo);
-        considerInvalidatingCache(currentCost, newCost);
     }
 
-    /* Check whether we should invalidate the cached.  We must do this when
-     * a pool changes its relationship to the cost threshold:
-     *       o  a pool with cost less than the cached value assumes a cost greater
-     *                  than the cached value,
-     *       o  a pool with cost greater than the cached value assumes a cost less
-     *                  than the cached value.
-     *       o  a pool with cost equal to the cached value assumes a cost less
-     *                  than or greater than the cached value.
+    /**
+     * Brings the cost distribution up to date with the current entry of
+     * a pool. The entry is read while holding the lock of the
+     * distribution, thus the last of several concurrent updates always
+     * records the latest cost.
      */
-    private void considerInvalidatingCache(double currentCost, double newCost)
+    private void updateCost(String poolName)
     {
-        if( Math.signum(currentCost-_cachedPercentileCostCut) !=
-            Math.signum(newCost-_cachedPercentileCostCut)) {
-            _cachedPercentileCostCutIsValid = false;
+        synchronized (_costs) {
+            Entry entry = _hash.get(poolName);
+            if (entry == null) {
+                _costs.remove(poolName);
+            } else {
+                _costs.put(poolName, entry.getPerformanceCost());
+            }
         }
     }
 
-    private double getPerformanceCost(PoolCostInfo info)
+    private static double getPerformanceCost(PoolCostInfo info)
     {
         CostCalculatable cost = new CostCalculationV5(info);
         cost.recalculate();
         return cost.getPerformanceCost();
     }
 
-    public synchronized void messageToForward(PoolIoFileMessage msg)
+    private static String getMoverQueueName(PoolCostInfo info, String requestedQueueName)
     {
-        String poolName = msg.getPoolName();
-        Entry e = _hash.get(poolName);
-        if (e == null) {
-            return;
+        Map<String, NamedPoolQueueInfo> map = info.getExtendedMoverHash();
+        if (map == null) {
+            return requestedQueueName;
         }
+        return (requestedQueueName == null || map.get(requestedQueueName) == null)
+               ? info.getDefaultQueueName()
+               : requestedQueueName;
+    }
 
-        String requestedQueueName = msg.getIoQueueName();
-
-        PoolCostInfo costInfo = e.getPoolCostInfo();
-        double currentPerformanceCost = getPerformanceCost(costInfo);
-        Map<String, NamedPoolQueueInfo> map =
-            costInfo.getExtendedMoverHash();
-
-        PoolCostInfo.PoolQueueInfo queue;
-        PoolCostInfo.PoolSpaceInfo spaceInfo = costInfo.getSpaceInfo();
-
+    private static PoolCostInfo.PoolQueueInfo getMoverQueue(PoolCostInfo info, String requestedQueueName)
+    {
+        Map<String, NamedPoolQueueInfo> map = info.getExtendedMoverHash();
         if (map == null) {
-            queue = costInfo.getMoverQueue();
-        } else {
-            requestedQueueName =
-                (requestedQueueName == null ||
-                 map.get(requestedQueueName) == null)
-                ? costInfo.getDefaultQueueName()
-                : requestedQueueName;
-            queue = map.get(requestedQueueName);
+            return info.getMoverQueue();
         }
+        return map.get(getMoverQueueName(info, requestedQueueName));
+    }
+
+    private static String getQueueLabel(String prefix, Entry entry, String requestedQueueName)
+    {
+        String name = getMoverQueueName(entry.getPoolCostInfo(), requestedQueueName);
+        return prefix + (name == null ? "" : ("(" + name + ")"));
+    }
+
+    public void messageToForward(PoolIoFileMessage msg)
+    {
+        String poolName = msg.getPoolName();
+        final String requestedQueueName = msg.getIoQueueName();
 
         int diff = 0;
         long pinned = 0;
@@ -244,65 +345,50 @@ public class CostModuleV1
             }
         }
 
-        queue.modifyQueue(diff);
-        spaceInfo.modifyPinnedSpace(pinned);
-
-        considerInvalidatingCache(currentPerformanceCost, costInfo);
+        final int queueDiff = diff;
+        final long pinnedDiff = pinned;
+        Entry e = modify(poolName, new Modification()
+        {
+            @Override
+            public void apply(PoolCostInfo info)
+            {
+                getMoverQueue(info, requestedQueueName).modifyQueue(queueDiff);
+                info.getSpaceInfo().modifyPinnedSpace(pinnedDiff);
+            }
+        });
+        if (e == null) {
+            return;
+        }
 
-        xsay("Mover"+(requestedQueueName==null?"":("("+requestedQueueName+")")) , poolName, diff, pinned, msg);
+        xsay(getQueueLabel("Mover", e, requestedQueueName), poolName, diff, pinned, msg);
     }
 
-    public synchronized void messageToForward(DoorTransferFinishedMessage msg)
+    public void messageToForward(DoorTransferFinishedMessage msg)
     {
         String poolName = msg.getPoolName();
-        Entry e = _hash.get(poolName);
+        final String requestedQueueName = msg.getIoQueueName();
+
+        Entry e = modify(poolName, new Modification()
+        {
+            @Override
+            public void apply(PoolCostInfo info)
+            {
+                getMoverQueue(info, requestedQueueName).modifyQueue(-1);
+            }
+        });
         if (e == null) {
             return;
         }
 
-        PoolCostInfo costInfo = e.getPoolCostInfo();
-        double currentPerformanceCost = getPerformanceCost(costInfo);
-        String requestedQueueName = msg.getIoQueueName();
-
-        Map<String, NamedPoolQueueInfo> map =
-            costInfo.getExtendedMoverHash();
-        PoolCostInfo.PoolQueueInfo queue;
-
-        if (map == null) {
-            queue = costInfo.getMoverQueue();
-        } else {
-            requestedQueueName =
-                (requestedQueueName == null) ||
-                (map.get(requestedQueueName) == null)
-                ? costInfo.getDefaultQueueName()
-                : requestedQueueName;
-
-            queue = map.get(requestedQueueName);
-        }
-
-        int diff = -1;
-        long pinned = 0;
-
-        queue.modifyQueue(diff);
-        considerInvalidatingCache(currentPerformanceCost, costInfo);
-        xsay("Mover"+(requestedQueueName==null?"":("("+requestedQueueName+")")), poolName, diff, pinned, msg);
+        xsay(getQueueLabel("Mover", e, requestedQueueName), poolName, -1, 0, msg);
     }
 
-    public synchronized void messageToForward(PoolFetchFileMessage msg)
+    public void messageToForward(PoolFetchFileMessage msg)
     {
-         String poolName = msg.getPoolName();
-         Entry e = _hash.get(poolName);
-         if (e == null) {
-             return;
-         }
-
-         PoolCostInfo costInfo = e.getPoolCostInfo();
-         double currentPerformanceCost = getPerformanceCost(costInfo);
-         PoolCostInfo.PoolQueueInfo queue = costInfo.getRestoreQueue();
-         PoolCostInfo.PoolSpaceInfo spaceInfo = costInfo.getSpaceInfo();
-
-         int diff;
-         long pinned;
+        String poolName = msg.getPoolName();
+
+        final int diff;
+        final long pinned;
         if (msg.isReply()) {
             diff = -1;
             pinned = 0;
@@ -315,96 +401,83 @@ public class CostModuleV1
                 pinned = 0;
             }
         }
-        queue.modifyQueue(diff);
-         spaceInfo.modifyPinnedSpace(pinned);
-         considerInvalidatingCache(currentPerformanceCost, costInfo);
-         xsay("Restore", poolName, diff, pinned, msg);
-    }
 
-    public synchronized void messageToForward(PoolMgrSelectPoolMsg msg)
-    {
-         if (!_magic) {
-             return;
-         }
-
-         if (!msg.isReply()) {
-             return;
-         }
-         String poolName = msg.getPoolName();
-         Entry e = _hash.get(poolName);
-         if (e == null) {
-             return;
-         }
-
-         String requestedQueueName = msg.getIoQueueName();
-
-         PoolCostInfo costInfo = e.getPoolCostInfo();
-         double currentPerformanceCost = getPerformanceCost(costInfo);
-         Map<String, NamedPoolQueueInfo> map =
-             costInfo.getExtendedMoverHash();
-         PoolCostInfo.PoolQueueInfo queue;
-         PoolCostInfo.PoolSpaceInfo spaceInfo = costInfo.getSpaceInfo();
-
-         if (map == null) {
-            queue = costInfo.getMoverQueue();
-         } else {
-            requestedQueueName =
-                (requestedQueueName == null) ||
-                (map.get(requestedQueueName) == null)
-                ? costInfo.getDefaultQueueName()
-                : requestedQueueName;
-            queue = map.get(requestedQueueName);
-         }
-
-         int diff = 1;
-         long pinned =
-             (msg instanceof PoolMgrSelectWritePoolMsg) ? ((PoolMgrSelectWritePoolMsg) msg).getPreallocated() : 0;
-         queue.modifyQueue(diff);
-         spaceInfo.modifyPinnedSpace(pinned);
-         considerInvalidatingCache(currentPerformanceCost, costInfo);
-         xsay("Mover (magic)"+(requestedQueueName==null?"":("("+requestedQueueName+")")), poolName, diff, pinned, msg);
+        Entry e = modify(poolName, new Modification()
+        {
+            @Override
+            public void apply(PoolCostInfo info)
+            {
+                info.getRestoreQueue().modifyQueue(diff);
+                info.getSpaceInfo().modifyPinnedSpace(pinned);
+            }
+        });
+        if (e == null) {
+            return;
+        }
+
+        xsay("Restore", poolName, diff, pinned, msg);
     }
 
-    public synchronized void messageToForward(Pool2PoolTransferMsg msg)
+    public void messageToForward(PoolMgrSelectPoolMsg msg)
     {
-        _log.debug( "Pool2PoolTransferMsg : reply="+msg.isReply());
+        if (!_magic) {
+            return;
+        }
 
-        String sourceName = msg.getSourcePoolName();
-        Entry source = _hash.get(sourceName);
-        if (source == null) {
+        if (!msg.isReply()) {
+            return;
+        }
+        String poolName = msg.getPoolName();
+        final String requestedQueueName = msg.getIoQueueName();
+
+        final long pinned =
+            (msg instanceof PoolMgrSelectWritePoolMsg) ? ((PoolMgrSelectWritePoolMsg) msg).getPreallocated() : 0;
+        Entry e = modify(poolName, new Modification()
+        {
+            @Override
+            public void apply(PoolCostInfo info)
+            {
+                getMoverQueue(info, requestedQueueName).modifyQueue(1);
+                info.getSpaceInfo().modifyPinnedSpace(pinned);
+            }
+        });
+        if (e == null) {
             return;
         }
 
-        PoolCostInfo sourceCostInfo = source.getPoolCostInfo();
-        double currentSourcePerformanceCost = getPerformanceCost(sourceCostInfo);
+        xsay(getQueueLabel("Mover (magic)", e, requestedQueueName), poolName, 1, pinned, msg);
+    }
 
-        PoolCostInfo.PoolQueueInfo sourceQueue = sourceCostInfo.getP2pQueue();
+    public void messageToForward(Pool2PoolTransferMsg msg)
+    {
+        _log.debug( "Pool2PoolTransferMsg : reply="+msg.isReply());
 
+        String sourceName = msg.getSourcePoolName();
         String destinationName = msg.getDestinationPoolName();
-        Entry destination = _hash.get(destinationName);
-        if (destination == null) {
+        if (!_hash.containsKey(sourceName) || !_hash.containsKey(destinationName)) {
             return;
         }
 
-        PoolCostInfo destinationCostInfo = destination.getPoolCostInfo();
-        double currentDestinationPerformanceCost =
-            getPerformanceCost(destinationCostInfo);
+        final int diff = msg.isReply() ? -1 : 1;
+        final long pinned = msg.getFileAttributes().isDefined(FileAttribute.SIZE) ? msg.getFileAttributes().getSize() : 0;
 
-        PoolCostInfo.PoolQueueInfo destinationQueue =
-            destinationCostInfo.getP2pClientQueue();
-        PoolCostInfo.PoolSpaceInfo destinationSpaceInfo =
-            destinationCostInfo.getSpaceInfo();
-
-        int diff = msg.isReply() ? -1 : 1;
-        long pinned = msg.getFileAttributes().isDefined(FileAttribute.SIZE) ? msg.getFileAttributes().getSize() : 0;
-
-        sourceQueue.modifyQueue(diff);
-        destinationQueue.modifyQueue(diff);
-        destinationSpaceInfo.modifyPinnedSpace(pinned);
-
-        considerInvalidatingCache(currentSourcePerformanceCost, sourceCostInfo);
-        considerInvalidatingCache(currentDestinationPerformanceCost,
-                destinationCostInfo);
+        modify(sourceName, new Modification()
+        {
+            @Override
+            public void apply(PoolCostInfo info)
+            {
+                info.getP2pQueue().modifyQueue(diff);
+            }
+        });
+        modify(destinationName, new Modification()
+        {
+            @Override
+            public void apply(PoolCostInfo info)
+            {
+                info.getP2pClientQueue().modifyQueue(diff);
+                info.getSpaceInfo().modifyPinnedSpace(pinned);
+            }
+        });
 
         xsay("P2P client (magic)", destinationName, diff, pinned, msg);
         xsay("P2P server (magic)", sourceName, diff, 0, msg);
@@ -435,6 +508,7 @@ public class CostModuleV1
         pw.append(" Update  : ").println(_update?"on":"off");
         pw.append(" Active  : ").println(_isActive?"yes":"no");
         pw.append(" Magic   : ").println(_magic?"yes":"no");
+        pw.append(" Pools   : ").println(_costs.size());
     }
 
     @Override
@@ -466,46 +540,15 @@ public class CostModuleV1
     }
 
    @Override
-   public synchronized double getPoolsPercentilePerformanceCost(double fraction) {
+   public double getPoolsPercentilePerformanceCost(double fraction) {
 
        if( fraction <= 0 || fraction >= 1) {
            throw new IllegalArgumentException("supplied fraction (" + Double.toString( fraction) +") not between 0 and 1");
        }
 
-       if( !_cachedPercentileCostCutIsValid || _cachedPercentileFraction != fraction) {
-           _cachedPercentileCostCut = calculatePercentileCostCut(fraction);
-           _cachedPercentileFraction = fraction;
-           _cachedPercentileCostCutIsValid = true;
-       }
-
-       return _cachedPercentileCostCut;
+       return _costs.getPercentile(fraction);
    }
 
-   private double calculatePercentileCostCut(double fraction)
-   {
-       if( _hash.isEmpty()) {
-           _log.debug( "no pools available");
-           return 0;
-       }
-
-       _log.debug( "{} pools available", _hash.size());
-
-       double poolCosts[] = new double[_hash.size()];
-
-       int idx=0;
-       for( Entry poolInfo : _hash.values()) {
-           poolCosts[idx] = getPerformanceCost(poolInfo.getPoolCostInfo());
-           idx++;
-       }
-
-       Arrays.sort(poolCosts);
-
-       return poolCosts [ (int) Math.floor(fraction * _hash.size())];
-   }
-
-
-
-
    @Override
    public boolean isActive(){ return _isActive ; }
 
@@ -554,7 +597,7 @@ public class CostModuleV1
      return "";
    }
    public static final String hh_cm_fake = "<poolName> [off] | [-cpu=<cpuCost>|off]" ;
-   public synchronized String ac_cm_fake_$_1_2( Args args ){
+   public String ac_cm_fake_$_1_2( Args args ){
       String poolName = args.argv(0) ;
       Entry e = _hash.get(poolName);
       if( e == null ) {
@@ -580,7 +623,7 @@ public class CostModuleV1
    }
 
    public static final String hh_xcm_ls = "";
-   public synchronized Object ac_xcm_ls_$_0(Args args)
+   public Object ac_xcm_ls_$_0(Args args)
    {
        CostModulePoolInfoTable reply = new CostModulePoolInfoTable();
        for (Entry e : _hash.values() ){
@@ -590,7 +633,7 @@ public class CostModuleV1
    }
 
    public static final String hh_cm_ls = " -t | -r <pattern> # list all pools";
-   public synchronized String ac_cm_ls_$_0_1(Args args)
+   public String ac_cm_ls_$_0_1(Args args)
    {
        StringBuilder sb = new StringBuilder();
        boolean useTime   = args.hasOption("t");
@@ -606,7 +649,7 @@ public class CostModuleV1
                    if (e.getTagMap() != null) {
                        sb.append("Tag={").append(e.getTagMap()).append("};");
                    }
-                   sb.append(";CC=").append(getPerformanceCost(pool)).append(";");
+                   sb.append(";CC=").append(e.getPerformanceCost()).append(";");
                    sb.append("}").append("\n");
                }
                if (useTime) {
@@ -621,7 +664,7 @@ public class CostModuleV1
    }
 
     @Override
-    public synchronized Collection<PoolCostInfo> getPoolCostInfos()
+    public Collection<PoolCostInfo> getPoolCostInfos()
     {
         Collection<PoolCostInfo> costInfos = new ArrayList<>();
         for (Entry entry: _hash.values()) {
@@ -633,7 +676,7 @@ public class CostModuleV1
     }
 
     @Override
-    public synchronized PoolCostInfo getPoolCostInfo(String poolName)
+    public PoolCostInfo getPoolCostInfo(String poolName)
     {
         Entry entry = _hash.get(poolName);
         if (entry != null && (entry.isValid() || !_update)) {
@@ -643,7 +686,7 @@ public class CostModuleV1
     }
 
     @Override
-    public synchronized
+    public
         List<PoolInfo> getPoolInfo(Iterable<String> pools)
     {
         List<PoolInfo> infos = new ArrayList<>();
@@ -657,7 +700,7 @@ public class CostModuleV1
     }
 
     @Override
-    public synchronized
+    public
         Map<String,PoolInfo> getPoolInfoAsMap(Iterable<String> pools)
     {
         Map<String,PoolInfo> map = new HashMap<>();
@@ -670,10 +713,19 @@ public class CostModuleV1
         return map;
     }
 
+    /**
+     * Restores the transient state. The cost distribution is not
+     * serialized, but rebuilt from the pool entries, so copies such as
+     * the one in PoolMonitor answer percentile queries.
+     */
     private void readObject(ObjectInputStream in)
         throws IOException, ClassNotFoundException
     {
         in.defaultReadObject();
+        _costs = new CostDistribution();
+        for (String pool : _hash.keySet()) {
+            updateCost(pool);
+        }
         _handlers = new CellMessageDispatcher("messageToForward");
         _handlers.addMessageListener(this);
     }
@@ -4,13 +4,15 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.lang.Thread.UncaughtExceptionHandler;
 import java.net.InetSocketAddress;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -23,7 +25,10 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -73,7 +78,7 @@ import org.dcache.vehicles.FileAttributes;
 
 public class RequestContainerV5
     extends AbstractCellComponent
-    implements Runnable, CellCommandListener, CellMessageReceiver
+    implements CellCommandListener, CellMessageReceiver
 {
     private static final Logger _log =
         LoggerFactory.getLogger(RequestContainerV5.class);
@@ -89,10 +94,19 @@ public class RequestContainerV5
     private static final String STRING_NOTCHECKED = "notchecked" ;
 
     /** value in milliseconds */
-    private static final int DEFAULT_TICKER_INTERVAL = 60000;
+    private static final int DEFAULT_TICKER_INTERVAL = 1000;
 
-    private final Map<UOID, PoolRequestHandler>     _messageHash   = new HashMap<>() ;
-    private final Map<String, PoolRequestHandler>   _handlerHash   = new HashMap<>() ;
+    /** Number of shards of the request handler map. */
+    private static final int HANDLER_SHARDS = 64;
+
+    private final ConcurrentMap<UOID, PoolRequestHandler> _messageHash = new ConcurrentHashMap<>() ;
+
+    /**
+     * Request handlers by canonical name, sharded by PnfsId. The lock of
+     * a shard also guards the request messages of the handlers in that
+     * shard.
+     */
+    private final List<Map<String, PoolRequestHandler>> _handlerShards = new ArrayList<>(HANDLER_SHARDS);
 
     private CellStub _billing;
     private CellStub _poolStub;
@@ -120,10 +134,11 @@ public class RequestContainerV5
     private final Map<PnfsId, CacheException>            _selections       = new HashMap<>() ;
     private PartitionManager   _partitionManager ;
     private volatile long               _checkFilePingTimer = 10 * 60 * 1000 ;
-    /** value in milliseconds */
-    private final long _ticketInterval;
-
-    private final Thread _tickerThread;
+    /**
+     * Schedules the time to live checks of request handlers. Only
+     * handlers that are due are touched.
+     */
+    private final Timer _timer;
 
     private final PoolPingThread _poolPingThread = new PoolPingThread();
 
@@ -138,10 +153,25 @@ public class RequestContainerV5
     public static final EnumSet<RequestState> allStatesExceptStage =
         EnumSet.complementOf(EnumSet.of(RequestState.ST_STAGE));
 
+    /**
+     * @param tickerInterval granularity in milliseconds at which time to
+     *                       live checks of requests are scheduled
+     */
     public RequestContainerV5(long tickerInterval) {
-        _ticketInterval = tickerInterval;
-        _tickerThread = new Thread(this, "Container-ticker");
-        _tickerThread.start();
+        this(tickerInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param tickerInterval granularity at which time to live checks of
+     *                       requests are scheduled
+     * @param unit           unit of tickerInterval
+     */
+    public RequestContainerV5(long tickerInterval, TimeUnit unit) {
+        for (int i = 0; i < HANDLER_SHARDS; i++) {
+            _handlerShards.add(new HashMap<String, PoolRequestHandler>());
+        }
+        _timer = new HashedWheelTimer(new ThreadFactoryBuilder().setNameFormat("Container-ticker").build(),
+                                      tickerInterval, unit);
         _poolPingThread.start();
     }
 
@@ -152,7 +182,7 @@ public class RequestContainerV5
 
     public void shutdown()
     {
-        _tickerThread.interrupt();
+        _timer.stop();
         _poolPingThread.interrupt();
     }
 
@@ -206,55 +236,56 @@ public class RequestContainerV5
     public void messageArrived(CellMessage envelope, Object message)
     {
         UOID uoid = envelope.getLastUOID();
-        PoolRequestHandler handler;
-
-        synchronized (_messageHash) {
-            handler = _messageHash.remove(uoid);
-            if (handler == null) {
-                return;
-            }
+        PoolRequestHandler handler = _messageHash.remove(uoid);
+        if (handler == null) {
+            return;
         }
 
         handler.mailForYou(message);
     }
 
-    @Override
-    public void run()
+    private Map<String, PoolRequestHandler> getShard(PnfsId pnfsId)
     {
-        while (!Thread.interrupted()) {
-            try {
-                Thread.sleep(_ticketInterval) ;
+        return _handlerShards.get((pnfsId.hashCode() & Integer.MAX_VALUE) % HANDLER_SHARDS);
+    }
 
-                List<PoolRequestHandler> list;
-                synchronized (_handlerHash) {
-                    list = new ArrayList<>(_handlerHash.values());
-                }
-                for (PoolRequestHandler handler: list) {
-                    if (handler != null) {
-                        handler.alive();
-                    }
-                }
-            } catch (InterruptedException e) {
-                break;
-            } catch (Throwable t) {
-                Thread thisThread = Thread.currentThread();
-                UncaughtExceptionHandler ueh =
-                    thisThread.getUncaughtExceptionHandler();
-                ueh.uncaughtException(thisThread, t);
+    /**
+     * Returns the request handler with the given canonical name, or null
+     * if no such handler exists.
+     */
+    private PoolRequestHandler getHandler(String canonicalName)
+    {
+        int i = canonicalName.indexOf('@');
+        PnfsId pnfsId;
+        try {
+            pnfsId = new PnfsId((i < 0) ? canonicalName : canonicalName.substring(0, i));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        Map<String, PoolRequestHandler> shard = getShard(pnfsId);
+        synchronized (shard) {
+            return shard.get(canonicalName);
+        }
+    }
+
+    /**
+     * Returns a snapshot of all request handlers.
+     */
+    private List<PoolRequestHandler> getHandlers()
+    {
+        List<PoolRequestHandler> list = new ArrayList<>();
+        for (Map<String, PoolRequestHandler> shard : _handlerShards) {
+            synchronized (shard) {
+                list.addAll(shard.values());
             }
         }
-        _log.debug("Container-ticker done");
+        return list;
     }
 
     public void poolStatusChanged(String poolName, int poolStatus) {
         _log.info("Restore Manager : got 'poolRestarted' for " + poolName);
         try {
-            List<PoolRequestHandler> list;
-            synchronized (_handlerHash) {
-                list = new ArrayList<>(_handlerHash.values());
-            }
-
-            for (PoolRequestHandler rph : list) {
+            for (PoolRequestHandler rph : getHandlers()) {
 
                 if (rph == null) {
                     continue;
@@ -480,28 +511,21 @@ public class RequestContainerV5
     {
        boolean forceAll = args.hasOption("force-all") ;
        if( args.argv(0).equals("*") ){
-          List<PoolRequestHandler> all;
           //
           // Remember : we are not allowed to call 'retry' as long
-          // as we  are holding the _handlerHash lock.
+          // as we  are holding the lock of a handler shard.
           //
-          synchronized( _handlerHash ){
-             all = new ArrayList<>( _handlerHash.values() ) ;
-          }
-          for (PoolRequestHandler rph : all) {
+          for (PoolRequestHandler rph : getHandlers()) {
               if( forceAll || ( rph._currentRc != 0 ) ) {
                   rph.retry();
               }
           }
        }else{
-          PoolRequestHandler rph;
-          synchronized( _handlerHash ){
-             rph = _handlerHash.get(args.argv(0));
-             if( rph == null ) {
-                 throw new
-                         IllegalArgumentException("Not found : " + args
-                         .argv(0));
-             }
+          PoolRequestHandler rph = getHandler(args.argv(0));
+          if( rph == null ) {
+              throw new
+                      IllegalArgumentException("Not found : " + args
+                      .argv(0));
           }
           rph.retry() ;
        }
@@ -513,14 +537,10 @@ public class RequestContainerV5
        int    errorNumber = args.argc() > 1 ? Integer.parseInt(args.argv(1)) : 1;
        String errorString = args.argc() > 2 ? args.argv(2) : "Operator Intervention" ;
 
-       PoolRequestHandler rph;
-
-       synchronized( _handlerHash ){
-          rph = _handlerHash.get(args.argv(0));
-          if( rph == null ) {
-              throw new
-                      IllegalArgumentException("Not found : " + args.argv(0));
-          }
+       PoolRequestHandler rph = getHandler(args.argv(0));
+       if( rph == null ) {
+           throw new
+                   IllegalArgumentException("Not found : " + args.argv(0));
        }
        rph.failed(errorNumber,errorString) ;
        return "" ;
@@ -534,12 +554,7 @@ public class RequestContainerV5
        boolean isLongListing = args.hasOption("l");
 
        if( !args.hasOption("w") ){
-          List<PoolRequestHandler>    allRequestHandlers;
-          synchronized( _handlerHash ){
-              allRequestHandlers = new ArrayList<>( _handlerHash.values() ) ;
-          }
-
-          for( PoolRequestHandler h : allRequestHandlers ){
+          for( PoolRequestHandler h : getHandlers() ){
 
               if( h == null ) {
                   continue;
@@ -558,10 +573,7 @@ public class RequestContainerV5
           }
        }else{
 
-           Map<UOID, PoolRequestHandler>  allPendingRequestHandlers   = new HashMap<>() ;
-          synchronized(_messageHash){
-              allPendingRequestHandlers.putAll( _messageHash ) ;
-          }
+          Map<UOID, PoolRequestHandler>  allPendingRequestHandlers   = new HashMap<>( _messageHash ) ;
 
           for (Map.Entry<UOID, PoolRequestHandler> requestHandler : allPendingRequestHandlers.entrySet()) {
 
@@ -583,14 +595,9 @@ public class RequestContainerV5
     public static final String hh_xrc_ls = " # lists pending requests (binary)" ;
     public Object ac_xrc_ls( Args args ){
 
-       List<PoolRequestHandler> all;
-       synchronized( _handlerHash ){
-          all = new ArrayList<>( _handlerHash.values() ) ;
-       }
-
        List<RestoreHandlerInfo>          list = new ArrayList<>() ;
 
-       for( PoolRequestHandler h: all  ){
+       for( PoolRequestHandler h: getHandlers()  ){
           if( h  == null ) {
               continue;
           }
@@ -636,11 +643,12 @@ public class RequestContainerV5
         //
         PoolRequestHandler handler;
         _log.info( "Adding request for : "+canonicalName ) ;
-        synchronized( _handlerHash ){
+        Map<String, PoolRequestHandler> shard = getShard(pnfsId);
+        synchronized( shard ){
            //
-           handler = _handlerHash.get(canonicalName);
+           handler = shard.get(canonicalName);
            if( handler == null ){
-              _handlerHash.put(
+              shard.put(
                      canonicalName ,
                      handler = new PoolRequestHandler( pnfsId , canonicalName, allowedStates ) ) ;
            }
@@ -687,6 +695,7 @@ public class RequestContainerV5
     private class PoolRequestHandler  {
 
         protected final PnfsId       _pnfsId;
+        private final Map<String, PoolRequestHandler> _shard;
         protected final List<CellMessage>    _messages = new ArrayList<>() ;
         protected int _retryCounter;
         private final CDC _cdc = new CDC();
@@ -767,10 +776,24 @@ public class RequestContainerV5
          */
         private long _nextTtlTimeout = Long.MAX_VALUE;
 
+        /**
+         * Time to live check for the time the next request message
+         * expires.
+         */
+        private final TtlCheck _ttlCheck = new TtlCheck(_timer, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                alive();
+            }
+        });
+
         public PoolRequestHandler(PnfsId pnfsId, String canonicalName,
                                   Collection<RequestState> allowedStates)
         {
 	    _pnfsId  = pnfsId ;
+            _shard   = getShard(pnfsId) ;
 	    _name    = canonicalName ;
 	    _allowedStates = allowedStates ;
 	}
@@ -790,7 +813,10 @@ public class RequestContainerV5
            long ttl = message.getTtl();
            if (ttl < Long.MAX_VALUE) {
                long timeout = System.currentTimeMillis() + ttl;
-               _nextTtlTimeout = Math.min(_nextTtlTimeout, timeout);
+               if (timeout < _nextTtlTimeout) {
+                   _nextTtlTimeout = timeout;
+                   scheduleTtlCheck();
+               }
            }
 
            if (_poolSelector != null) {
@@ -826,11 +852,25 @@ public class RequestContainerV5
         }
 
         public List<CellMessage> getMessages() {
-            synchronized( _handlerHash ){
+            synchronized( _shard ){
                 return new ArrayList<>(_messages);
             }
         }
 
+        /**
+         * Schedules a time to live check for the time the next request
+         * message expires. Must be called with the lock of the shard
+         * held.
+         */
+        private void scheduleTtlCheck()
+        {
+            if (_nextTtlTimeout < Long.MAX_VALUE) {
+                _ttlCheck.schedule(_nextTtlTimeout);
+            } else {
+                _ttlCheck.cancel();
+            }
+        }
+
         public String getPoolCandidate()
         {
             if (_poolCandidate != null) {
@@ -925,9 +965,7 @@ public class RequestContainerV5
         //
         private void clearSteering() {
             if (_waitingFor != null) {
-                synchronized (_messageHash) {
-                  _messageHash.remove(_waitingFor);
-                }
+                _messageHash.remove(_waitingFor);
                 _waitingFor = null;
             }
         }
@@ -945,19 +983,23 @@ public class RequestContainerV5
                                         pool.getName(),
                                         _fileAttributes)
                                 );
-            synchronized( _messageHash ){
-                if( ( _maxRestore >=0 ) &&
-                    ( _messageHash.size() >= _maxRestore ) ) {
-                    return false;
-                }
+            if( ( _maxRestore >=0 ) &&
+                ( _messageHash.size() >= _maxRestore ) ) {
+                return false;
+            }
+            if( _waitingFor != null ) {
+                _messageHash.remove(_waitingFor);
+            }
+            _messageHash.put( _waitingFor = cellMessage.getUOID() , this ) ;
+            try {
                 sendMessage( cellMessage );
-                if( _waitingFor != null ) {
-                    _messageHash.remove(_waitingFor);
-                }
-                _poolMonitor.messageToCostModule( cellMessage ) ;
-                _messageHash.put( _waitingFor = cellMessage.getUOID() , this ) ;
-                _status = "Staging "+_formatter.format(new Date()) ;
+            } catch (NoRouteToCellException e) {
+                _messageHash.remove(_waitingFor);
+                _waitingFor = null;
+                throw e;
             }
+            _poolMonitor.messageToCostModule( cellMessage ) ;
+            _status = "Staging "+_formatter.format(new Date()) ;
             return true ;
 	}
 	private void sendPool2PoolRequest(PoolInfo sourcePool, PoolInfo destPool)
@@ -970,15 +1012,19 @@ public class RequestContainerV5
 	    CellMessage cellMessage =
                 new CellMessage(new CellPath(destPool.getAddress()), pool2pool);
 
-            synchronized( _messageHash ){
+            if( _waitingFor != null ) {
+                _messageHash.remove(_waitingFor);
+            }
+            _messageHash.put( _waitingFor = cellMessage.getUOID() , this ) ;
+            try {
                 sendMessage( cellMessage );
-                _poolMonitor.messageToCostModule( cellMessage ) ;
-                if( _waitingFor != null ) {
-                    _messageHash.remove(_waitingFor);
-                }
-                _messageHash.put( _waitingFor = cellMessage.getUOID() , this ) ;
-                _status = "[P2P "+_formatter.format(new Date())+"]" ;
+            } catch (NoRouteToCellException e) {
+                _messageHash.remove(_waitingFor);
+                _waitingFor = null;
+                throw e;
             }
+            _poolMonitor.messageToCostModule( cellMessage ) ;
+            _status = "[P2P "+_formatter.format(new Date())+"]" ;
 	}
 
         /**
@@ -990,9 +1036,9 @@ public class RequestContainerV5
         private void expireRequests()
         {
             /* Access to _messages is controlled by a lock on
-             * _handlerHash.
+             * the shard.
              */
-            synchronized (_handlerHash) {
+            synchronized (_shard) {
                 long now = System.currentTimeMillis();
                 _nextTtlTimeout = Long.MAX_VALUE;
 
@@ -1006,9 +1052,10 @@ public class RequestContainerV5
                                   + " because its time to live has been exceeded.");
                         i.remove();
                     } else if (ttl < Long.MAX_VALUE) {
-                        _nextTtlTimeout = Math.min(_nextTtlTimeout, now + ttl);
+                        _nextTtlTimeout = Math.min(_nextTtlTimeout, now + ttl - message.getLocalAge());
                     }
                 }
+                scheduleTtlCheck();
             }
         }
 
@@ -1540,6 +1587,10 @@ public class RequestContainerV5
                           suspendIfEnabled("Suspended");
                        }
                     }
+                 }else if( inputObject instanceof Object [] ){
+
+                    handleCommandObject( (Object []) inputObject ) ;
+
                  }
               }
               break ;
@@ -1573,6 +1624,10 @@ public class RequestContainerV5
                        //
                        errorHandler() ;
                     }
+                 }else if( inputObject instanceof Object [] ){
+
+                    handleCommandObject( (Object []) inputObject ) ;
+
                  }
 
               break ;
@@ -1659,10 +1714,11 @@ public class RequestContainerV5
                     clearSteering();
                     //
                     // it is essential that we are not within any other
-                    // lock when trying to get the handlerHash lock.
+                    // lock when trying to get the shard lock.
                     //
-                    synchronized (_handlerHash) {
-                        _handlerHash.remove(_name);
+                    synchronized (_shard) {
+                        _shard.remove(_name);
+                        _ttlCheck.cancel();
                     }
                     while (answerRequest(_maxRequestClumping)) {
                         setError(CacheException.OUT_OF_DATE,
@@ -1693,9 +1749,15 @@ public class RequestContainerV5
                 break;
 
             case "alive":
-                long now = System.currentTimeMillis();
-                if (now > _nextTtlTimeout) {
-                    expireRequests();
+                /* The timer may fire up to a tick early, in which case
+                 * the check is scheduled again.
+                 */
+                synchronized (_shard) {
+                    if (System.currentTimeMillis() >= _nextTtlTimeout) {
+                        expireRequests();
+                    } else {
+                        scheduleTtlCheck();
+                    }
                 }
                 break;
             }
@@ -2091,10 +2153,7 @@ public class RequestContainerV5
                         long now = System.currentTimeMillis();
 
                         // Determine which pools to query
-                        List<PoolRequestHandler> list;
-                        synchronized (_handlerHash) {
-                            list = new ArrayList<>(_handlerHash.values());
-                        }
+                        List<PoolRequestHandler> list = getHandlers();
                         Multimap<CellAddressCore, PoolRequestHandler> p2pRequests = ArrayListMultimap.create();
                         Multimap<CellAddressCore, PoolRequestHandler> stageRequests = ArrayListMultimap.create();
                         for (PoolRequestHandler handler : list) {
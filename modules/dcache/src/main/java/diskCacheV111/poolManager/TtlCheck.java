@@ -0,0 +1,78 @@
+package diskCacheV111.poolManager;
+
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to live check of a request handler.
+ *
+ * At most one check is scheduled at any time, for the earliest time it
+ * was requested for. A check is forgotten once it fires, so the task has
+ * to schedule the next check, also if the check turns out not to be due
+ * yet.
+ */
+class TtlCheck
+{
+    private final Timer _timer;
+    private final Runnable _task;
+
+    /* Guarded by this. */
+    private Timeout _timeout;
+    private long _time;
+
+    TtlCheck(Timer timer, Runnable task)
+    {
+        _timer = timer;
+        _task = task;
+    }
+
+    /**
+     * Schedules a check at the given time in milliseconds since the epoch
+     * unless a check is scheduled at or before that time.
+     */
+    synchronized void schedule(long time)
+    {
+        if (_timeout != null) {
+            if (_time <= time) {
+                return;
+            }
+            _timeout.cancel();
+        }
+        _time = time;
+        _timeout = _timer.newTimeout(new TimerTask()
+        {
+            @Override
+            public void run(Timeout timeout)
+            {
+                fired(timeout);
+            }
+        }, Math.max(0, time - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void cancel()
+    {
+        if (_timeout != null) {
+            _timeout.cancel();
+            _timeout = null;
+        }
+    }
+
+    synchronized boolean isScheduled()
+    {
+        return _timeout != null;
+    }
+
+    private void fired(Timeout timeout)
+    {
+        synchronized (this) {
+            if (_timeout != timeout) {
+                return;
+            }
+            _timeout = null;
+        }
+        _task.run();
+    }
+}
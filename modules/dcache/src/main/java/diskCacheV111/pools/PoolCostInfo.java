@@ -32,6 +32,34 @@ public class PoolCostInfo implements Serializable {
         _space = new PoolSpaceInfo(0, 0, 0, 0);
     }
 
+    /**
+     * Copy constructor. The copy shares no mutable state with the
+     * original.
+     */
+    public PoolCostInfo(PoolCostInfo info)
+    {
+        _poolName = info._poolName;
+        _defaultQueueName = info._defaultQueueName;
+        _moverCostFactor = info._moverCostFactor;
+        _store = copyOf(info._store);
+        _restore = copyOf(info._restore);
+        _mover = copyOf(info._mover);
+        _p2p = copyOf(info._p2p);
+        _p2pClient = copyOf(info._p2pClient);
+        for (NamedPoolQueueInfo queue : info._extendedMoverHash.values()) {
+            _extendedMoverHash.put(queue.getName(), new NamedPoolQueueInfo(queue.getName(), queue));
+        }
+        _space = new PoolSpaceInfo(info._space);
+    }
+
+    private PoolQueueInfo copyOf(PoolQueueInfo queue)
+    {
+        return (queue == null)
+               ? null
+               : new PoolQueueInfo(queue.getActive(), queue.getMaxActive(), queue.getQueued(),
+                                   queue.getReaders(), queue.getWriters());
+    }
+
     public String getPoolName(){ return _poolName ; }
     public class NamedPoolQueueInfo extends PoolQueueInfo {
 
@@ -141,6 +169,17 @@ public class PoolCostInfo implements Serializable {
             this(total, free, precious, removable, 0);
         }
 
+        private PoolSpaceInfo(PoolSpaceInfo space)
+        {
+            _total = space._total;
+            _free = space._free;
+            _precious = space._precious;
+            _removable = space._removable;
+            _lru = space._lru;
+            _gap = space._gap;
+            _breakEven = space._breakEven;
+        }
+
         private PoolSpaceInfo( long total , long free , long precious , long removable , long lru ){
 
             if( total < free ) {
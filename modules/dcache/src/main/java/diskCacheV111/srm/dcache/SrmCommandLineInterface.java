@@ -120,6 +120,7 @@ public class SrmCommandLineInterface
     {
         pw.println(config);
         pw.println(srm.getSchedulerInfo());
+        pw.println(srm.getDatabaseInfo());
     }
 
     @Override
@@ -70,6 +70,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -148,6 +149,7 @@ import diskCacheV111.util.PermissionDeniedCacheException;
 import diskCacheV111.util.PnfsHandler;
 import diskCacheV111.util.PnfsId;
 import diskCacheV111.util.RetentionPolicy;
+import diskCacheV111.util.ServiceUnavailableException;
 import diskCacheV111.util.TimeoutCacheException;
 import diskCacheV111.vehicles.CopyManagerMessage;
 import diskCacheV111.vehicles.DoorRequestInfoMessage;
@@ -888,6 +890,51 @@ public final class Storage
         return null;
     }
 
+    /**
+     * Positions at which paged directory listings are resumed, keyed by
+     * user, directory and offset of the next page.
+     *
+     * SRM clients list large directories in pages. Rather than skipping
+     * the entries of all earlier pages for every page, the name of the
+     * last entry of a page is remembered and the next page is listed
+     * starting after that name. Cursors of abandoned listings expire.
+     */
+    private final Cache<ListCursor,String> listCursors =
+            CacheBuilder.newBuilder()
+                    .maximumSize(10000)
+                    .expireAfterAccess(10, MINUTES)
+                    .build();
+
+    private static class ListCursor
+    {
+        private final long user;
+        private final FsPath path;
+        private final int offset;
+
+        ListCursor(SRMUser user, FsPath path, int offset)
+        {
+            this.user = user.getId();
+            this.path = path;
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof ListCursor)) {
+                return false;
+            }
+            ListCursor other = (ListCursor) o;
+            return user == other.user && offset == other.offset && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(user, path, offset);
+        }
+    }
+
     private final LoadingCache<String,String> doorToHostnameCache =
             CacheBuilder.newBuilder()
                     .expireAfterWrite(10, MINUTES)
@@ -2055,9 +2102,35 @@ public final class Storage
             Subject subject = ((DcacheUser) user).getSubject();
             FmdListPrinter printer =
                 verbose ? new VerboseListPrinter() : new FmdListPrinter();
-            _listSource.printDirectory(subject, printer, path, null,
-                                       Range.closedOpen(offset, offset + count));
-            return printer.getResult();
+
+            /* Continue from where the previous page ended if possible.
+             * Otherwise skip to the offset in the ordered listing. A
+             * PnfsManager that cannot list from a name only supports
+             * skipping to the offset in an unordered listing.
+             */
+            String startAfter =
+                (offset == 0) ? null : listCursors.getIfPresent(new ListCursor(user, path, offset));
+            Range<Integer> range;
+            if (startAfter == null) {
+                startAfter = "";
+                range = Range.closedOpen(offset, offset + count);
+            } else {
+                range = Range.closedOpen(0, count);
+            }
+            try {
+                _listSource.printDirectory(subject, printer, path, null, startAfter, range);
+            } catch (ServiceUnavailableException e) {
+                printer = verbose ? new VerboseListPrinter() : new FmdListPrinter();
+                _listSource.printDirectory(subject, printer, path, null,
+                                           Range.closedOpen(offset, offset + count));
+                return printer.getResult();
+            }
+
+            List<FileMetaData> result = printer.getResult();
+            if (count > 0 && result.size() == count) {
+                listCursors.put(new ListCursor(user, path, offset + count), printer.getLastName());
+            }
+            return result;
         } catch (TimeoutCacheException e) {
             throw new SRMInternalErrorException("Internal name space timeout", e);
         } catch (InterruptedException e) {
@@ -2084,6 +2157,7 @@ public final class Storage
             new ArrayList<>();
         protected final FsPath _root =
             new FsPath(config.getSrm_root());
+        private String _lastName;
 
         @Override
         public Set<FileAttribute> getRequiredAttributes()
@@ -2107,6 +2181,15 @@ public final class Storage
             throws InterruptedException
         {
             _result.add(toFmd(dir, entry));
+            _lastName = entry.getName();
+        }
+
+        /**
+         * Returns the name of the last entry printed.
+         */
+        public String getLastName()
+        {
+            return _lastName;
         }
 
         public List<FileMetaData> getResult()
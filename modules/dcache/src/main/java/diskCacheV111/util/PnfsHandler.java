@@ -2,6 +2,10 @@
 
 package diskCacheV111.util ;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +39,7 @@ import org.dcache.acl.enums.AccessMask;
 import dmg.cells.nucleus.CellMessageSender;
 import org.dcache.cells.CellStub;
 import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.FileAttributesCache;
 import org.dcache.namespace.FileType;
 import org.dcache.util.Checksum;
 import org.dcache.util.ChecksumType;
@@ -51,6 +56,8 @@ public class PnfsHandler
     private static final long DEFAULT_PNFS_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
 
     private final CellStub _cellStub;
+    private final PnfsRequestBatcher _batcher;
+    private FileAttributesCache _attributesCache;
 
     private Subject _subject;
 
@@ -93,6 +100,7 @@ public class PnfsHandler
     public PnfsHandler(CellStub stub, String poolName)
     {
         _cellStub = stub;
+        _batcher = new PnfsRequestBatcher(stub);
         _poolName = poolName;
     }
 
@@ -109,6 +117,8 @@ public class PnfsHandler
     {
         _poolName = handler._poolName;
         _cellStub = handler._cellStub;
+        _batcher = handler._batcher;
+        _attributesCache = handler._attributesCache;
         _subject = subject;
     }
 
@@ -123,6 +133,15 @@ public class PnfsHandler
         _subject = subject;
     }
 
+    /**
+     * Sets a cache for file attributes looked up by PnfsId or path. The
+     * cache is shared with copies of this handler.
+     */
+    public void setFileAttributesCache(FileAttributesCache cache)
+    {
+        _attributesCache = cache;
+    }
+
     /**
      * Sends a PnfsMessage to PnfsManager.
      *
@@ -193,6 +212,14 @@ public class PnfsHandler
        pnfsRequest( new PnfsAddCacheLocationMessage(id, pool));
    }
 
+   /**
+    * Asynchronous version of {@link #addCacheLocation(PnfsId)}.
+    */
+   public ListenableFuture<PnfsAddCacheLocationMessage> addCacheLocationAsync(PnfsId id)
+   {
+       return pnfsRequestAsync(new PnfsAddCacheLocationMessage(id, _poolName));
+   }
+
    public List<String> getCacheLocations( PnfsId pnfsId )throws CacheException {
       PnfsGetCacheLocationsMessage pnfsMessage = new PnfsGetCacheLocationsMessage(pnfsId) ;
       pnfsMessage = pnfsRequest(pnfsMessage) ;
@@ -240,9 +267,47 @@ public class PnfsHandler
         } catch (InterruptedException e) {
             throw  new CacheException(CacheException.UNEXPECTED_SYSTEM_EXCEPTION,
                     "Sending message to PnafsManager intterupted");
+        } finally {
+            if (_attributesCache != null) {
+                _attributesCache.invalidate(msg);
+            }
         }
    }
 
+    /**
+     * Sends a message to PnfsManager without blocking. Concurrent requests
+     * of the same kind are combined into batches, and requests rejected
+     * because PnfsManager is overloaded are resent.
+     *
+     * The returned future fails with a CacheException in case of errors in
+     * the reply, and with a MissingResourceCacheException if too many
+     * requests of the same kind are outstanding; callers producing many
+     * requests should bound the number they have in progress. Directory
+     * listings cannot be sent asynchronously.
+     */
+    public <T extends PnfsMessage> ListenableFuture<T> pnfsRequestAsync(final T msg)
+    {
+        if (_cellStub == null) {
+            throw new IllegalStateException("Missing endpoint");
+        }
+        if (_subject != null) {
+            msg.setSubject(_subject);
+        }
+        ListenableFuture<T> future = _batcher.send(msg);
+        if (_attributesCache != null) {
+            final FileAttributesCache cache = _attributesCache;
+            future.addListener(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    cache.invalidate(msg);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+        return future;
+    }
+
     public PnfsCreateEntryMessage createPnfsDirectory(String path)
         throws CacheException
     {
@@ -472,10 +537,36 @@ public class PnfsHandler
      * @param attr array of requested attributes.
      * @return requested attributes
      */
-    public FileAttributes getFileAttributes(PnfsId pnfsid, Set<FileAttribute> attr) throws CacheException {
+    public FileAttributes getFileAttributes(final PnfsId pnfsid, Set<FileAttribute> attr) throws CacheException {
+        if (_attributesCache != null) {
+            return _attributesCache.get(_subject, pnfsid, attr, new FileAttributesCache.Loader()
+            {
+                @Override
+                public FileAttributes load(Set<FileAttribute> attributes) throws CacheException
+                {
+                    return pnfsRequest(new PnfsGetFileAttributes(pnfsid, attributes)).getFileAttributes();
+                }
+            });
+        }
         return pnfsRequest(new PnfsGetFileAttributes(pnfsid, attr)).getFileAttributes();
     }
 
+    /**
+     * Asynchronous version of {@link #getFileAttributes(PnfsId, Set)}.
+     */
+    public ListenableFuture<FileAttributes> getFileAttributesAsync(PnfsId pnfsid, Set<FileAttribute> attr)
+    {
+        return Futures.transform(pnfsRequestAsync(new PnfsGetFileAttributes(pnfsid, attr)),
+                                 new Function<PnfsGetFileAttributes, FileAttributes>()
+                                 {
+                                     @Override
+                                     public FileAttributes apply(PnfsGetFileAttributes msg)
+                                     {
+                                         return msg.getFileAttributes();
+                                     }
+                                 });
+    }
+
     /**
      * Get file attributes. The PnfsManager is free to return less attributes
      * than requested. If <code>attr</code> is an empty array, file existence
@@ -503,9 +594,19 @@ public class PnfsHandler
      * @param attr array of requested attributes.
      * @return requested attributes
      */
-    public FileAttributes getFileAttributes(String path, Set<FileAttribute> attr)
+    public FileAttributes getFileAttributes(final String path, Set<FileAttribute> attr)
         throws CacheException
     {
+        if (_attributesCache != null) {
+            return _attributesCache.get(_subject, path, attr, new FileAttributesCache.Loader()
+            {
+                @Override
+                public FileAttributes load(Set<FileAttribute> attributes) throws CacheException
+                {
+                    return pnfsRequest(new PnfsGetFileAttributes(path, attributes)).getFileAttributes();
+                }
+            });
+        }
         return pnfsRequest(new PnfsGetFileAttributes(path, attr)).getFileAttributes();
     }
 
@@ -2,6 +2,13 @@
 
 package diskCacheV111.util;
 
+import com.google.common.primitives.UnsignedLongs;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Objects;
@@ -10,6 +17,16 @@ import java.util.regex.Pattern;
 
 /**
  * Immutable representation of a pnfsId
+ *
+ * The id is stored in two longs and a short rather than in a byte
+ * array, and the hash code is computed once. Pools keep millions of
+ * these objects in memory, thus the compact representation saves
+ * a considerable amount of heap. The string form is computed on
+ * first use and cached, as it is used to name the data file of a
+ * replica.
+ *
+ * The serialised form is that of the original byte array based
+ * implementation.
  */
 public class PnfsId implements Serializable, Comparable<PnfsId> {
 
@@ -25,11 +42,40 @@ public class PnfsId implements Serializable, Comparable<PnfsId> {
     private final static int OLD_ID_SIZE = 12; // original pnfs
     private final static int NEW_ID_SIZE = 18; // chimera
 
-    private final byte[] _a;
-    private final String _domain;
-
     private static final long serialVersionUID = -112220393521303857L;
 
+    /**
+     * Fields of the serialised form, which still is a byte array
+     * and a domain.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("_a", byte[].class),
+        new ObjectStreamField("_domain", String.class)
+    };
+
+    /*
+     * The fields are logically final, but are assigned by readObject.
+     */
+
+    /** Bytes 0 to 7 of the id. */
+    private long _hi;
+
+    /** Bytes 8 to 15 of the id, left aligned for pnfs ids. */
+    private long _lo;
+
+    /** Bytes 16 and 17 of a chimera id. */
+    private short _tail;
+
+    /** Length of the id in bytes. */
+    private byte _length;
+
+    private String _domain;
+
+    private int _hash;
+
+    /** Cached string form, computed on first use. */
+    private transient String _string;
+
     public static boolean isValid( String id) {
         Matcher m = VALID_ID_PATTERN.matcher( id);
         return m.matches();
@@ -48,14 +94,43 @@ public class PnfsId implements Serializable, Comparable<PnfsId> {
     }
 
     public PnfsId(byte[] id, String domain) {
+        init(id, domain);
+    }
+
+    private void init(byte[] id, String domain) {
         int length = id.length;
         if (length != OLD_ID_SIZE && length != NEW_ID_SIZE) {
             throw new IllegalArgumentException("Illegal pnfsid string length");
         }
-        _a = new byte[length];
-        System.arraycopy(id, 0, _a, 0, length);
-
+        _length = (byte) length;
+        _hi = getLong(id, 0, 8);
+        _lo = getLong(id, 8, length - 8);
+        _tail = (length == NEW_ID_SIZE) ? (short) (((id[16] & 0xFF) << 8) | (id[17] & 0xFF)) : 0;
         _domain = (domain != null) ? domain.intern() : null;
+        _hash = computeHashCode();
+    }
+
+    /**
+     * Returns the big endian long stored in {@code length} bytes of
+     * {@code b} starting at {@code offset}, padded with zeros on the
+     * right to eight bytes.
+     */
+    private static long getLong(byte[] b, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value <<= 8;
+            if (i < length) {
+                value |= b[offset + i] & 0xFF;
+            }
+        }
+        return value;
+    }
+
+    private int computeHashCode() {
+        long h = _hi * 31 + _lo;
+        h = h * 31 + _tail;
+        int hash = (int) (h ^ (h >>> 32));
+        return hash ^ _length ^ ((_domain == null) ? 0 : _domain.hashCode());
     }
 
     @Override
@@ -69,13 +144,17 @@ public class PnfsId implements Serializable, Comparable<PnfsId> {
         }
 
         PnfsId other = (PnfsId) o;
-        return Arrays.equals(_a, other._a)
+        return _hash == other._hash
+            && _hi == other._hi
+            && _lo == other._lo
+            && _tail == other._tail
+            && _length == other._length
             && Objects.equals(_domain, other._domain);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(_a) ^ ((_domain == null) ? 0 : _domain.hashCode());
+        return _hash;
     }
 
     @Override
@@ -84,20 +163,23 @@ public class PnfsId implements Serializable, Comparable<PnfsId> {
             return 0;
         }
 
-        int i;
-        for (i = 0; (i < _a.length) && (_a[i] == pnfsId._a[i]); i++) {
+        int c = UnsignedLongs.compare(_hi, pnfsId._hi);
+        if (c != 0) {
+            return c;
         }
-        if (i == _a.length) {
-            return 0;
+        c = UnsignedLongs.compare(_lo, pnfsId._lo);
+        if (c != 0) {
+            return c;
         }
-        int t = _a[i] < 0 ? 256 + _a[i] : _a[i];
-        int o = pnfsId._a[i] < 0 ? 256 + pnfsId._a[i] : pnfsId._a[i];
-
-        return t < o ? -1 : 1;
+        c = Integer.compare(_tail & 0xFFFF, pnfsId._tail & 0xFFFF);
+        if (c != 0) {
+            return c;
+        }
+        return Integer.compare(_length, pnfsId._length);
     }
 
     public int getDatabaseId() {
-        return (((_a[0]) & 0xFF) << 8) | ((_a[1]) & 0xFF);
+        return (int) (_hi >>> 48);
     }
 
     public String getDomain() {
@@ -105,12 +187,20 @@ public class PnfsId implements Serializable, Comparable<PnfsId> {
     }
 
     public String getId() {
-        return bytesToHexString(_a);
+        return (_domain == null) ? toString() : bytesToHexString(getBytes());
     }
 
     @Override
     public String toString() {
-        return getId() + ((_domain != null) ? "." + _domain : "");
+        String s = _string;
+        if (s == null) {
+            s = bytesToHexString(getBytes());
+            if (_domain != null) {
+                s = s + "." + _domain;
+            }
+            _string = s;
+        }
+        return s;
     }
 
     public String toIdString() {
@@ -122,21 +212,31 @@ public class PnfsId implements Serializable, Comparable<PnfsId> {
     }
 
     public byte[] getBytes() {
-        byte[] x = new byte[_a.length];
-        System.arraycopy(_a, 0, x, 0, _a.length);
+        byte[] x = new byte[_length];
+        for (int i = 0; i < 8; i++) {
+            x[i] = (byte) (_hi >>> (56 - 8 * i));
+        }
+        for (int i = 8; i < Math.min(16, _length); i++) {
+            x[i] = (byte) (_lo >>> (120 - 8 * i));
+        }
+        if (_length == NEW_ID_SIZE) {
+            x[16] = (byte) (_tail >>> 8);
+            x[17] = (byte) _tail;
+        }
         return x;
     }
 
     public String toShortString() {
+        byte[] bytes = getBytes();
         StringBuilder sb = new StringBuilder();
         int i;
         for (i = 0; i < 2; i++) {
-            sb.append(byteToHexString(_a[i]));
+            sb.append(byteToHexString(bytes[i]));
         }
-        for (; (i < _a.length) && (_a[i] == 0); i++) {
+        for (; (i < bytes.length) && (bytes[i] == 0); i++) {
         }
-        for (; i < _a.length; i++) {
-            sb.append(byteToHexString(_a[i]));
+        for (; i < bytes.length; i++) {
+            sb.append(byteToHexString(bytes[i]));
         }
         return sb.toString();
     }
@@ -251,7 +351,7 @@ public class PnfsId implements Serializable, Comparable<PnfsId> {
      * @return pnfsid as byte array
      */
     public byte[] toBinPnfsId() {
-        switch (_a.length) {
+        switch (_length) {
         case OLD_ID_SIZE: // old pnfsid
             return PnfsIdUtil.toBinPnfsId(getId());
         case NEW_ID_SIZE: // himera
@@ -261,6 +361,27 @@ public class PnfsId implements Serializable, Comparable<PnfsId> {
         }
     }
 
+    private void writeObject(ObjectOutputStream stream) throws IOException {
+        ObjectOutputStream.PutField fields = stream.putFields();
+        fields.put("_a", getBytes());
+        fields.put("_domain", _domain);
+        stream.writeFields();
+    }
+
+    private void readObject(ObjectInputStream stream)
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = stream.readFields();
+        byte[] a = (byte[]) fields.get("_a", null);
+        if (a == null) {
+            throw new InvalidObjectException("Pnfs id is missing");
+        }
+        try {
+            init(a, (String) fields.get("_domain", null));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+    }
+
     public static void main(String[] args) {
         if (args.length < 1) {
             System.out.println("USAGE : ... <pnfsId>");
@@ -0,0 +1,332 @@
+package diskCacheV111.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Hash map keyed by PnfsId using open addressing with linear probing.
+ *
+ * Keys and values are stored in two parallel arrays, thus no entry
+ * object is allocated per mapping as in java.util.HashMap. Together
+ * with the cached hash code of PnfsId this considerably reduces the
+ * memory footprint and the garbage collection cost of pool data
+ * structures holding millions of entries.
+ *
+ * Removal uses backward shift deletion, so lookups never have to skip
+ * deleted slots.
+ *
+ * Null keys are not supported. The map is not thread safe.
+ */
+public class PnfsIdMap<V> extends AbstractMap<PnfsId,V>
+{
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private PnfsId[] _keys;
+    private Object[] _values;
+    private int _mask;
+    private int _threshold;
+    private int _size;
+    private int _modCount;
+
+    private Set<Map.Entry<PnfsId,V>> _entrySet;
+
+    public PnfsIdMap()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a map able to hold {@code expectedSize} mappings without
+     * resizing.
+     */
+    public PnfsIdMap(int expectedSize)
+    {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int size)
+    {
+        int capacity = Integer.highestOneBit(Math.max((int) (size / LOAD_FACTOR), 2) - 1) << 1;
+        return Math.max(capacity, 2);
+    }
+
+    private void allocate(int capacity)
+    {
+        _keys = new PnfsId[capacity];
+        _values = new Object[capacity];
+        _mask = capacity - 1;
+        _threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int index(int hash)
+    {
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & _mask;
+    }
+
+    private int find(Object key)
+    {
+        if (!(key instanceof PnfsId)) {
+            return -1;
+        }
+        int i = index(key.hashCode());
+        PnfsId k;
+        while ((k = _keys[i]) != null) {
+            if (k.equals(key)) {
+                return i;
+            }
+            i = (i + 1) & _mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public int size()
+    {
+        return _size;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return find(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key)
+    {
+        int i = find(key);
+        return (i < 0) ? null : (V) _values[i];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(PnfsId key, V value)
+    {
+        checkNotNull(key);
+        int i = index(key.hashCode());
+        PnfsId k;
+        while ((k = _keys[i]) != null) {
+            if (k.equals(key)) {
+                V old = (V) _values[i];
+                _values[i] = value;
+                return old;
+            }
+            i = (i + 1) & _mask;
+        }
+        _keys[i] = key;
+        _values[i] = value;
+        _modCount++;
+        if (++_size > _threshold) {
+            resize(_keys.length * 2);
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key)
+    {
+        int i = find(key);
+        if (i < 0) {
+            return null;
+        }
+        V old = (V) _values[i];
+        removeAt(i, null);
+        return old;
+    }
+
+    @Override
+    public void clear()
+    {
+        if (_size > 0) {
+            Arrays.fill(_keys, null);
+            Arrays.fill(_values, null);
+            _size = 0;
+            _modCount++;
+        }
+    }
+
+    private void resize(int capacity)
+    {
+        PnfsId[] keys = _keys;
+        Object[] values = _values;
+        allocate(capacity);
+        for (int j = 0; j < keys.length; j++) {
+            PnfsId key = keys[j];
+            if (key != null) {
+                int i = index(key.hashCode());
+                while (_keys[i] != null) {
+                    i = (i + 1) & _mask;
+                }
+                _keys[i] = key;
+                _values[i] = values[j];
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping in slot {@code pos} and closes the gap by
+     * moving back subsequent entries of the probe sequence.
+     *
+     * If called on behalf of an iterator, entries moved from slots the
+     * iterator has not visited yet into slots it already has visited are
+     * handed to the iterator. Once the iterator has visited all slots
+     * nothing is handed to it.
+     */
+    private void removeAt(int pos, EntryIterator iterator)
+    {
+        int gap = pos;
+        int j = pos;
+        PnfsId key;
+        while ((key = _keys[j = (j + 1) & _mask]) != null) {
+            int ideal = index(key.hashCode());
+            boolean canMove = (gap <= j)
+                    ? (ideal <= gap || ideal > j)
+                    : (ideal <= gap && ideal > j);
+            if (canMove) {
+                if (iterator != null && j < iterator._pos && gap >= iterator._pos) {
+                    iterator.wrapped(key, _values[j]);
+                }
+                _keys[gap] = key;
+                _values[gap] = _values[j];
+                gap = j;
+            }
+        }
+        _keys[gap] = null;
+        _values[gap] = null;
+        _size--;
+        _modCount++;
+    }
+
+    @Override
+    public Set<Map.Entry<PnfsId,V>> entrySet()
+    {
+        if (_entrySet == null) {
+            _entrySet = new AbstractSet<Map.Entry<PnfsId,V>>()
+            {
+                @Override
+                public Iterator<Map.Entry<PnfsId,V>> iterator()
+                {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size()
+                {
+                    return _size;
+                }
+
+                @Override
+                public void clear()
+                {
+                    PnfsIdMap.this.clear();
+                }
+            };
+        }
+        return _entrySet;
+    }
+
+    private class MapEntry extends SimpleEntry<PnfsId,V>
+    {
+        private static final long serialVersionUID = 1L;
+
+        MapEntry(PnfsId key, V value)
+        {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value)
+        {
+            super.setValue(value);
+            return put(getKey(), value);
+        }
+    }
+
+    /**
+     * Iterates the slots in descending order. Backward shift deletion
+     * only moves entries to lower slots, except when the probe sequence
+     * wraps around the end of the table; such entries are recorded
+     * and returned after the last slot.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<PnfsId,V>>
+    {
+        private int _pos = _keys.length;
+        private int _remaining = _size;
+        private int _last = -1;
+        private MapEntry _lastWrapped;
+        private List<MapEntry> _wrapped;
+        private int _expectedModCount = _modCount;
+
+        @SuppressWarnings("unchecked")
+        void wrapped(PnfsId key, Object value)
+        {
+            if (_wrapped == null) {
+                _wrapped = new ArrayList<>();
+            }
+            _wrapped.add(new MapEntry(key, (V) value));
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return _remaining > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<PnfsId,V> next()
+        {
+            if (_modCount != _expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (_remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            _remaining--;
+            while (--_pos >= 0) {
+                if (_keys[_pos] != null) {
+                    _last = _pos;
+                    return new MapEntry(_keys[_pos], (V) _values[_pos]);
+                }
+            }
+            _last = -1;
+            _lastWrapped = _wrapped.remove(_wrapped.size() - 1);
+            return _lastWrapped;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (_modCount != _expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (_last >= 0) {
+                removeAt(_last, this);
+                _last = -1;
+            } else if (_lastWrapped != null) {
+                int i = find(_lastWrapped.getKey());
+                if (i >= 0) {
+                    removeAt(i, this);
+                }
+                _lastWrapped = null;
+            } else {
+                throw new IllegalStateException();
+            }
+            _expectedModCount = _modCount;
+        }
+    }
+}
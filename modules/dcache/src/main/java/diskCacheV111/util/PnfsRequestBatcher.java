@@ -0,0 +1,284 @@
+package diskCacheV111.util;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import diskCacheV111.vehicles.PnfsMessage;
+
+import org.dcache.cells.CellStub;
+import org.dcache.util.CacheExceptionFactory;
+import org.dcache.vehicles.PnfsBatchMessage;
+import org.dcache.vehicles.PnfsListDirectoryMessage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Sends asynchronous requests to PnfsManager, coalescing concurrent requests
+ * of the same kind into PnfsBatchMessages.
+ *
+ * For each kind of request, at most a window of requests is in flight. A
+ * request submitted while the window is full waits and is sent along with
+ * other waiting requests of the same kind once a reply arrives. Thus an idle
+ * client sends requests without delay, while a busy client sends fewer and
+ * larger messages. PnfsManager spreads the entries of a batch over its
+ * queues.
+ *
+ * Requests rejected because the queues of PnfsManager are full are resent
+ * after a delay. On rejection the window is halved; it grows again by one
+ * with every reply without rejections. In addition the number of
+ * outstanding requests of a kind is bounded: a request submitted while the
+ * bound is reached fails immediately with a MissingResourceCacheException.
+ * Submitting never blocks, thus requests may be submitted from callbacks
+ * of other requests.
+ */
+class PnfsRequestBatcher
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(PnfsRequestBatcher.class);
+
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int MAX_WINDOW = 8;
+    static final int MAX_OUTSTANDING = 10000;
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    private static final ScheduledExecutorService RETRY_EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("pnfs-retry").setDaemon(true).build());
+
+    private final CellStub _stub;
+    private final Map<Class<?>,Lane> _lanes = new HashMap<>();
+
+    PnfsRequestBatcher(CellStub stub)
+    {
+        _stub = stub;
+    }
+
+    /**
+     * Sends a message to PnfsManager. The returned future fails with a
+     * CacheException if the reply carries a non-zero return code.
+     */
+    <T extends PnfsMessage> ListenableFuture<T> send(T msg)
+    {
+        checkArgument(!(msg instanceof PnfsBatchMessage) && !(msg instanceof PnfsListDirectoryMessage),
+                      "Message cannot be batched");
+        msg.setReplyRequired(true);
+        Request<T> request = new Request<>(msg);
+        getLane(msg.getClass()).submit(request);
+        return request.future;
+    }
+
+    private synchronized Lane getLane(Class<?> type)
+    {
+        Lane lane = _lanes.get(type);
+        if (lane == null) {
+            lane = new Lane();
+            _lanes.put(type, lane);
+        }
+        return lane;
+    }
+
+    private static boolean isRejection(int rc)
+    {
+        return rc == CacheException.RESOURCE;
+    }
+
+    private static class Request<T extends PnfsMessage>
+    {
+        final T message;
+        final SettableFuture<T> future = SettableFuture.create();
+
+        Request(T message)
+        {
+            this.message = message;
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(PnfsMessage reply)
+        {
+            if (reply.getReturnCode() != 0) {
+                future.setException(CacheExceptionFactory.exceptionOf(reply));
+            } else {
+                future.set((T) reply);
+            }
+        }
+
+        void fail(Throwable t)
+        {
+            future.setException(t);
+        }
+    }
+
+    /**
+     * Requests of a single kind.
+     */
+    private class Lane
+    {
+        private final Deque<Request<?>> _pending = new ArrayDeque<>();
+        private final Semaphore _outstanding = new Semaphore(MAX_OUTSTANDING);
+        private int _inFlight;
+        private int _window = MAX_WINDOW;
+
+        void submit(Request<?> request)
+        {
+            if (!_outstanding.tryAcquire()) {
+                request.fail(new MissingResourceCacheException(
+                        "Too many outstanding name space requests"));
+                return;
+            }
+            synchronized (this) {
+                _pending.addLast(request);
+            }
+            dispatch();
+        }
+
+        void dispatch()
+        {
+            List<List<Request<?>>> batches = new ArrayList<>();
+            synchronized (this) {
+                while (_inFlight < _window && !_pending.isEmpty()) {
+                    List<Request<?>> batch = new ArrayList<>();
+                    while (batch.size() < MAX_BATCH_SIZE && !_pending.isEmpty()) {
+                        batch.add(_pending.removeFirst());
+                    }
+                    batches.add(batch);
+                    _inFlight++;
+                }
+            }
+            for (List<Request<?>> batch : batches) {
+                if (batch.size() == 1) {
+                    sendSingle(batch.get(0));
+                } else {
+                    sendBatch(batch);
+                }
+            }
+        }
+
+        private void sendSingle(final Request<?> request)
+        {
+            request.message.setReplyRequired(true);
+            Futures.addCallback(_stub.send(request.message), new FutureCallback<PnfsMessage>()
+            {
+                @Override
+                public void onSuccess(PnfsMessage reply)
+                {
+                    if (isRejection(reply.getReturnCode())) {
+                        retry(request);
+                        done(1, true);
+                    } else {
+                        request.complete(reply);
+                        done(1, false);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t)
+                {
+                    if (t instanceof MissingResourceCacheException) {
+                        retry(request);
+                        done(1, true);
+                    } else {
+                        request.fail(t);
+                        done(1, false);
+                    }
+                }
+            });
+        }
+
+        private void sendBatch(final List<Request<?>> requests)
+        {
+            List<PnfsMessage> messages = new ArrayList<>(requests.size());
+            for (Request<?> request : requests) {
+                messages.add(request.message);
+            }
+            Futures.addCallback(_stub.send(new PnfsBatchMessage(messages)), new FutureCallback<PnfsBatchMessage>()
+            {
+                @Override
+                public void onSuccess(PnfsBatchMessage reply)
+                {
+                    if (reply.getReturnCode() != 0) {
+                        onFailure(CacheExceptionFactory.exceptionOf(reply));
+                        return;
+                    }
+                    List<PnfsMessage> replies = reply.getMessages();
+                    int completed = 0;
+                    boolean isRejected = false;
+                    for (int i = 0; i < requests.size(); i++) {
+                        PnfsMessage entry = replies.get(i);
+                        if (isRejection(entry.getReturnCode())) {
+                            retry(requests.get(i));
+                            isRejected = true;
+                        } else {
+                            requests.get(i).complete(entry);
+                            completed++;
+                        }
+                    }
+                    done(completed, isRejected);
+                }
+
+                @Override
+                public void onFailure(Throwable t)
+                {
+                    if (t instanceof MissingResourceCacheException) {
+                        for (Request<?> request : requests) {
+                            retry(request);
+                        }
+                        done(0, true);
+                    } else {
+                        for (Request<?> request : requests) {
+                            request.fail(t);
+                        }
+                        done(requests.size(), false);
+                    }
+                }
+            });
+        }
+
+        private void retry(final Request<?> request)
+        {
+            LOGGER.debug("PnfsManager queue is full; resending {}", request.message);
+            request.message.clearReply();
+            RETRY_EXECUTOR.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    synchronized (Lane.this) {
+                        _pending.addFirst(request);
+                    }
+                    dispatch();
+                }
+            }, RETRY_DELAY, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Called when the reply to a message of this lane arrived.
+         *
+         * @param completed number of requests that completed
+         * @param isRejected whether PnfsManager rejected any request
+         */
+        private void done(int completed, boolean isRejected)
+        {
+            synchronized (this) {
+                _inFlight--;
+                _window = isRejected ? Math.max(1, _window / 2) : Math.min(MAX_WINDOW, _window + 1);
+            }
+            _outstanding.release(completed);
+            dispatch();
+        }
+    }
+}
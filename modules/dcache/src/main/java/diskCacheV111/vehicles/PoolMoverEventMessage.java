@@ -0,0 +1,64 @@
+package diskCacheV111.vehicles;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Signals that a mover was queued, started or removed on a pool.
+ *
+ * Events of a pool are numbered consecutively. The incarnation identifies
+ * the instance of the pool that published the event; sequence numbers of
+ * different incarnations are unrelated. A subscriber that observes a gap in
+ * the sequence of a pool has missed events and should query the pool for
+ * its movers.
+ */
+public class PoolMoverEventMessage extends PoolMessage
+{
+    private static final long serialVersionUID = -4406318460521405307L;
+
+    private final long _incarnation;
+    private final long _sequence;
+    private final IoJobInfo _info;
+    private final boolean _isRemoved;
+
+    public PoolMoverEventMessage(String poolName, long incarnation, long sequence,
+                                 IoJobInfo info, boolean isRemoved)
+    {
+        super(poolName);
+        _incarnation = incarnation;
+        _sequence = sequence;
+        _info = checkNotNull(info);
+        _isRemoved = isRemoved;
+        setReplyRequired(false);
+    }
+
+    public long getIncarnation()
+    {
+        return _incarnation;
+    }
+
+    public long getSequence()
+    {
+        return _sequence;
+    }
+
+    public IoJobInfo getIoJobInfo()
+    {
+        return _info;
+    }
+
+    /**
+     * Returns true if the mover was removed, false if it was queued or
+     * started.
+     */
+    public boolean isRemoved()
+    {
+        return _isRemoved;
+    }
+
+    @Override
+    public String toString()
+    {
+        return super.toString() + ";seq=" + _sequence +
+               (_isRemoved ? ";removed=" : ";updated=") + _info;
+    }
+}
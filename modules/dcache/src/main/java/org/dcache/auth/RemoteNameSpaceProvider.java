@@ -204,6 +204,20 @@ public class RemoteNameSpaceProvider implements NameSpaceProvider
         }
     }
 
+    @Override
+    public void list(Subject subject, String path, Glob glob, String startAfter,
+            Range<Integer> range, Set<FileAttribute> attrs, ListHandler handler)
+            throws CacheException
+    {
+        try (DirectoryStream stream = _handler.list(subject, new FsPath(path), glob, startAfter, range, attrs)) {
+            for (DirectoryEntry entry : stream) {
+                handler.addEntry(entry.getName(), entry.getFileAttributes());
+            }
+        } catch (InterruptedException e) {
+            throw new TimeoutCacheException(e.getMessage());
+        }
+    }
+
     @Override
     public FsPath createUploadPath(Subject subject, FsPath path, int uid, int gid, int mode,
                                    Long size, AccessLatency al, RetentionPolicy rp, String spaceToken,
@@ -10,6 +10,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.math.BigInteger;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
@@ -528,15 +529,25 @@ public class AbstractCell extends CellAdapter implements CellMessageReceiver
      *                                  and the option is not defined.
      */
     protected String getOption(Option option)
+    {
+        return getOption(option, getArgs(), getDomainContext());
+    }
+
+    /**
+     * Returns the value of an option. If the option is found in
+     * <code>args</code>, the value is taken from there. Otherwise it is
+     * taken from the domain context, if found.
+     */
+    public static String getOption(Option option, Args args, Map<String,Object> domainContext)
     {
         String s;
 
-        s = getArgs().getOpt(option.name());
+        s = args.getOpt(option.name());
         if (s != null && (s.length() > 0 || !option.required())) {
             return s;
         }
 
-        s = (String)getDomainContext().get(option.name());
+        s = (String)domainContext.get(option.name());
         if (s != null && (s.length() > 0 || !option.required())) {
             return s;
         }
@@ -558,6 +569,15 @@ public class AbstractCell extends CellAdapter implements CellMessageReceiver
      * Values are logger at the INFO level.
      */
     protected void parseOptions(Object obj)
+    {
+        parseOptions(obj, getArgs(), getDomainContext());
+    }
+
+    /**
+     * Parses options of an object outside of a cell, e.g. of a login
+     * session, from the given arguments and domain context.
+     */
+    public static void parseOptions(Object obj, Args args, Map<String,Object> domainContext)
     {
         for (Class<?> c = obj.getClass(); c != null; c = c.getSuperclass()) {
             for (Field field : c.getDeclaredFields()) {
@@ -566,7 +586,7 @@ public class AbstractCell extends CellAdapter implements CellMessageReceiver
                     if (option != null) {
                         field.setAccessible(true);
 
-                        String s = getOption(option);
+                        String s = getOption(option, args, domainContext);
                         Object value;
 //                        this filters empty strings with the result that they
 //                        become null
@@ -652,8 +672,11 @@ public class AbstractCell extends CellAdapter implements CellMessageReceiver
 
     /**
      * Sends a reply back to the sender of <code>envelope</code>.
+     *
+     * The result of a message listener is translated to a reply as
+     * described for {@link #messageArrived(CellMessage)}.
      */
-    private void sendReply(CellEndpoint endpoint, CellMessage envelope, Object result)
+    public static void sendReply(CellEndpoint endpoint, CellMessage envelope, Object result)
     {
         Serializable o = envelope.getMessageObject();
         if (o instanceof Message) {
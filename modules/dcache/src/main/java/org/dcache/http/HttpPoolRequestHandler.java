@@ -1,6 +1,7 @@
 package org.dcache.http;
 
 import com.google.common.base.CharMatcher;
+import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -84,6 +85,14 @@ public class HttpPoolRequestHandler extends HttpRequestHandler
     private final Multiset<MoverChannel<HttpProtocolInfo>> _files =
         HashMultiset.create();
 
+    /**
+     * The mover channels with GET responses that have not been sent
+     * completely. Updated by write completion listeners, hence
+     * thread safe.
+     */
+    private final Multiset<MoverChannel<HttpProtocolInfo>> _sending =
+        ConcurrentHashMultiset.create();
+
     /**
      * The server in the context of which this handler is executed
      */
@@ -373,9 +382,15 @@ public class HttpPoolRequestHandler extends HttpRequestHandler
     {
         _logger.debug("HTTP connection from {} closed", ctx.getChannel().getRemoteAddress());
         for (MoverChannel<HttpProtocolInfo> file: _files) {
-            _server.close(file);
+            if (_sending.remove(file)) {
+                /* Keep the mover for the client to resume the transfer. */
+                _server.disconnect(file);
+            } else {
+                _server.close(file);
+            }
         }
         _files.clear();
+        _sending.clear();
     }
 
     @Override
@@ -474,6 +489,7 @@ public class HttpPoolRequestHandler extends HttpRequestHandler
                 }
                 future = sendMultipartEnd(context);
             }
+            trackResponse(file, future);
         } catch (HttpException e) {
             future = conditionalSendError(context, request.getMethod(),
                     future, HttpResponseStatus.valueOf(e.getErrorCode()),
@@ -688,6 +704,28 @@ public class HttpPoolRequestHandler extends HttpRequestHandler
         return file;
     }
 
+    /**
+     * Registers a GET response as being sent until the given future,
+     * the last write of the response, completes successfully.
+     */
+    private void trackResponse(final MoverChannel<HttpProtocolInfo> file,
+                               ChannelFuture future)
+    {
+        if (future != null) {
+            _sending.add(file);
+            future.addListener(new ChannelFutureListener()
+            {
+                @Override
+                public void operationComplete(ChannelFuture future)
+                {
+                    if (future.isSuccess()) {
+                        _sending.remove(file);
+                    }
+                }
+            });
+        }
+    }
+
     private void close(MoverChannel<HttpProtocolInfo> channel, Exception exception)
     {
         _server.close(channel, exception);
@@ -0,0 +1,688 @@
+package org.dcache.namespace;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.TreeMultiset;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.security.auth.Subject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.FsPath;
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.PnfsFlagMessage;
+import diskCacheV111.vehicles.PnfsGetCacheLocationsMessage;
+import diskCacheV111.vehicles.PnfsGetParentMessage;
+import diskCacheV111.vehicles.PnfsMapPathMessage;
+import diskCacheV111.vehicles.PnfsMessage;
+import diskCacheV111.vehicles.PnfsRenameMessage;
+
+import dmg.cells.nucleus.AbstractCellComponent;
+import dmg.cells.nucleus.CellMessageReceiver;
+import dmg.cells.nucleus.CellPath;
+
+import org.dcache.cells.CellStub;
+import org.dcache.util.BroadcastRegistrationTask;
+import org.dcache.vehicles.FileAttributes;
+import org.dcache.vehicles.PnfsEntryModifiedMessage;
+import org.dcache.vehicles.PnfsGetFileAttributes;
+import org.dcache.vehicles.PnfsListDirectoryMessage;
+import org.dcache.vehicles.PnfsSetFileAttributes;
+
+/**
+ * Bounded cache of file attributes for doors.
+ *
+ * Attributes are cached by PnfsId and by path, separately for each set of
+ * principals, as PnfsManager checks permissions on behalf of the subject.
+ * Each attribute has a time to live; a lookup is a hit if the cached entry
+ * defines all requested attributes and is younger than the shortest time
+ * to live of the requested attributes. Attributes with a time to live of
+ * zero are never served from the cache.
+ *
+ * Entries are invalidated when PnfsManager reports a modification of the
+ * entry through a PnfsEntryModifiedMessage, for which the cache subscribes
+ * through the broadcast cell. Modifications of a directory caused by
+ * changes to its content, such as its modification time and link count,
+ * are not reported and are bounded by the time to live only. A permission
+ * change of a directory also invalidates the entries whose permission
+ * checks depend on it.
+ */
+public class FileAttributesCache extends AbstractCellComponent
+    implements CellMessageReceiver
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileAttributesCache.class);
+
+    private static final long BROADCAST_REGISTRATION_PERIOD =
+            TimeUnit.MINUTES.toMillis(5);
+    private static final long BROADCAST_REGISTRATION_EXPIRATION =
+            TimeUnit.MINUTES.toMillis(6);
+
+    /**
+     * Fetches file attributes from PnfsManager on a cache miss.
+     */
+    public interface Loader
+    {
+        FileAttributes load(Set<FileAttribute> attributes) throws CacheException;
+    }
+
+    private static class Key
+    {
+        private final Set<Principal> _principals;
+        private final Object _target;
+
+        Key(Subject subject, Object target)
+        {
+            _principals = (subject == null)
+                    ? ImmutableSet.<Principal>of()
+                    : ImmutableSet.copyOf(subject.getPrincipals());
+            _target = target;
+        }
+
+        Object getTarget()
+        {
+            return _target;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return _target.equals(other._target) && _principals.equals(other._principals);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * _target.hashCode() + _principals.hashCode();
+        }
+    }
+
+    /**
+     * Cached attributes. The attributes are kept in serialized form, so
+     * every hit returns a private copy.
+     */
+    private static class Entry
+    {
+        final byte[] attributes;
+        final Set<FileAttribute> defined;
+        final PnfsId pnfsId;
+        final FileType type;
+        final long created = System.currentTimeMillis();
+
+        Entry(FileAttributes attributes) throws IOException
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(attributes);
+            }
+            this.attributes = bytes.toByteArray();
+            this.defined = attributes.getDefinedAttributes();
+            this.pnfsId = attributes.isDefined(FileAttribute.PNFSID) ? attributes.getPnfsId() : null;
+            this.type = attributes.isDefined(FileAttribute.TYPE) ? attributes.getFileType() : null;
+        }
+
+        FileAttributes getFileAttributes() throws IOException, ClassNotFoundException
+        {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(attributes))) {
+                return (FileAttributes) in.readObject();
+            }
+        }
+    }
+
+    private final Map<FileAttribute,Long> _ttls = new EnumMap<>(FileAttribute.class);
+
+    /* The indexes and the invalidation records are guarded by _index. */
+
+    /** Keys of the cached entries of each PnfsId. */
+    private final SetMultimap<PnfsId,Key> _index = HashMultimap.create();
+
+    /** Keys of the entries cached by path, ordered by path. */
+    private final NavigableMap<String,Set<Key>> _paths = new TreeMap<>();
+
+    /**
+     * Invalidations are numbered. While attributes are fetched, the number
+     * of each invalidation is recorded for its target, so that attributes
+     * fetched before a modification of the entry are not cached. Records
+     * are dropped once no fetch that started before them is in progress.
+     */
+    private long _sequence;
+    private final TreeMultiset<Long> _loads = TreeMultiset.create();
+    private final Deque<Invalidation> _log = new ArrayDeque<>();
+    private final Map<Object,Long> _invalidated = new HashMap<>();
+    private final Map<String,Long> _invalidatedTrees = new HashMap<>();
+    private long _invalidatedPaths;
+    private long _invalidatedPnfsIds;
+
+    private static class Invalidation
+    {
+        final long sequence;
+        final Object target;
+        final boolean isTree;
+
+        Invalidation(long sequence, Object target, boolean isTree)
+        {
+            this.sequence = sequence;
+            this.target = target;
+            this.isTree = isTree;
+        }
+    }
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _bypasses = new AtomicLong();
+    private final AtomicLong _invalidations = new AtomicLong();
+
+    private long _maximumSize;
+    private long _defaultTtl;
+    private TimeUnit _ttlUnit = TimeUnit.MILLISECONDS;
+    private String _broadcast;
+
+    private Cache<Key,Entry> _cache;
+    private ScheduledExecutorService _executor;
+    private BroadcastRegistrationTask _registration;
+
+    /**
+     * Sets the maximum number of cached entries. Zero disables the cache.
+     */
+    public void setMaximumSize(long size)
+    {
+        _maximumSize = size;
+    }
+
+    public void setTtl(long ttl)
+    {
+        _defaultTtl = ttl;
+    }
+
+    public void setTtlUnit(TimeUnit unit)
+    {
+        _ttlUnit = unit;
+    }
+
+    /**
+     * Sets the time to live of individual attributes as a comma separated
+     * list of ATTRIBUTE=TTL pairs, overriding the default time to live.
+     */
+    public void setAttributeTtls(String ttls)
+    {
+        _ttls.clear();
+        for (Map.Entry<String,String> ttl :
+                Splitter.on(',').omitEmptyStrings().trimResults().withKeyValueSeparator('=').split(ttls).entrySet()) {
+            _ttls.put(FileAttribute.valueOf(ttl.getKey().trim()), Long.parseLong(ttl.getValue().trim()));
+        }
+    }
+
+    /**
+     * Sets the address of the broadcast cell through which the cache
+     * subscribes to modification notifications. If empty, entries only
+     * expire.
+     */
+    public void setBroadcast(String address)
+    {
+        _broadcast = address;
+    }
+
+    public void init()
+    {
+        _cache = CacheBuilder.newBuilder()
+                .maximumSize(_maximumSize)
+                .expireAfterWrite(getMaximumTtl(), TimeUnit.MILLISECONDS)
+                .removalListener(new RemovalListener<Key,Entry>()
+                {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key,Entry> notification)
+                    {
+                        unindex(notification);
+                    }
+                })
+                .build();
+
+        if (_maximumSize > 0 && _broadcast != null && !_broadcast.isEmpty()) {
+            _registration = new BroadcastRegistrationTask();
+            _registration.setTarget(new CellPath(getCellName(), getCellDomainName()));
+            _registration.setBroadcastStub(new CellStub(getCellEndpoint(), new CellPath(_broadcast)));
+            _registration.setEventClass(PnfsEntryModifiedMessage.class);
+            _registration.setExpires(BROADCAST_REGISTRATION_EXPIRATION);
+            _executor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("attribute-cache-registration").build());
+            _executor.scheduleAtFixedRate(
+                    _registration, 0, BROADCAST_REGISTRATION_PERIOD, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void shutdown()
+    {
+        if (_executor != null) {
+            _executor.shutdownNow();
+        }
+        if (_registration != null) {
+            _registration.unregister();
+        }
+    }
+
+    private long getTtl(FileAttribute attribute)
+    {
+        Long ttl = _ttls.get(attribute);
+        return _ttlUnit.toMillis((ttl == null) ? _defaultTtl : ttl);
+    }
+
+    private long getMaximumTtl()
+    {
+        long max = _ttlUnit.toMillis(_defaultTtl);
+        for (long ttl : _ttls.values()) {
+            max = Math.max(max, _ttlUnit.toMillis(ttl));
+        }
+        return max;
+    }
+
+    private long getTtl(Set<FileAttribute> attributes)
+    {
+        if (attributes.isEmpty()) {
+            return _ttlUnit.toMillis(_defaultTtl);
+        }
+        long ttl = Long.MAX_VALUE;
+        for (FileAttribute attribute : attributes) {
+            ttl = Math.min(ttl, getTtl(attribute));
+        }
+        return ttl;
+    }
+
+    public FileAttributes get(Subject subject, PnfsId pnfsId, Set<FileAttribute> attributes, Loader loader)
+            throws CacheException
+    {
+        return get(new Key(subject, pnfsId), attributes, loader);
+    }
+
+    public FileAttributes get(Subject subject, String path, Set<FileAttribute> attributes, Loader loader)
+            throws CacheException
+    {
+        return get(new Key(subject, new FsPath(path).toString()), attributes, loader);
+    }
+
+    private FileAttributes get(Key key, Set<FileAttribute> attributes, Loader loader)
+            throws CacheException
+    {
+        long ttl = getTtl(attributes);
+        if (_maximumSize == 0 || ttl <= 0) {
+            _bypasses.incrementAndGet();
+            return loader.load(attributes);
+        }
+
+        Entry entry = _cache.getIfPresent(key);
+        if (entry != null && entry.defined.containsAll(attributes) &&
+                System.currentTimeMillis() - entry.created < ttl) {
+            try {
+                FileAttributes cached = entry.getFileAttributes();
+                _hits.incrementAndGet();
+                return cached;
+            } catch (IOException | ClassNotFoundException e) {
+                LOGGER.warn("Failed to read cached attributes: {}", e.toString());
+            }
+        }
+        _misses.incrementAndGet();
+
+        /* The PnfsId is needed to invalidate entries cached by path, the
+         * type to tell whether a permission change affects other entries.
+         */
+        Set<FileAttribute> request = EnumSet.of(FileAttribute.PNFSID, FileAttribute.TYPE);
+        request.addAll(attributes);
+
+        long sequence;
+        synchronized (_index) {
+            sequence = _sequence;
+            _loads.add(sequence);
+        }
+        Entry fetched = null;
+        try {
+            FileAttributes fileAttributes = loader.load(request);
+            try {
+                fetched = new Entry(fileAttributes);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to cache attributes: {}", e.toString());
+            }
+            return fileAttributes;
+        } finally {
+            synchronized (_index) {
+                _loads.remove(sequence);
+                if (fetched != null && fetched.pnfsId != null &&
+                        !isInvalidatedSince(key, fetched.pnfsId, sequence)) {
+                    index(key, fetched.pnfsId);
+                    _cache.put(key, fetched);
+                }
+                expireInvalidations();
+            }
+        }
+    }
+
+    private static boolean isAfter(Long invalidation, long sequence)
+    {
+        return invalidation != null && invalidation > sequence;
+    }
+
+    /**
+     * Returns whether the entry of a key may have been invalidated after
+     * the invalidation with the given number. Must be called with the lock
+     * on _index held.
+     */
+    private boolean isInvalidatedSince(Key key, PnfsId pnfsId, long sequence)
+    {
+        if (isAfter(_invalidated.get(pnfsId), sequence)) {
+            return true;
+        }
+        Object target = key.getTarget();
+        if (target instanceof PnfsId) {
+            return _invalidatedPnfsIds > sequence || isAfter(_invalidated.get(target), sequence);
+        }
+        String path = (String) target;
+        if (_invalidatedPaths > sequence || isAfter(_invalidated.get(path), sequence)) {
+            return true;
+        }
+        String dir = path;
+        while (!isAfter(_invalidatedTrees.get(dir), sequence)) {
+            int i = dir.lastIndexOf('/');
+            if (i <= 0) {
+                return !dir.equals("/") && isAfter(_invalidatedTrees.get("/"), sequence);
+            }
+            dir = dir.substring(0, i);
+        }
+        return true;
+    }
+
+    /**
+     * Numbers and records an invalidation. Must be called with the lock on
+     * _index held.
+     */
+    private void record(Object target, boolean isTree)
+    {
+        long sequence = ++_sequence;
+        _invalidations.incrementAndGet();
+        if (isTree) {
+            _invalidatedTrees.put((String) target, sequence);
+        } else {
+            _invalidated.put(target, sequence);
+        }
+        _log.add(new Invalidation(sequence, target, isTree));
+    }
+
+    /**
+     * Drops the records of invalidations that no fetch in progress started
+     * before. Must be called with the lock on _index held.
+     */
+    private void expireInvalidations()
+    {
+        long oldest = _loads.isEmpty() ? _sequence : _loads.firstEntry().getElement();
+        while (!_log.isEmpty() && _log.peek().sequence <= oldest) {
+            Invalidation invalidation = _log.poll();
+            Map<?,Long> records = invalidation.isTree ? _invalidatedTrees : _invalidated;
+            Long sequence = records.get(invalidation.target);
+            if (sequence != null && sequence == invalidation.sequence) {
+                records.remove(invalidation.target);
+            }
+        }
+    }
+
+    private void index(Key key, PnfsId pnfsId)
+    {
+        _index.put(pnfsId, key);
+        if (key.getTarget() instanceof String) {
+            String path = (String) key.getTarget();
+            Set<Key> keys = _paths.get(path);
+            if (keys == null) {
+                keys = new HashSet<>();
+                _paths.put(path, keys);
+            }
+            keys.add(key);
+        }
+    }
+
+    private void unindex(RemovalNotification<Key,Entry> notification)
+    {
+        Key key = notification.getKey();
+        Entry entry = notification.getValue();
+        if (key == null || entry == null) {
+            return;
+        }
+        synchronized (_index) {
+            /* The key may have been cached again since the entry was removed. */
+            Entry current = _cache.getIfPresent(key);
+            if (entry.pnfsId != null && (current == null || !Objects.equal(current.pnfsId, entry.pnfsId))) {
+                _index.remove(entry.pnfsId, key);
+            }
+            if (current == null && key.getTarget() instanceof String) {
+                Set<Key> keys = _paths.get(key.getTarget());
+                if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                    _paths.remove(key.getTarget());
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates all entries of a PnfsId, including those cached by path.
+     */
+    public void invalidate(PnfsId pnfsId)
+    {
+        synchronized (_index) {
+            record(pnfsId, false);
+            _cache.invalidateAll(ImmutableList.copyOf(_index.get(pnfsId)));
+            expireInvalidations();
+        }
+    }
+
+    /**
+     * Invalidates all entries cached by the path or, if {@code isTree} is
+     * true, by a path below it.
+     */
+    public void invalidate(String path, boolean isTree)
+    {
+        String normalized = new FsPath(path).toString();
+        synchronized (_index) {
+            record(normalized, isTree);
+            List<Key> keys = new ArrayList<>();
+            Set<Key> exact = _paths.get(normalized);
+            if (exact != null) {
+                keys.addAll(exact);
+            }
+            if (isTree) {
+                String prefix = normalized.endsWith("/") ? normalized : normalized + "/";
+                for (Set<Key> below : _paths.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                    keys.addAll(below);
+                }
+            }
+            _cache.invalidateAll(keys);
+            expireInvalidations();
+        }
+    }
+
+    /**
+     * Invalidates all entries cached by path.
+     */
+    public void invalidatePaths()
+    {
+        synchronized (_index) {
+            _invalidatedPaths = ++_sequence;
+            _invalidations.incrementAndGet();
+            List<Key> keys = new ArrayList<>();
+            for (Set<Key> keysOfPath : _paths.values()) {
+                keys.addAll(keysOfPath);
+            }
+            _cache.invalidateAll(keys);
+            expireInvalidations();
+        }
+    }
+
+    /**
+     * Invalidates all entries cached by PnfsId.
+     */
+    private void invalidatePnfsIds()
+    {
+        synchronized (_index) {
+            _invalidatedPnfsIds = ++_sequence;
+            _invalidations.incrementAndGet();
+            List<Key> keys = new ArrayList<>();
+            for (Key key : _index.values()) {
+                if (key.getTarget() instanceof PnfsId) {
+                    keys.add(key);
+                }
+            }
+            _cache.invalidateAll(keys);
+            expireInvalidations();
+        }
+    }
+
+    /**
+     * Invalidates the entries affected by a permission change of a
+     * directory or of an entry of unknown type.
+     *
+     * PnfsManager checks the permissions of the ancestors of a path and of
+     * the parent directory of a PnfsId. The former are invalidated below
+     * the path of the directory, or all of them if its path is not known.
+     * As the cache does not know the parent of an entry cached by PnfsId,
+     * all of these are invalidated. Permission changes of directories are
+     * rare compared to lookups.
+     */
+    private void invalidatePermissions(PnfsId pnfsId, String path)
+    {
+        Set<String> paths = new HashSet<>();
+        if (path != null) {
+            paths.add(path);
+        }
+        synchronized (_index) {
+            if (pnfsId != null) {
+                for (Key key : _index.get(pnfsId)) {
+                    Entry entry = _cache.getIfPresent(key);
+                    if (entry != null && entry.type != null && entry.type != FileType.DIR) {
+                        return;
+                    }
+                    if (key.getTarget() instanceof String) {
+                        paths.add((String) key.getTarget());
+                    }
+                }
+            }
+            if (paths.isEmpty()) {
+                invalidatePaths();
+            } else {
+                for (String directory : paths) {
+                    invalidate(directory, true);
+                }
+            }
+            invalidatePnfsIds();
+        }
+    }
+
+    private void invalidate(PnfsId pnfsId, String path, String newPath, boolean isPermissionChange)
+    {
+        if (isPermissionChange) {
+            invalidatePermissions(pnfsId, path);
+        }
+        if (pnfsId != null) {
+            invalidate(pnfsId);
+        }
+        if (newPath != null) {
+            if (path != null) {
+                invalidate(path, true);
+            } else {
+                invalidatePaths();
+            }
+            invalidate(newPath, true);
+        } else if (path != null) {
+            invalidate(path, false);
+        }
+    }
+
+    /**
+     * Invalidates the entries affected by a request sent to PnfsManager.
+     * Called once the request has been processed, so that the door does not
+     * see stale attributes of its own modifications while the notification
+     * of PnfsManager is still under way.
+     */
+    public void invalidate(PnfsMessage request)
+    {
+        if (_maximumSize == 0 || isQuery(request)) {
+            return;
+        }
+        String newPath = (request instanceof PnfsRenameMessage)
+                ? ((PnfsRenameMessage) request).newName()
+                : null;
+        boolean isPermissionChange = request instanceof PnfsSetFileAttributes &&
+                ((PnfsSetFileAttributes) request).isPermissionChange();
+        invalidate(request.getPnfsId(), request.getPnfsPath(), newPath, isPermissionChange);
+    }
+
+    private static boolean isQuery(PnfsMessage request)
+    {
+        return request instanceof PnfsGetFileAttributes ||
+               request instanceof PnfsGetCacheLocationsMessage ||
+               request instanceof PnfsMapPathMessage ||
+               request instanceof PnfsGetParentMessage ||
+               request instanceof PnfsListDirectoryMessage ||
+               (request instanceof PnfsFlagMessage &&
+                ((PnfsFlagMessage) request).getOperation() == PnfsFlagMessage.FlagOperation.GET);
+    }
+
+    public void messageArrived(PnfsEntryModifiedMessage message)
+    {
+        if (_maximumSize == 0) {
+            return;
+        }
+        invalidate(message.getPnfsId(), message.getPnfsPath(), message.getNewPath(),
+                   message.isPermissionChange());
+    }
+
+    @Override
+    public void getInfo(PrintWriter pw)
+    {
+        long hits = _hits.get();
+        long misses = _misses.get();
+        long lookups = hits + misses;
+        pw.println("File attributes cache:");
+        pw.println("    Entries       : " + ((_cache == null) ? 0 : _cache.size()) + " of " + _maximumSize);
+        pw.println("    Hits          : " + hits);
+        pw.println("    Misses        : " + misses);
+        pw.println("    Bypasses      : " + _bypasses.get());
+        pw.println("    Hit rate      : " +
+                   ((lookups == 0) ? "-" : String.format("%.1f%%", 100.0 * hits / lookups)));
+        pw.println("    Invalidations : " + _invalidations.get());
+    }
+}
@@ -7,9 +7,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.channels.CompletionHandler;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.dcache.util.PortRange;
@@ -19,6 +22,7 @@ public class ProtocolConnectionPool extends Thread {
     private static Logger _logSocketIO = LoggerFactory.getLogger("logger.dev.org.dcache.io.socket");
     private final ServerSocketChannel _serverSocketChannel;
     private final Map<Object, SocketChannel> _acceptedSockets = new HashMap<>();
+    private final Map<Object, CompletionHandler<SocketChannel,Object>> _pendingHandlers = new HashMap<>();
     private final ChallengeReader _challengeReader;
     private boolean _stop;
 
@@ -82,6 +86,42 @@ public class ProtocolConnectionPool extends Thread {
         }
     }
 
+    /**
+     * Get a {@link SocketChannel} identified by <code>challenge</code> without
+     * blocking. The handler is called once the client is connected and the
+     * challenge exchange is done, either by the calling thread or by the
+     * accepting thread. The handler must not block. If the accept loop fails,
+     * the handler is failed.
+     *
+     * @param challenge
+     * @param handler
+     */
+    public void getSocket(Object challenge, CompletionHandler<SocketChannel,Object> handler) {
+
+        SocketChannel channel;
+        synchronized (_acceptedSockets) {
+            channel = _acceptedSockets.remove(challenge);
+            if (channel == null) {
+                _pendingHandlers.put(challenge, handler);
+                return;
+            }
+        }
+        handler.completed(channel, challenge);
+    }
+
+    /**
+     * Cancel a request registered with {@link #getSocket(Object, CompletionHandler)}.
+     *
+     * @param challenge
+     * @return true if the request was pending, false if the handler has
+     * already been called
+     */
+    public boolean cancel(Object challenge) {
+        synchronized (_acceptedSockets) {
+            return _pendingHandlers.remove(challenge) != null;
+        }
+    }
+
     /**
      * Get TCP port number used by this connection pool.
      * @return port number
@@ -114,10 +154,17 @@ public class ProtocolConnectionPool extends Thread {
                     continue;
                 }
 
+                CompletionHandler<SocketChannel,Object> handler;
                 synchronized (_acceptedSockets) {
-                    _acceptedSockets.put(challenge, newSocketChannel);
-                    _acceptedSockets.notifyAll();
-                    Thread.yield();
+                    handler = _pendingHandlers.remove(challenge);
+                    if (handler == null) {
+                        _acceptedSockets.put(challenge, newSocketChannel);
+                        _acceptedSockets.notifyAll();
+                        Thread.yield();
+                    }
+                }
+                if (handler != null) {
+                    handler.completed(newSocketChannel, challenge);
                 }
 
             } catch (IOException e) {
@@ -130,9 +177,21 @@ public class ProtocolConnectionPool extends Thread {
                     _serverSocketChannel.close();
                 } catch (IOException ignored) {
                 }
+                failPendingHandlers(e);
             }
         }
     }
+
+    private void failPendingHandlers(IOException e) {
+        List<Map.Entry<Object, CompletionHandler<SocketChannel,Object>>> handlers;
+        synchronized (_acceptedSockets) {
+            handlers = new ArrayList<>(_pendingHandlers.entrySet());
+            _pendingHandlers.clear();
+        }
+        for (Map.Entry<Object, CompletionHandler<SocketChannel,Object>> entry : handlers) {
+            entry.getValue().failed(e, entry.getKey());
+        }
+    }
 }
 /*
  * $Log: not supported by cvs2svn $
@@ -0,0 +1,43 @@
+package org.dcache.pool.classic;
+
+import java.util.BitSet;
+
+import diskCacheV111.util.PnfsId;
+
+/**
+ * Progress of a scan checking files out of order.
+ *
+ * Files are identified by their index in the sorted array of files of the
+ * scan. A scan can be resumed after the last file of the longest prefix
+ * of checked files, as all files before it have been checked.
+ */
+class CheckedPrefix
+{
+    private final PnfsId[] _files;
+    private final BitSet _checked;
+    private int _length;
+
+    CheckedPrefix(PnfsId[] files)
+    {
+        _files = files;
+        _checked = new BitSet(files.length);
+    }
+
+    /**
+     * Marks the file with the given index as checked.
+     */
+    synchronized void checked(int index)
+    {
+        _checked.set(index);
+        _length = _checked.nextClearBit(_length);
+    }
+
+    /**
+     * Returns the last file of the longest prefix of checked files, or
+     * null if the first file has not been checked yet.
+     */
+    synchronized PnfsId getLast()
+    {
+        return (_length == 0) ? null : _files[_length - 1];
+    }
+}
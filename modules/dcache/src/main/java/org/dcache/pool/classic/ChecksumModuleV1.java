@@ -420,10 +420,19 @@ public class ChecksumModuleV1
         return verifyChecksum(file, expectedChecksums, Double.POSITIVE_INFINITY);
     }
 
-    public Iterable<Checksum> verifyChecksumWithThroughputLimit(ReplicaDescriptor handle)
+    /**
+     * Verifies the checksum of a replica by reading it through the given
+     * reader of the checksum scanner.
+     */
+    public Iterable<Checksum> verifyChecksum(ReplicaDescriptor handle, ChecksumReader reader)
             throws IOException, InterruptedException, NoSuchAlgorithmException, CacheException
     {
-        return verifyChecksum(handle.getFile(), handle.getChecksums(), getThroughputLimit());
+        Iterable<Checksum> expectedChecksums = handle.getChecksums();
+        ChecksumFactory factory = ChecksumFactory.getFactory(expectedChecksums, getDefaultChecksumType());
+        Iterable<Checksum> actualChecksums =
+                Collections.singleton(reader.computeChecksum(handle.getFile(), factory));
+        compareChecksums(expectedChecksums, actualChecksums);
+        return actualChecksums;
     }
 
     private Iterable<Checksum> verifyChecksum(File file, Iterable<Checksum> expectedChecksums, double throughputLimit)
@@ -0,0 +1,87 @@
+package org.dcache.pool.classic;
+
+import com.google.common.base.Throwables;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import diskCacheV111.util.ChecksumFactory;
+
+import org.dcache.util.Checksum;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Computes checksums of replicas for one thread of the checksum scanner.
+ *
+ * The file is read with read-ahead into two large direct buffers: while
+ * one buffer is digested, the next block of the file is read into the
+ * other. The buffers are reused for all files checked by the thread.
+ */
+class ChecksumReader
+{
+    private final int _worker;
+    private final ChecksumThrottle _throttle;
+    private ByteBuffer _current;
+    private ByteBuffer _next;
+
+    /**
+     * @param throttle limits the disk bandwidth; may be null
+     */
+    ChecksumReader(int worker, int bufferSize, ChecksumThrottle throttle)
+    {
+        _worker = worker;
+        _throttle = throttle;
+        _current = ByteBuffer.allocateDirect(bufferSize);
+        _next = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public Checksum computeChecksum(File file, ChecksumFactory factory)
+            throws IOException, InterruptedException
+    {
+        MessageDigest digest = factory.create();
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file.toPath(), READ)) {
+            long position = 0;
+            _current.clear();
+            Future<Integer> read = read(channel, _current, position);
+            int n;
+            while ((n = get(read)) > 0) {
+                position += n;
+                _next.clear();
+                read = read(channel, _next, position);
+
+                _current.flip();
+                digest.update(_current);
+
+                ByteBuffer buffer = _current;
+                _current = _next;
+                _next = buffer;
+            }
+        }
+        return factory.create(digest.digest());
+    }
+
+    private Future<Integer> read(AsynchronousFileChannel channel, ByteBuffer buffer, long position)
+            throws InterruptedException
+    {
+        if (_throttle != null) {
+            _throttle.acquire(_worker, buffer.remaining());
+        }
+        return channel.read(buffer, position);
+    }
+
+    private static int get(Future<Integer> read) throws IOException, InterruptedException
+    {
+        try {
+            return read.get();
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package org.dcache.pool.classic;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,12 +13,21 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FileCorruptedCacheException;
@@ -38,6 +49,10 @@ import org.dcache.pool.repository.Repository;
 import org.dcache.pool.repository.Repository.OpenFlags;
 import org.dcache.util.Args;
 import org.dcache.util.Checksum;
+import org.dcache.util.TimeUtils;
+import org.dcache.util.TimeUtils.TimeUnitFormat;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 public class ChecksumScanner
     implements CellCommandListener, CellLifeCycleAware
@@ -45,6 +60,8 @@ public class ChecksumScanner
     private final static Logger _log =
         LoggerFactory.getLogger(ChecksumScanner.class);
 
+    private final static long BYTES_IN_MEBIBYTE = 1024 * 1024;
+
     private final FullScan _fullScan = new FullScan();
     private final Scrubber _scrubber = new Scrubber();
     private final SingleScan _singleScan = new SingleScan();
@@ -52,9 +69,12 @@ public class ChecksumScanner
     private Repository _repository;
     private PnfsHandler _pnfs;
     private ChecksumModuleV1 _csm;
+    private IoQueueManager _ioQueueManager;
     private String poolName;
 
     private File _scrubberStateFile;
+    private int _threads = 4;
+    private int _bufferSize = 4 * 1024 * 1024;
 
     /** Errors found while running 'csm check'.
      */
@@ -86,19 +106,106 @@ public class ChecksumScanner
         _csm = csm;
     }
 
+    public void setIoQueueManager(IoQueueManager ioQueueManager)
+    {
+        _ioQueueManager = ioQueueManager;
+    }
+
     public void setScrubberStateFile(File path)
     {
         _scrubberStateFile = path;
     }
 
+    /**
+     * Sets the number of threads verifying replicas in parallel during
+     * a full scan or a scrub.
+     */
+    public void setThreads(int threads)
+    {
+        checkArgument(threads > 0, "Scanner threads must be positive");
+        _threads = threads;
+    }
+
+    /**
+     * Sets the size of each of the two read buffers of a scanner thread.
+     */
+    public void setBufferSize(int size)
+    {
+        checkArgument(size > 0, "Buffer size must be positive");
+        _bufferSize = size;
+    }
+
+    /**
+     * Check of a single replica performed by a scan.
+     */
+    private interface Check
+    {
+        void check(int index, PnfsId id, ChecksumReader reader)
+                throws CacheException, InterruptedException, NoSuchAlgorithmException;
+    }
+
+    /**
+     * Applies a check to every replica in ids. The replicas are checked
+     * in parallel by a pool of scanner threads sharing a single throttle.
+     * The scan is aborted as soon as any check fails. No check is in
+     * progress when this method returns.
+     *
+     * @param throttle limits the disk bandwidth of the scan; null for an
+     * unthrottled scan
+     */
+    private void scan(final PnfsId[] ids, final Check check, ChecksumThrottle throttle)
+            throws CacheException, InterruptedException, NoSuchAlgorithmException
+    {
+        final AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(_threads,
+                new ThreadFactoryBuilder().setNameFormat(Thread.currentThread().getName() + "-%d").build());
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int i = 0; i < _threads; i++) {
+                final ChecksumReader reader = new ChecksumReader(i, _bufferSize, throttle);
+                results.add(executor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws Exception
+                    {
+                        try {
+                            int index;
+                            while ((index = next.getAndIncrement()) < ids.length) {
+                                check.check(index, ids[index], reader);
+                            }
+                        } catch (Exception e) {
+                            next.set(ids.length);
+                            throw e;
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    Throwables.propagateIfInstanceOf(cause, CacheException.class);
+                    Throwables.propagateIfInstanceOf(cause, InterruptedException.class);
+                    Throwables.propagateIfInstanceOf(cause, NoSuchAlgorithmException.class);
+                    throw Throwables.propagate(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
     public void setPoolName(String poolName) {
         this.poolName = poolName;
     }
 
     private class FullScan extends Singleton
     {
-        private volatile int _totalCount;
-        private volatile int _badCount;
+        private final AtomicInteger _totalCount = new AtomicInteger();
+        private final AtomicInteger _badCount = new AtomicInteger();
 
         public FullScan()
         {
@@ -110,33 +217,41 @@ public class ChecksumScanner
         {
             stopScrubber();
             try {
-                _totalCount = _badCount = 0;
+                _totalCount.set(0);
+                _badCount.set(0);
                 _bad.clear();
 
-                for (PnfsId id: _repository) {
-                    try {
-                        ReplicaDescriptor handle =
-                            _repository.openEntry(id, EnumSet.of(OpenFlags.NOATIME));
+                /* An explicitly requested scan is not throttled. */
+                scan(Iterables.toArray(_repository, PnfsId.class), new Check()
+                {
+                    @Override
+                    public void check(int index, PnfsId id, ChecksumReader reader)
+                            throws InterruptedException, NoSuchAlgorithmException
+                    {
                         try {
-                            _csm.verifyChecksum(handle);
-                        } finally {
-                            handle.close();
+                            ReplicaDescriptor handle =
+                                _repository.openEntry(id, EnumSet.of(OpenFlags.NOATIME));
+                            try {
+                                _csm.verifyChecksum(handle, reader);
+                            } finally {
+                                handle.close();
+                            }
+                        } catch (FileNotInCacheException | NotInTrashCacheException e) {
+                            /* It was removed before we could get it. No problem.
+                             */
+                        } catch (FileCorruptedCacheException e) {
+                            _bad.put(id, e.getActualChecksums().get());
+                            _badCount.incrementAndGet();
+                        } catch (CacheException e) {
+                            _log.warn("Checksum scanner failed for {}: {}", id, e.getMessage());
+                            _badCount.incrementAndGet();
+                        } catch (IOException e) {
+                            _log.error("Checksum scanner failed with IO error for {}: {}", id, e.getMessage());
+                            _badCount.incrementAndGet();
                         }
-                    } catch (FileNotInCacheException | NotInTrashCacheException e) {
-                        /* It was removed before we could get it. No problem.
-                         */
-                    } catch (FileCorruptedCacheException e) {
-                        _bad.put(id, e.getActualChecksums().get());
-                        _badCount++;
-                    } catch (CacheException e) {
-                        _log.warn("Checksum scanner failed for {}: {}", id, e.getMessage());
-                        _badCount++;
-                    } catch (IOException e) {
-                        _log.error("Checksum scanner failed with IO error for {}: {}", id, e.getMessage());
-                        _badCount++;
+                        _totalCount.incrementAndGet();
                     }
-                    _totalCount++;
-                }
+                }, null);
             } finally {
                 startScrubber();
             }
@@ -216,11 +331,20 @@ public class ChecksumScanner
         private final long FAILURE_RATELIMIT_DELAY =
             TimeUnit.SECONDS.toMillis(10);
 
-        private volatile int _badCount;
+        private final AtomicInteger _badCount = new AtomicInteger();
+        private final AtomicLong _bytesChecked = new AtomicLong();
         private volatile int _numFiles;
         private volatile int _totalCount;
+        private volatile long _scanStart;
+
+        /**
+         * Progress of the current scan. Files are checked out of order by
+         * several threads; progress is saved as the last file of the
+         * longest prefix of checked files.
+         */
+        private CheckedPrefix _checked;
 
-        private PnfsId _lastFileChecked;
+        private volatile PnfsId _lastFileChecked;
         private long _lastCheckpoint;
         private long _lastStart;
 
@@ -350,10 +474,10 @@ public class ChecksumScanner
                     try {
                         PnfsId[] toScan = getFilesToVerify();
                         _numFiles = toScan.length;
-                        _badCount = 0;
+                        _badCount.set(0);
                         _totalCount = 0;
                         scanFiles(toScan);
-                        if (_badCount > 0) {
+                        if (_badCount.get() > 0) {
                             _log.warn("Finished scrubbing. Found {} bad files of {}",
                                        _badCount, _numFiles);
                         }
@@ -418,53 +542,92 @@ public class ChecksumScanner
         private void scanFiles(PnfsId[] repository)
                 throws InterruptedException, NoSuchAlgorithmException, CacheException
         {
-            for (PnfsId id : repository) {
-                try {
-                    if (_repository.getState(id) == EntryState.CACHED ||
-                            _repository.getState(id) == EntryState.PRECIOUS) {
-                        ReplicaDescriptor handle =
-                            _repository.openEntry(id, EnumSet.of(OpenFlags.NOATIME));
-                        try {
-                            _csm.verifyChecksumWithThroughputLimit(handle);
-                        } finally {
-                            handle.close();
-                        }
-                    }
-                } catch (FileCorruptedCacheException e) {
-                    _badCount++;
-                    _log.error(AlarmMarkerFactory.getMarker(Severity.MODERATE,
-                                                            "CHECKSUM",
-                                                            id.toString(),
-                                                            poolName),
-                                    "Marking {} on {} as BROKEN: {}",
-                                    id,
-                                    poolName,
-                                    e.getMessage());
+            synchronized (this) {
+                _checked = new CheckedPrefix(repository);
+            }
+            _bytesChecked.set(0);
+            _scanStart = System.currentTimeMillis();
+            scan(repository, new Check()
+            {
+                @Override
+                public void check(int index, PnfsId id, ChecksumReader reader)
+                        throws CacheException, InterruptedException, NoSuchAlgorithmException
+                {
+                    verify(id, reader);
+                    checked(index);
+                }
+            }, new ChecksumThrottle(_csm, _ioQueueManager));
+            _lastFileChecked = null;
+        }
+
+        private void verify(PnfsId id, ChecksumReader reader)
+                throws CacheException, InterruptedException, NoSuchAlgorithmException
+        {
+            try {
+                if (_repository.getState(id) == EntryState.CACHED ||
+                        _repository.getState(id) == EntryState.PRECIOUS) {
+                    ReplicaDescriptor handle =
+                        _repository.openEntry(id, EnumSet.of(OpenFlags.NOATIME));
                     try {
-                        _repository.setState(id, EntryState.BROKEN);
-                    } catch (IllegalTransitionException | CacheException f) {
-                        _log.warn("Failed to mark {} as BROKEN: {}", id, f.getMessage());
+                        _csm.verifyChecksum(handle, reader);
+                        _bytesChecked.addAndGet(handle.getFile().length());
+                    } finally {
+                        handle.close();
                     }
-                } catch (FileNotInCacheException | NotInTrashCacheException e) {
-                    /* It was removed before we could get it. No problem.
-                     */
-                } catch (IOException e) {
-                    _log.error("Failed to verify the checksum of {} (skipping): {}",
-                            id, e.getMessage());
-                    _badCount++;
                 }
-                _lastFileChecked = id;
-                _totalCount++;
-                checkpointIfNeeded();
+            } catch (FileCorruptedCacheException e) {
+                _badCount.incrementAndGet();
+                _log.error(AlarmMarkerFactory.getMarker(Severity.MODERATE,
+                                                        "CHECKSUM",
+                                                        id.toString(),
+                                                        poolName),
+                                "Marking {} on {} as BROKEN: {}",
+                                id,
+                                poolName,
+                                e.getMessage());
+                try {
+                    _repository.setState(id, EntryState.BROKEN);
+                } catch (IllegalTransitionException | CacheException f) {
+                    _log.warn("Failed to mark {} as BROKEN: {}", id, f.getMessage());
+                }
+            } catch (FileNotInCacheException | NotInTrashCacheException e) {
+                /* It was removed before we could get it. No problem.
+                 */
+            } catch (IOException e) {
+                _log.error("Failed to verify the checksum of {} (skipping): {}",
+                        id, e.getMessage());
+                _badCount.incrementAndGet();
             }
-            _lastFileChecked = null;
+        }
+
+        private synchronized void checked(int index)
+        {
+            _checked.checked(index);
+            PnfsId last = _checked.getLast();
+            if (last != null) {
+                _lastFileChecked = last;
+            }
+            _totalCount++;
+            checkpointIfNeeded();
         }
 
         @Override
         public String toString()
         {
-            return super.toString() + " " + _totalCount + " of " + _numFiles +
-                " checked; " + _badCount + " errors detected";
+            StringBuilder sb = new StringBuilder();
+            sb.append(super.toString()).append(' ')
+                    .append(_totalCount).append(" of ").append(_numFiles).append(" checked; ")
+                    .append(_badCount).append(" errors detected");
+            long elapsed = System.currentTimeMillis() - _scanStart;
+            int checked = _totalCount;
+            if (isActive() && checked > 0 && elapsed > 0) {
+                long eta = (long) ((double) (_numFiles - checked) * elapsed / checked);
+                sb.append(String.format("; %.1f MiB/s, %.1f files/s; ETA ",
+                                        (double) _bytesChecked.get() / BYTES_IN_MEBIBYTE * 1000 / elapsed,
+                                        (double) checked * 1000 / elapsed));
+                TimeUtils.appendDuration(sb, eta, TimeUnit.MILLISECONDS, TimeUnitFormat.SHORT);
+            }
+            return sb.toString();
         }
     }
 
@@ -0,0 +1,75 @@
+package org.dcache.pool.classic;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the disk bandwidth used by the checksum scanner.
+ *
+ * Every read is charged its size plus a fixed cost per request, thus the
+ * seek to a new file or block is accounted for. The bucket is filled at
+ * the throughput limit of the checksum module and holds at most one
+ * second worth of tokens.
+ *
+ * While client movers are active on the pool, the scanner backs off: the
+ * rate is divided by the number of active movers plus one, and only the
+ * first scanner thread is allowed to read at all.
+ */
+class ChecksumThrottle
+{
+    /**
+     * Cost of a read request in bytes, in addition to the bytes read.
+     */
+    static final long REQUEST_COST = 256 * 1024;
+
+    private static final long MAX_WAIT = TimeUnit.SECONDS.toMillis(1);
+
+    private final ChecksumModuleV1 _csm;
+    private final IoQueueManager _ioQueueManager;
+
+    private double _tokens;
+    private long _lastRefill = System.nanoTime();
+
+    ChecksumThrottle(ChecksumModuleV1 csm, IoQueueManager ioQueueManager)
+    {
+        _csm = csm;
+        _ioQueueManager = ioQueueManager;
+    }
+
+    private int getActiveMovers()
+    {
+        return (_ioQueueManager == null) ? 0 : _ioQueueManager.getActiveJobs();
+    }
+
+    /**
+     * Blocks until the scanner thread with the given index may read the
+     * given number of bytes.
+     */
+    synchronized void acquire(int worker, long bytes) throws InterruptedException
+    {
+        while (true) {
+            int movers = getActiveMovers();
+            if (worker == 0 || movers == 0) {
+                double rate = _csm.getThroughputLimit() / (movers + 1);
+                if (Double.isInfinite(rate)) {
+                    return;
+                }
+
+                long now = System.nanoTime();
+                _tokens = Math.min(rate, _tokens + rate * (now - _lastRefill) / TimeUnit.SECONDS.toNanos(1));
+                _lastRefill = now;
+
+                /* The bucket may be overdrawn, thus reads larger than the
+                 * capacity of the bucket are possible.
+                 */
+                if (_tokens >= 0) {
+                    _tokens -= bytes + REQUEST_COST;
+                    return;
+                }
+                long wait = (long) Math.ceil(-_tokens / rate * TimeUnit.SECONDS.toMillis(1));
+                TimeUnit.MILLISECONDS.timedWait(this, Math.min(wait, MAX_WAIT));
+            } else {
+                TimeUnit.MILLISECONDS.timedWait(this, MAX_WAIT);
+            }
+        }
+    }
+}
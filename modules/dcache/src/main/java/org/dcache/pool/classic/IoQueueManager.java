@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
+import diskCacheV111.vehicles.IoJobInfo;
 import diskCacheV111.vehicles.JobInfo;
 
 import org.dcache.pool.movers.Mover;
@@ -29,6 +30,32 @@ public class IoQueueManager {
     private final ImmutableList<IoScheduler> _queues;
     private final ImmutableMap<String, IoScheduler> _queuesByName;
 
+    /**
+     * Listener of the movers of all queues. May be null.
+     */
+    private volatile MoverListener _moverListener;
+
+    private final MoverListener _moverEvents = new MoverListener()
+    {
+        @Override
+        public void moverUpdated(IoJobInfo info)
+        {
+            MoverListener listener = _moverListener;
+            if (listener != null) {
+                listener.moverUpdated(info);
+            }
+        }
+
+        @Override
+        public void moverRemoved(IoJobInfo info)
+        {
+            MoverListener listener = _moverListener;
+            if (listener != null) {
+                listener.moverRemoved(info);
+            }
+        }
+    };
+
     public IoQueueManager(JobTimeoutManager jobTimeoutManager, String[] names) {
         Map<String,IoScheduler> queuesByName = new HashMap<>();
         List<IoScheduler> queues = new ArrayList<>();
@@ -41,7 +68,7 @@ public class IoQueueManager {
                 }
                 if (!queuesByName.containsKey(name)) {
                     _log.debug("Creating queue: {}", name);
-                    IoScheduler job = new SimpleIoScheduler(name, queues.size(), fifo);
+                    IoScheduler job = new SimpleIoScheduler(name, queues.size(), fifo, _moverEvents);
                     queues.add(job);
                     queuesByName.put(name, job);
                     jobTimeoutManager.addScheduler(name, job);
@@ -55,6 +82,10 @@ public class IoQueueManager {
         _log.debug("Defined IO queues: {}", _queuesByName.keySet());
     }
 
+    public void setMoverListener(MoverListener listener) {
+        _moverListener = listener;
+    }
+
     public IoScheduler getDefaultQueue() {
         return _queues.get(0);
     }
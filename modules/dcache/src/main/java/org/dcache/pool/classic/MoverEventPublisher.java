@@ -0,0 +1,80 @@
+package org.dcache.pool.classic;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+
+import diskCacheV111.vehicles.IoJobInfo;
+import diskCacheV111.vehicles.PoolMoverEventMessage;
+
+import dmg.cells.nucleus.AbstractCellComponent;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellPath;
+import dmg.cells.nucleus.NoRouteToCellException;
+
+/**
+ * Publishes a PoolMoverEventMessage whenever a mover of the pool is queued,
+ * started or removed.
+ *
+ * Subscribers, such as the web admin interface, use these events to keep
+ * track of active transfers without periodically asking every pool for a
+ * full list of its movers.
+ */
+public class MoverEventPublisher extends AbstractCellComponent
+    implements MoverListener
+{
+    private static final Logger _log =
+        LoggerFactory.getLogger(MoverEventPublisher.class);
+
+    private final long _incarnation = System.currentTimeMillis();
+
+    private CellPath _destination;
+    private long _sequence;
+
+    /**
+     * Sets the address to which events are sent. Typically this is the
+     * broadcast cell. An empty address disables the events.
+     */
+    public void setDestination(String address)
+    {
+        _destination = (!address.isEmpty()) ? new CellPath(address) : null;
+    }
+
+    @Override
+    public void moverUpdated(IoJobInfo info)
+    {
+        publish(info, false);
+    }
+
+    @Override
+    public void moverRemoved(IoJobInfo info)
+    {
+        publish(info, true);
+    }
+
+    /**
+     * Events are numbered and sent while holding the lock, thus subscribers
+     * receive them in sequence.
+     */
+    private synchronized void publish(IoJobInfo info, boolean isRemoved)
+    {
+        if (_destination == null) {
+            return;
+        }
+        PoolMoverEventMessage msg =
+            new PoolMoverEventMessage(getCellName(), _incarnation, ++_sequence, info, isRemoved);
+        try {
+            sendMessage(new CellMessage(_destination, msg));
+        } catch (NoRouteToCellException e) {
+            _log.debug("Failed to publish mover event: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void getInfo(PrintWriter pw)
+    {
+        pw.println("Destination : " + ((_destination == null) ? "none" : _destination));
+        pw.println("Published   : " + _sequence);
+    }
+}
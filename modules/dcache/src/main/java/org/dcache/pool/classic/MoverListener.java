@@ -0,0 +1,22 @@
+package org.dcache.pool.classic;
+
+import diskCacheV111.vehicles.IoJobInfo;
+
+/**
+ * Observer of the movers of the IO queues of a pool.
+ *
+ * Listeners are called while the state of the mover is locked and thus
+ * must not block.
+ */
+public interface MoverListener
+{
+    /**
+     * Called when a mover was queued or when it started to transfer.
+     */
+    void moverUpdated(IoJobInfo info);
+
+    /**
+     * Called when a mover was removed from the queue.
+     */
+    void moverRemoved(IoJobInfo info);
+}
@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
 
+import java.io.IOException;
 import java.io.SyncFailedException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -34,10 +35,15 @@ import org.dcache.pool.FaultAction;
 import org.dcache.pool.FaultEvent;
 import org.dcache.pool.FaultListener;
 import org.dcache.pool.movers.ChecksumMover;
+import org.dcache.pool.movers.EventDrivenMoverProtocol;
+import org.dcache.pool.movers.IoMode;
 import org.dcache.pool.movers.Mover;
+import org.dcache.pool.movers.MoverEventLoop;
 import org.dcache.pool.movers.MoverFactory;
 import org.dcache.pool.movers.MoverProtocol;
 import org.dcache.pool.movers.MoverProtocolMover;
+import org.dcache.pool.movers.RemoteHttpClientEngine;
+import org.dcache.pool.movers.RemoteHttpDataTransferProtocol_1;
 import org.dcache.pool.repository.ReplicaDescriptor;
 import org.dcache.pool.repository.RepositoryChannel;
 import org.dcache.util.CDCExecutorServiceDecorator;
@@ -59,6 +65,9 @@ public class MoverProtocolTransferService extends AbstractCellComponent
     private ChecksumModule _checksumModule;
     private PostTransferService _postTransferService;
     private Map<String,Object> _environment;
+    private RemoteHttpClientEngine _remoteHttpClientEngine;
+    private MoverEventLoop _eventLoop;
+    private boolean _isEventDriven;
 
     @Override
     public void setEnvironment(Map<String,Object> environment)
@@ -84,6 +93,27 @@ public class MoverProtocolTransferService extends AbstractCellComponent
         _postTransferService = postTransferService;
     }
 
+    @Required
+    public void setRemoteHttpClientEngine(RemoteHttpClientEngine engine)
+    {
+        _remoteHttpClientEngine = engine;
+    }
+
+    @Required
+    public void setEventLoop(MoverEventLoop eventLoop)
+    {
+        _eventLoop = eventLoop;
+    }
+
+    /**
+     * Sets whether movers implementing EventDrivenMoverProtocol are run
+     * on the shared event loop rather than on a thread of their own.
+     */
+    public void setEventDriven(boolean isEventDriven)
+    {
+        _isEventDriven = isEventDriven;
+    }
+
     @Override
     public Mover<?> createMover(ReplicaDescriptor handle, PoolIoFileMessage message, CellPath pathToDoor)
             throws CacheException
@@ -130,6 +160,9 @@ public class MoverProtocolTransferService extends AbstractCellComponent
         if (mover instanceof EnvironmentAware) {
             ((EnvironmentAware)mover).setEnvironment(_environment);
         }
+        if (mover instanceof RemoteHttpDataTransferProtocol_1) {
+            ((RemoteHttpDataTransferProtocol_1) mover).setClientEngine(_remoteHttpClientEngine);
+        }
         return mover;
     }
 
@@ -137,6 +170,11 @@ public class MoverProtocolTransferService extends AbstractCellComponent
     @Override
     public Cancellable execute(MoverProtocolMover mover, CompletionHandler<Void,Void> completionHandler)
     {
+        if (_isEventDriven && mover.getMover() instanceof EventDrivenMoverProtocol) {
+            EventDrivenMoverTask task = new EventDrivenMoverTask(mover, completionHandler);
+            _executor.execute(task);
+            return task;
+        }
         MoverTask task = new MoverTask(mover, completionHandler);
         _executor.execute(task);
         return task;
@@ -168,20 +206,10 @@ public class MoverProtocolTransferService extends AbstractCellComponent
                     switch (_mover.getIoMode()) {
                     case WRITE:
                         try {
-                            MoverProtocol moverProtocol = _mover.getMover();
-                            if (_checksumModule.hasPolicy(ChecksumModule.PolicyFlag.ON_TRANSFER)
-                                    && moverProtocol instanceof ChecksumMover) {
-                                ((ChecksumMover) moverProtocol).enableTransferChecksum(
-                                        _checksumModule.getPreferredChecksumFactory(_mover.getIoHandle()).getType());
-                            }
+                            enableTransferChecksum(_mover);
                             runMover(fileIoChannel);
                         } finally {
-                            try {
-                                fileIoChannel.sync();
-                            } catch (SyncFailedException e) {
-                                fileIoChannel.sync();
-                                LOGGER.info("First sync failed [" + e + "], but second sync suceeded");
-                            }
+                            sync(fileIoChannel);
                         }
                         break;
                     case READ:
@@ -231,6 +259,139 @@ public class MoverProtocolTransferService extends AbstractCellComponent
         }
     }
 
+    private void enableTransferChecksum(MoverProtocolMover mover) throws Exception
+    {
+        MoverProtocol moverProtocol = mover.getMover();
+        if (_checksumModule.hasPolicy(ChecksumModule.PolicyFlag.ON_TRANSFER)
+                && moverProtocol instanceof ChecksumMover) {
+            ((ChecksumMover) moverProtocol).enableTransferChecksum(
+                    _checksumModule.getPreferredChecksumFactory(mover.getIoHandle()).getType());
+        }
+    }
+
+    private static void sync(RepositoryChannel fileIoChannel) throws IOException
+    {
+        try {
+            fileIoChannel.sync();
+        } catch (SyncFailedException e) {
+            fileIoChannel.sync();
+            LOGGER.info("First sync failed [" + e + "], but second sync suceeded");
+        }
+    }
+
+    /**
+     * Runs an EventDrivenMoverProtocol on the shared event loop.
+     *
+     * Opening, syncing and closing the channel is done by a thread of
+     * the transfer service rather than by the disk executor of the event
+     * loop, as the latter may be exhausted by movers waiting for space;
+     * the transfer itself does not occupy a thread while it waits for
+     * the network.
+     */
+    private class EventDrivenMoverTask implements Runnable, Cancellable
+    {
+        private final MoverProtocolMover _mover;
+        private final CompletionHandler<Void,Void> _completionHandler;
+
+        private RepositoryChannel _fileIoChannel;
+
+        /* Guarded by this. */
+        private Cancellable _transfer;
+        private boolean _isCancelled;
+
+        public EventDrivenMoverTask(MoverProtocolMover mover, CompletionHandler<Void,Void> completionHandler) {
+            _mover = mover;
+            _completionHandler = completionHandler;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (_isCancelled) {
+                    _completionHandler.failed(new InterruptedException("Thread interrupted before execution"), null);
+                    return;
+                }
+            }
+            try {
+                _fileIoChannel = _mover.openChannel();
+                if (_mover.getIoMode() == IoMode.WRITE) {
+                    enableTransferChecksum(_mover);
+                }
+                EventDrivenMoverProtocol moverProtocol = (EventDrivenMoverProtocol) _mover.getMover();
+                Cancellable transfer = moverProtocol.start(_mover.getFileAttributes(), _fileIoChannel,
+                        _mover.getProtocolInfo(), _mover.getIoHandle(), _mover.getIoMode(),
+                        _eventLoop.next(), _eventLoop.getDiskExecutor(),
+                        _eventLoop.getAllocationExecutor(),
+                        new CompletionHandler<Void,Void>()
+                        {
+                            @Override
+                            public void completed(Void result, Void attachment)
+                            {
+                                complete(null);
+                            }
+
+                            @Override
+                            public void failed(Throwable t, Void attachment)
+                            {
+                                complete(t);
+                            }
+                        });
+                setTransfer(transfer);
+            } catch (Throwable t) {
+                done(t);
+            }
+        }
+
+        private synchronized void setTransfer(Cancellable transfer) {
+            _transfer = transfer;
+            if (_isCancelled) {
+                transfer.cancel();
+            }
+        }
+
+        /**
+         * Called by the event loop; syncing and closing the channel may
+         * block and is thus done by a thread of the transfer service.
+         */
+        private void complete(final Throwable failure) {
+            _executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    done(failure);
+                }
+            });
+        }
+
+        private void done(Throwable failure) {
+            try (RepositoryChannel fileIoChannel = _fileIoChannel) {
+                if (fileIoChannel != null && _mover.getIoMode() == IoMode.WRITE) {
+                    sync(fileIoChannel);
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            } catch (DiskErrorCacheException e) {
+                _faultListener.faultOccurred(new FaultEvent("repository", FaultAction.DISABLED, e.getMessage(), e));
+                _completionHandler.failed(e, null);
+                return;
+            } catch (Throwable t) {
+                _completionHandler.failed(t, null);
+                return;
+            }
+            _completionHandler.completed(null, null);
+        }
+
+        @Override
+        public synchronized void cancel() {
+            _isCancelled = true;
+            if (_transfer != null) {
+                _transfer.cancel();
+            }
+        }
+    }
+
     @Command(name = "movermap define",
             description = "Adds a transfer protocol mapping")
     class DefineCommand implements Callable<String>
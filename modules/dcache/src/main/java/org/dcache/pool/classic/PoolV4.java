@@ -4,6 +4,9 @@ package org.dcache.pool.classic;
 
 import com.google.common.base.Throwables;
 import com.google.common.net.InetAddresses;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
@@ -26,6 +29,9 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -1539,7 +1545,15 @@ public class PoolV4
     //
     private class HybridInventory implements Runnable
     {
+        /**
+         * Maximum number of registrations in progress.
+         */
+        private static final int MAX_REGISTRATIONS = 1000;
+
         private boolean _activate = true;
+        private final ExecutorService _registrationExecutor =
+                Executors.newSingleThreadExecutor();
+        private final Semaphore _registrations = new Semaphore(MAX_REGISTRATIONS);
 
         public HybridInventory(boolean activate)
         {
@@ -1547,22 +1561,42 @@ public class PoolV4
             new Thread(this, "HybridInventory").start();
         }
 
-        private void addCacheLocation(PnfsId id)
+        /**
+         * Registers the replica asynchronously. PnfsHandler batches the
+         * requests. Blocks while MAX_REGISTRATIONS registrations are in
+         * progress, thus the inventory is throttled when PnfsManager
+         * cannot keep up.
+         */
+        private void addCacheLocation(final PnfsId id) throws InterruptedException
         {
-            try {
-                _pnfs.addCacheLocation(id);
-            } catch (FileNotFoundCacheException e) {
-                try {
-                    _repository.setState(id, EntryState.REMOVED);
-                    _log.info("File not found in PNFS; removed " + id);
-                } catch (InterruptedException | IllegalTransitionException | CacheException f) {
-                    _log.error("File not found in PNFS, but failed to remove "
-                               + id + ": " + f);
+            _registrations.acquire();
+            ListenableFuture<?> future = _pnfs.addCacheLocationAsync(id);
+            Futures.addCallback(future, new FutureCallback<Object>()
+            {
+                @Override
+                public void onSuccess(Object result)
+                {
+                    _registrations.release();
                 }
-            } catch (CacheException e) {
-                _log.error("Cache location was not registered for "
-                           + id + ": " + e.getMessage());
-            }
+
+                @Override
+                public void onFailure(Throwable t)
+                {
+                    _registrations.release();
+                    if (t instanceof FileNotFoundCacheException) {
+                        try {
+                            _repository.setState(id, EntryState.REMOVED);
+                            _log.info("File not found in PNFS; removed " + id);
+                        } catch (InterruptedException | IllegalTransitionException | CacheException f) {
+                            _log.error("File not found in PNFS, but failed to remove "
+                                       + id + ": " + f);
+                        }
+                    } else {
+                        _log.error("Cache location was not registered for "
+                                   + id + ": " + t.getMessage());
+                    }
+                }
+            }, _registrationExecutor);
         }
 
         private void clearCacheLocation(PnfsId id)
@@ -1605,9 +1639,19 @@ public class PoolV4
                 } catch (CacheException e) {
                     _log.warn(e.getMessage());
                 } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                     break;
                 }
             }
+            try {
+                /* Waits for the registrations in progress; failures are
+                 * logged by the callbacks.
+                 */
+                _registrations.acquire(MAX_REGISTRATIONS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            _registrationExecutor.shutdown();
             stopTime = System.currentTimeMillis();
             synchronized (_hybridInventoryLock) {
                 _hybridInventoryActive = false;
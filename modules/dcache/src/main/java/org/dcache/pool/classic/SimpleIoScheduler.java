@@ -80,6 +80,11 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
 
     private final AdjustableSemaphore _semaphore = new AdjustableSemaphore();
 
+    /**
+     * Notified when movers are queued, started and removed. May be null.
+     */
+    private final MoverListener _listener;
+
     public SimpleIoScheduler(String name,
                              int queueId)
     {
@@ -89,9 +94,18 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
     public SimpleIoScheduler(String name,
                              int queueId,
                              boolean fifo)
+    {
+        this(name, queueId, fifo, null);
+    }
+
+    public SimpleIoScheduler(String name,
+                             int queueId,
+                             boolean fifo,
+                             MoverListener listener)
     {
         _name = name;
         _queueId = queueId;
+        _listener = listener;
 
         Comparator<IoPrioritizable> comparator =
             fifo
@@ -126,7 +140,14 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
             _log.warn("A task was added to queue '{}', however the queue is not configured to execute any tasks.", _name);
         }
 
-        final PrioritizedRequest wrapper = new PrioritizedRequest(id, mover, priority);
+        final PrioritizedRequest wrapper = new PrioritizedRequest(id, mover, priority, _listener);
+
+        /* The job is registered before it is started, as otherwise a
+         * quickly failing mover would be released before being added.
+         * It is published as queued before any other thread can start it.
+         */
+        _jobs.put(id, wrapper);
+        wrapper.queued();
 
         if (_semaphore.tryAcquire()) {
             /*
@@ -137,8 +158,6 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
             _queue.add(wrapper);
         }
 
-        _jobs.put(id, wrapper);
-
         return id;
     }
 
@@ -236,8 +255,8 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
 
                             private void release()
                             {
-                                request.done();
                                 _jobs.remove(request.getId());
+                                request.done();
                             }
 
                         });
@@ -335,8 +354,8 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
                                         }
 
                                         private void release() {
-                                            request.done();
                                             _jobs.remove(request.getId());
+                                            request.done();
                                             _semaphore.release();
                                         }
                                     });
@@ -351,6 +370,7 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
         private final long _ctime;
         private final int _id;
         private final CDC _cdc;
+        private final MoverListener _listener;
         private IoRequestState _state;
 
         /**
@@ -364,8 +384,9 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
         private long _startTime;
         private Cancellable _cancellable;
 
-        PrioritizedRequest(int id, Mover<?> mover, IoPriority p) {
+        PrioritizedRequest(int id, Mover<?> mover, IoPriority p, MoverListener listener) {
             _id = id;
+            _listener = listener;
             _mover = mover;
             _priority = p;
             _ctime = System.nanoTime();
@@ -416,7 +437,7 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
             return _state + " : " + _mover.toString();
         }
 
-        public synchronized JobInfo toJobInfo() {
+        public synchronized IoJobInfo toJobInfo() {
             return new IoJobInfo(_submitTime, _startTime, _state, _id, _mover);
         }
 
@@ -424,9 +445,13 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
             try {
                 if (_state != QUEUED) {
                     completionHandler.failed(new InterruptedException("Transfer cancelled"), null);
+                    return;
                 }
                 _state = RUNNING;
                 _startTime = System.currentTimeMillis();
+                if (_listener != null) {
+                    _listener.moverUpdated(toJobInfo());
+                }
                 _cancellable = _mover.execute(completionHandler);
             } catch (RuntimeException e) {
                 completionHandler.failed(e, null);
@@ -443,9 +468,25 @@ public class SimpleIoScheduler implements IoScheduler, Runnable {
             _state = CANCELED;
         }
 
+        /*
+         * The listener is notified by the transitions themselves while
+         * holding the lock on the request. Thus notifications follow the
+         * order of the transitions: queued, running, removed.
+         */
+
+        public synchronized void queued()
+        {
+            if (_listener != null) {
+                _listener.moverUpdated(toJobInfo());
+            }
+        }
+
         public synchronized void done()
         {
             _state = DONE;
+            if (_listener != null) {
+                _listener.moverRemoved(toJobInfo());
+            }
         }
     }
 }
@@ -17,6 +17,7 @@ import diskCacheV111.pools.StorageClassFlushInfo;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FileNotInCacheException;
 import diskCacheV111.util.PnfsId;
+import diskCacheV111.util.PnfsIdMap;
 import diskCacheV111.vehicles.StorageInfo;
 
 import dmg.util.Formats;
@@ -48,7 +49,7 @@ public class StorageClassContainer
     implements CellCommandListener
 {
     private final Map<String, StorageClassInfo> _storageClasses = new HashMap<>();
-    private final Map<PnfsId, StorageClassInfo> _pnfsIds = new HashMap<>();
+    private final Map<PnfsId, StorageClassInfo> _pnfsIds = new PnfsIdMap<>();
     private final Repository _repository;
     private final NearlineStorageHandler _storageHandler;
     private boolean  _poolStatusInfoChanged = true;
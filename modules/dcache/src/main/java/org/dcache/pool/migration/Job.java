@@ -203,6 +203,9 @@ public class Job
         }
 
         pw.println("Concurrency: " + _concurrency);
+        if (_definition.streams > 0) {
+            pw.println("Streams    : " + _definition.streams);
+        }
         pw.println("Running tasks:");
         List<Task> tasks = new ArrayList<>(_running.values());
         Collections.sort(tasks, new Comparator<Task>() {
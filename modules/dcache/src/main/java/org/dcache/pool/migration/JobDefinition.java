@@ -27,6 +27,7 @@ public class JobDefinition
     public final Expression pauseWhen;
     public final Expression stopWhen;
     public final boolean forceSourceMode;
+    public final int streams;
 
     public JobDefinition(List<CacheEntryFilter> filters,
                          CacheEntryMode sourceMode,
@@ -42,7 +43,8 @@ public class JobDefinition
                          boolean computeChecksumOnUpdate,
                          Expression pauseWhen,
                          Expression stopWhen,
-                         boolean forceSourceMode)
+                         boolean forceSourceMode,
+                         int streams)
     {
         this.filters = Collections.unmodifiableList(filters);
         this.sourceMode = sourceMode;
@@ -59,5 +61,6 @@ public class JobDefinition
         this.pauseWhen = pauseWhen;
         this.stopWhen = stopWhen;
         this.forceSourceMode = forceSourceMode;
+        this.streams = streams;
     }
 }
@@ -360,6 +360,15 @@ public class MigrationModule
                 usage="Specifies how many concurrent transfers to perform.")
         int concurrency = 1;
 
+        @Option(name="streams",
+                category="Transfer options",
+                usage="Specifies how many parallel connections each transfer " +
+                      "uses to fetch a replica from the source pool. Files are " +
+                      "split into byte ranges fetched concurrently; small files " +
+                      "always use a single connection. By default the setting " +
+                      "of the target pool is used.")
+        int streams;
+
         @Option(name="order", valueSpec="[-]size|[-]lru",
                 category="Transfer options",
                 usage = "Sort transfer queue. By default transfers are placed in " +
@@ -775,6 +784,10 @@ public class MigrationModule
                 throw new IllegalArgumentException(pins + ": Invalid value for option -pins");
             }
 
+            if (streams < 0) {
+                throw new IllegalArgumentException(streams + ": Invalid value for option -streams");
+            }
+
             /* The source list is used to fetch pool information about this pool.
             */
             RefreshablePoolList sourceList =
@@ -807,7 +820,8 @@ public class MigrationModule
                             verify,
                             createLifetimePredicate(pauseWhen),
                             createLifetimePredicate(stopWhen),
-                            forceSourceMode);
+                            forceSourceMode,
+                            streams);
 
             if (definition.targetMode.state == CacheEntryMode.State.DELETE
                     || definition.targetMode.state == CacheEntryMode.State.REMOVABLE) {
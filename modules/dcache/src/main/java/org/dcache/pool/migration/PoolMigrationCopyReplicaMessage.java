@@ -25,6 +25,7 @@ public class PoolMigrationCopyReplicaMessage extends PoolMigrationMessage
     private final List<StickyRecord> _stickyRecords;
     private final boolean _computeChecksumOnUpdate;
     private final boolean _forceSourceMode;
+    private int _streams;
 
     public PoolMigrationCopyReplicaMessage(UUID uuid, String pool,
                                            FileAttributes fileAttributes,
@@ -65,4 +66,18 @@ public class PoolMigrationCopyReplicaMessage extends PoolMigrationMessage
     {
         return _forceSourceMode;
     }
+
+    /**
+     * Sets the number of parallel connections the target pool uses to
+     * fetch the replica. Zero means the default of the target pool.
+     */
+    public void setStreams(int streams)
+    {
+        _streams = streams;
+    }
+
+    public int getStreams()
+    {
+        return _streams;
+    }
 }
@@ -312,14 +312,16 @@ public class Task
     {
         FileAttributes fileAttributes = _entry.getFileAttributes();
         _target = target;
-        CellStub.addCallback(_pool.send(_target,
-                                        new PoolMigrationCopyReplicaMessage(_uuid,
-                                                                            _source,
-                                                                            fileAttributes,
-                                                                            getTargetState(),
-                                                                            getTargetStickyRecords(),
-                                                                            _definition.computeChecksumOnUpdate,
-                                                                            _definition.forceSourceMode)),
+        PoolMigrationCopyReplicaMessage copyReplicaMessage =
+                new PoolMigrationCopyReplicaMessage(_uuid,
+                                                    _source,
+                                                    fileAttributes,
+                                                    getTargetState(),
+                                                    getTargetStickyRecords(),
+                                                    _definition.computeChecksumOnUpdate,
+                                                    _definition.forceSourceMode);
+        copyReplicaMessage.setStreams(_definition.streams);
+        CellStub.addCallback(_pool.send(_target, copyReplicaMessage),
                              new Callback<PoolMigrationCopyReplicaMessage>("copy_"), _executor);
     }
 
@@ -274,20 +274,42 @@ public abstract class AbstractNettyServer<T extends ProtocolInfo>
         }
     }
 
+    /**
+     * Releases a channel whose connection was lost before the transfer
+     * completed. Unlike close, the mover is not shut down when this was
+     * the last open channel. It instead waits another connect timeout for
+     * the client to reconnect and resume the transfer.
+     */
+    public void disconnect(MoverChannel<T> channel)
+    {
+        Entry entry = _channels.get(channel);
+        if (entry != null) {
+            entry.disconnect();
+        }
+    }
+
     private class Entry implements Cancellable
     {
         private final Sync _sync = new Sync();
         private final MoverChannel<T> _channel;
         private final UUID _uuid;
-        private final Future<?> _timeout;
+        private final long _connectTimeout;
         private final CompletionHandler<Void, Void> _completionHandler;
         private final CDC _cdc = new CDC();
 
-        Entry(MoverChannel<T> channel, UUID uuid, final long connectTimeout, CompletionHandler<Void, Void> completionHandler) {
+        /** Guarded by _sync. */
+        private Future<?> _timeout;
+
+        Entry(MoverChannel<T> channel, UUID uuid, long connectTimeout, CompletionHandler<Void, Void> completionHandler) {
             _channel = channel;
             _uuid = uuid;
+            _connectTimeout = connectTimeout;
             _completionHandler = completionHandler;
-            _timeout = _timeoutScheduler.schedule(new Runnable()
+            _timeout = scheduleTimeout();
+        }
+
+        private Future<?> scheduleTimeout() {
+            return _timeoutScheduler.schedule(new Runnable()
             {
                 @Override
                 public void run()
@@ -295,11 +317,11 @@ public abstract class AbstractNettyServer<T extends ProtocolInfo>
                     if (_sync.timeout()) {
                         try (CDC ignored = _cdc.restore()) {
                             _completionHandler.failed(new TimeoutCacheException("No connection from client after " +
-                                    TimeUnit.MILLISECONDS.toSeconds(connectTimeout) + " seconds. Giving up."), null);
+                                    TimeUnit.MILLISECONDS.toSeconds(_connectTimeout) + " seconds. Giving up."), null);
                         }
                     }
                 }
-            }, connectTimeout, TimeUnit.MILLISECONDS);
+            }, _connectTimeout, TimeUnit.MILLISECONDS);
         }
 
         MoverChannel<T> open(boolean exclusive) {
@@ -322,6 +344,10 @@ public abstract class AbstractNettyServer<T extends ProtocolInfo>
             }
         }
 
+        void disconnect() {
+            _sync.disconnect();
+        }
+
         @Override
         public void cancel()
         {
@@ -358,6 +384,13 @@ public abstract class AbstractNettyServer<T extends ProtocolInfo>
                 return (exception != null || _open <= 0) && close();
             }
 
+            synchronized void disconnect() {
+                _open--;
+                if (_open <= 0 && !_isClosed) {
+                    _timeout = scheduleTimeout();
+                }
+            }
+
             synchronized boolean cancel()
             {
                 return close();
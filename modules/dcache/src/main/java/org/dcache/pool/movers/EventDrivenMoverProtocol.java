@@ -0,0 +1,45 @@
+package org.dcache.pool.movers;
+
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.Executor;
+
+import diskCacheV111.vehicles.ProtocolInfo;
+
+import org.dcache.pool.classic.Cancellable;
+import org.dcache.pool.repository.Allocator;
+import org.dcache.pool.repository.RepositoryChannel;
+import org.dcache.vehicles.FileAttributes;
+
+/**
+ * A MoverProtocol that can run as a non-blocking state machine on a
+ * shared {@link SelectorLoop} rather than on a thread of its own.
+ */
+public interface EventDrivenMoverProtocol extends MoverProtocol
+{
+    /**
+     * Starts the transfer and returns without waiting for it to complete.
+     *
+     * Network I/O is performed by the thread of the loop, or by the
+     * threads of a client library with an event loop of its own. Disk I/O
+     * is submitted to diskExecutor. Operations that may wait for space to
+     * be allocated are submitted to allocationExecutor, so that a full
+     * pool cannot starve the disk I/O of other movers. The completion
+     * handler is called exactly once, by a thread that must not block,
+     * with the same outcome runIO would have had.
+     *
+     * @param allocator Space allocator. May be null for a read-only
+     * transfer.
+     * @return handle to abort the transfer; the completion handler is
+     * still called after the transfer has been aborted
+     */
+    public Cancellable start(FileAttributes fileAttributes,
+                             RepositoryChannel diskFile,
+                             ProtocolInfo protocol,
+                             Allocator allocator,
+                             IoMode access,
+                             SelectorLoop loop,
+                             Executor diskExecutor,
+                             Executor allocationExecutor,
+                             CompletionHandler<Void,Void> completionHandler)
+        throws Exception;
+}
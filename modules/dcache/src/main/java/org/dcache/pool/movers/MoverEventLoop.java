@@ -0,0 +1,170 @@
+package org.dcache.pool.movers;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dmg.cells.nucleus.AbstractCellComponent;
+
+import org.dcache.util.CDCExecutorServiceDecorator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Shared event loops of event driven movers.
+ *
+ * Network I/O of all event driven movers is served by a fixed number of
+ * selector loop threads. Blocking disk I/O is submitted to a bounded pool
+ * of disk threads. The number of threads is thus independent of the
+ * number of active movers. Operations waiting for space to be allocated
+ * are submitted to a separate pool, as on a full pool they would
+ * otherwise occupy the disk threads until space is freed.
+ *
+ * The loops and threads are started when first used, thus no threads
+ * are created unless event driven movers are enabled.
+ */
+public class MoverEventLoop extends AbstractCellComponent
+{
+    private static final Logger _log = LoggerFactory.getLogger(MoverEventLoop.class);
+
+    private final AtomicInteger _next = new AtomicInteger();
+
+    private int _threads = 2;
+    private int _diskThreads = 32;
+
+    /* Guarded by this. */
+    private List<SelectorLoop> _loops;
+    private ExecutorService _diskExecutor;
+    private ExecutorService _allocationExecutor;
+    private boolean _isShutdown;
+
+    public void setThreads(int threads)
+    {
+        checkArgument(threads > 0, "Event loop threads must be positive");
+        _threads = threads;
+    }
+
+    public void setDiskThreads(int threads)
+    {
+        checkArgument(threads > 0, "Disk threads must be positive");
+        _diskThreads = threads;
+    }
+
+    private synchronized void start() throws IOException
+    {
+        checkState(!_isShutdown, "Event loop has been shut down");
+        if (_loops != null) {
+            return;
+        }
+        List<SelectorLoop> loops = new ArrayList<>();
+        try {
+            for (int i = 0; i < _threads; i++) {
+                loops.add(new SelectorLoop());
+            }
+        } catch (IOException e) {
+            for (SelectorLoop loop : loops) {
+                loop.close();
+            }
+            throw e;
+        }
+
+        ThreadFactory factory =
+                new ThreadFactoryBuilder().setNameFormat("mover-event-loop-%d").build();
+        for (final SelectorLoop loop : loops) {
+            factory.newThread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        loop.run();
+                    } finally {
+                        try {
+                            loop.close();
+                        } catch (IOException e) {
+                            _log.warn("Failed to close event loop: {}", e.toString());
+                        }
+                    }
+                }
+            }).start();
+        }
+        _diskExecutor = new CDCExecutorServiceDecorator<>(
+                Executors.newFixedThreadPool(_diskThreads,
+                        new ThreadFactoryBuilder().setNameFormat("mover-disk-%d").build()));
+        _allocationExecutor = new CDCExecutorServiceDecorator<>(
+                Executors.newCachedThreadPool(
+                        new ThreadFactoryBuilder().setNameFormat("mover-allocation-%d").build()));
+        _loops = loops;
+    }
+
+    /**
+     * Stops the loops. The selectors are closed once the threads running
+     * the loops have exited.
+     */
+    public synchronized void shutdown()
+    {
+        _isShutdown = true;
+        if (_loops != null) {
+            for (SelectorLoop loop : _loops) {
+                loop.shutdown();
+            }
+            _diskExecutor.shutdown();
+            _allocationExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the loop to serve the next mover. Loops are assigned round
+     * robin.
+     */
+    public synchronized SelectorLoop next() throws IOException
+    {
+        start();
+        int i = (_next.getAndIncrement() & Integer.MAX_VALUE) % _loops.size();
+        return _loops.get(i);
+    }
+
+    /**
+     * Returns the executor for blocking disk I/O of movers.
+     */
+    public synchronized ExecutorService getDiskExecutor() throws IOException
+    {
+        start();
+        return _diskExecutor;
+    }
+
+    /**
+     * Returns the executor for operations of movers that may wait for
+     * space to be allocated.
+     */
+    public synchronized ExecutorService getAllocationExecutor() throws IOException
+    {
+        start();
+        return _allocationExecutor;
+    }
+
+    @Override
+    public synchronized void getInfo(PrintWriter pw)
+    {
+        if (_loops == null) {
+            pw.println("Event loops : not started");
+        } else {
+            int channels = 0;
+            for (SelectorLoop loop : _loops) {
+                channels += loop.getChannelCount();
+            }
+            pw.println("Event loops : " + _loops.size() + " (" + channels + " channels)");
+        }
+        pw.println("Disk threads: " + _diskThreads);
+    }
+}
@@ -0,0 +1,445 @@
+package org.dcache.pool.movers;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.routing.RouteInfo;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import diskCacheV111.util.CacheException;
+
+import dmg.cells.nucleus.AbstractCellComponent;
+import dmg.cells.nucleus.CellCommandListener;
+import dmg.util.command.Command;
+
+import org.dcache.util.ColumnWriter;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Shared HTTP client engine of the remote HTTP transfer movers.
+ *
+ * Third party transfers to and from the same remote endpoint share
+ * pooled keep-alive connections, thus avoiding a TCP and TLS handshake
+ * per transfer. All transfers use a single client with a single I/O
+ * reactor and connection manager, thus network I/O is served by a small
+ * number of threads, independent of the number of transfers and of the
+ * number of credentials.
+ *
+ * A connection authenticated with a client credential must not be
+ * reused by a transfer with a different credential. Each credential is
+ * therefore represented by a lease, which supplies the context for the
+ * requests of a transfer. The context tags the connections with the
+ * credential as their state, so the connection manager only hands a
+ * pooled connection to requests of the same credential, and selects the
+ * SSL context of the credential when a new connection is established.
+ * The SSL context caches TLS sessions, allowing abbreviated handshakes
+ * when establishing further connections to an endpoint. SSL contexts are
+ * dropped once they have not been used for the keep-alive period.
+ *
+ * The engine keeps per endpoint statistics about the number of requests
+ * and the number of connections established for them.
+ */
+public class RemoteHttpClientEngine extends AbstractCellComponent
+        implements CellCommandListener
+{
+    private static final Logger _log =
+            LoggerFactory.getLogger(RemoteHttpClientEngine.class);
+
+    /**
+     * Context attribute through which the connection manager looks up
+     * the I/O session strategies of a request.
+     */
+    private static final String IOSESSION_FACTORY_REGISTRY =
+            "http.iosession-factory-registry";
+
+    /** Connection state of connections without a client credential. */
+    private static final Object DEFAULT_KEY = new Object();
+
+    private final ScheduledExecutorService _sweeper =
+            Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("remote-http-sweeper").setDaemon(true).build());
+
+    private final Map<Object,Credential> _credentials = new HashMap<>();
+    private final ConcurrentMap<HttpHost,EndpointStatistics> _endpoints =
+            new ConcurrentHashMap<>();
+
+    private PoolingNHttpClientConnectionManager _connectionManager;
+    private CloseableHttpAsyncClient _client;
+
+    private int _ioThreads = 2;
+    private int _maxConnectionsPerEndpoint = 100;
+    private long _keepAlive = TimeUnit.MINUTES.toMillis(1);
+    private TimeUnit _keepAliveUnit = TimeUnit.MILLISECONDS;
+
+    /**
+     * The session strategies of a credential and the number of transfers
+     * using it.
+     */
+    private static class Credential
+    {
+        final Object key;
+        final Registry<SchemeIOSessionStrategy> strategies;
+        int leases;
+        long lastUsed;
+
+        Credential(Object key, Registry<SchemeIOSessionStrategy> strategies)
+        {
+            this.key = key;
+            this.strategies = strategies;
+        }
+    }
+
+    private static class EndpointStatistics
+    {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong connections = new AtomicLong();
+    }
+
+    /**
+     * A reference to the shared client on behalf of a credential. All
+     * requests must be executed with a context created by the lease. The
+     * lease must be closed once the transfer has completed.
+     */
+    public class Lease implements AutoCloseable
+    {
+        private final Credential _credential;
+        private boolean _isClosed;
+
+        private Lease(Credential credential)
+        {
+            _credential = credential;
+        }
+
+        public HttpAsyncClient getClient()
+        {
+            return _client;
+        }
+
+        /**
+         * Returns a new context for a request on behalf of the credential
+         * of this lease.
+         */
+        public HttpClientContext createContext()
+        {
+            HttpClientContext context = HttpClientContext.create();
+            context.setUserToken(_credential.key);
+            if (_credential.strategies != null) {
+                context.setAttribute(IOSESSION_FACTORY_REGISTRY, _credential.strategies);
+            }
+            return context;
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            if (!_isClosed) {
+                _isClosed = true;
+                release(_credential);
+            }
+        }
+    }
+
+    public void setIoThreads(int threads)
+    {
+        checkArgument(threads > 0, "I/O threads must be positive");
+        _ioThreads = threads;
+    }
+
+    public void setMaxConnectionsPerEndpoint(int connections)
+    {
+        checkArgument(connections > 0, "Connections per endpoint must be positive");
+        _maxConnectionsPerEndpoint = connections;
+    }
+
+    public void setKeepAlive(long keepAlive)
+    {
+        _keepAlive = keepAlive;
+    }
+
+    public void setKeepAliveUnit(TimeUnit unit)
+    {
+        _keepAliveUnit = unit;
+    }
+
+    private long getKeepAliveMillis()
+    {
+        return _keepAliveUnit.toMillis(_keepAlive);
+    }
+
+    public void init() throws IOReactorException
+    {
+        ConnectingIOReactor reactor = new DefaultConnectingIOReactor(
+                IOReactorConfig.custom()
+                        .setIoThreadCount(_ioThreads)
+                        .setSoKeepAlive(true)
+                        .build(),
+                new ThreadFactoryBuilder().setNameFormat("remote-http-io-%d").build());
+        _connectionManager = new PoolingNHttpClientConnectionManager(reactor);
+        _connectionManager.setDefaultMaxPerRoute(_maxConnectionsPerEndpoint);
+        /* The number of transfers is bounded by the mover queues. */
+        _connectionManager.setMaxTotal(Integer.MAX_VALUE);
+
+        _client = HttpAsyncClientBuilder.create()
+                .setConnectionManager(_connectionManager)
+                .setUserAgent(RemoteHttpDataTransferProtocol_1.USER_AGENT)
+                .setThreadFactory(new ThreadFactoryBuilder().setNameFormat("remote-http-reactor").build())
+                .setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy()
+                {
+                    @Override
+                    public long getKeepAliveDuration(HttpResponse response, HttpContext context)
+                    {
+                        long duration = super.getKeepAliveDuration(response, context);
+                        long keepAlive = getKeepAliveMillis();
+                        return (duration < 0) ? keepAlive : Math.min(duration, keepAlive);
+                    }
+                })
+                .disableCookieManagement()
+                .addInterceptorLast(new StatisticsInterceptor())
+                .build();
+        _client.start();
+
+        long period = Math.max(getKeepAliveMillis() / 2, 1000);
+        _sweeper.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                closeIdle();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown()
+    {
+        _sweeper.shutdown();
+        synchronized (this) {
+            _credentials.clear();
+        }
+        if (_client != null) {
+            try {
+                _client.close();
+            } catch (IOException e) {
+                _log.warn("Failed to shut down HTTP client: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns a lease for transfers without a client credential. These
+     * use the default SSL context.
+     */
+    public Lease lease() throws CacheException
+    {
+        return lease(DEFAULT_KEY, null);
+    }
+
+    /**
+     * Returns a lease for a credential.
+     *
+     * @param credential object identifying the credential; credentials
+     *                   are considered identical if they are equal
+     * @param sslContext invoked to create the SSL context of the
+     *                   credential if no transfer used the credential
+     *                   during the keep-alive period; null to use the
+     *                   default SSL context
+     */
+    public synchronized Lease lease(Object credential, Callable<SSLContext> sslContext)
+            throws CacheException
+    {
+        Credential entry = _credentials.get(credential);
+        if (entry == null) {
+            entry = new Credential(credential, createStrategies(sslContext));
+            _credentials.put(credential, entry);
+        }
+        entry.leases++;
+        return new Lease(entry);
+    }
+
+    private synchronized void release(Credential credential)
+    {
+        credential.leases--;
+        credential.lastUsed = System.currentTimeMillis();
+    }
+
+    private static Registry<SchemeIOSessionStrategy> createStrategies(Callable<SSLContext> sslContext)
+            throws CacheException
+    {
+        if (sslContext == null) {
+            return null;
+        }
+        try {
+            return RegistryBuilder.<SchemeIOSessionStrategy>create()
+                    .register("http", NoopIOSessionStrategy.INSTANCE)
+                    .register("https", new SSLIOSessionStrategy(sslContext.call()))
+                    .build();
+        } catch (CacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CacheException("failed to build http client: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Drops the SSL contexts of credentials that have not been used for
+     * the keep-alive period and closes idle connections.
+     */
+    void closeIdle()
+    {
+        long threshold = System.currentTimeMillis() - getKeepAliveMillis();
+        synchronized (this) {
+            Iterator<Credential> iterator = _credentials.values().iterator();
+            while (iterator.hasNext()) {
+                Credential credential = iterator.next();
+                if (credential.leases == 0 && credential.lastUsed < threshold) {
+                    iterator.remove();
+                }
+            }
+        }
+        _connectionManager.closeExpiredConnections();
+        _connectionManager.closeIdleConnections(getKeepAliveMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of credentials for which an SSL context is kept.
+     */
+    synchronized int getCredentialCount()
+    {
+        return _credentials.size();
+    }
+
+    /**
+     * Counts requests and new connections per endpoint. A connection is
+     * new if the current request is the first request sent over it.
+     */
+    private class StatisticsInterceptor implements HttpResponseInterceptor
+    {
+        @Override
+        public void process(HttpResponse response, HttpContext context)
+        {
+            HttpClientContext clientContext = HttpClientContext.adapt(context);
+            RouteInfo route = clientContext.getHttpRoute();
+            HttpConnection connection = clientContext.getConnection();
+            if (route != null && connection != null) {
+                EndpointStatistics statistics = getStatistics(route.getTargetHost());
+                statistics.requests.incrementAndGet();
+                if (connection.getMetrics().getRequestCount() <= 1) {
+                    statistics.connections.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private EndpointStatistics getStatistics(HttpHost endpoint)
+    {
+        EndpointStatistics statistics = _endpoints.get(endpoint);
+        if (statistics == null) {
+            EndpointStatistics newStatistics = new EndpointStatistics();
+            statistics = _endpoints.putIfAbsent(endpoint, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        return statistics;
+    }
+
+    private static String reuse(long requests, long connections)
+    {
+        return (requests == 0)
+                ? "-"
+                : String.format("%.1f%%", 100.0 * (requests - connections) / requests);
+    }
+
+    @Override
+    public void getInfo(PrintWriter pw)
+    {
+        int credentials;
+        int leases = 0;
+        synchronized (this) {
+            credentials = _credentials.size();
+            for (Credential credential : _credentials.values()) {
+                leases += credential.leases;
+            }
+        }
+        long requests = 0;
+        long connections = 0;
+        for (EndpointStatistics statistics : _endpoints.values()) {
+            requests += statistics.requests.get();
+            connections += statistics.connections.get();
+        }
+        pw.println("Credentials : " + credentials + " (" + leases + " transfers)");
+        pw.println("Endpoints   : " + _endpoints.size());
+        pw.println("Requests    : " + requests);
+        pw.println("Connections : " + connections);
+        pw.println("Reuse       : " + reuse(requests, connections));
+    }
+
+    @Command(name = "http client ls",
+            hint = "list remote HTTP endpoints",
+            description = "Lists the remote endpoints of HTTP third party transfers. " +
+                    "For each endpoint the number of requests, the number of " +
+                    "connections established for them, and the fraction of " +
+                    "requests sent over a reused connection is shown.")
+    class ListCommand implements Callable<String>
+    {
+        @Override
+        public String call()
+        {
+            Map<String,EndpointStatistics> endpoints = new TreeMap<>();
+            for (Map.Entry<HttpHost,EndpointStatistics> entry : _endpoints.entrySet()) {
+                endpoints.put(entry.getKey().toURI(), entry.getValue());
+            }
+
+            ColumnWriter writer = new ColumnWriter();
+            writer.header("ENDPOINT").left("endpoint").space();
+            writer.header("REQUESTS").right("requests").space();
+            writer.header("CONNECTIONS").right("connections").space();
+            writer.header("REUSE").right("reuse");
+            for (Map.Entry<String,EndpointStatistics> entry : endpoints.entrySet()) {
+                long requests = entry.getValue().requests.get();
+                long connections = entry.getValue().connections.get();
+                writer.row()
+                        .value("endpoint", entry.getKey())
+                        .value("requests", requests)
+                        .value("connections", connections)
+                        .value("reuse", reuse(requests, connections));
+            }
+            return writer.toString();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.dcache.pool.movers;
 
 import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.SettableFuture;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -8,21 +10,27 @@ import org.apache.http.HttpVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.entity.InputStreamEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.channels.Channels;
+import java.io.InterruptedIOException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.WritableByteChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import diskCacheV111.util.CacheException;
@@ -33,6 +41,7 @@ import diskCacheV111.vehicles.RemoteHttpDataTransferProtocolInfo;
 
 import dmg.cells.nucleus.CellEndpoint;
 
+import org.dcache.pool.classic.Cancellable;
 import org.dcache.pool.movers.MoverChannel.AllocatorMode;
 import org.dcache.pool.repository.Allocator;
 import org.dcache.pool.repository.RepositoryChannel;
@@ -42,6 +51,7 @@ import org.dcache.util.Checksums;
 import org.dcache.util.Version;
 import org.dcache.vehicles.FileAttributes;
 
+import static com.google.common.base.Throwables.propagateIfInstanceOf;
 import static com.google.common.collect.Maps.uniqueIndex;
 import static org.dcache.namespace.FileAttribute.CHECKSUM;
 
@@ -109,8 +119,19 @@ import static org.dcache.namespace.FileAttribute.CHECKSUM;
  * is reported.  If the cleanup is unsuccessful then an error is reported
  * containing both the error in removing the remote file and the error that
  * triggered the delete.
+ *
+ *
+ * HTTP CLIENT
+ *
+ * Requests are sent through the pool's shared {@link RemoteHttpClientEngine},
+ * thus transfers reuse pooled connections and network I/O is performed by
+ * the engine's I/O reactor threads. The transfer is a chain of non-blocking
+ * requests; reading from and writing to the repository is submitted to an
+ * executor. Run as an {@link EventDrivenMoverProtocol}, the transfer does
+ * not occupy any thread while it waits for the network. When run through
+ * {@link #runIO}, the repository I/O is performed by the calling thread.
  */
-public class RemoteHttpDataTransferProtocol_1 implements MoverProtocol,
+public class RemoteHttpDataTransferProtocol_1 implements EventDrivenMoverProtocol,
         ChecksumMover
 {
     private final static Logger _log =
@@ -122,6 +143,9 @@ public class RemoteHttpDataTransferProtocol_1 implements MoverProtocol,
     /** Maximum time to wait for next packet from remote server. */
     private static final int SOCKET_TIMEOUT = (int) TimeUnit.MINUTES.toMillis(1);
 
+    /** Size of the buffers between the repository and the I/O reactor. */
+    private static final int BUFFER_SIZE = 256 * 1024;
+
     // REVISIT: we may wish to generate a value based on the algorithms dCache
     // supports
     private static final String WANT_DIGEST_VALUE = "adler32;q=1, md5;q=0.8";
@@ -129,6 +153,14 @@ public class RemoteHttpDataTransferProtocol_1 implements MoverProtocol,
     protected static final String USER_AGENT = "dCache/" +
             Version.of(RemoteHttpDataTransferProtocol_1.class).getVersion();
 
+    private static final Runnable NOP = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+        }
+    };
+
     private static final Function<Checksum,ChecksumType> GET_TYPE =
             new Function<Checksum,ChecksumType>() {
                 @Override
@@ -151,13 +183,18 @@ public class RemoteHttpDataTransferProtocol_1 implements MoverProtocol,
     private MoverChannel<RemoteHttpDataTransferProtocolInfo> _channel;
     private Checksum _remoteSuppliedChecksum;
 
-    private CloseableHttpClient _client;
+    private RemoteHttpClientEngine _engine;
 
     public RemoteHttpDataTransferProtocol_1(CellEndpoint cell)
     {
         // constructor needed by Pool mover contract.
     }
 
+    public void setClientEngine(RemoteHttpClientEngine engine)
+    {
+        _engine = engine;
+    }
+
     private static void checkThat(boolean isOk, String message) throws CacheException
     {
         if (!isOk) {
@@ -169,6 +206,65 @@ public class RemoteHttpDataTransferProtocol_1 implements MoverProtocol,
     public void runIO(FileAttributes attributes, RepositoryChannel channel,
             ProtocolInfo genericInfo, Allocator allocator, IoMode access)
             throws CacheException, IOException, InterruptedException
+    {
+        final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+        final SettableFuture<Void> result = SettableFuture.create();
+        Executor executor = new Executor()
+        {
+            @Override
+            public void execute(Runnable task)
+            {
+                tasks.add(task);
+            }
+        };
+        Cancellable transfer = start(attributes, channel, genericInfo, allocator, access,
+                null, executor, executor, new CompletionHandler<Void,Void>()
+                {
+                    @Override
+                    public void completed(Void ignored, Void attachment)
+                    {
+                        result.set(null);
+                        tasks.add(NOP);
+                    }
+
+                    @Override
+                    public void failed(Throwable t, Void attachment)
+                    {
+                        result.setException(t);
+                        tasks.add(NOP);
+                    }
+                });
+
+        boolean isInterrupted = false;
+        while (!result.isDone()) {
+            try {
+                tasks.take().run();
+            } catch (InterruptedException e) {
+                if (!isInterrupted) {
+                    isInterrupted = true;
+                    transfer.cancel();
+                }
+            }
+        }
+
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            propagateIfInstanceOf(cause, CacheException.class);
+            propagateIfInstanceOf(cause, IOException.class);
+            propagateIfInstanceOf(cause, InterruptedException.class);
+            throw Throwables.propagate(cause);
+        }
+    }
+
+    @Override
+    public Cancellable start(FileAttributes attributes, RepositoryChannel channel,
+                             ProtocolInfo genericInfo, Allocator allocator, IoMode access,
+                             SelectorLoop loop, Executor diskExecutor,
+                             Executor allocationExecutor,
+                             CompletionHandler<Void,Void> completionHandler)
+            throws CacheException
     {
         _log.debug("info={}, attributes={},  access={}", genericInfo,
                 attributes, access);
@@ -177,49 +273,258 @@ public class RemoteHttpDataTransferProtocol_1 implements MoverProtocol,
         _channel = new MoverChannel<>(access, attributes, info, channel,
                 allocator, AllocatorMode.HARD);
 
-        _client = createHttpClient();
+        checkThat(_engine != null, "no HTTP client engine");
+        checkThat(access != IoMode.READ || !info.isVerificationRequired() ||
+                attributes.isDefined(CHECKSUM),
+                "checksum verification failed: file has no checksum");
+
+        RemoteHttpClientEngine.Lease lease = leaseClient(_engine);
+        Transfer transfer = new Transfer(lease, info, diskExecutor, allocationExecutor,
+                completionHandler);
         try {
             switch (access) {
             case WRITE:
-                receiveFile(info);
+                transfer.receiveFile();
                 break;
 
             case READ:
-                checkThat(!info.isVerificationRequired() || attributes.isDefined(CHECKSUM),
-                        "checksum verification failed: file has no checksum");
-                sendAndCheckFile(info);
+                transfer.sendFile();
                 break;
             }
-        } finally {
-            _client.close();
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
         }
+        return transfer;
     }
 
-    protected CloseableHttpClient createHttpClient() throws CacheException
+    /**
+     * Returns a lease on the client used for the transfer.
+     */
+    protected RemoteHttpClientEngine.Lease leaseClient(RemoteHttpClientEngine engine)
+            throws CacheException
     {
-        return HttpClients.custom().setUserAgent(USER_AGENT).build();
+        return engine.lease();
     }
 
-    private void receiveFile(final RemoteHttpDataTransferProtocolInfo info)
-            throws ThirdPartyTransferFailedCacheException
+    /**
+     * Thrown by the response consumer to fail the exchange with a
+     * CacheException.
+     */
+    private static class TransferFailedException extends IOException
     {
-        HttpGet get = new HttpGet(info.getUri());
-        get.setProtocolVersion(HttpVersion.HTTP_1_1);
-        get.addHeader("Want-Digest", WANT_DIGEST_VALUE);
-        for (Map.Entry<String,String> header : info.getHeaders().entrySet()) {
-            get.addHeader(header.getKey(), header.getValue());
-        }
-        get.setConfig(RequestConfig.custom().
-                setConnectTimeout(CONNECTION_TIMEOUT).
-                setSocketTimeout(SOCKET_TIMEOUT).
-                build());
-
-        try (CloseableHttpResponse response = _client.execute(get)) {
+        private static final long serialVersionUID = 1L;
+
+        TransferFailedException(CacheException cause)
+        {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * A transfer as a chain of requests. Each callback of a request
+     * starts the next request or completes the transfer. Callbacks are
+     * called by the I/O reactor and thus must not block.
+     */
+    private class Transfer implements Cancellable
+    {
+        private final RemoteHttpClientEngine.Lease _lease;
+        private final RemoteHttpDataTransferProtocolInfo _info;
+        private final Executor _executor;
+        private final Executor _allocationExecutor;
+        private final CompletionHandler<Void,Void> _completionHandler;
+
+        /* Guarded by this. */
+        private StreamingResponseConsumer _consumer;
+        private StreamingRequestEntity _entity;
+        private boolean _isCancelled;
+
+        Transfer(RemoteHttpClientEngine.Lease lease, RemoteHttpDataTransferProtocolInfo info,
+                 Executor executor, Executor allocationExecutor,
+                 CompletionHandler<Void,Void> completionHandler)
+        {
+            _lease = lease;
+            _info = info;
+            _executor = executor;
+            _allocationExecutor = allocationExecutor;
+            _completionHandler = completionHandler;
+        }
+
+        @Override
+        public synchronized void cancel()
+        {
+            _isCancelled = true;
+            if (_consumer != null) {
+                _consumer.abort();
+            }
+            if (_entity != null) {
+                _entity.abort();
+            }
+        }
+
+        private synchronized boolean isCancelled()
+        {
+            return _isCancelled;
+        }
+
+        private synchronized void setConsumer(StreamingResponseConsumer consumer)
+        {
+            _consumer = consumer;
+            if (_isCancelled) {
+                consumer.abort();
+            }
+        }
+
+        private synchronized void setEntity(StreamingRequestEntity entity)
+        {
+            _entity = entity;
+            if (_isCancelled) {
+                entity.abort();
+            }
+        }
+
+        private void succeeded()
+        {
+            if (isCancelled()) {
+                failed(new InterruptedException("Transfer was interrupted"));
+            } else {
+                _lease.close();
+                _completionHandler.completed(null, null);
+            }
+        }
+
+        private void failed(Throwable t)
+        {
+            _lease.close();
+            if (isCancelled()) {
+                _completionHandler.failed(new InterruptedException("Transfer was interrupted"), null);
+            } else {
+                _completionHandler.failed(t, null);
+            }
+        }
+
+        private <T extends HttpRequestBase> T buildRequest(T request, int socketTimeout)
+        {
+            request.setProtocolVersion(HttpVersion.HTTP_1_1);
+            request.setConfig(RequestConfig.custom().
+                    setConnectTimeout(CONNECTION_TIMEOUT).
+                    setSocketTimeout(socketTimeout).
+                    build());
+            for (Map.Entry<String,String> header : _info.getHeaders().entrySet()) {
+                request.addHeader(header.getKey(), header.getValue());
+            }
+            return request;
+        }
+
+        private void execute(HttpUriRequest request, FutureCallback<HttpResponse> callback)
+        {
+            _lease.getClient().execute(request, _lease.createContext(), callback);
+        }
+
+        void receiveFile()
+        {
+            HttpGet get = buildRequest(new HttpGet(_info.getUri()), SOCKET_TIMEOUT);
+            get.addHeader("Want-Digest", WANT_DIGEST_VALUE);
+
+            /* Writes to the mover channel wait for space to be allocated. */
+            final StreamingResponseConsumer consumer =
+                    new StreamingResponseConsumer(BUFFER_SIZE, _allocationExecutor)
+                    {
+                        @Override
+                        protected WritableByteChannel onResponse(HttpResponse response)
+                                throws IOException
+                        {
+                            return checkGetResponse(response);
+                        }
+                    };
+            setConsumer(consumer);
+            _lease.getClient().execute(HttpAsyncMethods.create(get), consumer,
+                    _lease.createContext(), new FutureCallback<HttpResponse>()
+                    {
+                        @Override
+                        public void completed(HttpResponse response)
+                        {
+                            consumer.finish(true, new FutureCallback<Void>()
+                            {
+                                @Override
+                                public void completed(Void ignored)
+                                {
+                                    try {
+                                        verifyReceivedChecksum();
+                                        succeeded();
+                                    } catch (ThirdPartyTransferFailedCacheException e) {
+                                        Transfer.this.failed(e);
+                                    }
+                                }
+
+                                @Override
+                                public void failed(Exception e)
+                                {
+                                    Transfer.this.failed(new ThirdPartyTransferFailedCacheException(e.getMessage(), e));
+                                }
+
+                                @Override
+                                public void cancelled()
+                                {
+                                    Transfer.this.failed(new InterruptedException("Transfer was interrupted"));
+                                }
+                            });
+                        }
+
+                        @Override
+                        public void failed(final Exception e)
+                        {
+                            consumer.finish(false, new FutureCallback<Void>()
+                            {
+                                @Override
+                                public void completed(Void ignored)
+                                {
+                                    receiveFailed(e);
+                                }
+
+                                @Override
+                                public void failed(Exception ignored)
+                                {
+                                    receiveFailed(e);
+                                }
+
+                                @Override
+                                public void cancelled()
+                                {
+                                    receiveFailed(e);
+                                }
+                            });
+                        }
+
+                        @Override
+                        public void cancelled()
+                        {
+                            failed(new InterruptedIOException("Request was cancelled"));
+                        }
+                    });
+        }
+
+        private void receiveFailed(Exception e)
+        {
+            if (e instanceof TransferFailedException) {
+                failed(e.getCause());
+            } else {
+                failed(new ThirdPartyTransferFailedCacheException(e.getMessage(), e));
+            }
+        }
+
+        /**
+         * Checks the head of the response to the GET request and returns
+         * the channel to which the content is written.
+         */
+        private WritableByteChannel checkGetResponse(HttpResponse response)
+                throws IOException
+        {
             StatusLine statusLine = response.getStatusLine();
             if (statusLine.getStatusCode() >= 300) {
-                throw new ThirdPartyTransferFailedCacheException("remote " +
+                throw new TransferFailedException(new ThirdPartyTransferFailedCacheException("remote " +
                         "server rejected GET: " + statusLine.getStatusCode() +
-                        " " + statusLine.getReasonPhrase());
+                        " " + statusLine.getReasonPhrase()));
             }
 
             String rfc3230 = headerValue(response, "Digest");
@@ -234,25 +539,154 @@ public class RemoteHttpDataTransferProtocol_1 implements MoverProtocol,
                 }
             }
 
-            if (_remoteSuppliedChecksum == null && info.isVerificationRequired()) {
+            if (_remoteSuppliedChecksum == null && _info.isVerificationRequired()) {
                 throw new ClientProtocolException("failed to verify transfer: " +
                         "server sent no useful checksum: " +
                         rfc3230 == null ? "(none sent)" : rfc3230);
             }
 
-            // NB. we MUST NOT close RepositoryChannel as pool wants to do this
-            RepositoryChannel to = decorateForChecksumCalculation(_channel);
-
             HttpEntity entity = response.getEntity();
             if (entity == null) {
                 throw new ClientProtocolException("Response contains no content");
             }
 
-            entity.writeTo(Channels.newOutputStream(to));
-        } catch (IOException e) {
-            throw new ThirdPartyTransferFailedCacheException(e.getMessage(), e);
+            // NB. we MUST NOT close RepositoryChannel as pool wants to do this
+            return decorateForChecksumCalculation(_channel);
+        }
+
+        void sendFile()
+        {
+            final StreamingRequestEntity entity =
+                    new StreamingRequestEntity(_channel, _channel.getFileAttributes().getSize(),
+                            BUFFER_SIZE, _executor);
+            HttpPut put = buildRequest(new HttpPut(_info.getUri()), 0);
+            put.setEntity(entity);
+            setEntity(entity);
+
+            execute(put, new FutureCallback<HttpResponse>()
+            {
+                @Override
+                public void completed(final HttpResponse response)
+                {
+                    entity.finish(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            StatusLine status = response.getStatusLine();
+                            if (status.getStatusCode() >= 300) {
+                                Transfer.this.failed(new ThirdPartyTransferFailedCacheException("remote " +
+                                        "server rejected PUT: " + status.getStatusCode() +
+                                        " " + status.getReasonPhrase()));
+                            } else if (!entity.isComplete()) {
+                                Transfer.this.failed(new ThirdPartyTransferFailedCacheException("remote " +
+                                        "server responded before receiving all data"));
+                            } else if (isCancelled()) {
+                                succeeded();
+                            } else {
+                                verifyRemoteFile();
+                            }
+                        }
+                    });
+                }
+
+                @Override
+                public void failed(final Exception e)
+                {
+                    entity.finish(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            _log.error("problem connecting: {}", e.getMessage());
+                            Transfer.this.failed(new ThirdPartyTransferFailedCacheException("failed to " +
+                                    "connect to server: " + e.getMessage(), e));
+                        }
+                    });
+                }
+
+                @Override
+                public void cancelled()
+                {
+                    failed(new InterruptedIOException("Request was cancelled"));
+                }
+            });
+        }
+
+        private void verifyRemoteFile()
+        {
+            HttpHead head = buildRequest(new HttpHead(_info.getUri()), SOCKET_TIMEOUT);
+            head.addHeader("Want-Digest", WANT_DIGEST_VALUE);
+
+            execute(head, new FutureCallback<HttpResponse>()
+            {
+                @Override
+                public void completed(HttpResponse response)
+                {
+                    try {
+                        checkRemoteFile(_info, response);
+                        succeeded();
+                    } catch (ThirdPartyTransferFailedCacheException e) {
+                        deleteRemoteFile(e.getMessage());
+                    }
+                }
+
+                @Override
+                public void failed(Exception e)
+                {
+                    deleteRemoteFile("failed to connect to server: " + e.getMessage());
+                }
+
+                @Override
+                public void cancelled()
+                {
+                    failed(new InterruptedIOException("Request was cancelled"));
+                }
+            });
+        }
+
+        private void deleteRemoteFile(final String why)
+        {
+            HttpDelete delete = buildRequest(new HttpDelete(_info.getUri()), SOCKET_TIMEOUT);
+
+            execute(delete, new FutureCallback<HttpResponse>()
+            {
+                @Override
+                public void completed(HttpResponse response)
+                {
+                    StatusLine status = response.getStatusLine();
+                    if (status.getStatusCode() >= 300) {
+                        deleteFailed("remote server rejected DELETE: " +
+                                status.getStatusCode() + " " + status.getReasonPhrase());
+                    } else {
+                        Transfer.this.failed(new ThirdPartyTransferFailedCacheException("verification " +
+                                "failed: " + why));
+                    }
+                }
+
+                @Override
+                public void failed(Exception e)
+                {
+                    deleteFailed(e.getMessage());
+                }
+
+                @Override
+                public void cancelled()
+                {
+                    deleteFailed("request was cancelled");
+                }
+
+                private void deleteFailed(String message)
+                {
+                    Transfer.this.failed(new ThirdPartyTransferFailedCacheException("delete of " +
+                            "remote file (triggered by " + why + ") failed: " + message));
+                }
+            });
         }
+    }
 
+    private void verifyReceivedChecksum() throws ThirdPartyTransferFailedCacheException
+    {
         if (_remoteSuppliedChecksum != null) {
             Checksum transferChecksum  = (_remoteSuppliedChecksumChannel != null) ?
                 _remoteSuppliedChecksumChannel.getChecksum() : _onTransferChecksumChannel.getChecksum();
@@ -288,105 +722,43 @@ public class RemoteHttpDataTransferProtocol_1 implements MoverProtocol,
         return channel;
     }
 
-    private void sendAndCheckFile(RemoteHttpDataTransferProtocolInfo info)
+    private void checkRemoteFile(RemoteHttpDataTransferProtocolInfo info, HttpResponse response)
             throws ThirdPartyTransferFailedCacheException
     {
-        sendFile(info, _channel.getFileAttributes().getSize());
+        FileAttributes attributes = _channel.getFileAttributes();
 
-        try {
-            verifyRemoteFile(info);
-        } catch (ThirdPartyTransferFailedCacheException e) {
-            deleteRemoteFile(e.getMessage(), info);
-            throw new ThirdPartyTransferFailedCacheException("verification " +
-                    "failed: " + e.getMessage());
+        StatusLine status = response.getStatusLine();
+        if (status.getStatusCode() >= 300) {
+            throw new ThirdPartyTransferFailedCacheException("remote " +
+                    "server rejected HEAD: " + status.getStatusCode() +
+                    " " + status.getReasonPhrase());
         }
-    }
 
-    private void sendFile(RemoteHttpDataTransferProtocolInfo info, long length)
-            throws ThirdPartyTransferFailedCacheException
-    {
-        HttpEntity entity = new InputStreamEntity(Channels.newInputStream(_channel), length);
-
-        HttpPut put = new HttpPut(info.getUri());
-        put.setProtocolVersion(HttpVersion.HTTP_1_1);
-        put.setConfig(RequestConfig.custom().
-                setConnectTimeout(CONNECTION_TIMEOUT).
-                setSocketTimeout(0).
-                build());
-        for (Map.Entry<String,String> header : info.getHeaders().entrySet()) {
-            put.addHeader(header.getKey(), header.getValue());
-        }
-
-        put.setEntity(entity);
-        // FIXME add SO_KEEPALIVE setting
-
-        try (CloseableHttpResponse response = _client.execute(put)) {
-            StatusLine status = response.getStatusLine();
-            if (status.getStatusCode() >= 300) {
-                throw new ThirdPartyTransferFailedCacheException("remote " +
-                        "server rejected PUT: " + status.getStatusCode() +
-                        " " + status.getReasonPhrase());
-            }
-        } catch (IOException e) {
-            _log.error("problem connecting: {}", e.getMessage());
-            throw new ThirdPartyTransferFailedCacheException("failed to " +
-                    "connect to server: " + e.getMessage(), e);
+        if (info.isVerificationRequired() && !hasContentLength(response,
+                attributes.getSize())) {
+            throw new ThirdPartyTransferFailedCacheException("sever sent no Content-Length");
         }
-    }
-
-    private void verifyRemoteFile(RemoteHttpDataTransferProtocolInfo info)
-            throws ThirdPartyTransferFailedCacheException
-    {
-        FileAttributes attributes = _channel.getFileAttributes();
 
-        HttpHead head = new HttpHead(info.getUri());
-        head.addHeader("Want-Digest", WANT_DIGEST_VALUE);
-        head.setProtocolVersion(HttpVersion.HTTP_1_1);
-        head.setConfig(RequestConfig.custom().
-                setConnectTimeout(CONNECTION_TIMEOUT).
-                setSocketTimeout(SOCKET_TIMEOUT).
-                build());
-        for (Map.Entry<String,String> header : info.getHeaders().entrySet()) {
-            head.addHeader(header.getKey(), header.getValue());
-        }
-
-        try (CloseableHttpResponse response = _client.execute(head)) {
-            StatusLine status = response.getStatusLine();
-            if (status.getStatusCode() >= 300) {
-                throw new ThirdPartyTransferFailedCacheException("remote " +
-                        "server rejected HEAD: " + status.getStatusCode() +
-                        " " + status.getReasonPhrase());
-            }
+        String rfc3230 = headerValue(response, "Digest");
+        Map<ChecksumType,Checksum> checksums =
+                uniqueIndex(Checksums.decodeRfc3230(rfc3230), GET_TYPE);
 
-            if (info.isVerificationRequired() && !hasContentLength(response,
-                    attributes.getSize())) {
-                throw new ThirdPartyTransferFailedCacheException("sever sent no Content-Length");
-            }
+        boolean verified = false;
+        if (attributes.isDefined(CHECKSUM)) {
+            for (Checksum ourChecksum : attributes.getChecksums()) {
+                ChecksumType type = ourChecksum.getType();
 
-            String rfc3230 = headerValue(response, "Digest");
-            Map<ChecksumType,Checksum> checksums =
-                    uniqueIndex(Checksums.decodeRfc3230(rfc3230), GET_TYPE);
-
-            boolean verified = false;
-            if (attributes.isDefined(CHECKSUM)) {
-                for (Checksum ourChecksum : attributes.getChecksums()) {
-                    ChecksumType type = ourChecksum.getType();
-
-                    if (checksums.containsKey(type)) {
-                        checkChecksumEqual(ourChecksum, checksums.get(type));
-                        verified = true;
-                    }
+                if (checksums.containsKey(type)) {
+                    checkChecksumEqual(ourChecksum, checksums.get(type));
+                    verified = true;
                 }
             }
+        }
 
-            if (info.isVerificationRequired() && !verified) {
-                throw new ThirdPartyTransferFailedCacheException("server " +
-                        "sent no useful checksum: " +
-                        rfc3230 == null ? "(none sent)" : rfc3230);
-            }
-        } catch (IOException e) {
-            throw new ThirdPartyTransferFailedCacheException("failed to " +
-                    "connect to server: " + e.getMessage(), e);
+        if (info.isVerificationRequired() && !verified) {
+            throw new ThirdPartyTransferFailedCacheException("server " +
+                    "sent no useful checksum: " +
+                    rfc3230 == null ? "(none sent)" : rfc3230);
         }
     }
 
@@ -435,34 +807,6 @@ public class RemoteHttpDataTransferProtocol_1 implements MoverProtocol,
         }
     }
 
-    private void deleteRemoteFile(String why, RemoteHttpDataTransferProtocolInfo info)
-            throws ThirdPartyTransferFailedCacheException
-    {
-        HttpDelete delete = new HttpDelete(info.getUri());
-        delete.setProtocolVersion(HttpVersion.HTTP_1_1);
-        delete.setConfig(RequestConfig.custom().
-                setConnectTimeout(CONNECTION_TIMEOUT).
-                setSocketTimeout(SOCKET_TIMEOUT).
-                build());
-        for (Map.Entry<String,String> header : info.getHeaders().entrySet()) {
-            delete.addHeader(header.getKey(), header.getValue());
-        }
-
-        try (CloseableHttpResponse response = _client.execute(delete)) {
-            StatusLine status = response.getStatusLine();
-
-            if (status.getStatusCode() >= 300) {
-                throw new ThirdPartyTransferFailedCacheException("remote " +
-                        "server rejected DELETE: " + status.getStatusCode() +
-                        " " + status.getReasonPhrase());
-            }
-        } catch (CacheException | IOException e) {
-            throw new ThirdPartyTransferFailedCacheException("delete of " +
-                    "remote file (triggered by " + why + ") failed: " + e.getMessage());
-        }
-    }
-
-
     @Override
     public long getLastTransferred()
     {
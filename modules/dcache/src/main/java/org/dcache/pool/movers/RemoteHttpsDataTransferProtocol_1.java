@@ -5,13 +5,12 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import org.apache.http.conn.ssl.SSLContexts;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.globus.gsi.provider.GlobusProvider;
 
 import javax.net.ssl.SSLContext;
 
 import java.io.IOException;
+import java.nio.channels.CompletionHandler;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStore.LoadStoreParameter;
@@ -22,9 +21,12 @@ import java.security.Security;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import diskCacheV111.util.CacheException;
@@ -36,6 +38,7 @@ import dmg.cells.nucleus.EnvironmentAware;
 import dmg.util.Formats;
 import dmg.util.Replaceable;
 
+import org.dcache.pool.classic.Cancellable;
 import org.dcache.pool.repository.Allocator;
 import org.dcache.pool.repository.RepositoryChannel;
 import org.dcache.vehicles.FileAttributes;
@@ -44,6 +47,10 @@ import static org.globus.gsi.provider.KeyStoreParametersFactory.createTrustStore
 
 /**
  *  A mover for transferring a file using HTTP over a TLS/SSL connection.
+ *
+ *  Transfers with the same client credential and trust store share the
+ *  pooled connections and the TLS session cache of that credential in the
+ *  {@link RemoteHttpClientEngine}.
  */
 public class RemoteHttpsDataTransferProtocol_1 extends RemoteHttpDataTransferProtocol_1 implements EnvironmentAware
 {
@@ -100,16 +107,20 @@ public class RemoteHttpsDataTransferProtocol_1 extends RemoteHttpDataTransferPro
     }
 
     @Override
-    public void runIO(FileAttributes attributes, RepositoryChannel channel,
-            ProtocolInfo genericInfo, Allocator allocator, IoMode access)
-            throws CacheException, IOException, InterruptedException
+    public Cancellable start(FileAttributes attributes, RepositoryChannel channel,
+                             ProtocolInfo genericInfo, Allocator allocator, IoMode access,
+                             SelectorLoop loop, Executor diskExecutor,
+                             Executor allocationExecutor,
+                             CompletionHandler<Void,Void> completionHandler)
+            throws CacheException
     {
          RemoteHttpsDataTransferProtocolInfo info =
                 (RemoteHttpsDataTransferProtocolInfo) genericInfo;
          privateKey = info.getPrivateKey();
          chain = info.getCertificateChain();
 
-         super.runIO(attributes, channel, genericInfo, allocator, access);
+         return super.start(attributes, channel, genericInfo, allocator, access,
+                 loop, diskExecutor, allocationExecutor, completionHandler);
     }
 
     private KeyStore getTrustStore() throws KeyStoreException, IOException, CertificateException
@@ -142,17 +153,30 @@ public class RemoteHttpsDataTransferProtocol_1 extends RemoteHttpDataTransferPro
     }
 
     @Override
-    public CloseableHttpClient createHttpClient() throws CacheException
+    protected RemoteHttpClientEngine.Lease leaseClient(RemoteHttpClientEngine engine)
+            throws CacheException
+    {
+        Object credential = Arrays.asList(caPath, privateKey,
+                (chain == null) ? null : Arrays.asList(chain));
+        return engine.lease(credential, new Callable<SSLContext>()
+        {
+            @Override
+            public SSLContext call() throws CacheException
+            {
+                return createSslContext();
+            }
+        });
+    }
+
+    private SSLContext createSslContext() throws CacheException
     {
         char[] password = "too-many-secrets".toCharArray(); // Dummy value to satisfy JSSE.
 
         try {
-            SSLContext context = SSLContexts.custom().
+            return SSLContexts.custom().
                     loadKeyMaterial(buildKeyStore(password), password).
                     loadTrustMaterial(getTrustStore()).
                     build();
-
-            return HttpClients.custom().setUserAgent(USER_AGENT).setSslcontext(context).build();
         } catch (NoSuchAlgorithmException | KeyStoreException | KeyManagementException
                 | UnrecoverableKeyException | CertificateException | IOException e) {
             throw new CacheException("failed to build http client: " +
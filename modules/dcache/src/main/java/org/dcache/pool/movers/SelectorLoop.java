@@ -0,0 +1,168 @@
+package org.dcache.pool.movers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A selector and a task queue served by a single thread.
+ *
+ * Tasks submitted with {@link #execute} and the handlers of channels
+ * registered with the loop are all run by the thread running the loop.
+ * Event driven movers rely on this to keep their state without any
+ * synchronization. Neither tasks nor handlers may block.
+ *
+ * The loop is run by a dedicated thread of a {@link MoverEventLoop} until
+ * it is shut down.
+ */
+public class SelectorLoop implements Executor, AutoCloseable
+{
+    private static final Logger _log = LoggerFactory.getLogger(SelectorLoop.class);
+
+    /**
+     * Called by the loop when a registered channel is ready for any of
+     * its interest operations.
+     */
+    public interface Handler
+    {
+        void ready(SelectionKey key);
+    }
+
+    private final Selector _selector;
+    private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
+    private volatile Thread _thread;
+    private volatile boolean _isShutdown;
+
+    public SelectorLoop() throws IOException
+    {
+        _selector = Selector.open();
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        _tasks.add(task);
+        if (Thread.currentThread() != _thread) {
+            _selector.wakeup();
+        }
+    }
+
+    /**
+     * Returns whether the calling thread is the thread running the loop.
+     */
+    public boolean inLoop()
+    {
+        return Thread.currentThread() == _thread;
+    }
+
+    /**
+     * Registers a channel with the loop. The channel is put into
+     * non-blocking mode. Must be called by the thread running the loop.
+     */
+    public SelectionKey register(SelectableChannel channel, int ops, Handler handler)
+            throws IOException
+    {
+        checkState(inLoop(), "Channel must be registered by the thread of the loop");
+        channel.configureBlocking(false);
+        return channel.register(_selector, ops, handler);
+    }
+
+    /**
+     * Returns the number of channels registered with the loop.
+     */
+    public int getChannelCount()
+    {
+        return _selector.keys().size();
+    }
+
+    /**
+     * Runs the loop on the calling thread until it is shut down.
+     */
+    public void run()
+    {
+        _thread = Thread.currentThread();
+        try {
+            while (true) {
+                runTasks();
+                if (_isShutdown) {
+                    break;
+                }
+                select();
+                if (Thread.interrupted()) {
+                    _log.warn("Ignoring interrupt of event loop thread");
+                }
+            }
+        } catch (IOException e) {
+            _log.error("Event loop failed: {}", e.toString());
+        } finally {
+            _thread = null;
+        }
+    }
+
+    private void select() throws IOException
+    {
+        if (_tasks.isEmpty()) {
+            _selector.select();
+        } else {
+            _selector.selectNow();
+        }
+
+        Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (key.isValid()) {
+                try {
+                    ((Handler) key.attachment()).ready(key);
+                } catch (RuntimeException e) {
+                    _log.error("Unexpected failure in event handler: {}", e.toString(), e);
+                    key.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the tasks queued so far. Tasks queued by these tasks are run
+     * in the next round, thus channels are not starved.
+     */
+    private void runTasks()
+    {
+        for (int i = _tasks.size(); i > 0; i--) {
+            Runnable task = _tasks.poll();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                _log.error("Unexpected failure in event task: {}", e.toString(), e);
+            }
+        }
+    }
+
+    /**
+     * Stops a loop started with {@link #run}.
+     */
+    public void shutdown()
+    {
+        _isShutdown = true;
+        _selector.wakeup();
+    }
+
+    /**
+     * Closes the selector. Channels still registered are not closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        _selector.close();
+    }
+}
@@ -0,0 +1,254 @@
+package org.dcache.pool.movers;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Request entity reading its content from a channel.
+ *
+ * The content is read into one of two buffers by a task submitted to an
+ * executor, one buffer at a time, while the I/O reactor sends the other
+ * buffer whenever the connection is ready for output. Output to the
+ * connection is suspended while no content has been read, thus neither
+ * the reactor nor any other thread ever blocks on the connection or the
+ * channel.
+ *
+ * Once the exchange has ended, {@link #finish} must be called to wait for
+ * the read in progress.
+ */
+class StreamingRequestEntity extends AbstractHttpEntity
+        implements HttpAsyncContentProducer
+{
+    private final ReadableByteChannel _channel;
+    private final long _length;
+    private final Executor _executor;
+
+    /* Guarded by this. */
+    private final Deque<ByteBuffer> _empty = new ArrayDeque<>(2);
+    private final Deque<ByteBuffer> _full = new ArrayDeque<>(2);
+    private long _remaining;
+    private IOControl _ioControl;
+    private boolean _isSuspended;
+    private boolean _isReading;
+    private boolean _isAborted;
+    private boolean _isComplete;
+    private IOException _failure;
+    private Runnable _finish;
+
+    StreamingRequestEntity(ReadableByteChannel channel, long length, int bufferSize,
+                           Executor executor)
+    {
+        _channel = channel;
+        _length = length;
+        _remaining = length;
+        _executor = executor;
+        _empty.add(ByteBuffer.allocate(bufferSize / 2));
+        _empty.add(ByteBuffer.allocate(bufferSize / 2));
+    }
+
+    @Override
+    public boolean isRepeatable()
+    {
+        return false;
+    }
+
+    @Override
+    public long getContentLength()
+    {
+        return _length;
+    }
+
+    @Override
+    public InputStream getContent()
+    {
+        throw new UnsupportedOperationException("Entity content is produced asynchronously");
+    }
+
+    @Override
+    public void writeTo(OutputStream out)
+    {
+        throw new UnsupportedOperationException("Entity content is produced asynchronously");
+    }
+
+    @Override
+    public boolean isStreaming()
+    {
+        return true;
+    }
+
+    @Override
+    public synchronized void produceContent(ContentEncoder encoder, IOControl ioctrl)
+            throws IOException
+    {
+        if (_isAborted) {
+            throw new InterruptedIOException("Transfer aborted");
+        }
+        if (_failure != null) {
+            throw _failure;
+        }
+        _ioControl = ioctrl;
+        read();
+        while (true) {
+            ByteBuffer buffer = _full.peek();
+            if (buffer == null) {
+                if (_remaining == 0 && !_isReading) {
+                    encoder.complete();
+                    _isComplete = true;
+                } else {
+                    ioctrl.suspendOutput();
+                    _isSuspended = true;
+                }
+                return;
+            }
+            encoder.write(buffer);
+            if (buffer.hasRemaining()) {
+                return;
+            }
+            _full.poll();
+            buffer.clear();
+            _empty.add(buffer);
+            read();
+        }
+    }
+
+    /**
+     * Submits a read into the next empty buffer to the executor unless a
+     * read is in progress.
+     */
+    private void read()
+    {
+        if (!_isReading && !_isAborted && _failure == null && _remaining > 0 && !_empty.isEmpty()) {
+            final ByteBuffer buffer = _empty.poll();
+            buffer.limit((int) Math.min(buffer.capacity(), _remaining));
+            _isReading = true;
+            try {
+                _executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        completed(buffer, readFully(buffer));
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                _isReading = false;
+                _failure = new IOException("Transfer was rejected: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private IOException readFully(ByteBuffer buffer)
+    {
+        try {
+            while (buffer.hasRemaining()) {
+                if (_channel.read(buffer) == -1) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    private void completed(ByteBuffer buffer, IOException failure)
+    {
+        Runnable finish;
+        synchronized (this) {
+            _isReading = false;
+            if (failure != null) {
+                _failure = failure;
+            } else {
+                buffer.flip();
+                _remaining -= buffer.remaining();
+                _full.add(buffer);
+                read();
+            }
+            if (_isSuspended && _ioControl != null) {
+                /* Resumes output; if the read failed, the reactor fails
+                 * the exchange on the next output.
+                 */
+                _isSuspended = false;
+                _ioControl.requestOutput();
+            }
+            finish = takeFinish();
+        }
+        if (finish != null) {
+            finish.run();
+        }
+    }
+
+    /**
+     * Returns the callback passed to {@link #finish} if no read is in
+     * progress. The callback is returned at most once.
+     */
+    private Runnable takeFinish()
+    {
+        Runnable finish = null;
+        if (!_isReading) {
+            finish = _finish;
+            _finish = null;
+        }
+        return finish;
+    }
+
+    /**
+     * Called once the request has been sent or has failed.
+     */
+    @Override
+    public void close()
+    {
+    }
+
+    /**
+     * Returns whether all content has been sent.
+     */
+    synchronized boolean isComplete()
+    {
+        return _isComplete;
+    }
+
+    /**
+     * Must be called once the exchange has ended. No further content is
+     * read from the channel.
+     *
+     * @param callback called once no read is in progress
+     */
+    void finish(Runnable callback)
+    {
+        Runnable finish;
+        synchronized (this) {
+            _isAborted = true;
+            _finish = callback;
+            finish = takeFinish();
+        }
+        if (finish != null) {
+            finish.run();
+        }
+    }
+
+    /**
+     * Aborts sending the content. The exchange fails on the next output
+     * and the connection is closed.
+     */
+    synchronized void abort()
+    {
+        _isAborted = true;
+        if (_ioControl != null) {
+            _ioControl.requestOutput();
+        }
+    }
+}
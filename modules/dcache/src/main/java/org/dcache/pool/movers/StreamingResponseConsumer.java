@@ -0,0 +1,260 @@
+package org.dcache.pool.movers;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Response consumer writing the response entity to a channel.
+ *
+ * Content received by the I/O reactor is collected in one of two
+ * buffers. Full buffers are written to the channel by a task submitted
+ * to an executor, one buffer at a time, while the reactor fills the
+ * other buffer. Input from the connection is suspended while both
+ * buffers are full, thus neither the reactor nor any other thread ever
+ * blocks on the connection or the channel.
+ *
+ * Once the exchange has ended, {@link #finish} must be called to write
+ * the remaining content and to wait for the write in progress.
+ */
+abstract class StreamingResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse>
+{
+    private final Executor _executor;
+
+    /* Guarded by this. */
+    private final Deque<ByteBuffer> _empty = new ArrayDeque<>(2);
+    private final Deque<ByteBuffer> _full = new ArrayDeque<>(2);
+    private ByteBuffer _filling;
+    private WritableByteChannel _channel;
+    private HttpResponse _response;
+    private IOControl _ioControl;
+    private boolean _isSuspended;
+    private boolean _isWriting;
+    private boolean _isAborted;
+    private IOException _failure;
+    private FutureCallback<Void> _finish;
+
+    StreamingResponseConsumer(int bufferSize, Executor executor)
+    {
+        _executor = executor;
+        _empty.add(ByteBuffer.allocate(bufferSize / 2));
+        _empty.add(ByteBuffer.allocate(bufferSize / 2));
+    }
+
+    /**
+     * Called by the I/O reactor once the head of the response has been
+     * received. Must not block.
+     *
+     * @return the channel to which the content of the response is written
+     * @throws IOException to fail the exchange
+     */
+    protected abstract WritableByteChannel onResponse(HttpResponse response)
+            throws IOException;
+
+    @Override
+    protected synchronized void onResponseReceived(HttpResponse response)
+            throws IOException
+    {
+        _channel = onResponse(response);
+        _response = response;
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType)
+    {
+    }
+
+    @Override
+    protected synchronized void onContentReceived(ContentDecoder decoder, IOControl ioctrl)
+            throws IOException
+    {
+        if (_isAborted) {
+            throw new InterruptedIOException("Transfer aborted");
+        }
+        if (_failure != null) {
+            throw _failure;
+        }
+        _ioControl = ioctrl;
+        while (true) {
+            if (_filling == null) {
+                _filling = _empty.poll();
+                if (_filling == null) {
+                    ioctrl.suspendInput();
+                    _isSuspended = true;
+                    return;
+                }
+            }
+            decoder.read(_filling);
+            if (_filling.hasRemaining()) {
+                return;
+            }
+            _filling.flip();
+            _full.add(_filling);
+            _filling = null;
+            write();
+            if (decoder.isCompleted()) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    protected synchronized HttpResponse buildResult(HttpContext context)
+    {
+        return _response;
+    }
+
+    @Override
+    protected void releaseResources()
+    {
+    }
+
+    /**
+     * Submits the next full buffer to the executor unless a write is in
+     * progress.
+     */
+    private void write()
+    {
+        if (!_isWriting && !_isAborted && _failure == null && !_full.isEmpty()) {
+            final ByteBuffer buffer = _full.poll();
+            _isWriting = true;
+            try {
+                _executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        written(buffer, writeFully(buffer));
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                _isWriting = false;
+                _failure = new IOException("Transfer was rejected: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private IOException writeFully(ByteBuffer buffer)
+    {
+        try {
+            WritableByteChannel channel;
+            synchronized (this) {
+                channel = _channel;
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    private void written(ByteBuffer buffer, IOException failure)
+    {
+        FutureCallback<Void> finish;
+        IOException result;
+        synchronized (this) {
+            _isWriting = false;
+            if (failure != null) {
+                _failure = failure;
+            } else {
+                buffer.clear();
+                _empty.add(buffer);
+                write();
+            }
+            if (_isSuspended && _ioControl != null) {
+                /* Resumes input; if the write failed, the reactor fails
+                 * the exchange on the next input.
+                 */
+                _isSuspended = false;
+                _ioControl.requestInput();
+            }
+            finish = takeFinish();
+            result = _failure;
+        }
+        complete(finish, result);
+    }
+
+    /**
+     * Returns the callback passed to {@link #finish} if no more writes are
+     * pending. The callback is returned at most once.
+     */
+    private FutureCallback<Void> takeFinish()
+    {
+        FutureCallback<Void> finish = null;
+        if (!_isWriting && (_full.isEmpty() || _failure != null || _isAborted)) {
+            finish = _finish;
+            _finish = null;
+        }
+        return finish;
+    }
+
+    private static void complete(FutureCallback<Void> callback, IOException failure)
+    {
+        if (callback != null) {
+            if (failure != null) {
+                callback.failed(failure);
+            } else {
+                callback.completed(null);
+            }
+        }
+    }
+
+    /**
+     * Must be called once the exchange has ended. If the exchange was
+     * successful, the remaining content is written to the channel.
+     * Otherwise the buffered content is discarded.
+     *
+     * @param callback called once no more writes are in progress; fails
+     *        if writing the content failed
+     */
+    void finish(boolean isSuccessful, FutureCallback<Void> callback)
+    {
+        FutureCallback<Void> finish;
+        IOException result;
+        synchronized (this) {
+            if (isSuccessful) {
+                if (_filling != null && _filling.position() > 0) {
+                    _filling.flip();
+                    _full.add(_filling);
+                }
+                _filling = null;
+                write();
+            } else {
+                _isAborted = true;
+                _full.clear();
+            }
+            _finish = callback;
+            finish = takeFinish();
+            result = isSuccessful ? _failure : null;
+        }
+        complete(finish, result);
+    }
+
+    /**
+     * Aborts consumption of the response. The exchange fails on the next
+     * input and the connection is closed.
+     */
+    synchronized void abort()
+    {
+        _isAborted = true;
+        if (_ioControl != null) {
+            _ioControl.requestInput();
+        }
+    }
+}
@@ -22,6 +22,7 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.Ordering;
 import com.google.common.primitives.Longs;
 import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureFallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -763,26 +764,45 @@ public class NearlineStorageHandler extends AbstractCellComponent implements Cel
         {
             @Override
             public ListenableFuture<Void> apply(Void ignored)
-                    throws CacheException, InterruptedException, NoSuchAlgorithmException, IOException
             {
-                PnfsId pnfsId = descriptor.getFileAttributes().getPnfsId();
+                final PnfsId pnfsId = descriptor.getFileAttributes().getPnfsId();
                 LOGGER.debug("Checking if {} still exists.", pnfsId);
-                try {
-                    pnfs.getFileAttributes(pnfsId, EnumSet.noneOf(FileAttribute.class));
-                } catch (FileNotFoundCacheException e) {
-                    try {
-                        repository.setState(pnfsId, EntryState.REMOVED);
-                        LOGGER.info("File not found in name space; removed {}.", pnfsId);
-                    } catch (CacheException f) {
-                        LOGGER.error("File not found in name space, but failed to remove {}: {}", pnfsId,
-                                     f.getMessage());
-                    } catch (InterruptedException | IllegalTransitionException f) {
-                        LOGGER.error("File not found in name space, but failed to remove {}: {}", pnfsId, f);
+                ListenableFuture<FileAttributes> existence =
+                        Futures.withFallback(pnfs.getFileAttributesAsync(pnfsId, EnumSet.noneOf(FileAttribute.class)),
+                                             new FutureFallback<FileAttributes>()
+                                             {
+                                                 @Override
+                                                 public ListenableFuture<FileAttributes> create(Throwable t)
+                                                 {
+                                                     if (t instanceof FileNotFoundCacheException) {
+                                                         removeReplica(pnfsId);
+                                                     }
+                                                     return Futures.immediateFailedFuture(t);
+                                                 }
+                                             }, executor);
+                return Futures.transform(existence, new AsyncFunction<FileAttributes, Void>()
+                {
+                    @Override
+                    public ListenableFuture<Void> apply(FileAttributes attributes)
+                            throws CacheException, InterruptedException, NoSuchAlgorithmException, IOException
+                    {
+                        checksumModule.enforcePreFlushPolicy(descriptor);
+                        return Futures.immediateFuture(null);
                     }
-                    throw e;
+                }, executor);
+            }
+
+            private void removeReplica(PnfsId pnfsId)
+            {
+                try {
+                    repository.setState(pnfsId, EntryState.REMOVED);
+                    LOGGER.info("File not found in name space; removed {}.", pnfsId);
+                } catch (CacheException f) {
+                    LOGGER.error("File not found in name space, but failed to remove {}: {}", pnfsId,
+                                 f.getMessage());
+                } catch (InterruptedException | IllegalTransitionException f) {
+                    LOGGER.error("File not found in name space, but failed to remove {}: {}", pnfsId, f);
                 }
-                checksumModule.enforcePreFlushPolicy(descriptor);
-                return Futures.immediateFuture(null);
             }
         }
     }
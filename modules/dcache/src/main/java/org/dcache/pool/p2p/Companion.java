@@ -7,14 +7,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.io.SyncFailedException;
-import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.URI;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -63,7 +60,8 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * to pool transfer.
  *
  * The companion will submit an HTTP download request to the source
- * pool, wait for the reply and then download the file through HTTP.
+ * pool, wait for the reply and then download the file through HTTP,
+ * possibly using several parallel range requests.
  *
  * The code is driven by a state machine, Companion.sm. Most of the
  * logic is encapsulated in the state machine.
@@ -73,7 +71,6 @@ class Companion
     private final static Logger _log = LoggerFactory.getLogger(Companion.class);
 
     private final static long PING_PERIOD = TimeUnit.MINUTES.toMillis(5);
-    private final static int BUFFER_SIZE = 65536;
     private final static String PROTOCOL_INFO_NAME = "Http";
     private final static int PROTOCOL_INFO_MAJOR_VERSION = 1;
     private final static int PROTOCOL_INFO_MINOR_VERSION = 1;
@@ -95,6 +92,7 @@ class Companion
     private final CellStub _pnfs;
     private final CellStub _pool;
     private final boolean _forceSourceMode;
+    private final int _streams;
 
     /** State machine driving the transfer. */
     private final CompanionContext _fsm;
@@ -135,6 +133,8 @@ class Companion
      * @param stickyRecords The sticky flags used for the new replica
      * @param callback    Callback to which success or failure is reported
      * @param forceSourceMode Ignores disabled state of pools
+     * @param streams     Maximum number of parallel connections to
+     *                    the source pool
      */
     Companion(ScheduledExecutorService executor,
               InetAddress address,
@@ -149,8 +149,11 @@ class Companion
               EntryState targetState,
               List<StickyRecord> stickyRecords,
               CacheFileAvailable callback,
-              boolean forceSourceMode)
+              boolean forceSourceMode,
+              int streams)
     {
+        checkArgument(streams > 0, "Number of streams must be positive.");
+
         _fsm = new CompanionContext(this);
 
         _executor = executor;
@@ -171,6 +174,7 @@ class Companion
 
         _callback = callback;
         _forceSourceMode = forceSourceMode;
+        _streams = streams;
         _targetState = targetState;
         _stickyRecords = new ArrayList<>(stickyRecords);
 
@@ -278,16 +282,9 @@ class Companion
                     digest = null;
                 }
 
-                HttpURLConnection connection = createConnection(uri);
-                try {
-                    try (InputStream input = connection.getInputStream()) {
-                        long total = copy(input, file, digest);
-                        if (total != size) {
-                            throw new IOException("Amount of received data does not match expected file size");
-                        }
-                    }
-                } finally {
-                    connection.disconnect();
+                long total = copy(uri, file, size, digest);
+                if (total != size) {
+                    throw new IOException("Amount of received data does not match expected file size");
                 }
 
                 Set<Checksum> actualChecksums =
@@ -321,34 +318,17 @@ class Companion
                 EnumSet.of(Repository.OpenFlags.CREATEFILE));
     }
 
-    private HttpURLConnection createConnection(String uri)
-        throws MalformedURLException, IOException
+    private long copy(String uri, File file, long size, MessageDigest digest)
+        throws IOException, InterruptedException
     {
-        URL url = new URL(uri);
-        HttpURLConnection connection =
-            (HttpURLConnection) url.openConnection();
-        connection.setRequestProperty("Connection", "close");
-        connection.setConnectTimeout((int) CONNECT_TIMEOUT);
-        connection.setReadTimeout((int) READ_TIMEOUT);
-        connection.connect();
-        return connection;
-    }
-
-    private long copy(InputStream input, File file, MessageDigest digest)
-        throws IOException
-    {
-        long total = 0L;
+        long total;
         try (RandomAccessFile dataFile = new RandomAccessFile(file, "rw")) {
             try {
-                byte[] buffer = new byte[BUFFER_SIZE];
-                int read;
-                while ((read = input.read(buffer)) > -1) {
-                    dataFile.write(buffer, 0, read);
-                    total += read;
-                    if (digest != null) {
-                        digest.update(buffer, 0, read);
-                    }
-                }
+                ParallelHttpTransfer transfer =
+                        new ParallelHttpTransfer(URI.create(uri), dataFile.getChannel(),
+                                                 size, _streams, digest,
+                                                 CONNECT_TIMEOUT, READ_TIMEOUT);
+                total = transfer.transfer();
             } finally {
                 try {
                     dataFile.getFD().sync();
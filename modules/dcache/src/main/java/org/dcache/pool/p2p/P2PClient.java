@@ -48,6 +48,7 @@ public class P2PClient
     private ChecksumModule _checksumModule;
 
     private int _maxActive;
+    private int _streams = 1;
 
     private CellStub _pnfs;
     private CellStub _pool;
@@ -227,6 +228,25 @@ public class P2PClient
                                          CacheFileAvailable callback,
                                          boolean forceSourceMode)
         throws IOException, CacheException, InterruptedException
+    {
+        return newCompanion(sourcePoolName, fileAttributes, targetState,
+                            stickyRecords, callback, forceSourceMode, 0);
+    }
+
+    /**
+     * Starts a new pool to pool transfer.
+     *
+     * @param streams the number of parallel connections to the source
+     *                pool, or zero to use the default of this pool
+     */
+    public synchronized int newCompanion(String sourcePoolName,
+                                         FileAttributes fileAttributes,
+                                         EntryState targetState,
+                                         List<StickyRecord> stickyRecords,
+                                         CacheFileAvailable callback,
+                                         boolean forceSourceMode,
+                                         int streams)
+        throws IOException, CacheException, InterruptedException
     {
         if (getCellEndpoint() == null) {
             throw new IllegalStateException("Endpoint not initialized");
@@ -261,7 +281,8 @@ public class P2PClient
                           getCellName(),
                           getCellDomainName(),
                           targetState, stickyRecords,
-                          cb, forceSourceMode);
+                          cb, forceSourceMode,
+                          (streams > 0) ? streams : _streams);
 
         int id = addCompanion(companion);
         cb.setId(id);
@@ -304,6 +325,7 @@ public class P2PClient
             pw.println("  Interface  : " + e.getMessage());
         }
         pw.println("  Max Active : " + _maxActive);
+        pw.println("     Streams : " + _streams);
         pw.println("Pnfs Timeout : " + _pnfs.getTimeout() + " " + _pnfs.getTimeoutUnit());
     }
 
@@ -312,6 +334,7 @@ public class P2PClient
     {
         pw.println("#\n#  Pool to Pool (P2P) [$Revision$]\n#");
         pw.println("pp set max active " + _maxActive);
+        pw.println("pp set streams " + _streams);
         pw.println("pp set pnfs timeout " + (_pnfs.getTimeoutInMillis() / 1000L));
         if (_interface != null) {
             pw.println("pp interface " + _interface.getHostAddress());
@@ -334,6 +357,23 @@ public class P2PClient
         return "";
     }
 
+    public static final String fh_pp_set_streams =
+        "Sets the default number of parallel connections used to fetch\n" +
+        "a file from the source pool. The file is split into byte ranges\n" +
+        "that are fetched concurrently. Small files are always fetched\n" +
+        "over a single connection. Migration jobs may override the\n" +
+        "default.";
+    public static final String hh_pp_set_streams = "<streams>";
+    public synchronized String ac_pp_set_streams_$_1(Args args)
+    {
+        int streams = Integer.parseInt(args.argv(0));
+        if (streams < 1) {
+            throw new IllegalArgumentException("Number of streams must be positive");
+        }
+        _streams = streams;
+        return "";
+    }
+
     public static final String hh_pp_set_port = "<port> # Obsolete";
     public synchronized String ac_pp_set_port_$_1(Args args)
     {
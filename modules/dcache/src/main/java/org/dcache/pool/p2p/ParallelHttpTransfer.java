@@ -0,0 +1,424 @@
+package org.dcache.pool.p2p;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Downloads a file from the HTTP mover of a source pool using several
+ * parallel connections.
+ *
+ * The file is split into consecutive byte ranges, each of which is
+ * fetched with an HTTP range request on a separate non-blocking
+ * connection. All connections are served by a single selector on the
+ * calling thread, and data is written to the file with positional writes
+ * as it arrives.
+ *
+ * If a checksum is to be computed, the data is fed to the digest in file
+ * order. Data arriving at the verified offset is digested directly; data
+ * of later ranges is read back from the file once all preceding ranges
+ * are complete.
+ *
+ * A failed connection is reopened and the range is resumed from the last
+ * offset written to disk; the source mover stays open for the client to
+ * reconnect when a connection is lost in the middle of a response.
+ * Connections are kept open until all ranges are complete as the source
+ * mover is closed once its last connection closes normally.
+ */
+class ParallelHttpTransfer
+{
+    private static final Logger _log = LoggerFactory.getLogger(ParallelHttpTransfer.class);
+
+    /** Ranges are not split below this size. */
+    private static final long MIN_RANGE_SIZE = 16 << 20;
+    private static final int BUFFER_SIZE = 256 << 10;
+    private static final int MAX_HEADER_SIZE = 8192;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long SELECT_TIMEOUT = TimeUnit.SECONDS.toMillis(1);
+
+    /** Upper bound on data read back for checksumming per selector round. */
+    private static final long MAX_DIGEST_CATCH_UP = 4 << 20;
+
+    private final URI _uri;
+    private final FileChannel _file;
+    private final long _size;
+    private final MessageDigest _digest;
+    private final long _connectTimeout;
+    private final long _readTimeout;
+    private final List<Stream> _streams;
+
+    /** All data before this offset has been fed to the digest. */
+    private long _verified;
+
+    /**
+     * @param uri the URI of the file on the source pool
+     * @param file the channel to write to
+     * @param size the size of the file
+     * @param streams the maximum number of parallel connections
+     * @param digest digest to compute, or null
+     * @param connectTimeout connect timeout in milliseconds
+     * @param readTimeout read timeout in milliseconds
+     */
+    ParallelHttpTransfer(URI uri, FileChannel file, long size, int streams,
+                         MessageDigest digest, long connectTimeout, long readTimeout)
+    {
+        this(uri, file, size, streams, digest, connectTimeout, readTimeout, MIN_RANGE_SIZE);
+    }
+
+    ParallelHttpTransfer(URI uri, FileChannel file, long size, int streams,
+                         MessageDigest digest, long connectTimeout, long readTimeout,
+                         long minRangeSize)
+    {
+        checkArgument(streams > 0, "Number of streams must be positive");
+        checkArgument(minRangeSize > 0, "Minimum range size must be positive");
+        _uri = uri;
+        _file = file;
+        _size = size;
+        _digest = digest;
+        _connectTimeout = connectTimeout;
+        _readTimeout = readTimeout;
+
+        int count = (int) Math.max(1, Math.min(streams, (size + minRangeSize - 1) / minRangeSize));
+        _streams = new ArrayList<>(count);
+        long start = 0;
+        for (int i = 0; i < count; i++) {
+            long end = (i == count - 1) ? size : start + size / count;
+            _streams.add(new Stream(start, end));
+            start = end;
+        }
+    }
+
+    /**
+     * Transfers the file. Returns the number of bytes received.
+     */
+    long transfer() throws IOException, InterruptedException
+    {
+        try (Selector selector = Selector.open()) {
+            try {
+                for (Stream stream : _streams) {
+                    stream.connect(selector);
+                }
+                while (!isComplete()) {
+                    selector.select(SELECT_TIMEOUT);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException("Transfer was interrupted");
+                    }
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Stream stream = (Stream) key.attachment();
+                        try {
+                            stream.handle(key);
+                        } catch (IOException e) {
+                            stream.failed(selector, e);
+                        }
+                    }
+
+                    long now = System.currentTimeMillis();
+                    for (Stream stream : _streams) {
+                        stream.checkTimeout(selector, now);
+                    }
+
+                    updateDigest(MAX_DIGEST_CATCH_UP);
+                }
+                updateDigest(Long.MAX_VALUE);
+            } finally {
+                for (Stream stream : _streams) {
+                    stream.close();
+                }
+            }
+        }
+        return _size;
+    }
+
+    /**
+     * Returns the number of parallel connections used by the transfer.
+     */
+    int getStreamCount()
+    {
+        return _streams.size();
+    }
+
+    private boolean isComplete()
+    {
+        for (Stream stream : _streams) {
+            if (!stream._isDone) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Feeds data written to disk but not yet digested to the digest,
+     * reading it back from the file. Only the contiguous prefix of
+     * the file that has been written is digested.
+     */
+    private void updateDigest(long limit) throws IOException
+    {
+        if (_digest == null) {
+            return;
+        }
+        long contiguous = _size;
+        for (Stream stream : _streams) {
+            if (!stream._isDone) {
+                contiguous = stream._position;
+                break;
+            }
+        }
+        long end = Math.min(contiguous, _verified + limit);
+        if (_verified < end) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, end - _verified));
+            while (_verified < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - _verified));
+                int n = _file.read(buffer, _verified);
+                if (n < 0) {
+                    throw new EOFException("Unexpected end of file at offset " + _verified);
+                }
+                buffer.flip();
+                _digest.update(buffer);
+                _verified += n;
+            }
+        }
+    }
+
+    /**
+     * A single connection fetching the byte range [start, end).
+     */
+    private class Stream
+    {
+        private final long _start;
+        private final long _end;
+        private final ByteBuffer _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long _position;
+        private int _attempts;
+        private SocketChannel _channel;
+        private SelectionKey _key;
+        private ByteBuffer _request;
+        private boolean _isConnected;
+        private boolean _isHeaderComplete;
+        private boolean _isDone;
+        private long _lastActivity;
+
+        Stream(long start, long end)
+        {
+            _start = start;
+            _end = end;
+            _position = start;
+        }
+
+        void connect(Selector selector) throws IOException
+        {
+            _attempts++;
+            _isConnected = false;
+            _isHeaderComplete = false;
+            _buffer.clear();
+            _request = createRequest();
+            _lastActivity = System.currentTimeMillis();
+
+            int port = (_uri.getPort() == -1) ? 80 : _uri.getPort();
+            _channel = SocketChannel.open();
+            try {
+                _channel.configureBlocking(false);
+                if (_channel.connect(new InetSocketAddress(_uri.getHost(), port))) {
+                    _isConnected = true;
+                    _key = _channel.register(selector, SelectionKey.OP_WRITE, this);
+                } else {
+                    _key = _channel.register(selector, SelectionKey.OP_CONNECT, this);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private ByteBuffer createRequest()
+        {
+            StringBuilder request = new StringBuilder();
+            request.append("GET ").append(_uri.getRawPath());
+            if (_uri.getRawQuery() != null) {
+                request.append('?').append(_uri.getRawQuery());
+            }
+            request.append(" HTTP/1.1\r\n");
+            request.append("Host: ").append(_uri.getHost());
+            if (_uri.getPort() != -1) {
+                request.append(':').append(_uri.getPort());
+            }
+            request.append("\r\n");
+            if (_position < _end) {
+                request.append("Range: bytes=").append(_position).append('-').append(_end - 1).append("\r\n");
+            }
+            request.append("\r\n");
+            return ByteBuffer.wrap(request.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+
+        void handle(SelectionKey key) throws IOException
+        {
+            _lastActivity = System.currentTimeMillis();
+            if (key.isConnectable() && _channel.finishConnect()) {
+                _isConnected = true;
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+            if (key.isWritable()) {
+                _channel.write(_request);
+                if (!_request.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+            if (key.isReadable()) {
+                read();
+            }
+        }
+
+        private void read() throws IOException
+        {
+            if (_channel.read(_buffer) == -1) {
+                throw new EOFException("Connection closed by source pool at offset " + _position);
+            }
+            _buffer.flip();
+            if (!_isHeaderComplete && !parseHeader()) {
+                if (_buffer.limit() >= MAX_HEADER_SIZE) {
+                    throw new IOException("HTTP response header is too large");
+                }
+                _buffer.position(_buffer.limit());
+                _buffer.limit(_buffer.capacity());
+                return;
+            }
+            write();
+            _buffer.clear();
+        }
+
+        /**
+         * Parses the response header at the beginning of the buffer.
+         * Returns false if the header is incomplete. Otherwise the buffer
+         * is positioned at the beginning of the body.
+         */
+        private boolean parseHeader() throws IOException
+        {
+            int end = -1;
+            for (int i = 3; i < _buffer.limit(); i++) {
+                if (_buffer.get(i - 3) == '\r' && _buffer.get(i - 2) == '\n' &&
+                        _buffer.get(i - 1) == '\r' && _buffer.get(i) == '\n') {
+                    end = i + 1;
+                    break;
+                }
+            }
+            if (end == -1) {
+                return false;
+            }
+
+            byte[] bytes = new byte[end];
+            _buffer.get(bytes);
+            String[] lines = new String(bytes, StandardCharsets.ISO_8859_1).split("\r\n");
+
+            String[] status = lines[0].split(" ", 3);
+            int expectedStatus = (_position < _end) ? 206 : 200;
+            if (status.length < 2 || !status[1].equals(String.valueOf(expectedStatus))) {
+                throw new IOException("Unexpected response from source pool: " + lines[0]);
+            }
+
+            long length = -1;
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0) {
+                    String name = lines[i].substring(0, colon).trim();
+                    String value = lines[i].substring(colon + 1).trim();
+                    if (name.equalsIgnoreCase("Content-Length")) {
+                        length = Long.parseLong(value);
+                    } else if (name.equalsIgnoreCase("Transfer-Encoding") &&
+                            !value.equalsIgnoreCase("identity")) {
+                        throw new IOException("Unsupported transfer encoding: " + value);
+                    }
+                }
+            }
+            if (length != _end - _position) {
+                throw new IOException("Source pool sent " + length + " bytes rather than " +
+                        (_end - _position) + " bytes");
+            }
+            _isHeaderComplete = true;
+            return true;
+        }
+
+        private void write() throws IOException
+        {
+            if (_buffer.remaining() > _end - _position) {
+                throw new IOException("Source pool sent more data than requested");
+            }
+            long offset = _position;
+            int start = _buffer.position();
+            while (_buffer.hasRemaining()) {
+                _position += _file.write(_buffer, _position);
+            }
+            if (_digest != null && offset == _verified) {
+                ByteBuffer written = _buffer.duplicate();
+                written.position(start);
+                _digest.update(written);
+                _verified = _position;
+            }
+            if (_position == _end) {
+                /* Keep the connection open as closing it may close the
+                 * mover on the source pool.
+                 */
+                _isDone = true;
+                _key.interestOps(0);
+            }
+        }
+
+        void checkTimeout(Selector selector, long now) throws IOException
+        {
+            if (!_isDone && _channel != null) {
+                long timeout = _isConnected ? _readTimeout : _connectTimeout;
+                if (now - _lastActivity > timeout) {
+                    failed(selector, new SocketTimeoutException("No data received from source pool for " +
+                            TimeUnit.MILLISECONDS.toSeconds(timeout) + " seconds"));
+                }
+            }
+        }
+
+        void failed(Selector selector, IOException cause) throws IOException
+        {
+            close();
+            if (_attempts >= MAX_ATTEMPTS) {
+                throw new IOException("Transfer of range " + _start + "-" + _end +
+                        " failed at offset " + _position + ": " + cause.getMessage(), cause);
+            }
+            _log.warn("Transfer of range {}-{} failed, resuming at offset {}: {}",
+                    _start, _end, _position, cause.getMessage());
+            connect(selector);
+        }
+
+        void close()
+        {
+            if (_channel != null) {
+                try {
+                    _channel.close();
+                } catch (IOException e) {
+                    _log.debug("Failed to close connection: {}", e.getMessage());
+                }
+                _channel = null;
+                _key = null;
+            }
+        }
+    }
+}
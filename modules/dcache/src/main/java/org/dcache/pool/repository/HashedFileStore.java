@@ -0,0 +1,302 @@
+package org.dcache.pool.repository;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import diskCacheV111.util.PnfsId;
+
+/**
+ * A file store layout spreading files over a two level directory tree
+ * below a subdirectory called "data".
+ *
+ * The directories are named by the last four hex digits of the PNFS
+ * id, e.g. the file of 0000A3F1...C2D9 is stored in data/D9/C2/. These
+ * digits are random for Chimera ids and a counter for PNFS ids, thus
+ * files are evenly distributed over 65536 directories. Directories are
+ * created on first use rather than when the store is opened, as checking
+ * all of them would slow down every pool start.
+ *
+ * Files of the flat layout of FlatFileStore, i.e. files directly in
+ * the data directory, are still found. They can be moved into the
+ * hashed layout while the pool is running with {@link #migrate}.
+ */
+public class HashedFileStore implements FileStore
+{
+    private static final Logger _log = LoggerFactory.getLogger(HashedFileStore.class);
+
+    private static final int FANOUT = 256;
+    private static final int LIST_THREADS =
+            Math.min(8, Runtime.getRuntime().availableProcessors());
+
+    private final File _dataDir;
+
+    /**
+     * Leaf directories known to exist, indexed by the last four hex
+     * digits of the PNFS id. Guarded by itself.
+     */
+    private final BitSet _directories = new BitSet(FANOUT * FANOUT);
+
+    /**
+     * Whether the data directory may contain files of the flat layout.
+     */
+    private volatile boolean _hasFlatFiles;
+
+    public HashedFileStore(File baseDir) throws IOException
+    {
+        if (!baseDir.isDirectory()) {
+            throw new FileNotFoundException("No such directory: " + baseDir);
+        }
+
+        _dataDir = new File(baseDir, "data");
+        mkdir(_dataDir);
+        _hasFlatFiles = hasFlatFiles();
+    }
+
+    private static void mkdir(File dir) throws FileNotFoundException
+    {
+        if (!dir.exists()) {
+            if (!dir.mkdir()) {
+                throw new FileNotFoundException("Failed to create directory: " + dir);
+            }
+        } else if (!dir.isDirectory()) {
+            throw new FileNotFoundException("No such directory: " + dir);
+        }
+    }
+
+    private static String toHex(int i)
+    {
+        return String.format("%02X", i);
+    }
+
+    /**
+     * Returns whether name is the name of a directory of the hashed layout.
+     */
+    private static boolean isHashDirectory(String name)
+    {
+        return name.length() == 2;
+    }
+
+    /**
+     * Returns a human readable description of the file store.
+     */
+    public String toString()
+    {
+        return _dataDir.getPath() + " (hashed)";
+    }
+
+    /**
+     * Returns the file of the hashed layout for the given id, creating
+     * its directory if it does not exist yet.
+     */
+    private File getHashedFile(PnfsId id)
+    {
+        String name = id.toString();
+        String hex = id.getId();
+        int length = hex.length();
+        File dir = new File(new File(_dataDir, hex.substring(length - 2, length)),
+                            hex.substring(length - 4, length - 2));
+        int index = Integer.parseInt(hex.substring(length - 4, length), 16);
+        boolean exists;
+        synchronized (_directories) {
+            exists = _directories.get(index);
+        }
+        if (!exists) {
+            /* A failure surfaces when the file is created in the directory. */
+            dir.mkdirs();
+            if (dir.isDirectory()) {
+                synchronized (_directories) {
+                    _directories.set(index);
+                }
+            }
+        }
+        return new File(dir, name);
+    }
+
+    @Override
+    public File get(PnfsId id)
+    {
+        File file = getHashedFile(id);
+        if (_hasFlatFiles && !file.exists()) {
+            File flatFile = new File(_dataDir, id.toString());
+            if (flatFile.exists()) {
+                return flatFile;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Lists the files of the store. Directories are read in parallel and
+     * each directory is iterated lazily rather than read into an array.
+     */
+    @Override
+    public List<PnfsId> list()
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(LIST_THREADS,
+                new ThreadFactoryBuilder().setNameFormat("file-store-list-%d").build());
+        try {
+            List<Future<List<PnfsId>>> futures = new ArrayList<>(FANOUT);
+            for (int i = 0; i < FANOUT; i++) {
+                final Path dir = new File(_dataDir, toHex(i)).toPath();
+                futures.add(executor.submit(new Callable<List<PnfsId>>()
+                {
+                    @Override
+                    public List<PnfsId> call() throws IOException
+                    {
+                        List<PnfsId> ids = new ArrayList<>();
+                        if (!Files.isDirectory(dir)) {
+                            return ids;
+                        }
+                        try (DirectoryStream<Path> subdirs = Files.newDirectoryStream(dir)) {
+                            for (Path subdir : subdirs) {
+                                list(subdir, ids);
+                            }
+                        }
+                        return ids;
+                    }
+                }));
+            }
+
+            List<PnfsId> ids = new ArrayList<>();
+            _hasFlatFiles = list(_dataDir.toPath(), ids);
+            for (Future<List<PnfsId>> future : futures) {
+                ids.addAll(future.get());
+            }
+            return ids;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list " + _dataDir + ": " + e.getMessage(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new RuntimeException("Failed to list " + _dataDir + ": " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Listing of " + _dataDir + " was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds the ids of the files in dir to ids. Returns true if any
+     * were found.
+     */
+    private static boolean list(Path dir, List<PnfsId> ids) throws IOException
+    {
+        boolean found = false;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!isHashDirectory(name)) {
+                    try {
+                        ids.add(new PnfsId(name));
+                        found = true;
+                    } catch (IllegalArgumentException e) {
+                        // data file contains foreign key
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private boolean hasFlatFiles() throws IOException
+    {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(_dataDir.toPath())) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!isHashDirectory(name) && PnfsId.isValid(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves all files of the flat layout into the hashed layout.
+     *
+     * Files are renamed one by one, which is atomic, and {@link #get}
+     * falls back to the flat layout for files not moved yet. Thus the
+     * migration may run while the pool is running on this store. Files
+     * already open are not affected by being moved; a file looked up
+     * in the instant it is moved may however fail to open.
+     *
+     * @return the number of files moved
+     */
+    public long migrate() throws IOException
+    {
+        long count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(_dataDir.toPath())) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (isHashDirectory(name) || !PnfsId.isValid(name)) {
+                    continue;
+                }
+                File target = getHashedFile(new PnfsId(name));
+                if (target.exists()) {
+                    _log.warn("Not moving {} as {} already exists", file, target);
+                    continue;
+                }
+                if (!file.toFile().renameTo(target)) {
+                    throw new IOException("Failed to move " + file + " to " + target);
+                }
+                count++;
+                if (count % 100000 == 0) {
+                    _log.info("Moved {} files", count);
+                }
+            }
+        }
+        _hasFlatFiles = hasFlatFiles();
+        return count;
+    }
+
+    @Override
+    public long getFreeSpace()
+    {
+        return _dataDir.getUsableSpace();
+    }
+
+    @Override
+    public long getTotalSpace()
+    {
+        return _dataDir.getTotalSpace();
+    }
+
+    @Override
+    public boolean isOk()
+    {
+        try {
+            File tmp = new File(_dataDir, ".repository_is_ok");
+            tmp.delete();
+            tmp.deleteOnExit();
+
+            if (!tmp.createNewFile()) {
+                return false;
+            }
+
+            if (!tmp.exists()) {
+                return false;
+            }
+
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
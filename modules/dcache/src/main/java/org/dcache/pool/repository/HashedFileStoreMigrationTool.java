@@ -0,0 +1,28 @@
+package org.dcache.pool.repository;
+
+import java.io.File;
+
+/**
+ * Moves the data files of a pool from the flat layout of FlatFileStore
+ * to the layout of HashedFileStore.
+ *
+ * The tool may be run while the pool is running, provided the pool
+ * already uses HashedFileStore.
+ */
+public class HashedFileStoreMigrationTool
+{
+    public static void main(String[] args)
+        throws Exception
+    {
+        if (args.length != 1) {
+            System.err.println("Synopsis: HashedFileStoreMigrationTool DIR");
+            System.err.println();
+            System.err.println("Where DIR is the pool directory.");
+            System.exit(1);
+        }
+
+        HashedFileStore store = new HashedFileStore(new File(args[0]));
+        long count = store.migrate();
+        System.out.println("Moved " + count + " files to " + store);
+    }
+}
@@ -25,19 +25,46 @@ public class MetaDataStoreCopyTool
         return constructor.newInstance(fileStore, poolDir);
     }
 
+    /**
+     * Creates the file store of a pool the same way the pool does, i.e.
+     * by invoking the constructor taking the pool directory.
+     */
+    static FileStore createFileStore(Class<? extends FileStore> clazz, File poolDir)
+        throws NoSuchMethodException, InstantiationException,
+               IllegalAccessException, InvocationTargetException
+    {
+        Constructor<? extends FileStore> constructor =
+            clazz.getConstructor(File.class);
+        return constructor.newInstance(poolDir);
+    }
+
+    /**
+     * Returns the file store class named by the optional command line
+     * argument at index, or FlatFileStore if there is no such argument.
+     */
+    static Class<? extends FileStore> getFileStoreClass(String[] args, int index)
+        throws ClassNotFoundException
+    {
+        return (args.length > index)
+            ? Class.forName(args[index]).asSubclass(FileStore.class)
+            : FlatFileStore.class;
+    }
+
     public static void main(String[] args)
         throws Exception
     {
-        if (args.length != 3) {
-            System.err.println("Synopsis: MetaDataStoreCopyTool DIR FROM TO");
+        if (args.length != 3 && args.length != 4) {
+            System.err.println("Synopsis: MetaDataStoreCopyTool DIR FROM TO [FILESTORE]");
             System.err.println();
             System.err.println("Where DIR is the pool directory, and FROM and TO are");
-            System.err.println("meta data store class names.");
+            System.err.println("meta data store class names. FILESTORE is the file");
+            System.err.println("store class name of the pool and defaults to");
+            System.err.println("FlatFileStore.");
             System.exit(1);
         }
 
         File poolDir = new File(args[0]);
-        FileStore fileStore = new FlatFileStore(poolDir);
+        FileStore fileStore = createFileStore(getFileStoreClass(args, 3), poolDir);
         MetaDataStore fromStore =
             createStore(Class.forName(args[1]).asSubclass(MetaDataStore.class), fileStore, poolDir);
         MetaDataStore toStore =
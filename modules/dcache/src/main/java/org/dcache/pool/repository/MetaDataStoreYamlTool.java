@@ -34,16 +34,18 @@ public class MetaDataStoreYamlTool
     public static void main(String[] args)
         throws Exception
     {
-        if (args.length != 2) {
-            System.err.println("Synopsis: MetaDataStoreCopyTool DIR TYPE");
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Synopsis: MetaDataStoreYamlTool DIR TYPE [FILESTORE]");
             System.err.println();
             System.err.println("Where DIR is the pool directory and TYPE is the meta");
-            System.err.println("data store class.");
+            System.err.println("data store class. FILESTORE is the file store class");
+            System.err.println("of the pool and defaults to FlatFileStore.");
             System.exit(1);
         }
 
         File poolDir = new File(args[0]);
-        FileStore fileStore = new FlatFileStore(poolDir);
+        FileStore fileStore =
+            MetaDataStoreCopyTool.createFileStore(MetaDataStoreCopyTool.getFileStoreClass(args, 2), poolDir);
         MetaDataStore metaStore =
             createStore(Class.forName(args[1]).asSubclass(MetaDataStore.class), fileStore, poolDir);
 
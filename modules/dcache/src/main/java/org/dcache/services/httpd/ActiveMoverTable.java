@@ -0,0 +1,299 @@
+package org.dcache.services.httpd;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Required;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import diskCacheV111.vehicles.IoJobInfo;
+import diskCacheV111.vehicles.PoolMoverEventMessage;
+
+import dmg.cells.nucleus.AbstractCellComponent;
+import dmg.cells.nucleus.CellMessageReceiver;
+import dmg.cells.nucleus.CellPath;
+
+import org.dcache.cells.CellStub;
+import org.dcache.util.BroadcastRegistrationTask;
+
+/**
+ * Live table of the movers of all pools, maintained from the mover events
+ * published by pools.
+ *
+ * The table subscribes to PoolMoverEventMessage through the broadcast
+ * cell. Movers are indexed by the client (door) that created them. As
+ * events may be lost, the movers of a pool are replaced by a full listing
+ * of its movers whenever the pool is not in sync: for a pool not heard of
+ * before, after a gap in the event sequence or a restart of the pool, and
+ * periodically to refresh the progress of transfers, which is not part of
+ * the events.
+ *
+ * A listing carries no sequence number, thus it cannot be ordered with
+ * respect to the events. Events arriving while a listing is requested are
+ * therefore buffered and replayed on top of the listing. Replaying an
+ * event that preceded the listing is harmless, as any later transition of
+ * the same mover is replayed after it.
+ *
+ * The table is exported to web applications, which perform the
+ * resynchronization.
+ */
+public class ActiveMoverTable extends AbstractCellComponent
+    implements CellMessageReceiver
+{
+    private static final long BROADCAST_REGISTRATION_PERIOD =
+            TimeUnit.MINUTES.toMillis(5);
+    private static final long BROADCAST_REGISTRATION_EXPIRATION =
+            TimeUnit.MINUTES.toMillis(6);
+
+    private final Map<String,PoolMovers> _pools = new HashMap<>();
+    private final Map<String,IoJobInfo> _moversByClient = new HashMap<>();
+
+    private String _broadcast;
+    private ScheduledExecutorService _executor;
+    private BroadcastRegistrationTask _registration;
+
+    private long _events;
+    private long _synchronisations;
+
+    /**
+     * Movers of a single pool.
+     */
+    private static class PoolMovers
+    {
+        final Map<Long,IoJobInfo> movers = new HashMap<>();
+        long incarnation;
+        long sequence;
+        boolean isInSync;
+        long lastSynchronised;
+        long lastUpdated;
+
+        /**
+         * Events received since a listing was requested; null if no
+         * listing is pending.
+         */
+        List<PoolMoverEventMessage> pending;
+    }
+
+    @Required
+    public void setBroadcast(String address)
+    {
+        _broadcast = address;
+    }
+
+    public void init()
+    {
+        _registration = new BroadcastRegistrationTask();
+        _registration.setTarget(new CellPath(getCellName(), getCellDomainName()));
+        _registration.setBroadcastStub(new CellStub(getCellEndpoint(), new CellPath(_broadcast)));
+        _registration.setEventClass(PoolMoverEventMessage.class);
+        _registration.setExpires(BROADCAST_REGISTRATION_EXPIRATION);
+        _executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("mover-table-registration").build());
+        _executor.scheduleAtFixedRate(
+                _registration, 0, BROADCAST_REGISTRATION_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown()
+    {
+        if (_executor != null) {
+            _executor.shutdownNow();
+        }
+        if (_registration != null) {
+            _registration.unregister();
+        }
+    }
+
+    private static String key(String client, long clientId)
+    {
+        return client + "#" + clientId;
+    }
+
+    private PoolMovers getPool(String name)
+    {
+        PoolMovers pool = _pools.get(name);
+        if (pool == null) {
+            pool = new PoolMovers();
+            _pools.put(name, pool);
+        }
+        pool.lastUpdated = System.currentTimeMillis();
+        return pool;
+    }
+
+    public synchronized void messageArrived(PoolMoverEventMessage event)
+    {
+        _events++;
+        PoolMovers pool = getPool(event.getPoolName());
+        if (pool.pending != null) {
+            pool.pending.add(event);
+        } else {
+            apply(pool, event, true);
+        }
+    }
+
+    /**
+     * Applies an event to the movers of a pool.
+     *
+     * @param isGapDetected whether a gap in the sequence of events takes
+     *                      the pool out of sync
+     */
+    private void apply(PoolMovers pool, PoolMoverEventMessage event, boolean isGapDetected)
+    {
+        boolean isSameIncarnation = (pool.incarnation == event.getIncarnation());
+        if (isSameIncarnation && pool.sequence >= event.getSequence()) {
+            /* Duplicate or out of order event. */
+            return;
+        }
+        if (isGapDetected &&
+                (!isSameIncarnation || pool.sequence + 1 != event.getSequence())) {
+            pool.isInSync = false;
+        }
+        pool.incarnation = event.getIncarnation();
+        pool.sequence = event.getSequence();
+
+        IoJobInfo info = event.getIoJobInfo();
+        if (event.isRemoved()) {
+            remove(pool, info.getJobId());
+        } else {
+            put(pool, info);
+        }
+    }
+
+    private void put(PoolMovers pool, IoJobInfo info)
+    {
+        IoJobInfo old = pool.movers.put(info.getJobId(), info);
+        if (old != null) {
+            _moversByClient.remove(key(old.getClientName(), old.getClientId()));
+        }
+        _moversByClient.put(key(info.getClientName(), info.getClientId()), info);
+    }
+
+    private void remove(PoolMovers pool, long jobId)
+    {
+        IoJobInfo old = pool.movers.remove(jobId);
+        if (old != null) {
+            _moversByClient.remove(key(old.getClientName(), old.getClientId()));
+        }
+    }
+
+    /**
+     * Returns the mover created by the given client, or null if no such
+     * mover is known.
+     */
+    public synchronized IoJobInfo getMover(String client, long clientId)
+    {
+        return _moversByClient.get(key(client, clientId));
+    }
+
+    /**
+     * Returns whether the movers of a pool have to be listed to bring the
+     * table in sync.
+     *
+     * @param maxAge time in milliseconds after which the movers of a pool
+     *               are listed even if no events were missed
+     */
+    public synchronized boolean needsSynchronisation(String pool, long maxAge)
+    {
+        PoolMovers movers = _pools.get(pool);
+        return movers == null || !movers.isInSync || movers.pending != null ||
+                System.currentTimeMillis() - movers.lastSynchronised > maxAge;
+    }
+
+    /**
+     * Must be called before the movers of a pool are listed. Events of
+     * the pool are buffered until the listing is passed to {@link
+     * #synchronise} or the listing failed and {@link
+     * #abortSynchronisation} is called.
+     */
+    public synchronized void beginSynchronisation(String pool)
+    {
+        PoolMovers movers = getPool(pool);
+        if (movers.pending == null) {
+            movers.pending = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Replaces the movers of a pool by a full listing of its movers and
+     * replays the events buffered since {@link #beginSynchronisation}.
+     */
+    public synchronized void synchronise(String pool, IoJobInfo[] infos)
+    {
+        _synchronisations++;
+        PoolMovers movers = getPool(pool);
+        for (IoJobInfo old : movers.movers.values()) {
+            _moversByClient.remove(key(old.getClientName(), old.getClientId()));
+        }
+        movers.movers.clear();
+        for (IoJobInfo info : infos) {
+            put(movers, info);
+        }
+        movers.isInSync = true;
+        movers.lastSynchronised = System.currentTimeMillis();
+
+        /* Events missed before the first buffered event are covered by
+         * the listing, but a gap between buffered events may not be.
+         */
+        replay(movers, false);
+    }
+
+    /**
+     * Replays the events buffered since {@link #beginSynchronisation}
+     * after the movers of a pool could not be listed.
+     */
+    public synchronized void abortSynchronisation(String pool)
+    {
+        PoolMovers movers = _pools.get(pool);
+        if (movers != null) {
+            replay(movers, true);
+        }
+    }
+
+    private void replay(PoolMovers movers, boolean isGapDetected)
+    {
+        List<PoolMoverEventMessage> pending = movers.pending;
+        movers.pending = null;
+        if (pending != null) {
+            for (PoolMoverEventMessage event : pending) {
+                apply(movers, event, isGapDetected);
+                isGapDetected = true;
+            }
+        }
+    }
+
+    /**
+     * Removes pools from which neither an event nor a listing has been
+     * received within the given time, such as pools that have been
+     * decommissioned. A pool that reappears is listed again.
+     */
+    public synchronized void removeInactivePools(long maxAge)
+    {
+        long now = System.currentTimeMillis();
+        Iterator<PoolMovers> i = _pools.values().iterator();
+        while (i.hasNext()) {
+            PoolMovers movers = i.next();
+            if (movers.pending == null && now - movers.lastUpdated > maxAge) {
+                for (IoJobInfo old : movers.movers.values()) {
+                    _moversByClient.remove(key(old.getClientName(), old.getClientId()));
+                }
+                i.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void getInfo(PrintWriter pw)
+    {
+        pw.println("Mover table:");
+        pw.println("    Pools           : " + _pools.size());
+        pw.println("    Movers          : " + _moversByClient.size());
+        pw.println("    Events          : " + _events);
+        pw.println("    Synchronisations: " + _synchronisations);
+    }
+}
@@ -120,6 +120,7 @@ public class HttpServiceCell extends CommandInterpreter
     private String cipherFlags;
 
     private CellEndpoint endpoint;
+    private ActiveMoverTable activeMoverTable;
     private Server server;
     private String defaultWebappsXml;
     private Map<String, Object> domainContext;
@@ -204,6 +205,10 @@ public class HttpServiceCell extends CommandInterpreter
         return endpoint;
     }
 
+    public ActiveMoverTable getActiveMoverTable() {
+        return activeMoverTable;
+    }
+
     public Map<String, Object> getEnvironment() {
         return environment;
     }
@@ -241,6 +246,10 @@ public class HttpServiceCell extends CommandInterpreter
         return authenticated;
     }
 
+    public void setActiveMoverTable(ActiveMoverTable activeMoverTable) {
+        this.activeMoverTable = activeMoverTable;
+    }
+
     @Required
     public void setAuthenticated(boolean authenticated) {
         this.authenticated = authenticated;
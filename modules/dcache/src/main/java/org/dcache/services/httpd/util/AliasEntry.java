@@ -90,6 +90,7 @@ public class AliasEntry {
     public static final String TYPE_BAD_CONFIG = "badconfig";
     public static final String HTTP_SERVICE = "httpService";
     public static final String CELL_ENDPOINT = "serviceCellEndpoint";
+    public static final String ACTIVE_MOVER_TABLE = "activeMoverTable";
     public static final String JNDI_ARGS = "jndiArgs";
 
     public static AliasEntry createEntry(Args args, HttpServiceCell cell)
@@ -205,6 +206,9 @@ public class AliasEntry {
          * and env entries are scoped to the webapp context
          */
         new EnvEntry(webappContext, CELL_ENDPOINT, cell.getEndpoint(), true);
+        if (cell.getActiveMoverTable() != null) {
+            new EnvEntry(webappContext, ACTIVE_MOVER_TABLE, cell.getActiveMoverTable(), true);
+        }
 
         Properties properties = new Properties();
         for (String key : env.keySet()) {
@@ -0,0 +1,50 @@
+package org.dcache.services.info.base;
+
+/**
+ * A StateVisitor that reuses the output it produced for a subtree of
+ * dCache state during an earlier visit, provided that subtree has not
+ * changed since.
+ * <p>
+ * Each StateComposite caches the output captured for its subtree.  The
+ * cache is discarded whenever a StateTransition with a StateChangeSet for
+ * the StateComposite's path is applied, so a cached fragment is never
+ * stale.  Unchanged subtrees are therefore not visited again; instead the
+ * StateComposite calls {@link #visitFragment} with the cached output.
+ * <p>
+ * The same output must result whether a subtree is visited or its cached
+ * fragment is used.
+ */
+public interface CachingStateVisitor extends StateVisitor {
+
+    /**
+     * Return the key under which the output for the subtree at path is
+     * cached.  Fragments cached under equal keys must be interchangeable,
+     * so the key must capture any context the output depends on (e.g.,
+     * indentation).
+     * @param path the path of the StateComposite, or null for the root.
+     * @return the key, or null if the output for this subtree must not
+     * be cached.
+     */
+    Object getFragmentKey( StatePath path);
+
+    /**
+     * Called before visiting a subtree whose output is to be cached.
+     * @param path the path of the StateComposite, or null for the root.
+     */
+    void beginFragment( StatePath path);
+
+    /**
+     * Called after visiting a subtree whose output is to be cached.
+     * @param path the path of the StateComposite, or null for the root.
+     * @return the output produced since the matching call to beginFragment.
+     */
+    String endFragment( StatePath path);
+
+    /**
+     * Called instead of visiting a subtree that has not changed since its
+     * output was cached.
+     * @param path the path of the StateComposite, or null for the root.
+     * @param fragment output previously returned by endFragment.
+     */
+    void visitFragment( StatePath path, String fragment);
+}
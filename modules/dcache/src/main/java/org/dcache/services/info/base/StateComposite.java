@@ -1,6 +1,7 @@
 package org.dcache.services.info.base;
 
 
+import com.google.common.collect.ImmutableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +28,10 @@ import java.util.concurrent.TimeUnit;
  * children) will expire.  This is an optimisation, allowing a quick determination when
  * a tree should next be purged and, with any subtree, whether it is necessary to purge that
  * subtree.
+ * <p>
+ * A StateComposite caches the output of any {@link CachingStateVisitor} for its
+ * subtree.  These fragments are discarded whenever a StateTransition changes
+ * something beneath the StateComposite.
  *
  * @author Paul Millar <paul.millar@desy.de>
  */
@@ -44,6 +49,12 @@ public class StateComposite implements StateComponent {
     private Date _whenIShouldExpire;
     private boolean _isEphemeral;
 
+    /**
+     * Cached output of CachingStateVisitors for this subtree, by fragment key.
+     * Populated by concurrent readers, hence copy-on-write.
+     */
+    private volatile ImmutableMap<Object,String> _fragments = ImmutableMap.of();
+
     /**
      * The constructor for public use: a StateComposite with a finite lifetime.
      *
@@ -246,6 +257,29 @@ public class StateComposite implements StateComponent {
             _log.debug("acceptVisitor( " + (path != null ? path : "(null)") + ")");
         }
 
+        Object fragmentKey = null;
+        if( visitor instanceof CachingStateVisitor) {
+            fragmentKey = ((CachingStateVisitor) visitor).getFragmentKey( path);
+        }
+
+        if( fragmentKey != null) {
+            CachingStateVisitor cachingVisitor = (CachingStateVisitor) visitor;
+
+            String fragment = _fragments.get( fragmentKey);
+            if( fragment != null) {
+                cachingVisitor.visitFragment( path, fragment);
+                return;
+            }
+
+            cachingVisitor.beginFragment( path);
+            visitChildren( path, visitor);
+            storeFragment( fragmentKey, cachingVisitor.endFragment( path));
+        } else {
+            visitChildren( path, visitor);
+        }
+    }
+
+    private void visitChildren( StatePath path, StateVisitor visitor) {
         Map<String,String> branchMetadata = getMetadataInfo();
 
         visitor.visitCompositePreDescend( path, branchMetadata);
@@ -262,6 +296,16 @@ public class StateComposite implements StateComponent {
         visitor.visitCompositePostDescend( path, branchMetadata);
     }
 
+    /**
+     * Record a CachingStateVisitor's output for this subtree.  Called with
+     * the state read-lock held, so possibly by several threads at once.
+     */
+    private synchronized void storeFragment( Object key, String fragment) {
+        if( !_fragments.containsKey( key)) {
+            _fragments = ImmutableMap.<Object,String>builder().putAll( _fragments).put( key, fragment).build();
+        }
+    }
+
 
     /**
      * Simulate the effects of the StateTransition, so allowing the StateVisitor to visit the dCache
@@ -350,6 +394,9 @@ public class StateComposite implements StateComponent {
             return;
         }
 
+        // Something beneath us changes, so any cached output is stale.
+        _fragments = ImmutableMap.of();
+
         Date newExpDate = changeSet.getWhenIShouldExpireDate();
         updateWhenIShouldExpireDate( newExpDate);
         if( newExpDate == null) {
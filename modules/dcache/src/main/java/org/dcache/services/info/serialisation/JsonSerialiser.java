@@ -1,34 +1,51 @@
 package org.dcache.services.info.serialisation;
 
 import com.google.common.base.Objects;
-import com.google.gson.stream.JsonWriter;
 import org.springframework.beans.factory.annotation.Required;
 
-import java.io.IOException;
-import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
 
 import org.dcache.services.info.base.BooleanStateValue;
+import org.dcache.services.info.base.CachingStateVisitor;
 import org.dcache.services.info.base.FloatingPointStateValue;
 import org.dcache.services.info.base.IntegerStateValue;
 import org.dcache.services.info.base.StateExhibitor;
 import org.dcache.services.info.base.StatePath;
 import org.dcache.services.info.base.StringStateValue;
 
-import static com.google.common.base.Throwables.propagate;
-
 /**
  * Serialise state into a json object.
+ * <p>
+ * The output for unchanged branches is reused from earlier serialisations.
+ * As the indentation of a branch depends on its depth within the document,
+ * fragments are cached per depth.  The json is written directly rather
+ * than through a JsonWriter, as the latter cannot include such fragments;
+ * the output is formatted as JsonWriter would with an indent of two spaces.
  */
-public class JsonSerialiser extends SubtreeVisitor implements StateSerialiser
+public class JsonSerialiser extends SubtreeVisitor implements StateSerialiser, CachingStateVisitor
 {
     public static final String NAME = "json";
+    private static final String INDENT = "  ";
+
     private StateExhibitor _exhibitor;
 
-    private JsonWriter _writer;
-    private StringWriter _string;
+    private StringBuilder _out;
     private StatePath _top;
 
+    /** Number of objects currently open */
+    private int _depth;
+
+    /** Whether the innermost open object has any members yet */
+    private boolean _isEmpty;
+    private final Deque<Boolean> _isEmptyStack = new ArrayDeque<>();
+
+    /** Whether the separator before the next member has been written */
+    private boolean _isSeparated;
+
+    private final Deque<Integer> _fragmentStarts = new ArrayDeque<>();
+
     @Required
     public void setStateExhibitor(StateExhibitor exhibitor)
     {
@@ -38,41 +55,33 @@ public class JsonSerialiser extends SubtreeVisitor implements StateSerialiser
     @Override
     public void visitString(StatePath path, StringStateValue metric)
     {
-        try {
-            _writer.name(path.getLastElement()).value(metric.getValue());
-        } catch (IOException e) {
-            propagate(e);
-        }
+        name(path.getLastElement());
+        string(metric.getValue());
     }
 
     @Override
     public void visitInteger(StatePath path, IntegerStateValue metric)
     {
-        try {
-            _writer.name(path.getLastElement()).value(metric.getValue());
-        } catch (IOException e) {
-            propagate(e);
-        }
+        name(path.getLastElement());
+        _out.append(metric.getValue());
     }
 
     @Override
     public void visitBoolean(StatePath path, BooleanStateValue metric)
     {
-        try {
-            _writer.name(path.getLastElement()).value(metric.getValue());
-        } catch (IOException e) {
-            propagate(e);
-        }
+        name(path.getLastElement());
+        _out.append(metric.getValue());
     }
 
     @Override
     public void visitFloatingPoint(StatePath path, FloatingPointStateValue metric)
     {
-        try {
-            _writer.name(path.getLastElement()).value(metric.getValue());
-        } catch (IOException e) {
-            propagate(e);
+        double value = metric.getValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
         }
+        name(path.getLastElement());
+        _out.append(value);
     }
 
     @Override
@@ -82,12 +91,8 @@ public class JsonSerialiser extends SubtreeVisitor implements StateSerialiser
             return;
         }
 
-        try {
-            _writer.name(path.getLastElement());
-            _writer.beginObject();
-        } catch (IOException e) {
-            propagate(e);
-        }
+        name(path.getLastElement());
+        beginObject();
     }
 
     @Override
@@ -97,11 +102,37 @@ public class JsonSerialiser extends SubtreeVisitor implements StateSerialiser
             return;
         }
 
-        try {
-            _writer.endObject();
-        } catch (IOException e) {
-            propagate(e);
+        endObject();
+    }
+
+    @Override
+    public Object getFragmentKey(StatePath path)
+    {
+        if (!isInsideScope(path) || Objects.equal(_top, path)) {
+            return null;
         }
+        return NAME + ":" + _depth;
+    }
+
+    @Override
+    public void beginFragment(StatePath path)
+    {
+        separator();
+        _fragmentStarts.push(_out.length());
+    }
+
+    @Override
+    public String endFragment(StatePath path)
+    {
+        return _out.substring(_fragmentStarts.pop());
+    }
+
+    @Override
+    public void visitFragment(StatePath path, String fragment)
+    {
+        separator();
+        _out.append(fragment);
+        _isSeparated = false;
     }
 
     @Override
@@ -121,9 +152,11 @@ public class JsonSerialiser extends SubtreeVisitor implements StateSerialiser
     {
         _top = start;
 
-        _string = new StringWriter();
-        _writer = new JsonWriter(_string);
-        _writer.setIndent("  ");
+        _out = new StringBuilder();
+        _depth = 0;
+        _isEmptyStack.clear();
+        _isSeparated = false;
+        _fragmentStarts.clear();
 
         if (start != null) {
             setVisitScopeToSubtree(start);
@@ -131,18 +164,102 @@ public class JsonSerialiser extends SubtreeVisitor implements StateSerialiser
             setVisitScopeToEverything();
         }
 
-        try {
-            _writer.beginObject();
-            _exhibitor.visitState(this);
-            _writer.endObject();
+        beginObject();
+        _exhibitor.visitState(this);
+        endObject();
+        _out.append('\n');
+
+        return _out.toString();
+    }
+
+    private void beginObject()
+    {
+        _out.append('{');
+        _isEmptyStack.push(_isEmpty);
+        _isEmpty = true;
+        _depth++;
+    }
+
+    private void endObject()
+    {
+        _depth--;
+        if (!_isEmpty) {
+            newline();
+        }
+        _out.append('}');
+        _isEmpty = _isEmptyStack.pop();
+    }
+
+    /**
+     * Write what separates the next member of the innermost object from
+     * the previous one.
+     */
+    private void separator()
+    {
+        if (_isSeparated) {
+            return;
+        }
+        if (!_isEmpty) {
+            _out.append(',');
+        }
+        newline();
+        _isEmpty = false;
+        _isSeparated = true;
+    }
+
+    private void name(String name)
+    {
+        separator();
+        string(name);
+        _out.append(": ");
+        _isSeparated = false;
+    }
 
-            _writer.flush();
-            _string.append('\n');
-            _writer.close();
-        } catch (IOException e) {
-            propagate(e);
+    private void newline()
+    {
+        _out.append('\n');
+        for (int i = 0; i < _depth; i++) {
+            _out.append(INDENT);
         }
+    }
 
-        return _string.toString();
+    private void string(String value)
+    {
+        _out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+            case '\\':
+                _out.append('\\').append(c);
+                break;
+            case '\t':
+                _out.append("\\t");
+                break;
+            case '\b':
+                _out.append("\\b");
+                break;
+            case '\n':
+                _out.append("\\n");
+                break;
+            case '\r':
+                _out.append("\\r");
+                break;
+            case '\f':
+                _out.append("\\f");
+                break;
+            case '\u2028':
+            case '\u2029':
+                _out.append(String.format("\\u%04x", (int) c));
+                break;
+            default:
+                if (c < 0x20) {
+                    _out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    _out.append(c);
+                }
+            }
+        }
+        _out.append('"');
     }
 }
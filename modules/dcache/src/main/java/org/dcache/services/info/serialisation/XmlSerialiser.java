@@ -2,9 +2,12 @@ package org.dcache.services.info.serialisation;
 
 import org.springframework.beans.factory.annotation.Required;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
 
 import org.dcache.services.info.base.BooleanStateValue;
+import org.dcache.services.info.base.CachingStateVisitor;
 import org.dcache.services.info.base.FloatingPointStateValue;
 import org.dcache.services.info.base.IntegerStateValue;
 import org.dcache.services.info.base.State;
@@ -19,12 +22,17 @@ import org.dcache.services.info.base.StringStateValue;
  * For the most part, this is a simple mapping with some support for handling
  * branch-nodes with a known special parent branch differently.
  * <p>
+ * The XML of a branch does not depend on what is serialised around it, so
+ * the output for unchanged branches is reused from earlier serialisations.
+ * Both complete documents and subtree documents are assembled from these
+ * cached fragments.
+ * <p>
  * NB, instances of this Class are not thread-safe: the caller is responsible for
  * ensuring no concurrent calls to serialise().
  *
  * @author Paul Millar <paul.millar@desy.de>
  */
-public class XmlSerialiser extends SubtreeVisitor implements StateSerialiser {
+public class XmlSerialiser extends SubtreeVisitor implements StateSerialiser, CachingStateVisitor {
 
     public static final String NAME = "xml";
 
@@ -43,6 +51,9 @@ public class XmlSerialiser extends SubtreeVisitor implements StateSerialiser {
     private String _lastBranchIdName;
     private boolean _haveLastBranch;
 
+    /** Offsets in _out where the fragments currently being captured start */
+    private final Deque<Integer> _fragmentStarts = new ArrayDeque<>();
+
     private StateExhibitor _exhibitor;
 
     @Required
@@ -79,6 +90,7 @@ public class XmlSerialiser extends SubtreeVisitor implements StateSerialiser {
     @Override
     public String serialise( StatePath start) {
         _out = new StringBuilder();
+        _fragmentStarts.clear();
         _isTopBranch = true;
         _haveLastBranch = false;
         _indentationLevel = 0;
@@ -114,6 +126,31 @@ public class XmlSerialiser extends SubtreeVisitor implements StateSerialiser {
         return NAME;
     }
 
+    /* Deal with cached fragments */
+    @Override
+    public Object getFragmentKey( StatePath path) {
+        /* Branches outside the scope are serialised only partially. */
+        return isInsideScope( path) ? NAME : null;
+    }
+
+    @Override
+    public void beginFragment( StatePath path) {
+        emitLastBeginElement( false);
+        _fragmentStarts.push( _out.length());
+    }
+
+    @Override
+    public String endFragment( StatePath path) {
+        return _out.substring( _fragmentStarts.pop());
+    }
+
+    @Override
+    public void visitFragment( StatePath path, String fragment) {
+        emitLastBeginElement( false);
+        _out.append( fragment);
+        _isTopBranch = false;
+    }
+
     /* Deal with branch movement */
     @Override
     public void visitCompositePreDescend( StatePath path, Map<String,String> metadata) {
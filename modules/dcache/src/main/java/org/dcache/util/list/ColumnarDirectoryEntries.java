@@ -0,0 +1,352 @@
+package org.dcache.util.list;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import diskCacheV111.util.PnfsId;
+
+import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.FileType;
+import org.dcache.vehicles.FileAttributes;
+
+import static org.dcache.namespace.FileAttribute.*;
+
+/**
+ * Compact collection of directory entries used to transfer large directory
+ * listings.
+ *
+ * Entries are stored column-wise: the names in one array and each attribute
+ * in a primitive array that is only allocated once the attribute is used.
+ * Serialization writes these arrays rather than a DirectoryEntry and a
+ * FileAttributes object per entry. DirectoryEntry objects are created on the
+ * fly while iterating over the collection.
+ *
+ * Entries with attributes that cannot be stored in a column, such as ACLs or
+ * checksums, are stored as FileAttributes objects.
+ */
+public class ColumnarDirectoryEntries extends AbstractCollection<DirectoryEntry>
+        implements Serializable
+{
+    private static final long serialVersionUID = 2392946516049937101L;
+
+    /**
+     * Attributes stored in columns. The position of an attribute in this
+     * array is its bit in the per entry mask of defined attributes.
+     */
+    private static final FileAttribute[] COLUMNS = {
+        SIZE, ACCESS_TIME, CHANGE_TIME, CREATION_TIME, MODIFICATION_TIME,
+        OWNER, OWNER_GROUP, MODE, TYPE, PNFSID
+    };
+
+    private static final Set<FileAttribute> COLUMN_SET =
+            EnumSet.copyOf(Arrays.asList(COLUMNS));
+
+    /** Defined attributes of entries without attributes. */
+    private static final int NO_ATTRIBUTES = -1;
+
+    /** Defined attributes of entries stored as FileAttributes objects. */
+    private static final int OBJECT = -2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private transient int _size;
+    private transient String[] _names;
+    private transient int[] _defined;
+    private transient long[][] _values;
+    private transient String[] _pnfsIds;
+    private transient Map<Integer,FileAttributes> _objects;
+
+    public ColumnarDirectoryEntries()
+    {
+        init(INITIAL_CAPACITY);
+    }
+
+    private void init(int capacity)
+    {
+        _size = 0;
+        _names = new String[capacity];
+        _defined = new int[capacity];
+        _values = new long[COLUMNS.length][];
+        _pnfsIds = null;
+        _objects = new HashMap<>();
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > _names.length) {
+            int length = Math.max(capacity, _names.length * 2);
+            _names = Arrays.copyOf(_names, length);
+            _defined = Arrays.copyOf(_defined, length);
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if (_values[column] != null) {
+                    _values[column] = Arrays.copyOf(_values[column], length);
+                }
+            }
+            if (_pnfsIds != null) {
+                _pnfsIds = Arrays.copyOf(_pnfsIds, length);
+            }
+        }
+    }
+
+    /** Adds an entry without creating a DirectoryEntry. */
+    public void add(String name, FileAttributes attributes)
+    {
+        ensureCapacity(_size + 1);
+        _names[_size] = name;
+        if (attributes == null) {
+            _defined[_size] = NO_ATTRIBUTES;
+        } else if (!COLUMN_SET.containsAll(attributes.getDefinedAttributes())) {
+            _defined[_size] = OBJECT;
+            _objects.put(_size, attributes);
+        } else {
+            int defined = 0;
+            for (int column = 0; column < COLUMNS.length; column++) {
+                FileAttribute attribute = COLUMNS[column];
+                if (attributes.isDefined(attribute)) {
+                    defined |= 1 << column;
+                    if (attribute == PNFSID) {
+                        if (_pnfsIds == null) {
+                            _pnfsIds = new String[_names.length];
+                        }
+                        _pnfsIds[_size] = attributes.getPnfsId().toString();
+                    } else {
+                        if (_values[column] == null) {
+                            _values[column] = new long[_names.length];
+                        }
+                        _values[column][_size] = getValue(attributes, attribute);
+                    }
+                }
+            }
+            _defined[_size] = defined;
+        }
+        _size++;
+    }
+
+    @Override
+    public boolean add(DirectoryEntry entry)
+    {
+        add(entry.getName(), entry.getFileAttributes());
+        return true;
+    }
+
+    @Override
+    public int size()
+    {
+        return _size;
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill(_names, 0, _size, null);
+        if (_pnfsIds != null) {
+            Arrays.fill(_pnfsIds, 0, _size, null);
+        }
+        _objects.clear();
+        _size = 0;
+    }
+
+    /** Returns the entry at the given position. */
+    public DirectoryEntry get(int index)
+    {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        int defined = _defined[index];
+        FileAttributes attributes;
+        switch (defined) {
+        case NO_ATTRIBUTES:
+            attributes = null;
+            break;
+        case OBJECT:
+            attributes = _objects.get(index);
+            break;
+        default:
+            attributes = new FileAttributes();
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if ((defined & (1 << column)) != 0) {
+                    FileAttribute attribute = COLUMNS[column];
+                    if (attribute == PNFSID) {
+                        attributes.setPnfsId(new PnfsId(_pnfsIds[index]));
+                    } else {
+                        setValue(attributes, attribute, _values[column][index]);
+                    }
+                }
+            }
+            break;
+        }
+        return new DirectoryEntry(_names[index], attributes);
+    }
+
+    @Override
+    public Iterator<DirectoryEntry> iterator()
+    {
+        return new Iterator<DirectoryEntry>()
+        {
+            private int _next;
+
+            @Override
+            public boolean hasNext()
+            {
+                return _next < _size;
+            }
+
+            @Override
+            public DirectoryEntry next()
+            {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(_next++);
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static long getValue(FileAttributes attributes, FileAttribute attribute)
+    {
+        switch (attribute) {
+        case SIZE:
+            return attributes.getSize();
+        case ACCESS_TIME:
+            return attributes.getAccessTime();
+        case CHANGE_TIME:
+            return attributes.getChangeTime();
+        case CREATION_TIME:
+            return attributes.getCreationTime();
+        case MODIFICATION_TIME:
+            return attributes.getModificationTime();
+        case OWNER:
+            return attributes.getOwner();
+        case OWNER_GROUP:
+            return attributes.getGroup();
+        case MODE:
+            return attributes.getMode();
+        case TYPE:
+            return attributes.getFileType().ordinal();
+        default:
+            throw new IllegalArgumentException("Not a column: " + attribute);
+        }
+    }
+
+    private static void setValue(FileAttributes attributes, FileAttribute attribute, long value)
+    {
+        switch (attribute) {
+        case SIZE:
+            attributes.setSize(value);
+            break;
+        case ACCESS_TIME:
+            attributes.setAccessTime(value);
+            break;
+        case CHANGE_TIME:
+            attributes.setChangeTime(value);
+            break;
+        case CREATION_TIME:
+            attributes.setCreationTime(value);
+            break;
+        case MODIFICATION_TIME:
+            attributes.setModificationTime(value);
+            break;
+        case OWNER:
+            attributes.setOwner((int) value);
+            break;
+        case OWNER_GROUP:
+            attributes.setGroup((int) value);
+            break;
+        case MODE:
+            attributes.setMode((int) value);
+            break;
+        case TYPE:
+            attributes.setFileType(FileType.values()[(int) value]);
+            break;
+        default:
+            throw new IllegalArgumentException("Not a column: " + attribute);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        out.defaultWriteObject();
+        out.writeInt(_size);
+        for (int i = 0; i < _size; i++) {
+            out.writeUTF(_names[i]);
+        }
+        for (int i = 0; i < _size; i++) {
+            out.writeInt(_defined[i]);
+        }
+        for (int column = 0; column < COLUMNS.length; column++) {
+            if (COLUMNS[column] == PNFSID) {
+                out.writeBoolean(_pnfsIds != null);
+                if (_pnfsIds != null) {
+                    for (int i = 0; i < _size; i++) {
+                        out.writeUTF(_pnfsIds[i] == null ? "" : _pnfsIds[i]);
+                    }
+                }
+            } else {
+                long[] values = _values[column];
+                out.writeBoolean(values != null);
+                if (values != null) {
+                    for (int i = 0; i < _size; i++) {
+                        out.writeLong(values[i]);
+                    }
+                }
+            }
+        }
+        out.writeInt(_objects.size());
+        for (Map.Entry<Integer,FileAttributes> entry : _objects.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        int size = in.readInt();
+        init(Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            _names[i] = in.readUTF();
+        }
+        for (int i = 0; i < size; i++) {
+            _defined[i] = in.readInt();
+        }
+        for (int column = 0; column < COLUMNS.length; column++) {
+            if (in.readBoolean()) {
+                if (COLUMNS[column] == PNFSID) {
+                    _pnfsIds = new String[_names.length];
+                    for (int i = 0; i < size; i++) {
+                        _pnfsIds[i] = in.readUTF();
+                    }
+                } else {
+                    long[] values = new long[_names.length];
+                    for (int i = 0; i < size; i++) {
+                        values[i] = in.readLong();
+                    }
+                    _values[column] = values;
+                }
+            }
+        }
+        int objects = in.readInt();
+        for (int i = 0; i < objects; i++) {
+            int index = in.readInt();
+            _objects.put(index, (FileAttributes) in.readObject());
+        }
+        _size = size;
+    }
+}
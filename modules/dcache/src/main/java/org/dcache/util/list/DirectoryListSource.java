@@ -8,6 +8,7 @@ import java.util.Set;
 
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FsPath;
+import diskCacheV111.util.ServiceUnavailableException;
 
 import org.dcache.namespace.FileAttribute;
 import org.dcache.util.Glob;
@@ -72,6 +73,31 @@ public interface DirectoryListSource
                          Set<FileAttribute> attrs)
         throws InterruptedException, CacheException;
 
+    /**
+     * Lists the content of a directory in the order of the names of
+     * the entries, starting with the first entry whose name follows
+     * startAfter. The range is applied to the entries following
+     * startAfter.
+     *
+     * Allows a large directory to be listed in pages without the
+     * entries of earlier pages being read again.
+     *
+     * @param subject The Subject of the user performing the operation
+     * @param path Path to directory to list
+     * @param glob Glob to limit the result set; may be null
+     * @param startAfter Name after which to start; the empty string
+     * starts with the first entry
+     * @param range The range of entries to return; may be null
+     * @param attrs The file attributes to query for each entry
+     * @return A DirectoryStream of the entries in the directory
+     * @throws ServiceUnavailableException if the name space does not
+     * support listing from a name
+     */
+    DirectoryStream list(Subject subject, FsPath path,
+                         Glob pattern, String startAfter,
+                         Range<Integer> range, Set<FileAttribute> attrs)
+        throws InterruptedException, CacheException;
+
     /**
      * Prints a file using a DirectoryListPrinter.
      *
@@ -97,4 +123,26 @@ public interface DirectoryListSource
     int printDirectory(Subject subject, DirectoryListPrinter printer,
                        FsPath path, Glob glob, Range<Integer> range)
         throws InterruptedException, CacheException;
+
+    /**
+     * Prints the entries of a directory using a DirectoryListPrinter,
+     * in the order of their names and starting with the first entry
+     * whose name follows startAfter.
+     *
+     * @param subject The Subject of the user performing the operation
+     * @param printer The DirectoryListPrinter used to print the
+     *        directory content
+     * @param path The path to the directory to print
+     * @param glob An optional Glob used to filter which entries to
+     *        print
+     * @param startAfter Name after which to start printing
+     * @param range A range used to filter which entries to print
+     * @return The number of entries printed
+     * @throws ServiceUnavailableException if the name space does not
+     * support listing from a name; no entries are printed in that case
+     */
+    int printDirectory(Subject subject, DirectoryListPrinter printer,
+                       FsPath path, Glob glob, String startAfter,
+                       Range<Integer> range)
+        throws InterruptedException, CacheException;
 }
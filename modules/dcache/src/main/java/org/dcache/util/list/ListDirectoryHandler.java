@@ -18,6 +18,7 @@ import java.util.concurrent.TimeUnit;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FsPath;
 import diskCacheV111.util.PnfsHandler;
+import diskCacheV111.util.ServiceUnavailableException;
 import diskCacheV111.util.TimeoutCacheException;
 
 import dmg.cells.nucleus.CellMessageReceiver;
@@ -91,10 +92,29 @@ public class ListDirectoryHandler
         list(Subject subject, FsPath path, Glob pattern, Range<Integer> range,
              Set<FileAttribute> attributes)
         throws InterruptedException, CacheException
+    {
+        return list(subject, path, pattern, null, range, attributes);
+    }
+
+    /**
+     * Sends a directory list request to PnfsManager, asking for the
+     * entries following startAfter in the order of their names. The
+     * result is provided as a stream of directory entries.
+     *
+     * The method blocks until the first set of directory entries have
+     * been received from the server.
+     */
+    @Override
+    public DirectoryStream
+        list(Subject subject, FsPath path, Glob pattern, String startAfter,
+             Range<Integer> range, Set<FileAttribute> attributes)
+        throws InterruptedException, CacheException
     {
         String dir = path.toString();
         PnfsListDirectoryMessage msg =
             new PnfsListDirectoryMessage(dir, pattern, range, attributes);
+        msg.setColumnarAccepted(true);
+        msg.setStartAfter(startAfter);
         UUID uuid = msg.getUUID();
         boolean success = false;
         Stream stream = new Stream(dir, uuid);
@@ -103,6 +123,9 @@ public class ListDirectoryHandler
             _replies.put(uuid, stream);
             _pnfs.send(msg);
             stream.waitForMoreEntries();
+            if (startAfter != null && !stream._isStartAfterHonoured) {
+                throw new ServiceUnavailableException("PnfsManager does not support listing from a name");
+            }
             success = true;
             return stream;
         } catch (NoRouteToCellException e) {
@@ -145,13 +168,35 @@ public class ListDirectoryHandler
         FileAttributes dirAttr =
             _pnfs.getFileAttributes(path.toString(), required);
         try (DirectoryStream stream = list(subject, path, glob, range, required)) {
-            int total = 0;
-            for (DirectoryEntry entry: stream) {
-                printer.print(path, dirAttr, entry);
-                total++;
-            }
-            return total;
+            return print(printer, path, dirAttr, stream);
+        }
+    }
+
+    @Override
+    public int printDirectory(Subject subject, DirectoryListPrinter printer,
+                              FsPath path, Glob glob, String startAfter,
+                              Range<Integer> range)
+        throws InterruptedException, CacheException
+    {
+        Set<FileAttribute> required =
+            printer.getRequiredAttributes();
+        FileAttributes dirAttr =
+            _pnfs.getFileAttributes(path.toString(), required);
+        try (DirectoryStream stream = list(subject, path, glob, startAfter, range, required)) {
+            return print(printer, path, dirAttr, stream);
+        }
+    }
+
+    private int print(DirectoryListPrinter printer, FsPath path,
+                      FileAttributes dirAttr, DirectoryStream stream)
+        throws InterruptedException
+    {
+        int total = 0;
+        for (DirectoryEntry entry: stream) {
+            printer.print(path, dirAttr, entry);
+            total++;
         }
+        return total;
     }
 
     /**
@@ -192,6 +237,7 @@ public class ListDirectoryHandler
         private final UUID _uuid;
         private final String _path;
         private boolean _isFinal;
+        private boolean _isStartAfterHonoured;
         private Iterator<DirectoryEntry> _iterator;
         private int _count;
         private int _total;
@@ -241,6 +287,7 @@ public class ListDirectoryHandler
                 throw CacheExceptionFactory.exceptionOf(msg);
             }
 
+            _isStartAfterHonoured = msg.isStartAfterHonoured();
             _iterator = msg.getEntries().iterator();
 
             /* If the message is empty, then the iterator has no next
@@ -0,0 +1,47 @@
+package org.dcache.vehicles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import diskCacheV111.vehicles.PnfsMessage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Carries several PnfsMessages of the same kind in a single message.
+ *
+ * PnfsManager distributes the messages over its queues as if they had been
+ * received individually and replies with the batch once all messages have
+ * been processed. Each message carries its own return code; the return code
+ * of the batch only reflects failures of the batch as a whole.
+ */
+public class PnfsBatchMessage extends PnfsMessage
+{
+    private static final long serialVersionUID = 4925536311934549826L;
+
+    private final List<PnfsMessage> _messages;
+
+    public PnfsBatchMessage(List<? extends PnfsMessage> messages)
+    {
+        checkArgument(!messages.isEmpty(), "Batch must not be empty");
+        _messages = new ArrayList<>(messages);
+    }
+
+    public List<PnfsMessage> getMessages()
+    {
+        return _messages;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Batch of " + _messages.size() + " " +
+               _messages.get(0).getClass().getSimpleName();
+    }
+
+    @Override
+    public String getDiagnosticContext()
+    {
+        return toString();
+    }
+}
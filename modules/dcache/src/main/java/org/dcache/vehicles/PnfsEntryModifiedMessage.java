@@ -0,0 +1,67 @@
+package org.dcache.vehicles;
+
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.PnfsMessage;
+
+/**
+ * Notification sent by PnfsManager after a name space entry was modified.
+ *
+ * Either of the PnfsId and the path may be null. A rename additionally
+ * carries the new path; since the entry may be a directory, paths below
+ * both the old and the new path are affected by a rename. A permission
+ * change of a directory affects access to the entries below it.
+ */
+public class PnfsEntryModifiedMessage extends PnfsMessage
+{
+    private static final long serialVersionUID = -3189536217354616453L;
+
+    private final String _newPath;
+    private boolean _isPermissionChange;
+
+    public PnfsEntryModifiedMessage(PnfsId pnfsId, String path)
+    {
+        this(pnfsId, path, null);
+    }
+
+    public PnfsEntryModifiedMessage(PnfsId pnfsId, String path, String newPath)
+    {
+        super(pnfsId);
+        setPnfsPath(path);
+        _newPath = newPath;
+        setReplyRequired(false);
+    }
+
+    /**
+     * Returns the new path of a renamed entry, or null if the entry was
+     * not renamed.
+     */
+    public String getNewPath()
+    {
+        return _newPath;
+    }
+
+    public boolean isRename()
+    {
+        return _newPath != null;
+    }
+
+    public void setPermissionChange(boolean isPermissionChange)
+    {
+        _isPermissionChange = isPermissionChange;
+    }
+
+    /**
+     * Returns whether the owner, the mode or the ACL of the entry changed.
+     */
+    public boolean isPermissionChange()
+    {
+        return _isPermissionChange;
+    }
+
+    @Override
+    public String toString()
+    {
+        return super.toString() + (isRename() ? ";NewPath=" + _newPath : "") +
+               (_isPermissionChange ? ";PermissionChange" : "");
+    }
+}
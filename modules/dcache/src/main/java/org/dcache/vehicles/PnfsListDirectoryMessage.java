@@ -15,6 +15,7 @@ import dmg.util.CollectionFactory;
 
 import org.dcache.namespace.FileAttribute;
 import org.dcache.util.Glob;
+import org.dcache.util.list.ColumnarDirectoryEntries;
 import org.dcache.util.list.DirectoryEntry;
 
 /**
@@ -38,6 +39,25 @@ public class PnfsListDirectoryMessage extends PnfsMessage
     private Collection<DirectoryEntry> _entries =
         CollectionFactory.newArrayList();
 
+    /**
+     * Whether the requestor accepts replies with entries in the
+     * compact encoding of ColumnarDirectoryEntries.
+     */
+    private boolean _isColumnarAccepted;
+
+    /**
+     * Name after which to start the listing, or null for a listing in
+     * no particular order.
+     */
+    private String _startAfter;
+
+    /**
+     * Set in replies of a PnfsManager that listed the entries following
+     * _startAfter. Replies of a PnfsManager unaware of _startAfter leave
+     * it unset.
+     */
+    private boolean _isStartAfterHonoured;
+
     /**
      * The last message has the following field set to true and a non-zero
      * message count;
@@ -95,16 +115,72 @@ public class PnfsListDirectoryMessage extends PnfsMessage
         }
     }
 
+    /**
+     * Requests the entries to be listed in the order of their names,
+     * starting with the first entry whose name follows startAfter. The
+     * range applies to the entries following startAfter. If null, the
+     * entries are listed in no particular order.
+     */
+    public void setStartAfter(String startAfter)
+    {
+        _startAfter = startAfter;
+    }
+
+    /** Returns the name after which to start the listing; may be null. */
+    public String getStartAfter()
+    {
+        return _startAfter;
+    }
+
+    public void setStartAfterHonoured(boolean isStartAfterHonoured)
+    {
+        _isStartAfterHonoured = isStartAfterHonoured;
+    }
+
+    /**
+     * Returns whether the entries in the reply follow the name set with
+     * setStartAfter. If false although a name was set, the reply was
+     * sent by a PnfsManager that ignores it.
+     */
+    public boolean isStartAfterHonoured()
+    {
+        return _isStartAfterHonoured;
+    }
+
     /** True if and only if the reply should include file meta data. */
     public Set<FileAttribute> getRequestedAttributes()
     {
         return _requestedAttributes;
     }
 
+    /**
+     * Declares that the requestor accepts replies with entries in the
+     * compact encoding of ColumnarDirectoryEntries. Requestors not
+     * declaring this receive plain lists of DirectoryEntry objects.
+     */
+    public void setColumnarAccepted(boolean isColumnarAccepted)
+    {
+        _isColumnarAccepted = isColumnarAccepted;
+    }
+
+    public boolean isColumnarAccepted()
+    {
+        return _isColumnarAccepted;
+    }
+
     /** Adds an entry to the entry list. */
     public void addEntry(String name, FileAttributes attr)
     {
-        _entries.add(new DirectoryEntry(name, attr));
+        if (_isColumnarAccepted && !(_entries instanceof ColumnarDirectoryEntries)) {
+            ColumnarDirectoryEntries entries = new ColumnarDirectoryEntries();
+            entries.addAll(_entries);
+            _entries = entries;
+        }
+        if (_entries instanceof ColumnarDirectoryEntries) {
+            ((ColumnarDirectoryEntries) _entries).add(name, attr);
+        } else {
+            _entries.add(new DirectoryEntry(name, attr));
+        }
     }
 
     /** Sets a new entry list. */
@@ -1,5 +1,6 @@
 package org.dcache.vehicles;
 
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Set;
 import diskCacheV111.util.PnfsId;
@@ -21,6 +22,10 @@ public class PnfsSetFileAttributes extends PnfsMessage {
 
     private static final long serialVersionUID = -6750531802534981651L;
 
+    private static final Set<FileAttribute> PERMISSION_ATTRIBUTES =
+            EnumSet.of(FileAttribute.ACL, FileAttribute.MODE, FileAttribute.OWNER,
+                       FileAttribute.OWNER_GROUP, FileAttribute.PERMISSION);
+
     private FileAttributes _fileAttributes;
     private final Set<FileAttribute> _acquire;
 
@@ -81,4 +86,14 @@ public class PnfsSetFileAttributes extends PnfsMessage {
         return _fileAttributes;
     }
 
+    /**
+     * Returns whether the request changes the owner, the mode or the ACL
+     * of the entry. Only meaningful before the request is processed, as
+     * the reply replaces the attributes.
+     */
+    public boolean isPermissionChange() {
+        return _fileAttributes != null &&
+                !Collections.disjoint(_fileAttributes.getDefinedAttributes(), PERMISSION_ATTRIBUTES);
+    }
+
 }
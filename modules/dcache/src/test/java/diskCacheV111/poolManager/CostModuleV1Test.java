@@ -0,0 +1,85 @@
+package diskCacheV111.poolManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import diskCacheV111.pools.PoolCostInfo;
+import diskCacheV111.pools.PoolV2Mode;
+import diskCacheV111.vehicles.PoolManagerPoolUpMessage;
+
+import dmg.cells.nucleus.CellAddressCore;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellPath;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class CostModuleV1Test
+{
+    private CostModuleV1 costModule;
+
+    @Before
+    public void setUp()
+    {
+        costModule = new CostModuleV1();
+    }
+
+    private void givenPool(String name, int activeMovers)
+    {
+        PoolCostInfo info = new PoolCostInfo(name);
+        info.setSpaceUsage(1000, 500, 0, 0, 0);
+        info.addExtendedMoverQueueSizes("regular", activeMovers, 100, 0, activeMovers, 0);
+        CellMessage envelope = new CellMessage(new CellPath("PoolManager"),
+                new PoolManagerPoolUpMessage(name, 0, new PoolV2Mode(PoolV2Mode.ENABLED), info));
+        envelope.addSourceAddress(new CellAddressCore(name, "domain"));
+        costModule.messageArrived(envelope,
+                (PoolManagerPoolUpMessage) envelope.getMessageObject());
+    }
+
+    private static CostModuleV1 roundTrip(CostModuleV1 costModule)
+            throws IOException, ClassNotFoundException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(costModule);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(buffer.toByteArray()))) {
+            return (CostModuleV1) in.readObject();
+        }
+    }
+
+    @Test
+    public void shouldReturnPercentileOfPerformanceCost()
+    {
+        givenPool("pool1", 10);
+        givenPool("pool2", 50);
+        givenPool("pool3", 90);
+
+        assertThat(costModule.getPoolsPercentilePerformanceCost(0.1),
+                   is(lessThan(costModule.getPoolsPercentilePerformanceCost(0.5))));
+        assertThat(costModule.getPoolsPercentilePerformanceCost(0.5),
+                   is(lessThan(costModule.getPoolsPercentilePerformanceCost(0.9))));
+    }
+
+    @Test
+    public void shouldReturnPercentileAfterSerialization() throws Exception
+    {
+        givenPool("pool1", 10);
+        givenPool("pool2", 50);
+        givenPool("pool3", 90);
+
+        CostModuleV1 copy = roundTrip(costModule);
+
+        for (double fraction : new double[] { 0.1, 0.5, 0.9 }) {
+            assertThat(copy.getPoolsPercentilePerformanceCost(fraction),
+                       is(costModule.getPoolsPercentilePerformanceCost(fraction)));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package diskCacheV111.poolManager;
+
+import org.jboss.netty.util.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TtlCheckTest
+{
+    private HashedWheelTimer _timer;
+    private Semaphore _fired;
+    private TtlCheck _check;
+
+    @Before
+    public void setUp()
+    {
+        _timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+        _fired = new Semaphore(0);
+        _check = new TtlCheck(_timer, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                _fired.release();
+            }
+        });
+    }
+
+    @After
+    public void tearDown()
+    {
+        _timer.stop();
+    }
+
+    @Test
+    public void testCheckCanBeScheduledAgainAfterFiring() throws Exception
+    {
+        _check.schedule(System.currentTimeMillis() + 20);
+        assertTrue(_fired.tryAcquire(5, TimeUnit.SECONDS));
+        assertFalse(_check.isScheduled());
+
+        _check.schedule(System.currentTimeMillis() + 20);
+        assertTrue(_fired.tryAcquire(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testEarlierCheckReplacesLaterCheck() throws Exception
+    {
+        _check.schedule(System.currentTimeMillis() + 60000);
+        _check.schedule(System.currentTimeMillis() + 20);
+
+        assertTrue(_fired.tryAcquire(5, TimeUnit.SECONDS));
+        assertFalse(_check.isScheduled());
+    }
+
+    @Test
+    public void testLaterCheckDoesNotPostponeEarlierCheck() throws Exception
+    {
+        _check.schedule(System.currentTimeMillis() + 20);
+        _check.schedule(System.currentTimeMillis() + 60000);
+
+        assertTrue(_fired.tryAcquire(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancelledCheckDoesNotFire() throws Exception
+    {
+        _check.schedule(System.currentTimeMillis() + 20);
+        _check.cancel();
+
+        assertFalse(_fired.tryAcquire(200, TimeUnit.MILLISECONDS));
+        assertFalse(_check.isScheduled());
+    }
+}
@@ -0,0 +1,149 @@
+package diskCacheV111.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PnfsIdMapTest
+{
+    private Random _random;
+    private PnfsIdMap<Integer> _map;
+    private Map<PnfsId,Integer> _expected;
+
+    @Before
+    public void setUp()
+    {
+        _random = new Random(42);
+        _map = new PnfsIdMap<>();
+        _expected = new HashMap<>();
+    }
+
+    private PnfsId randomId(int range)
+    {
+        return new PnfsId(String.format("0000%032X", _random.nextInt(range)));
+    }
+
+    @Test
+    public void testPutAndGet()
+    {
+        PnfsId id = new PnfsId("000000000000000000000000000000000001");
+        assertNull(_map.put(id, 1));
+        assertEquals(Integer.valueOf(1), _map.put(id, 2));
+        assertEquals(Integer.valueOf(2), _map.get(new PnfsId("000000000000000000000000000000000001")));
+        assertEquals(1, _map.size());
+        assertTrue(_map.containsKey(id));
+        assertNull(_map.get("000000000000000000000000000000000001"));
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap()
+    {
+        for (int i = 0; i < 100000; i++) {
+            PnfsId id = randomId(5000);
+            if (_random.nextInt(3) == 0) {
+                assertEquals(_expected.remove(id), _map.remove(id));
+            } else {
+                assertEquals(_expected.put(id, i), _map.put(id, i));
+            }
+        }
+        assertEquals(_expected, _map);
+        assertEquals(_map, _expected);
+    }
+
+    @Test
+    public void testIteratorRemove()
+    {
+        for (int i = 0; i < 20000; i++) {
+            PnfsId id = randomId(100000);
+            _expected.put(id, i);
+            _map.put(id, i);
+        }
+
+        int size = _map.size();
+        int visited = 0;
+        Iterator<Map.Entry<PnfsId,Integer>> iterator = _map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<PnfsId,Integer> entry = iterator.next();
+            assertEquals(_expected.get(entry.getKey()), entry.getValue());
+            visited++;
+            if (entry.getValue() % 2 == 0) {
+                iterator.remove();
+                _expected.remove(entry.getKey());
+            }
+        }
+
+        assertEquals(size, visited);
+        assertEquals(_expected, _map);
+    }
+
+    @Test
+    public void testIteratorRemoveWithCollidingKeys()
+    {
+        /* A small table filled up to the load factor has long probe
+         * sequences, many of which wrap around the end of the table.
+         */
+        for (int round = 0; round < 10000; round++) {
+            PnfsIdMap<Integer> map = new PnfsIdMap<>(6);
+            Map<PnfsId,Integer> expected = new HashMap<>();
+            for (int i = 0; i < 6; i++) {
+                PnfsId id = randomId(Integer.MAX_VALUE);
+                map.put(id, i);
+                expected.put(id, i);
+            }
+
+            Set<PnfsId> visited = new HashSet<>();
+            Iterator<Map.Entry<PnfsId,Integer>> iterator = map.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<PnfsId,Integer> entry = iterator.next();
+                assertTrue(visited.add(entry.getKey()));
+                assertEquals(expected.get(entry.getKey()), entry.getValue());
+                if (_random.nextBoolean()) {
+                    iterator.remove();
+                    expected.remove(entry.getKey());
+                }
+            }
+
+            assertEquals(6, visited.size());
+            assertEquals(expected, map);
+        }
+    }
+
+    @Test
+    public void testIteratorRemoveAll()
+    {
+        for (int round = 0; round < 10000; round++) {
+            PnfsIdMap<Integer> map = new PnfsIdMap<>(6);
+            for (int i = 0; i < 6; i++) {
+                map.put(randomId(Integer.MAX_VALUE), i);
+            }
+
+            int visited = 0;
+            Iterator<Map.Entry<PnfsId,Integer>> iterator = map.entrySet().iterator();
+            while (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                visited++;
+            }
+
+            assertEquals(6, visited);
+            assertTrue(map.isEmpty());
+        }
+    }
+
+    @Test
+    public void testClear()
+    {
+        _map.put(randomId(10), 1);
+        _map.clear();
+        assertTrue(_map.isEmpty());
+        assertFalse(_map.entrySet().iterator().hasNext());
+    }
+}
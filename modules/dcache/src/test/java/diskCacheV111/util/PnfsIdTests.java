@@ -46,10 +46,10 @@ public class PnfsIdTests {
 
     private static final String EXPECTED_ENCODED_SERIALISED_SIMPLE_PNFS_PNFSID =
         "aced0005737200196469736b4361636865563131312e7574696c2e506e667"
-      + "34964fe7150258b9baecf0200025b00025f617400025b424c00075f646f6d"
+      + "34964fe7150258b9baecf0300025b00025f617400025b424c00075f646f6d"
       + "61696e7400124c6a6176612f6c616e672f537472696e673b7870757200025"
       + "b42acf317f8060854e002000078700000000c000f00000000000000389fc0"
-      + "70";
+      + "7078";
 
     private static final String ENCODED_SERIALISED_SIMPLE_PNFS_PNFSIDS_FOR_DESERIALISATION[] = {
         "aced0005737200196469736b4361636865563131312e7574696c2e506e667"
@@ -66,15 +66,21 @@ public class PnfsIdTests {
       + "37472696e6771007e00024c00095f746f537472696e6771007e0002787075"
       + "7200025b42acf317f8060854e002000078700000000c000f0000000000000"
       + "0389fc0707400183030304630303030303030303030303030303338394643"
-      + "3071007e0006"
+      + "3071007e0006",
+
+        "aced0005737200196469736b4361636865563131312e7574696c2e506e667"
+      + "34964fe7150258b9baecf0200025b00025f617400025b424c00075f646f6d"
+      + "61696e7400124c6a6176612f6c616e672f537472696e673b7870757200025"
+      + "b42acf317f8060854e002000078700000000c000f00000000000000389fc0"
+      + "70"
     };
 
     private static final String EXPECTED_ENCODED_SERIALISED_DOMAIN_PNFS_PNFSID =
         "aced0005737200196469736b4361636865563131312e7574696c2e506e667"
-      + "34964fe7150258b9baecf0200025b00025f617400025b424c00075f646f6d"
+      + "34964fe7150258b9baecf0300025b00025f617400025b424c00075f646f6d"
       + "61696e7400124c6a6176612f6c616e672f537472696e673b7870757200025"
       + "b42acf317f8060854e002000078700000000c000f00000000000000389fc0"
-      + "740006646f6d61696e";
+      + "740006646f6d61696e78";
 
     private static final String ENCODED_SERIALISED_DOMAIN_PNFS_PNFSIDS_FOR_DESERIALISATION[] = {
         "aced0005737200196469736b4361636865563131312e7574696c2e506e667"
@@ -84,15 +90,21 @@ public class PnfsIdTests {
       + "7200025b42acf317f8060854e002000078700000000c000f0000000000000"
       + "0389fc0740006646f6d61696e740018303030463030303030303030303030"
       + "30303033383946433074001f3030304630303030303030303030303030303"
-      + "338394643302e646f6d61696e"
+      + "338394643302e646f6d61696e",
+
+        "aced0005737200196469736b4361636865563131312e7574696c2e506e667"
+      + "34964fe7150258b9baecf0200025b00025f617400025b424c00075f646f6d"
+      + "61696e7400124c6a6176612f6c616e672f537472696e673b7870757200025"
+      + "b42acf317f8060854e002000078700000000c000f00000000000000389fc0"
+      + "740006646f6d61696e"
     };
 
     private static final String EXPECTED_ENCODED_SERIALISED_CHIMERA_PNFSID =
         "aced0005737200196469736b4361636865563131312e7574696c2e506e667"
-      + "34964fe7150258b9baecf0200025b00025f617400025b424c00075f646f6d"
+      + "34964fe7150258b9baecf0300025b00025f617400025b424c00075f646f6d"
       + "61696e7400124c6a6176612f6c616e672f537472696e673b7870757200025"
       + "b42acf317f8060854e002000078700000001280d1b8b90ced30430608c580"
-      + "02811b3285fc70";
+      + "02811b3285fc7078";
 
     private static final String ENCODED_SERIALISED_CHIMERA_PNFSIDS_FOR_DESERIALISATION[] = {
         "aced0005737200196469736b4361636865563131312e7574696c2e506e667"
@@ -110,7 +122,13 @@ public class PnfsIdTests {
       + "37472696e6771007e00024c00095f746f537472696e6771007e0002787075"
       + "7200025b42acf317f8060854e002000078700000001280d1b8b90ced30430"
       + "608c58002811b3285fc707400243830443142384239304345443330343330"
-      + "3630384335383030323831314233323835464371007e0006"
+      + "3630384335383030323831314233323835464371007e0006",
+
+        "aced0005737200196469736b4361636865563131312e7574696c2e506e667"
+      + "34964fe7150258b9baecf0200025b00025f617400025b424c00075f646f6d"
+      + "61696e7400124c6a6176612f6c616e672f537472696e673b7870757200025"
+      + "b42acf317f8060854e002000078700000001280d1b8b90ced30430608c580"
+      + "02811b3285fc70"
     };
 
     private static final String ENCODED_TOBINPNFSID_PNFS =
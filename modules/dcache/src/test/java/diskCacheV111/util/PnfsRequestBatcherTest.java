@@ -0,0 +1,130 @@
+package diskCacheV111.util;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import diskCacheV111.vehicles.Message;
+import diskCacheV111.vehicles.PnfsAddCacheLocationMessage;
+import diskCacheV111.vehicles.PnfsMessage;
+
+import org.dcache.cells.CellStub;
+import org.dcache.vehicles.PnfsBatchMessage;
+
+import static org.junit.Assert.*;
+
+public class PnfsRequestBatcherTest
+{
+    private final PnfsId PNFSID = new PnfsId("000000000000000000000000000000000001");
+
+    private final List<Message> _sent = new ArrayList<>();
+    private final List<SettableFuture<Message>> _replies = new ArrayList<>();
+
+    private PnfsRequestBatcher _batcher;
+
+    @Before
+    public void setUp()
+    {
+        _batcher = new PnfsRequestBatcher(new CellStub()
+        {
+            @Override
+            @SuppressWarnings("unchecked")
+            public synchronized <T extends Message> ListenableFuture<T> send(T message)
+            {
+                SettableFuture<Message> reply = SettableFuture.create();
+                _sent.add(message);
+                _replies.add(reply);
+                return (ListenableFuture<T>) reply;
+            }
+        });
+    }
+
+    private PnfsAddCacheLocationMessage request()
+    {
+        return new PnfsAddCacheLocationMessage(PNFSID, "pool");
+    }
+
+    @Test
+    public void testIdleClientSendsRequestsIndividually()
+    {
+        _batcher.send(request());
+        _batcher.send(request());
+
+        assertEquals(2, _sent.size());
+        assertTrue(_sent.get(0) instanceof PnfsAddCacheLocationMessage);
+        assertTrue(_sent.get(1) instanceof PnfsAddCacheLocationMessage);
+    }
+
+    @Test
+    public void testWaitingRequestsAreBatched() throws Exception
+    {
+        List<ListenableFuture<PnfsAddCacheLocationMessage>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(_batcher.send(request()));
+        }
+        assertEquals(8, _sent.size());
+
+        _replies.get(0).set(_sent.get(0));
+
+        assertEquals(9, _sent.size());
+        PnfsBatchMessage batch = (PnfsBatchMessage) _sent.get(8);
+        assertEquals(12, batch.getMessages().size());
+        assertTrue(futures.get(0).isDone());
+
+        batch.getMessages().get(0).setFailed(CacheException.FILE_NOT_FOUND, "not found");
+        _replies.get(8).set(batch);
+
+        try {
+            futures.get(8).get();
+            fail("Failed entry must fail the future");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof FileNotFoundCacheException);
+        }
+        assertNotNull(futures.get(19).get(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRejectedRequestIsResent() throws Exception
+    {
+        ListenableFuture<PnfsAddCacheLocationMessage> future = _batcher.send(request());
+
+        PnfsMessage msg = (PnfsMessage) _sent.get(0);
+        msg.setFailed(CacheException.RESOURCE, "queue full");
+        _replies.get(0).set(msg);
+
+        assertFalse(future.isDone());
+        for (int i = 0; i < 50 && _sent.size() < 2; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(2, _sent.size());
+        assertEquals(0, ((PnfsMessage) _sent.get(1)).getReturnCode());
+
+        _replies.get(1).set(_sent.get(1));
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    public void testRequestFailsWithoutBlockingWhenTooManyAreOutstanding() throws Exception
+    {
+        for (int i = 0; i < PnfsRequestBatcher.MAX_OUTSTANDING; i++) {
+            _batcher.send(request());
+        }
+
+        ListenableFuture<PnfsAddCacheLocationMessage> future = _batcher.send(request());
+        try {
+            future.get(0, TimeUnit.SECONDS);
+            fail("Request exceeding the bound must fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof MissingResourceCacheException);
+        }
+
+        _replies.get(0).set(_sent.get(0));
+        assertFalse(_batcher.send(request()).isDone());
+    }
+}
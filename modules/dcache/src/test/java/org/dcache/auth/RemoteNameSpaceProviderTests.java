@@ -24,6 +24,7 @@ import diskCacheV111.util.FileNotFoundCacheException;
 import diskCacheV111.util.NotFileCacheException;
 import diskCacheV111.util.PnfsHandler;
 import diskCacheV111.util.PnfsId;
+import diskCacheV111.util.ServiceUnavailableException;
 import diskCacheV111.vehicles.GenericStorageInfo;
 import diskCacheV111.vehicles.PnfsAddCacheLocationMessage;
 import diskCacheV111.vehicles.PnfsClearCacheLocationMessage;
@@ -128,6 +129,9 @@ public class RemoteNameSpaceProviderTests
     CellEndpoint _endpoint;
     ListDirectoryHandler _listHandler;
 
+    /** Whether list replies acknowledge the name to start after. */
+    boolean _isStartAfterHonoured = true;
+
     @Before
     public void setup() throws NoSuchMethodException
     {
@@ -517,6 +521,33 @@ public class RemoteNameSpaceProviderTests
         assertThat(file4Attr.getPnfsId(), is(PNFSID_4));
     }
 
+    @Test(timeout=10000)
+    public void shouldSucceedForListFromNameIfNameIsHonoured() throws Exception
+    {
+        givenListResponses(
+            Lists.newArrayList(
+                entry().name("file-2").id(ANOTHER_PNFSID).size(2000).build()));
+
+        ListCapture capture = new ListCapture();
+        _namespace.list(ROOT, "/path/to/dir", null, "file-1", ALL_ENTRIES,
+                EnumSet.of(SIZE), capture);
+
+        assertThat(capture.getNames().keySet(), hasSize(1));
+        assertThat(capture.getNames().keySet(), hasItem("file-2"));
+    }
+
+    @Test(timeout=10000, expected=ServiceUnavailableException.class)
+    public void shouldFailForListFromNameIfNameIsIgnored() throws Exception
+    {
+        _isStartAfterHonoured = false;
+        givenListResponses(
+            Lists.newArrayList(
+                entry().name("file-1").id(A_PNFSID).size(1000).build(),
+                entry().name("file-2").id(ANOTHER_PNFSID).size(2000).build()));
+
+        _namespace.list(ROOT, "/path/to/dir", null, "file-1", ALL_ENTRIES,
+                EnumSet.of(SIZE), new ListCapture());
+    }
 
     @Test
     public void shouldSucceedForPathToPnfsidWithKnownPathAndResolvingSymlinks()
@@ -756,7 +787,8 @@ public class RemoteNameSpaceProviderTests
         for(int i = 0; i < replies.length; i++) {
             Collection<DirectoryEntry> entries = replies [i];
             boolean isLast = i == (replies.length - 1);
-            CellMessage reply = buildListReply(request, entries, isLast, replies.length);
+            CellMessage reply = buildListReply(request, entries, isLast, replies.length,
+                                               _isStartAfterHonoured);
 
             messages.add((PnfsListDirectoryMessage) reply.getMessageObject());
         }
@@ -766,13 +798,15 @@ public class RemoteNameSpaceProviderTests
 
 
     private static CellMessage buildListReply(CellMessage request,
-            final Collection<DirectoryEntry> entries, final boolean isLast, final int cnt)
+            final Collection<DirectoryEntry> entries, final boolean isLast, final int cnt,
+            final boolean isStartAfterHonoured)
     {
         return buildReply(request, new Modifier<PnfsListDirectoryMessage>(){
             @Override
             public void modify(PnfsListDirectoryMessage reply)
             {
                 reply.setEntries(entries);
+                reply.setStartAfterHonoured(isStartAfterHonoured && reply.getStartAfter() != null);
                 if (isLast) {
                     reply.setSucceeded(cnt);
                 }
@@ -12,7 +12,9 @@ import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
@@ -90,6 +92,7 @@ public class HttpPoolRequestHandlerTests
     Map<String,FileInfo> _files;
     List<Object> _additionalWrites;
     HttpResponse _response;
+    ChannelFuture _writeFuture;
 
     @Before
     public void setup()
@@ -99,6 +102,7 @@ public class HttpPoolRequestHandlerTests
         _handler = new HttpPoolRequestHandler(_server, SOME_CHUNK_SIZE);
         _files = Maps.newHashMap();
         _additionalWrites = new ArrayList<>();
+        _writeFuture = mock(ChannelFuture.class);
     }
 
     @Test
@@ -463,6 +467,45 @@ public class HttpPoolRequestHandlerTests
         assertThat(_response, hasHeader(CONTENT_LENGTH));
     }
 
+    @Test
+    public void shouldKeepMoverOpenIfConnectionIsLostDuringGet()
+            throws URISyntaxException
+    {
+        givenPoolHas(file("/path/to/file").withSize(100));
+        givenDoorHasOrganisedReadOf(file("/path/to/file").with(SOME_UUID));
+        whenClientMakes(a(GET)
+                .forUri("/path/to/file?dcache-http-uuid=" + SOME_UUID));
+
+        _handler.channelClosed(_context, mock(ChannelStateEvent.class));
+
+        verify(_server).disconnect(BDDMockito.any(MoverChannel.class));
+        verify(_server, never()).close(BDDMockito.any(MoverChannel.class));
+    }
+
+    @Test
+    public void shouldCloseMoverIfConnectionIsClosedAfterGet()
+            throws Exception
+    {
+        givenPoolHas(file("/path/to/file").withSize(100));
+        givenDoorHasOrganisedReadOf(file("/path/to/file").with(SOME_UUID));
+        whenClientMakes(a(GET)
+                .forUri("/path/to/file?dcache-http-uuid=" + SOME_UUID));
+
+        ArgumentCaptor<ChannelFutureListener> listener =
+                ArgumentCaptor.forClass(ChannelFutureListener.class);
+        verify(_writeFuture, atLeast(1)).addListener(listener.capture());
+        given(_writeFuture.isSuccess()).willReturn(true);
+        given(_writeFuture.getChannel()).willReturn(mock(Channel.class));
+        for (ChannelFutureListener l : listener.getAllValues()) {
+            l.operationComplete(_writeFuture);
+        }
+
+        _handler.channelClosed(_context, mock(ChannelStateEvent.class));
+
+        verify(_server).close(BDDMockito.any(MoverChannel.class));
+        verify(_server, never()).disconnect(BDDMockito.any(MoverChannel.class));
+    }
+
     private void givenPoolHas(FileInfo file)
     {
         _files.put(file.getPath(), file);
@@ -719,10 +762,8 @@ public class HttpPoolRequestHandlerTests
     private MessageEvent buildMockMessageEvent(Channel channel,
             HttpRequest request)
     {
-        ChannelFuture future = mock(ChannelFuture.class);
-
         // TODO: make this more specific
-        given(channel.write(BDDMockito.any(ChunkedInput.class))).willReturn(future);
+        given(channel.write(BDDMockito.any(ChunkedInput.class))).willReturn(_writeFuture);
 
         MessageEvent event = mock(MessageEvent.class);
         given(event.getMessage()).willReturn(request);
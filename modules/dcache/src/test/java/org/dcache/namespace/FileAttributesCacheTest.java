@@ -0,0 +1,246 @@
+package org.dcache.namespace;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.PnfsRenameMessage;
+
+import org.dcache.vehicles.FileAttributes;
+import org.dcache.vehicles.PnfsEntryModifiedMessage;
+import org.dcache.vehicles.PnfsSetFileAttributes;
+
+import static org.dcache.namespace.FileAttribute.*;
+import static org.junit.Assert.*;
+
+public class FileAttributesCacheTest
+{
+    private static final PnfsId PNFSID = new PnfsId("000000000000000000000000000000000001");
+    private static final PnfsId DIRECTORY = new PnfsId("000000000000000000000000000000000002");
+    private static final PnfsId OTHER = new PnfsId("000000000000000000000000000000000003");
+    private static final String PATH = "/data/dir/file";
+
+    private FileAttributesCache _cache;
+    private CountingLoader _loader;
+
+    private static class CountingLoader implements FileAttributesCache.Loader
+    {
+        int calls;
+        long size = 1;
+        PnfsId pnfsId = PNFSID;
+        FileType type;
+
+        @Override
+        public FileAttributes load(Set<FileAttribute> attributes) throws CacheException
+        {
+            calls++;
+            FileAttributes fileAttributes = new FileAttributes();
+            fileAttributes.setPnfsId(pnfsId);
+            fileAttributes.setSize(size);
+            if (type != null) {
+                fileAttributes.setFileType(type);
+            }
+            return fileAttributes;
+        }
+    }
+
+    @Before
+    public void setUp()
+    {
+        _cache = new FileAttributesCache();
+        _cache.setMaximumSize(100);
+        _cache.setTtl(1);
+        _cache.setTtlUnit(TimeUnit.MINUTES);
+        _cache.setAttributeTtls("LOCATIONS=0");
+        _cache.init();
+        _loader = new CountingLoader();
+    }
+
+    @Test
+    public void testRepeatedLookupIsServedFromCache() throws Exception
+    {
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+        FileAttributes attributes = _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+
+        assertEquals(1, _loader.calls);
+        assertEquals(1, attributes.getSize());
+    }
+
+    @Test
+    public void testHitReturnsPrivateCopy() throws Exception
+    {
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader).setSize(42);
+
+        assertEquals(1, _cache.get(null, PATH, EnumSet.of(SIZE), _loader).getSize());
+    }
+
+    @Test
+    public void testMissingAttributeIsFetched() throws Exception
+    {
+        _cache.get(null, PNFSID, EnumSet.of(SIZE), _loader);
+        _cache.get(null, PNFSID, EnumSet.of(SIZE, MODE), _loader);
+
+        assertEquals(2, _loader.calls);
+    }
+
+    @Test
+    public void testAttributeWithZeroTtlIsNotCached() throws Exception
+    {
+        _cache.get(null, PNFSID, EnumSet.of(LOCATIONS), _loader);
+        _cache.get(null, PNFSID, EnumSet.of(LOCATIONS), _loader);
+
+        assertEquals(2, _loader.calls);
+    }
+
+    @Test
+    public void testNotificationInvalidatesPathEntries() throws Exception
+    {
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+        _cache.messageArrived(new PnfsEntryModifiedMessage(PNFSID, null));
+        _loader.size = 2;
+
+        assertEquals(2, _cache.get(null, PATH, EnumSet.of(SIZE), _loader).getSize());
+        assertEquals(2, _loader.calls);
+    }
+
+    @Test
+    public void testRenameInvalidatesEntriesBelowPath() throws Exception
+    {
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+        _cache.messageArrived(new PnfsEntryModifiedMessage(
+                new PnfsId("000000000000000000000000000000000002"), "/data/dir", "/data/other"));
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+
+        assertEquals(2, _loader.calls);
+    }
+
+    @Test
+    public void testOwnModificationInvalidatesEntries() throws Exception
+    {
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+        _cache.invalidate(new PnfsRenameMessage(PATH, "/data/dir/renamed", false));
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+
+        assertEquals(2, _loader.calls);
+    }
+
+    @Test
+    public void testAttributesFetchedDuringInvalidationAreNotCached() throws Exception
+    {
+        FileAttributesCache.Loader loader = new FileAttributesCache.Loader()
+        {
+            @Override
+            public FileAttributes load(Set<FileAttribute> attributes) throws CacheException
+            {
+                FileAttributes fileAttributes = _loader.load(attributes);
+                _cache.invalidate(PNFSID);
+                return fileAttributes;
+            }
+        };
+        _cache.get(null, PATH, EnumSet.of(SIZE), loader);
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+
+        assertEquals(2, _loader.calls);
+    }
+
+    @Test
+    public void testInvalidationOfOtherEntryDuringFetchDoesNotPreventCaching() throws Exception
+    {
+        FileAttributesCache.Loader loader = new FileAttributesCache.Loader()
+        {
+            @Override
+            public FileAttributes load(Set<FileAttribute> attributes) throws CacheException
+            {
+                FileAttributes fileAttributes = _loader.load(attributes);
+                _cache.invalidate(OTHER);
+                _cache.invalidate("/data/other", true);
+                return fileAttributes;
+            }
+        };
+        _cache.get(null, PATH, EnumSet.of(SIZE), loader);
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+
+        assertEquals(1, _loader.calls);
+    }
+
+    @Test
+    public void testInvalidationOfAncestorDuringFetchPreventsCaching() throws Exception
+    {
+        FileAttributesCache.Loader loader = new FileAttributesCache.Loader()
+        {
+            @Override
+            public FileAttributes load(Set<FileAttribute> attributes) throws CacheException
+            {
+                FileAttributes fileAttributes = _loader.load(attributes);
+                _cache.invalidate("/data", true);
+                return fileAttributes;
+            }
+        };
+        _cache.get(null, PATH, EnumSet.of(SIZE), loader);
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+
+        assertEquals(2, _loader.calls);
+    }
+
+    @Test
+    public void testTreeInvalidationKeepsSiblingWithCommonPrefix() throws Exception
+    {
+        _cache.get(null, "/data/directory", EnumSet.of(SIZE), _loader);
+        _cache.invalidate("/data/dir", true);
+        _cache.get(null, "/data/directory", EnumSet.of(SIZE), _loader);
+
+        assertEquals(1, _loader.calls);
+    }
+
+    @Test
+    public void testPermissionChangeOfDirectoryInvalidatesEntriesBelow() throws Exception
+    {
+        _loader.type = FileType.REGULAR;
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+        _cache.get(null, PNFSID, EnumSet.of(SIZE), _loader);
+
+        PnfsEntryModifiedMessage message = new PnfsEntryModifiedMessage(DIRECTORY, "/data/dir");
+        message.setPermissionChange(true);
+        _cache.messageArrived(message);
+
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+        _cache.get(null, PNFSID, EnumSet.of(SIZE), _loader);
+        assertEquals(4, _loader.calls);
+    }
+
+    @Test
+    public void testPermissionChangeOfUnknownPathInvalidatesPathEntries() throws Exception
+    {
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+
+        PnfsEntryModifiedMessage message = new PnfsEntryModifiedMessage(DIRECTORY, null);
+        message.setPermissionChange(true);
+        _cache.messageArrived(message);
+
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+        assertEquals(2, _loader.calls);
+    }
+
+    @Test
+    public void testPermissionChangeOfFileKeepsOtherEntries() throws Exception
+    {
+        _loader.type = FileType.REGULAR;
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+        _loader.pnfsId = OTHER;
+        _cache.get(null, OTHER, EnumSet.of(SIZE), _loader);
+
+        FileAttributes attributes = new FileAttributes();
+        attributes.setMode(0600);
+        _cache.invalidate(new PnfsSetFileAttributes(OTHER, attributes));
+
+        _cache.get(null, PATH, EnumSet.of(SIZE), _loader);
+        _cache.get(null, OTHER, EnumSet.of(SIZE), _loader);
+        assertEquals(3, _loader.calls);
+    }
+}
@@ -0,0 +1,65 @@
+package org.dcache.pool.classic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import diskCacheV111.util.PnfsId;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class CheckedPrefixTest
+{
+    private PnfsId[] files;
+    private CheckedPrefix checked;
+
+    @Before
+    public void setUp()
+    {
+        files = new PnfsId[] {
+            new PnfsId("000000000000000000000000000000000001"),
+            new PnfsId("000000000000000000000000000000000002"),
+            new PnfsId("000000000000000000000000000000000003"),
+            new PnfsId("000000000000000000000000000000000004")
+        };
+        checked = new CheckedPrefix(files);
+    }
+
+    @Test
+    public void shouldHaveNoLastFileInitially()
+    {
+        assertThat(checked.getLast(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotAdvanceBeyondUncheckedFile()
+    {
+        checked.checked(1);
+        checked.checked(2);
+        assertThat(checked.getLast(), is(nullValue()));
+
+        checked.checked(0);
+        assertThat(checked.getLast(), is(files[2]));
+    }
+
+    @Test
+    public void shouldAdvanceInOrder()
+    {
+        checked.checked(0);
+        assertThat(checked.getLast(), is(files[0]));
+        checked.checked(1);
+        assertThat(checked.getLast(), is(files[1]));
+    }
+
+    @Test
+    public void shouldReachLastFile()
+    {
+        checked.checked(3);
+        checked.checked(1);
+        checked.checked(0);
+        assertThat(checked.getLast(), is(files[1]));
+
+        checked.checked(2);
+        assertThat(checked.getLast(), is(files[3]));
+    }
+}
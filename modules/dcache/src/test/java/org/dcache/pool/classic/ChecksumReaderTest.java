@@ -0,0 +1,70 @@
+package org.dcache.pool.classic;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import diskCacheV111.util.ChecksumFactory;
+
+import org.dcache.util.ChecksumType;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ChecksumReaderTest
+{
+    private File file;
+    private ChecksumFactory factory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        file = File.createTempFile("checksum-reader", ".data");
+        factory = ChecksumFactory.getFactory(ChecksumType.ADLER32);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private void write(int size)
+            throws IOException
+    {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        Files.write(file.toPath(), data);
+    }
+
+    @Test
+    public void shouldComputeChecksumOfFileLargerThanBuffers() throws Exception
+    {
+        write(10500);
+        ChecksumReader reader = new ChecksumReader(0, 1000, null);
+        assertThat(reader.computeChecksum(file, factory), is(factory.computeChecksum(file)));
+    }
+
+    @Test
+    public void shouldComputeChecksumOfEmptyFile() throws Exception
+    {
+        write(0);
+        ChecksumReader reader = new ChecksumReader(0, 1000, null);
+        assertThat(reader.computeChecksum(file, factory), is(factory.computeChecksum(file)));
+    }
+
+    @Test
+    public void shouldReuseBuffersForSeveralFiles() throws Exception
+    {
+        ChecksumReader reader = new ChecksumReader(0, 1000, null);
+        write(2500);
+        assertThat(reader.computeChecksum(file, factory), is(factory.computeChecksum(file)));
+        write(999);
+        assertThat(reader.computeChecksum(file, factory), is(factory.computeChecksum(file)));
+    }
+}
@@ -0,0 +1,104 @@
+package org.dcache.pool.classic;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ChecksumThrottleTest
+{
+    private ChecksumModuleV1 csm;
+    private IoQueueManager ioQueueManager;
+    private ChecksumThrottle throttle;
+
+    @Before
+    public void setUp()
+    {
+        csm = mock(ChecksumModuleV1.class);
+        ioQueueManager = mock(IoQueueManager.class);
+        throttle = new ChecksumThrottle(csm, ioQueueManager);
+    }
+
+    private static long elapsedMillis(long start)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    public void shouldNotWaitWithoutLimit() throws Exception
+    {
+        when(csm.getThroughputLimit()).thenReturn(Double.POSITIVE_INFINITY);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            throttle.acquire(i % 4, 1L << 30);
+        }
+        assertThat(elapsedMillis(start), is(lessThan(500L)));
+    }
+
+    @Test
+    public void shouldChargeRequestCost() throws Exception
+    {
+        when(csm.getThroughputLimit()).thenReturn(1000000.0);
+
+        /* The first read overdraws the empty bucket by half a second
+         * worth of tokens, including the cost of the request.
+         */
+        long start = System.nanoTime();
+        throttle.acquire(0, 500000 - ChecksumThrottle.REQUEST_COST);
+        assertThat(elapsedMillis(start), is(lessThan(100L)));
+
+        throttle.acquire(0, 0);
+        assertThat(elapsedMillis(start), is(greaterThanOrEqualTo(450L)));
+    }
+
+    @Test
+    public void shouldOnlyLetFirstWorkerReadWhileMoversAreActive() throws Exception
+    {
+        final AtomicInteger movers = new AtomicInteger(1);
+        when(csm.getThroughputLimit()).thenReturn(Double.POSITIVE_INFINITY);
+        when(ioQueueManager.getActiveJobs()).thenAnswer(new Answer<Integer>()
+        {
+            @Override
+            public Integer answer(InvocationOnMock invocation)
+            {
+                return movers.get();
+            }
+        });
+
+        throttle.acquire(0, 1000);
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread worker = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    throttle.acquire(1, 1000);
+                    acquired.countDown();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        };
+        worker.start();
+        try {
+            assertThat(acquired.await(200, TimeUnit.MILLISECONDS), is(false));
+
+            movers.set(0);
+            assertThat(acquired.await(5, TimeUnit.SECONDS), is(true));
+        } finally {
+            worker.interrupt();
+            worker.join();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.dcache.pool.movers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.channels.ClosedSelectorException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MoverEventLoopTest
+{
+    private MoverEventLoop eventLoop;
+
+    @Before
+    public void setUp()
+    {
+        eventLoop = new MoverEventLoop();
+        eventLoop.setThreads(1);
+        eventLoop.setDiskThreads(1);
+    }
+
+    @After
+    public void tearDown()
+    {
+        eventLoop.shutdown();
+    }
+
+    private String info()
+    {
+        StringWriter out = new StringWriter();
+        eventLoop.getInfo(new PrintWriter(out));
+        return out.toString();
+    }
+
+    @Test
+    public void shouldNotStartUntilUsed() throws Exception
+    {
+        assertThat(info(), containsString("not started"));
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        eventLoop.next().execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ran.countDown();
+            }
+        });
+
+        assertThat(ran.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(info(), containsString("Event loops : 1"));
+    }
+
+    @Test
+    public void shouldCloseSelectorOnShutdown() throws Exception
+    {
+        SelectorLoop loop = eventLoop.next();
+        ExecutorService diskExecutor = eventLoop.getDiskExecutor();
+        eventLoop.shutdown();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                loop.getChannelCount();
+            } catch (ClosedSelectorException e) {
+                assertThat(diskExecutor.isShutdown(), is(true));
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("Selector was not closed");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotStartAfterShutdown() throws Exception
+    {
+        eventLoop.shutdown();
+        eventLoop.next();
+    }
+}
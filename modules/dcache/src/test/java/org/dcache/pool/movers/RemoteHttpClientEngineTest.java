@@ -0,0 +1,148 @@
+package org.dcache.pool.movers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class RemoteHttpClientEngineTest
+{
+    private HttpServer server;
+    private RemoteHttpClientEngine engine;
+
+    /** Remote port of the connection of the last request. */
+    private volatile int lastPort;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                lastPort = exchange.getRemoteAddress().getPort();
+                byte[] body = "hello".getBytes();
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+
+        engine = new RemoteHttpClientEngine();
+        engine.setKeepAlive(0);
+        engine.init();
+    }
+
+    @After
+    public void tearDown()
+    {
+        engine.shutdown();
+        server.stop(0);
+    }
+
+    private int get(RemoteHttpClientEngine.Lease lease) throws Exception
+    {
+        HttpGet get = new HttpGet("http://localhost:" + server.getAddress().getPort() + "/file");
+        HttpResponse response =
+                lease.getClient().execute(get, lease.createContext(), null).get(10, TimeUnit.SECONDS);
+        assertThat(EntityUtils.toString(response.getEntity()), is("hello"));
+        return lastPort;
+    }
+
+    @Test
+    public void shouldReuseConnectionOfSameCredential() throws Exception
+    {
+        engine.setKeepAlive(60000);
+        int port;
+        try (RemoteHttpClientEngine.Lease lease = engine.lease("alice", null)) {
+            port = get(lease);
+            assertThat(get(lease), is(port));
+        }
+        try (RemoteHttpClientEngine.Lease lease = engine.lease("alice", null)) {
+            assertThat(get(lease), is(port));
+        }
+    }
+
+    @Test
+    public void shouldNotShareConnectionsBetweenCredentials() throws Exception
+    {
+        engine.setKeepAlive(60000);
+        try (RemoteHttpClientEngine.Lease alice = engine.lease("alice", null);
+             RemoteHttpClientEngine.Lease bob = engine.lease("bob", null);
+             RemoteHttpClientEngine.Lease anonymous = engine.lease()) {
+            int port = get(alice);
+            assertThat(get(bob), is(not(port)));
+            assertThat(get(anonymous), is(not(port)));
+            assertThat(get(alice), is(port));
+        }
+    }
+
+    @Test
+    public void shouldCreateSslContextOncePerCredential() throws Exception
+    {
+        CountingSslContextFactory factory = new CountingSslContextFactory();
+
+        RemoteHttpClientEngine.Lease first = engine.lease("alice", factory);
+        RemoteHttpClientEngine.Lease second = engine.lease("alice", factory);
+        engine.lease("bob", factory).close();
+
+        assertThat(factory.count.get(), is(2));
+        assertThat(engine.getCredentialCount(), is(2));
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void shouldDropCredentialOnceIdle() throws Exception
+    {
+        CountingSslContextFactory factory = new CountingSslContextFactory();
+
+        RemoteHttpClientEngine.Lease lease = engine.lease("alice", factory);
+        Thread.sleep(10);
+        engine.closeIdle();
+        assertThat(engine.getCredentialCount(), is(1));
+
+        lease.close();
+        lease.close();
+        Thread.sleep(10);
+        engine.closeIdle();
+        assertThat(engine.getCredentialCount(), is(0));
+
+        engine.lease("alice", factory).close();
+        assertThat(factory.count.get(), is(2));
+    }
+
+    private static class CountingSslContextFactory implements Callable<SSLContext>
+    {
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public SSLContext call() throws Exception
+        {
+            count.incrementAndGet();
+            return SSLContext.getDefault();
+        }
+    }
+}
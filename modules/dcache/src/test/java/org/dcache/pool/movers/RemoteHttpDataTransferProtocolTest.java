@@ -0,0 +1,211 @@
+package org.dcache.pool.movers;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import diskCacheV111.util.ThirdPartyTransferFailedCacheException;
+import diskCacheV111.vehicles.RemoteHttpDataTransferProtocolInfo;
+
+import org.dcache.pool.repository.Allocator;
+import org.dcache.pool.repository.FileRepositoryChannel;
+import org.dcache.pool.repository.RepositoryChannel;
+import org.dcache.vehicles.FileAttributes;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class RemoteHttpDataTransferProtocolTest
+{
+    private HttpServer server;
+    private RemoteHttpClientEngine engine;
+    private File file;
+    private byte[] data;
+
+    private volatile byte[] uploaded;
+    private volatile int headStatus = 200;
+    private volatile boolean isDeleted;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        data = new byte[1000000];
+        new Random(42).nextBytes(data);
+        file = File.createTempFile("http-tpc", ".data");
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/file", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                switch (exchange.getRequestMethod()) {
+                case "GET":
+                    exchange.sendResponseHeaders(200, data.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(data);
+                    }
+                    break;
+                case "PUT":
+                    try (InputStream in = exchange.getRequestBody()) {
+                        uploaded = ByteStreams.toByteArray(in);
+                    }
+                    exchange.sendResponseHeaders(201, -1);
+                    break;
+                case "HEAD":
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(uploaded.length));
+                    exchange.sendResponseHeaders(headStatus, -1);
+                    break;
+                case "DELETE":
+                    isDeleted = true;
+                    exchange.sendResponseHeaders(204, -1);
+                    break;
+                default:
+                    exchange.sendResponseHeaders(405, -1);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+
+        engine = new RemoteHttpClientEngine();
+        engine.init();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        engine.shutdown();
+        server.stop(0);
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private RemoteHttpDataTransferProtocol_1 createMover()
+    {
+        RemoteHttpDataTransferProtocol_1 mover = new RemoteHttpDataTransferProtocol_1(null);
+        mover.setClientEngine(engine);
+        return mover;
+    }
+
+    private RemoteHttpDataTransferProtocolInfo info(String path)
+    {
+        return new RemoteHttpDataTransferProtocolInfo("RemoteHttpDataTransfer", 1, 1,
+                new InetSocketAddress("localhost", server.getAddress().getPort()), 0,
+                "http://localhost:" + server.getAddress().getPort() + path,
+                false, ImmutableMap.<String,String>of());
+    }
+
+    private static FileAttributes attributes(long size)
+    {
+        FileAttributes attributes = new FileAttributes();
+        attributes.setSize(size);
+        return attributes;
+    }
+
+    @Test
+    public void shouldReceiveFile() throws Exception
+    {
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, "rw")) {
+            createMover().runIO(attributes(data.length), channel, info("/file"),
+                    mock(Allocator.class), IoMode.WRITE);
+        }
+
+        assertThat(Files.readAllBytes(file.toPath()), is(data));
+    }
+
+    @Test
+    public void shouldFailWhenGetIsRejected() throws Exception
+    {
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, "rw")) {
+            createMover().runIO(attributes(data.length), channel, info("/missing"),
+                    mock(Allocator.class), IoMode.WRITE);
+            fail("Transfer of missing file must fail");
+        } catch (ThirdPartyTransferFailedCacheException e) {
+            assertThat(e.getMessage(), containsString("rejected GET: 404"));
+        }
+    }
+
+    @Test
+    public void shouldSendAndVerifyFile() throws Exception
+    {
+        Files.write(file.toPath(), data);
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, "r")) {
+            createMover().runIO(attributes(data.length), channel, info("/file"),
+                    null, IoMode.READ);
+        }
+
+        assertThat(uploaded, is(data));
+        assertThat(isDeleted, is(false));
+    }
+
+    @Test
+    public void shouldDeleteRemoteFileIfVerificationFails() throws Exception
+    {
+        headStatus = 500;
+        Files.write(file.toPath(), data);
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, "r")) {
+            createMover().runIO(attributes(data.length), channel, info("/file"),
+                    null, IoMode.READ);
+            fail("Transfer with failed verification must fail");
+        } catch (ThirdPartyTransferFailedCacheException e) {
+            assertThat(e.getMessage(), startsWith("verification failed: remote server rejected HEAD: 500"));
+        }
+
+        assertThat(isDeleted, is(true));
+    }
+
+    @Test
+    public void shouldReceiveFileWithoutBlockingCaller() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, "rw")) {
+            final CountDownLatch done = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            createMover().start(attributes(data.length), channel, info("/file"),
+                    mock(Allocator.class), IoMode.WRITE, null, executor, executor,
+                    new CompletionHandler<Void,Void>()
+                    {
+                        @Override
+                        public void completed(Void result, Void attachment)
+                        {
+                            done.countDown();
+                        }
+
+                        @Override
+                        public void failed(Throwable t, Void attachment)
+                        {
+                            failure.set(t);
+                            done.countDown();
+                        }
+                    });
+
+            assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+            assertThat(failure.get(), is(nullValue()));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(Files.readAllBytes(file.toPath()), is(data));
+    }
+}
@@ -0,0 +1,180 @@
+package org.dcache.pool.p2p;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ParallelHttpTransferTest
+{
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final long TIMEOUT = 10000;
+
+    private HttpServer server;
+    private File file;
+    private byte[] data;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /** Number of bytes of each truncated response to withhold. */
+    private volatile int truncate;
+
+    /** Number of responses still to truncate. */
+    private final AtomicInteger truncated = new AtomicInteger(Integer.MAX_VALUE);
+
+    @Before
+    public void setUp() throws IOException
+    {
+        data = new byte[1000000];
+        new Random(42).nextBytes(data);
+        file = File.createTempFile("p2p", ".data");
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/file", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                requests.incrementAndGet();
+                int start = 0;
+                int end = data.length - 1;
+                int status = 200;
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                if (range != null) {
+                    Matcher matcher = RANGE.matcher(range);
+                    if (!matcher.matches()) {
+                        exchange.sendResponseHeaders(400, -1);
+                        exchange.close();
+                        return;
+                    }
+                    start = Integer.parseInt(matcher.group(1));
+                    end = Integer.parseInt(matcher.group(2));
+                    status = 206;
+                }
+                int length = end - start + 1;
+                int withheld = (truncated.getAndDecrement() > 0) ? truncate : 0;
+                exchange.sendResponseHeaders(status, length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(data, start, length - withheld);
+                } catch (IOException e) {
+                    /* Expected when truncating the response. */
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        server.stop(0);
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private URI uri()
+    {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/file?uuid=1");
+    }
+
+    private ParallelHttpTransfer transfer(RandomAccessFile out, int streams,
+                                          MessageDigest digest, long minRangeSize)
+    {
+        return new ParallelHttpTransfer(uri(), out.getChannel(), data.length, streams,
+                                        digest, TIMEOUT, TIMEOUT, minRangeSize);
+    }
+
+    @Test
+    public void shouldSplitFileIntoRanges() throws Exception
+    {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            ParallelHttpTransfer transfer = transfer(out, 4, digest, 100000);
+
+            assertThat(transfer.getStreamCount(), is(4));
+            assertThat(transfer.transfer(), is((long) data.length));
+        }
+
+        assertThat(requests.get(), is(4));
+        assertThat(Files.readAllBytes(file.toPath()), is(data));
+        assertThat(digest.digest(), is(MessageDigest.getInstance("MD5").digest(data)));
+    }
+
+    @Test
+    public void shouldNotSplitBelowMinimumRangeSize() throws Exception
+    {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            ParallelHttpTransfer transfer = transfer(out, 4, null, 400000);
+
+            assertThat(transfer.getStreamCount(), is(3));
+            transfer.transfer();
+        }
+
+        assertThat(Files.readAllBytes(file.toPath()), is(data));
+    }
+
+    @Test
+    public void shouldUseSingleStreamForSmallFiles() throws Exception
+    {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            ParallelHttpTransfer transfer =
+                    new ParallelHttpTransfer(uri(), out.getChannel(), data.length, 4,
+                                             null, TIMEOUT, TIMEOUT);
+
+            assertThat(transfer.getStreamCount(), is(1));
+            transfer.transfer();
+        }
+
+        assertThat(Files.readAllBytes(file.toPath()), is(data));
+    }
+
+    @Test
+    public void shouldResumeRangeAfterShortRead() throws Exception
+    {
+        truncate = 1000;
+        truncated.set(2);
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            new ParallelHttpTransfer(uri(), out.getChannel(), data.length, 2,
+                                     digest, TIMEOUT, 500, 100000).transfer();
+        }
+
+        assertThat(requests.get(), is(4));
+        assertThat(Files.readAllBytes(file.toPath()), is(data));
+        assertThat(digest.digest(), is(MessageDigest.getInstance("MD5").digest(data)));
+    }
+
+    @Test
+    public void shouldFailOnRepeatedShortReads() throws Exception
+    {
+        truncate = 1000;
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            new ParallelHttpTransfer(uri(), out.getChannel(), data.length, 2,
+                                     null, TIMEOUT, 500, 100000).transfer();
+            fail("Transfer with short reads must fail");
+        } catch (IOException e) {
+            /* Expected once the first range has failed three times. */
+        }
+        assertThat(requests.get(), is(greaterThan(2)));
+        assertThat(requests.get(), is(lessThanOrEqualTo(6)));
+    }
+}
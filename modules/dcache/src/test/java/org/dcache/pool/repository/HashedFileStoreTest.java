@@ -0,0 +1,89 @@
+package org.dcache.pool.repository;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import diskCacheV111.util.PnfsId;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HashedFileStoreTest
+{
+    private final static PnfsId PNFSID =
+        new PnfsId("0000A3F1B2C3D4E5F60718293A4B5C6DC2D9");
+    private final static PnfsId PNFSID2 =
+        new PnfsId("000000000000000000000000000000000001");
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private File _dataDir;
+
+    @Before
+    public void setUp()
+    {
+        _dataDir = new File(_folder.getRoot(), "data");
+    }
+
+    @Test
+    public void shouldStoreFileInHashedDirectory() throws IOException
+    {
+        HashedFileStore store = new HashedFileStore(_folder.getRoot());
+
+        File file = store.get(PNFSID);
+
+        assertThat(file, is(new File(new File(new File(_dataDir, "D9"), "C2"), PNFSID.toString())));
+        assertThat(file.getParentFile().isDirectory(), is(true));
+    }
+
+    @Test
+    public void shouldCreateDirectoriesOnFirstUse() throws IOException
+    {
+        File dir = new File(_dataDir, "D9");
+        dir.mkdirs();
+        new File(dir, "00").mkdir();
+
+        HashedFileStore store = new HashedFileStore(_folder.getRoot());
+
+        assertThat(new File(dir, "C2").exists(), is(false));
+        assertThat(new File(_dataDir, "00").exists(), is(false));
+        assertThat(store.list(), is(empty()));
+
+        store.get(PNFSID).createNewFile();
+
+        assertThat(new File(dir, "C2").isDirectory(), is(true));
+        assertThat(store.list(), contains(PNFSID));
+    }
+
+    @Test
+    public void shouldListFilesInAllDirectories() throws IOException
+    {
+        HashedFileStore store = new HashedFileStore(_folder.getRoot());
+        store.get(PNFSID).createNewFile();
+        store.get(PNFSID2).createNewFile();
+
+        assertThat(store.list(), containsInAnyOrder(PNFSID, PNFSID2));
+    }
+
+    @Test
+    public void shouldFindAndMigrateFilesOfFlatLayout() throws IOException
+    {
+        new FlatFileStore(_folder.getRoot()).get(PNFSID).createNewFile();
+
+        HashedFileStore store = new HashedFileStore(_folder.getRoot());
+        assertThat(store.get(PNFSID), is(new File(_dataDir, PNFSID.toString())));
+        assertThat(store.list(), contains(PNFSID));
+
+        assertThat(store.migrate(), is(1L));
+
+        assertThat(new File(_dataDir, PNFSID.toString()).exists(), is(false));
+        assertThat(store.get(PNFSID).exists(), is(true));
+        assertThat(store.list(), contains(PNFSID));
+    }
+}
@@ -0,0 +1,183 @@
+package org.dcache.services.httpd;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import diskCacheV111.vehicles.IoJobInfo;
+import diskCacheV111.vehicles.PoolMoverEventMessage;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ActiveMoverTableTest
+{
+    private static final long MAX_AGE = 60000;
+
+    private ActiveMoverTable _table;
+
+    @Before
+    public void setUp()
+    {
+        _table = new ActiveMoverTable();
+    }
+
+    private static IoJobInfo mover(int jobId, String client, long clientId)
+    {
+        IoJobInfo info = mock(IoJobInfo.class);
+        when(info.getJobId()).thenReturn((long) jobId);
+        when(info.getClientName()).thenReturn(client);
+        when(info.getClientId()).thenReturn(clientId);
+        return info;
+    }
+
+    private static PoolMoverEventMessage updated(String pool, long sequence, IoJobInfo info)
+    {
+        return new PoolMoverEventMessage(pool, 1, sequence, info, false);
+    }
+
+    private static PoolMoverEventMessage removed(String pool, long sequence, IoJobInfo info)
+    {
+        return new PoolMoverEventMessage(pool, 1, sequence, info, true);
+    }
+
+    @Test
+    public void testUnknownPoolNeedsSynchronisation()
+    {
+        assertTrue(_table.needsSynchronisation("pool1", MAX_AGE));
+    }
+
+    @Test
+    public void testSynchronisedPoolIsInSync()
+    {
+        _table.synchronise("pool1", new IoJobInfo[] { mover(1, "door@dom", 7) });
+
+        assertFalse(_table.needsSynchronisation("pool1", MAX_AGE));
+        assertNotNull(_table.getMover("door@dom", 7));
+    }
+
+    @Test
+    public void testEventsUpdateTable()
+    {
+        IoJobInfo info = mover(1, "door@dom", 7);
+        _table.synchronise("pool1", new IoJobInfo[0]);
+
+        _table.messageArrived(updated("pool1", 1, info));
+        assertSame(info, _table.getMover("door@dom", 7));
+
+        _table.messageArrived(removed("pool1", 2, info));
+        assertNull(_table.getMover("door@dom", 7));
+    }
+
+    @Test
+    public void testGapRequiresSynchronisation()
+    {
+        _table.messageArrived(updated("pool1", 1, mover(1, "door@dom", 7)));
+        _table.synchronise("pool1", new IoJobInfo[0]);
+        _table.messageArrived(updated("pool1", 2, mover(2, "door@dom", 8)));
+        assertFalse(_table.needsSynchronisation("pool1", MAX_AGE));
+
+        _table.messageArrived(updated("pool1", 4, mover(3, "door@dom", 9)));
+        assertTrue(_table.needsSynchronisation("pool1", MAX_AGE));
+    }
+
+    @Test
+    public void testRestartRequiresSynchronisation()
+    {
+        _table.messageArrived(updated("pool1", 1, mover(1, "door@dom", 7)));
+        _table.synchronise("pool1", new IoJobInfo[0]);
+
+        _table.messageArrived(new PoolMoverEventMessage("pool1", 2, 1, mover(2, "door@dom", 8), false));
+        assertTrue(_table.needsSynchronisation("pool1", MAX_AGE));
+    }
+
+    @Test
+    public void testDuplicateEventsAreIgnored()
+    {
+        IoJobInfo info = mover(1, "door@dom", 7);
+        _table.messageArrived(updated("pool1", 1, info));
+        _table.messageArrived(removed("pool1", 2, info));
+        _table.messageArrived(updated("pool1", 1, info));
+
+        assertNull(_table.getMover("door@dom", 7));
+    }
+
+    @Test
+    public void testEventsDuringSynchronisationAreReplayed()
+    {
+        IoJobInfo finished = mover(1, "door@dom", 7);
+        IoJobInfo started = mover(2, "door@dom", 8);
+        _table.messageArrived(updated("pool1", 1, finished));
+        _table.synchronise("pool1", new IoJobInfo[0]);
+
+        /* The listing was taken before the mover finished, but the
+         * removal arrives before the listing.
+         */
+        _table.beginSynchronisation("pool1");
+        _table.messageArrived(removed("pool1", 3, finished));
+        _table.messageArrived(updated("pool1", 4, started));
+        _table.synchronise("pool1", new IoJobInfo[] { finished });
+
+        assertNull(_table.getMover("door@dom", 7));
+        assertSame(started, _table.getMover("door@dom", 8));
+        assertFalse(_table.needsSynchronisation("pool1", MAX_AGE));
+    }
+
+    @Test
+    public void testGapBetweenBufferedEventsRequiresSynchronisation()
+    {
+        _table.synchronise("pool1", new IoJobInfo[0]);
+
+        _table.beginSynchronisation("pool1");
+        _table.messageArrived(updated("pool1", 1, mover(1, "door@dom", 7)));
+        _table.messageArrived(updated("pool1", 3, mover(2, "door@dom", 8)));
+        _table.synchronise("pool1", new IoJobInfo[0]);
+
+        assertTrue(_table.needsSynchronisation("pool1", MAX_AGE));
+    }
+
+    @Test
+    public void testFailedSynchronisationReplaysEvents()
+    {
+        IoJobInfo info = mover(2, "door@dom", 8);
+        _table.messageArrived(updated("pool1", 1, mover(1, "door@dom", 7)));
+        _table.synchronise("pool1", new IoJobInfo[0]);
+
+        _table.beginSynchronisation("pool1");
+        _table.messageArrived(updated("pool1", 2, info));
+        assertNull(_table.getMover("door@dom", 8));
+        assertTrue(_table.needsSynchronisation("pool1", MAX_AGE));
+
+        _table.abortSynchronisation("pool1");
+        assertSame(info, _table.getMover("door@dom", 8));
+        assertFalse(_table.needsSynchronisation("pool1", MAX_AGE));
+    }
+
+    @Test
+    public void testInactivePoolsAreRemoved() throws Exception
+    {
+        _table.synchronise("pool1", new IoJobInfo[] { mover(1, "door@dom", 7) });
+        Thread.sleep(20);
+        _table.synchronise("pool2", new IoJobInfo[] { mover(1, "door@dom", 8) });
+
+        _table.removeInactivePools(10);
+
+        assertNull(_table.getMover("door@dom", 7));
+        assertTrue(_table.needsSynchronisation("pool1", MAX_AGE));
+        assertNotNull(_table.getMover("door@dom", 8));
+        assertFalse(_table.needsSynchronisation("pool2", MAX_AGE));
+    }
+
+    @Test
+    public void testSynchronisationReplacesMoversOfPool()
+    {
+        _table.synchronise("pool1", new IoJobInfo[] { mover(1, "door@dom", 7) });
+        _table.synchronise("pool2", new IoJobInfo[] { mover(1, "door@dom", 8) });
+
+        _table.synchronise("pool1", new IoJobInfo[] { mover(2, "door@dom", 9) });
+
+        assertNull(_table.getMover("door@dom", 7));
+        assertNotNull(_table.getMover("door@dom", 8));
+        assertNotNull(_table.getMover("door@dom", 9));
+    }
+}
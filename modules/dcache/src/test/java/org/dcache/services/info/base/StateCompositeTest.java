@@ -6,7 +6,10 @@ package org.dcache.services.info.base;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.dcache.services.info.base.guides.SubtreeStateGuide;
@@ -1727,6 +1730,100 @@ public class StateCompositeTest extends InfoBaseTestHelper {
     }
 
 
+    @Test
+    public void testCachingVisitorReusesFragments() {
+        FragmentRecordingVisitor visitor = new FragmentRecordingVisitor();
+
+        _rootComposite.acceptVisitor( null, visitor);
+        assertTrue( "fragment reused on first visit", visitor.reused.isEmpty());
+        assertEquals( "fragments captured on first visit", 4, visitor.captured.size());
+
+        visitor = new FragmentRecordingVisitor();
+        _rootComposite.acceptVisitor( null, visitor);
+        assertEquals( "fragments reused on second visit", 1, visitor.reused.size());
+        assertNull( "root fragment not reused", visitor.reused.get( 0));
+        assertTrue( "fragment captured on second visit", visitor.captured.isEmpty());
+    }
+
+    @Test
+    public void testTransitionDiscardsFragmentsOnPath() {
+        _rootComposite.acceptVisitor( null, new FragmentRecordingVisitor());
+
+        StateTransition transition = new StateTransition();
+        transition.getOrCreateChangeSet( null).recordChildItr( BRANCH_MORTAL_NAME);
+        transition.getOrCreateChangeSet( BRANCH_MORTAL_PATH).recordNewChild( "metric", new StringStateValue( "value"));
+        _rootComposite.applyTransition( null, transition);
+
+        FragmentRecordingVisitor visitor = new FragmentRecordingVisitor();
+        _rootComposite.acceptVisitor( null, visitor);
+
+        assertEquals( "fragments captured", 2, visitor.captured.size());
+        assertTrue( "root fragment not captured", visitor.captured.contains( null));
+        assertTrue( "changed branch not captured", visitor.captured.contains( BRANCH_MORTAL_PATH));
+        assertEquals( "fragments reused", 2, visitor.reused.size());
+        assertTrue( "ephemeral branch not reused", visitor.reused.contains( BRANCH_EPHEMERAL_PATH));
+        assertTrue( "immortal branch not reused", visitor.reused.contains( BRANCH_IMMORTAL_PATH));
+    }
+
+    /**
+     * A CachingStateVisitor that records for which paths fragments are
+     * captured and reused.
+     */
+    private static class FragmentRecordingVisitor implements CachingStateVisitor {
+        final List<StatePath> captured = new ArrayList<>();
+        final List<StatePath> reused = new ArrayList<>();
+
+        @Override
+        public Object getFragmentKey( StatePath path) {
+            return "test";
+        }
+
+        @Override
+        public void beginFragment( StatePath path) {
+        }
+
+        @Override
+        public String endFragment( StatePath path) {
+            captured.add( path);
+            return String.valueOf( path);
+        }
+
+        @Override
+        public void visitFragment( StatePath path, String fragment) {
+            assertEquals( "fragment of wrong subtree", String.valueOf( path), fragment);
+            reused.add( path);
+        }
+
+        @Override
+        public boolean isVisitable( StatePath path) {
+            return true;
+        }
+
+        @Override
+        public void visitString( StatePath path, StringStateValue value) {
+        }
+
+        @Override
+        public void visitInteger( StatePath path, IntegerStateValue value) {
+        }
+
+        @Override
+        public void visitBoolean( StatePath path, BooleanStateValue value) {
+        }
+
+        @Override
+        public void visitFloatingPoint( StatePath path, FloatingPointStateValue value) {
+        }
+
+        @Override
+        public void visitCompositePreDescend( StatePath path, Map<String, String> metadata) {
+        }
+
+        @Override
+        public void visitCompositePostDescend( StatePath path, Map<String, String> metadata) {
+        }
+    }
+
     /**
      * Return a new VerifyingVisitor that will pass the default set of
      * branches:
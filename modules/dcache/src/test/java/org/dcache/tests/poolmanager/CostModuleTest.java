@@ -3,12 +3,16 @@ package org.dcache.tests.poolmanager;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.net.InetSocketAddress;
 import java.util.Arrays;
 
 import diskCacheV111.poolManager.CostModuleV1;
 import diskCacheV111.pools.CostCalculationV5;
 import diskCacheV111.pools.PoolCostInfo;
 import diskCacheV111.pools.PoolV2Mode;
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.DCapProtocolInfo;
+import diskCacheV111.vehicles.DoorTransferFinishedMessage;
 import diskCacheV111.vehicles.PoolManagerPoolUpMessage;
 
 import dmg.cells.nucleus.CellAddressCore;
@@ -16,6 +20,7 @@ import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellPath;
 
 import org.dcache.pool.classic.IoQueueManager;
+import org.dcache.vehicles.FileAttributes;
 
 import static org.junit.Assert.*;
 
@@ -243,6 +248,37 @@ public class CostModuleTest {
         assertPercentileCost( FRACTION_JUST_BELOW_ONE, perfCost [2]);
     }
 
+    @Test
+    public void testTransferFinishedUpdatesCostWithoutModifyingSnapshot() {
+
+        _costModule.messageArrived(
+                buildEnvelope(POOL_ADDRESS),
+                buildPoolUpMessageWithCostAndQueue(
+                        POOL_NAME,
+                        100, 20, 30, 50,
+                        40, 100, 0,
+                        0, 0, 0,
+                        0, 0, 0));
+
+        PoolCostInfo snapshot = _costModule.getPoolCostInfo( POOL_NAME);
+        double perfCostBefore = getPerformanceCostOfPercentileFile( POOL_NAME);
+
+        _costModule.messageToForward(
+                new DoorTransferFinishedMessage(1, new PnfsId("000000000000000000000000000000000001"),
+                        new DCapProtocolInfo("DCap", 3, 0, new InetSocketAddress(0)),
+                        new FileAttributes(), POOL_NAME, null));
+
+        PoolCostInfo.PoolQueueInfo queue =
+                _costModule.getPoolCostInfo( POOL_NAME).getExtendedMoverHash().get(IoQueueManager.DEFAULT_QUEUE);
+        assertEquals( "active movers after transfer finished", 39, queue.getActive());
+        assertEquals( "active movers in earlier snapshot", 40,
+                      snapshot.getExtendedMoverHash().get(IoQueueManager.DEFAULT_QUEUE).getActive());
+
+        double perfCostAfter = getPerformanceCostOfPercentileFile( POOL_NAME);
+        assertTrue( "perf cost decreases when transfer finished", perfCostAfter < perfCostBefore);
+        assertPercentileCost( DEFAULT_PERCENTILE, perfCostAfter);
+    }
+
     /*
      *  SUPPORT METHODS FOR BUILDING MESSAGES AND ASSERTING
      */
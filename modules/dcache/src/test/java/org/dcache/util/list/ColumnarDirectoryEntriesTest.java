@@ -0,0 +1,106 @@
+package org.dcache.util.list;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+
+import diskCacheV111.util.PnfsId;
+
+import org.dcache.namespace.FileType;
+import org.dcache.vehicles.FileAttributes;
+
+import static org.dcache.namespace.FileAttribute.*;
+import static org.junit.Assert.*;
+
+public class ColumnarDirectoryEntriesTest
+{
+    private static final PnfsId ID = new PnfsId("000000000000000000000000000000000001");
+
+    private static ColumnarDirectoryEntries serializeAndDeserialize(ColumnarDirectoryEntries entries)
+            throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(entries);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (ColumnarDirectoryEntries) in.readObject();
+        }
+    }
+
+    @Test
+    public void testEntriesSurviveSerialization() throws Exception
+    {
+        ColumnarDirectoryEntries entries = new ColumnarDirectoryEntries();
+
+        FileAttributes file = new FileAttributes();
+        file.setSize(42);
+        file.setFileType(FileType.REGULAR);
+        file.setPnfsId(ID);
+        entries.add("file", file);
+
+        entries.add("noattributes", null);
+
+        FileAttributes flags = new FileAttributes();
+        flags.setMode(0755);
+        flags.setFlags(Collections.singletonMap("key", "value"));
+        entries.add("flags", flags);
+
+        for (int i = 0; i < 100; i++) {
+            FileAttributes dir = new FileAttributes();
+            dir.setFileType(FileType.DIR);
+            dir.setOwner(i);
+            entries.add("dir" + i, dir);
+        }
+
+        ColumnarDirectoryEntries copy = serializeAndDeserialize(entries);
+        assertEquals(103, copy.size());
+
+        Iterator<DirectoryEntry> iterator = copy.iterator();
+        DirectoryEntry entry = iterator.next();
+        assertEquals("file", entry.getName());
+        assertEquals(42, entry.getFileAttributes().getSize());
+        assertEquals(FileType.REGULAR, entry.getFileAttributes().getFileType());
+        assertEquals(ID, entry.getFileAttributes().getPnfsId());
+        assertFalse(entry.getFileAttributes().isDefined(OWNER));
+
+        entry = iterator.next();
+        assertEquals("noattributes", entry.getName());
+        assertNull(entry.getFileAttributes());
+
+        entry = iterator.next();
+        assertEquals("flags", entry.getName());
+        assertEquals(0755, entry.getFileAttributes().getMode());
+        assertEquals("value", entry.getFileAttributes().getFlags().get("key"));
+
+        for (int i = 0; i < 100; i++) {
+            entry = iterator.next();
+            assertEquals("dir" + i, entry.getName());
+            assertEquals(i, entry.getFileAttributes().getOwner());
+            assertEquals(FileType.DIR, entry.getFileAttributes().getFileType());
+            assertFalse(entry.getFileAttributes().isDefined(PNFSID));
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testClearedEntriesAreReused() throws Exception
+    {
+        ColumnarDirectoryEntries entries = new ColumnarDirectoryEntries();
+        FileAttributes attributes = new FileAttributes();
+        attributes.setSize(1);
+        entries.add("a", attributes);
+        entries.clear();
+        entries.add("b", null);
+
+        ColumnarDirectoryEntries copy = serializeAndDeserialize(entries);
+        assertEquals(1, copy.size());
+        assertEquals("b", copy.get(0).getName());
+        assertNull(copy.get(0).getFileAttributes());
+    }
+}
@@ -1038,6 +1038,11 @@ public class SRM {
         return schedulers.getInfo();
     }
 
+    public CharSequence getDatabaseInfo()
+    {
+        return databaseFactory.getInfo();
+    }
+
     public CharSequence getGetSchedulerInfo()
     {
         return schedulers.getDetailedInfo(GetFileRequest.class);
@@ -1087,6 +1087,14 @@ public abstract class Job  {
         lock.readLock().unlock();
     }
 
+    /**
+     * Acquires the read lock only if it is not held by another thread
+     * for writing.
+     */
+    public final boolean tryRlock() {
+        return lock.readLock().tryLock();
+    }
+
     @Override
     public final String toString() {
         return toString(false);
@@ -90,10 +90,14 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -391,11 +395,30 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
         return job;
     }
 
-    private int updateJob(Connection connection, Job job) throws SQLException
+    /**
+     * Acquires the read lock of a job. If skipLocked is true, the lock is
+     * only acquired if it is not held for writing.
+     */
+    private static boolean rlock(Job job, boolean skipLocked)
+    {
+        if (skipLocked) {
+            return job.tryRlock();
+        }
+        job.rlock();
+        return true;
+    }
+
+    /**
+     * Updates the row of a job. Returns the number of updated rows, or -1 if
+     * the job was skipped because it was locked.
+     */
+    private int updateJob(Connection connection, Job job, boolean skipLocked) throws SQLException
     {
         PreparedStatement updateStatement = null;
         try {
-            job.rlock();
+            if (!rlock(job, skipLocked)) {
+                return -1;
+            }
             try {
                 updateStatement = getUpdateStatement(connection, job);
             } finally {
@@ -407,12 +430,18 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
         }
     }
 
-    private void createJob(Connection connection, Job job) throws SQLException
+    /**
+     * Inserts the row of a job. Returns false if the job was skipped because
+     * it was locked.
+     */
+    private boolean createJob(Connection connection, Job job, boolean skipLocked) throws SQLException
     {
         PreparedStatement createStatement = null;
         PreparedStatement batchCreateStatement = null;
         try {
-            job.rlock();
+            if (!rlock(job, skipLocked)) {
+                return false;
+            }
             try {
                 createStatement = getCreateStatement(connection, job);
                 batchCreateStatement = getBatchCreateStatement(connection, job);
@@ -423,25 +452,29 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
             if (batchCreateStatement != null) {
                 batchCreateStatement.executeBatch();
             }
+            return true;
         } finally {
             SqlHelper.tryToClose(createStatement);
             SqlHelper.tryToClose(batchCreateStatement);
         }
     }
 
-    private void saveHistory(Connection connection, Job job,
-                             List<Job.JobHistory> history) throws SQLException
+    private void saveHistory(Connection connection,
+                             Map<? extends Job,List<Job.JobHistory>> histories) throws SQLException
     {
         PreparedStatement stmt =
                 connection.prepareStatement("INSERT INTO " + getHistoryTableName() + " VALUES (?,?,?,?,?)");
         try {
-            for (Job.JobHistory element : history) {
-                stmt.setLong(1, element.getId());
-                stmt.setLong(2, job.getId());
-                stmt.setInt(3, element.getState().getStateId());
-                stmt.setLong(4, element.getTransitionTime());
-                stmt.setString(5, element.getDescription());
-                stmt.addBatch();
+            for (Map.Entry<? extends Job,List<Job.JobHistory>> entry : histories.entrySet()) {
+                long jobId = entry.getKey().getId();
+                for (Job.JobHistory element : entry.getValue()) {
+                    stmt.setLong(1, element.getId());
+                    stmt.setLong(2, jobId);
+                    stmt.setInt(3, element.getState().getStateId());
+                    stmt.setLong(4, element.getTransitionTime());
+                    stmt.setString(5, element.getDescription());
+                    stmt.addBatch();
+                }
             }
             stmt.executeBatch();
         } finally {
@@ -470,8 +503,51 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
         if (!saveifmonitoringisdesabled && !logHistory) {
             return;
         }
+        saveJobs(Collections.singleton(job));
+    }
+
+    /**
+     * Saves several jobs in a single transaction.
+     *
+     * Each job row is updated, or inserted if it does not yet exist. The
+     * unsaved history of all jobs is then written as one JDBC batch.
+     */
+    public void saveJobs(Collection<? extends Job> jobs) throws DataAccessException
+    {
+        saveJobs(new ArrayList<Job>(jobs), false);
+    }
+
+    /**
+     * Saves those of several jobs that are not locked for writing by
+     * another thread, in a single transaction.
+     *
+     * Unlike {@link #saveJobs(Collection)} this method never waits for a
+     * job lock, thus it may be called while the caller holds locks that
+     * the writer of a job may wait for.
+     *
+     * @return the jobs that were skipped because they were locked
+     */
+    public <T extends Job> List<T> saveUnlockedJobs(Collection<T> jobs) throws DataAccessException
+    {
+        return saveJobs(jobs, true);
+    }
 
-        final List<Job.JobHistory> history = getJobHistoriesToSave(job);
+    private <T extends Job> List<T> saveJobs(Collection<T> jobs, final boolean skipLocked)
+            throws DataAccessException
+    {
+        final List<T> skipped = new ArrayList<>();
+        final Map<T,List<Job.JobHistory>> histories = new LinkedHashMap<>();
+        for (T job : jobs) {
+            if (!rlock(job, skipLocked)) {
+                skipped.add(job);
+                continue;
+            }
+            try {
+                histories.put(job, getJobHistoriesToSave(job));
+            } finally {
+                job.runlock();
+            }
+        }
         transactionTemplate.execute(new TransactionCallback<Void>()
         {
             @Override
@@ -482,12 +558,21 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
                     @Override
                     public Void doInConnection(Connection con) throws SQLException, DataAccessException
                     {
-                        int rowCount = updateJob(con, job);
-                        if (rowCount == 0) {
-                            createJob(con, job);
+                        boolean hasHistory = false;
+                        Iterator<Map.Entry<T,List<Job.JobHistory>>> i = histories.entrySet().iterator();
+                        while (i.hasNext()) {
+                            Map.Entry<T,List<Job.JobHistory>> entry = i.next();
+                            T job = entry.getKey();
+                            int rowCount = updateJob(con, job, skipLocked);
+                            if (rowCount < 0 || rowCount == 0 && !createJob(con, job, skipLocked)) {
+                                skipped.add(job);
+                                i.remove();
+                                continue;
+                            }
+                            hasHistory |= !entry.getValue().isEmpty();
                         }
-                        if (!history.isEmpty()) {
-                            saveHistory(con, job, history);
+                        if (hasHistory) {
+                            saveHistory(con, histories);
                         }
                         return null;
                     }
@@ -495,7 +580,10 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
 
             }
         });
-        markHistoryAsSaved(history);
+        for (List<Job.JobHistory> history : histories.values()) {
+            markHistoryAsSaved(history);
+        }
+        return skipped;
     }
 
     protected PreparedStatement getBatchCreateStatement(Connection connection, Job job)
@@ -6,8 +6,10 @@ import org.springframework.dao.DataAccessException;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -46,8 +48,10 @@ public class DatabaseJobStorageFactory extends JobStorageFactory
                                // requests are cached before container requests are loaded
     private final Map<Class<? extends Job>, JobStorage<?>> unmodifiableJobStorageMap =
             Collections.unmodifiableMap(jobStorageMap);
+    private final List<WriteBehindJobStorage<?>> writeBehindStorages = new ArrayList<>();
     private final ExecutorService executor;
     private final ScheduledExecutorService scheduledExecutor;
+    private final Configuration config;
 
     private <J extends Job> void add(Configuration.DatabaseParameters config,
                      Class<J> entityClass,
@@ -61,10 +65,20 @@ public class DatabaseJobStorageFactory extends JobStorageFactory
     {
         JobStorage<J> js;
         if (config.isDatabaseEnabled()) {
-            js = storageClass
+            DatabaseJobStorage<J> storage = storageClass
                     .getConstructor(Configuration.DatabaseParameters.class, ScheduledExecutorService.class)
                     .newInstance(config, scheduledExecutor);
-            js = new AsynchronousSaveJobStorage<>(js, executor);
+            if (this.config.getJdbcBatchSize() > 1) {
+                WriteBehindJobStorage<J> writeBehind =
+                        new WriteBehindJobStorage<>(storage, (ScheduledExecutorService) executor,
+                                                    this.config.getJdbcBatchDelay(),
+                                                    this.config.getJdbcBatchSize(),
+                                                    this.config.getMaxQueuedJdbcTasksNum());
+                writeBehindStorages.add(writeBehind);
+                js = writeBehind;
+            } else {
+                js = new AsynchronousSaveJobStorage<>(storage, executor);
+            }
             if (config.getStoreCompletedRequestsOnly()) {
                 js = new FinalStateOnlyJobStorageDecorator<>(js);
             }
@@ -76,11 +90,18 @@ public class DatabaseJobStorageFactory extends JobStorageFactory
 
     public DatabaseJobStorageFactory(Configuration config) throws DataAccessException, IOException
     {
-        executor = new ThreadPoolExecutor(
-                config.getJdbcExecutionThreadNum(), config.getJdbcExecutionThreadNum(),
-                0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<Runnable>(config.getMaxQueuedJdbcTasksNum()),
-                new ThreadFactoryBuilder().setNameFormat("srm-db-save-%d").build());
+        this.config = config;
+        if (config.getJdbcBatchSize() > 1) {
+            executor = Executors.newScheduledThreadPool(
+                    config.getJdbcExecutionThreadNum(),
+                    new ThreadFactoryBuilder().setNameFormat("srm-db-save-%d").build());
+        } else {
+            executor = new ThreadPoolExecutor(
+                    config.getJdbcExecutionThreadNum(), config.getJdbcExecutionThreadNum(),
+                    0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(config.getMaxQueuedJdbcTasksNum()),
+                    new ThreadFactoryBuilder().setNameFormat("srm-db-save-%d").build());
+        }
         scheduledExecutor =
                 Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("srm-db-gc-%d").build());
         try {
@@ -147,6 +168,9 @@ public class DatabaseJobStorageFactory extends JobStorageFactory
 
     public void shutdown()
     {
+        for (WriteBehindJobStorage<?> storage : writeBehindStorages) {
+            storage.flush();
+        }
         scheduledExecutor.shutdown();
         executor.shutdown();
         try {
@@ -158,6 +182,15 @@ public class DatabaseJobStorageFactory extends JobStorageFactory
         }
     }
 
+    public CharSequence getInfo()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (WriteBehindJobStorage<?> storage : writeBehindStorages) {
+            storage.getInfo(sb);
+        }
+        return sb;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <J extends Job> JobStorage<J> getJobStorage(J job) {
@@ -0,0 +1,349 @@
+package org.dcache.srm.request.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.dcache.srm.request.Job;
+import org.dcache.srm.scheduler.JobStorage;
+import org.dcache.srm.scheduler.State;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * JobStorage decorator that writes jobs to the database behind the caller
+ * and in batches.
+ *
+ * Saved jobs are marked dirty and collected for a short delay, after which
+ * up to {@code maxBatchSize} dirty jobs are written to the table of the
+ * decorated storage in a single transaction. Saving a job that is already
+ * dirty is a no-op, thus repeated updates of the same job are coalesced.
+ *
+ * Jobs are saved while the caller holds the write lock of the job, thus
+ * batches are never written by the caller and the writer never waits for
+ * the lock of a job: Jobs that are locked by another thread when their
+ * batch is written are skipped and marked dirty again, to be written by
+ * a later batch.
+ *
+ * When more than {@code maxPending} jobs are dirty, the caller triggers
+ * an immediate flush and waits up to {@code MAX_THROTTLE_TIME} for the
+ * backlog to drop. This throttles producers to the rate at which the
+ * database accepts updates rather than dropping updates. The wait is
+ * bounded as the jobs the writer waits for may be locked by the waiting
+ * callers.
+ */
+public class WriteBehindJobStorage<J extends Job> implements JobStorage<J>
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindJobStorage.class);
+
+    /**
+     * Maximum time in milliseconds a caller is throttled when too many
+     * jobs are dirty.
+     */
+    private static final long MAX_THROTTLE_TIME = TimeUnit.SECONDS.toMillis(1);
+
+    private final DatabaseJobStorage<J> storage;
+    private final ScheduledExecutorService executor;
+    private final long delay;
+    private final int maxBatchSize;
+    private final int maxPending;
+
+    private final Queue<J> queue = new ConcurrentLinkedQueue<>();
+    private final Set<Long> dirty = Collections.newSetFromMap(new ConcurrentHashMap<Long,Boolean>());
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean();
+    private final Lock flushLock = new ReentrantLock();
+    private final Object capacity = new Object();
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong jobs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private volatile int maxObservedBatchSize;
+    private volatile long maxObservedTime;
+
+    private final Runnable flushTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            isFlushScheduled.set(false);
+            try {
+                flush();
+            } catch (Throwable e) {
+                Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+            }
+        }
+    };
+
+    /**
+     * @param storage the storage to write to
+     * @param executor executor used to write batches
+     * @param delay time in milliseconds to collect dirty jobs before a batch is written
+     * @param maxBatchSize maximum number of jobs written in one transaction
+     * @param maxPending number of dirty jobs beyond which callers are throttled
+     */
+    public WriteBehindJobStorage(DatabaseJobStorage<J> storage, ScheduledExecutorService executor,
+                                 long delay, int maxBatchSize, int maxPending)
+    {
+        checkArgument(maxBatchSize > 0, "Batch size must be positive");
+        checkArgument(maxPending > 0, "Maximum number of pending jobs must be positive");
+        this.storage = storage;
+        this.executor = executor;
+        this.delay = delay;
+        this.maxBatchSize = maxBatchSize;
+        this.maxPending = maxPending;
+    }
+
+    @Override
+    public void init() throws DataAccessException
+    {
+        storage.init();
+    }
+
+    @Override
+    public J getJob(long jobId) throws DataAccessException
+    {
+        return storage.getJob(jobId);
+    }
+
+    @Override
+    public J getJob(long jobId, Connection connection) throws SQLException
+    {
+        return storage.getJob(jobId, connection);
+    }
+
+    @Override
+    public Set<J> getJobs(String scheduler) throws DataAccessException
+    {
+        return storage.getJobs(scheduler);
+    }
+
+    @Override
+    public Set<J> getJobs(String scheduler, State state) throws DataAccessException
+    {
+        return storage.getJobs(scheduler, state);
+    }
+
+    @Override
+    public void saveJob(J job, boolean saveIfMonitoringDisabled)
+    {
+        if (!saveIfMonitoringDisabled && !isJdbcLogRequestHistoryInDBEnabled()) {
+            return;
+        }
+        if (dirty.add(job.getId())) {
+            queue.add(job);
+            if (dirty.size() > maxPending) {
+                throttled.incrementAndGet();
+                try {
+                    executor.execute(flushTask);
+                    awaitCapacity();
+                } catch (RejectedExecutionException e) {
+                    LOGGER.error("Persistence of request {} failed: {}", job.getId(), e.getMessage());
+                }
+            } else {
+                scheduleFlush();
+            }
+        }
+    }
+
+    private void scheduleFlush()
+    {
+        if (isFlushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(flushTask, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                isFlushScheduled.set(false);
+                LOGGER.error("Persistence of requests failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Waits up to MAX_THROTTLE_TIME until no more than maxPending jobs
+     * are dirty.
+     */
+    private void awaitCapacity()
+    {
+        long deadline = System.currentTimeMillis() + MAX_THROTTLE_TIME;
+        synchronized (capacity) {
+            long timeout;
+            while (dirty.size() > maxPending &&
+                    (timeout = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    capacity.wait(timeout);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all dirty jobs to the database.
+     *
+     * Jobs that remain locked by other threads are left to a flush
+     * scheduled after the regular delay.
+     */
+    public void flush()
+    {
+        while (!queue.isEmpty()) {
+            if (writeBatch() == 0) {
+                scheduleFlush();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Writes up to {@code maxBatchSize} dirty jobs in a single transaction.
+     *
+     * Batches are written one at a time so that an older state of a job
+     * cannot overtake a newer one. A job saved again while its batch is
+     * being written is marked dirty anew and written by a later batch.
+     * Jobs locked by other threads are skipped and marked dirty anew.
+     *
+     * @return the number of jobs written
+     */
+    private int writeBatch()
+    {
+        flushLock.lock();
+        try {
+            List<J> batch = new ArrayList<>(Math.min(maxBatchSize, dirty.size()));
+            J job;
+            while (batch.size() < maxBatchSize && (job = queue.poll()) != null) {
+                dirty.remove(job.getId());
+                batch.add(job);
+            }
+            if (batch.isEmpty()) {
+                return 0;
+            }
+
+            long start = System.nanoTime();
+            List<J> skipped;
+            try {
+                skipped = storage.saveUnlockedJobs(batch);
+            } catch (DataAccessException e) {
+                LOGGER.warn("Batch update of {} requests failed, saving individually: {}",
+                        batch.size(), e.getMessage());
+                skipped = saveIndividually(batch);
+            }
+            long time = System.nanoTime() - start;
+
+            for (J skippedJob : skipped) {
+                if (dirty.add(skippedJob.getId())) {
+                    queue.add(skippedJob);
+                }
+            }
+            deferred.addAndGet(skipped.size());
+
+            int written = batch.size() - skipped.size();
+            batches.incrementAndGet();
+            jobs.addAndGet(written);
+            totalTime.addAndGet(time);
+            if (batch.size() > maxObservedBatchSize) {
+                maxObservedBatchSize = batch.size();
+            }
+            if (time > maxObservedTime) {
+                maxObservedTime = time;
+            }
+            return written;
+        } finally {
+            flushLock.unlock();
+            synchronized (capacity) {
+                capacity.notifyAll();
+            }
+        }
+    }
+
+    private List<J> saveIndividually(List<J> batch)
+    {
+        List<J> skipped = new ArrayList<>();
+        for (J job : batch) {
+            try {
+                if (!storage.saveUnlockedJobs(Collections.singleton(job)).isEmpty()) {
+                    skipped.add(job);
+                }
+            } catch (DataAccessException e) {
+                failures.incrementAndGet();
+                LOGGER.error("SQL statement failed: {}", e.getMessage());
+            }
+        }
+        return skipped;
+    }
+
+    public void getInfo(StringBuilder sb)
+    {
+        long batches = this.batches.get();
+        long jobs = this.jobs.get();
+        long totalTime = this.totalTime.get();
+        sb.append(storage.getTableName()).append('\n');
+        sb.append("    Pending requests            : ").append(dirty.size()).append('\n');
+        sb.append("    Batches written             : ").append(batches).append('\n');
+        sb.append("    Requests written            : ").append(jobs).append('\n');
+        sb.append("    Requests failed             : ").append(failures.get()).append('\n');
+        sb.append("    Throttled saves             : ").append(throttled.get()).append('\n');
+        sb.append("    Deferred (locked) requests  : ").append(deferred.get()).append('\n');
+        sb.append("    Average batch size          : ").append(batches == 0 ? 0 : jobs / batches).append('\n');
+        sb.append("    Maximum batch size          : ").append(maxObservedBatchSize).append('\n');
+        sb.append("    Average batch latency [ms]  : ")
+                .append(batches == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalTime / batches)).append('\n');
+        sb.append("    Maximum batch latency [ms]  : ")
+                .append(TimeUnit.NANOSECONDS.toMillis(maxObservedTime)).append('\n');
+    }
+
+    @Override
+    public boolean isJdbcLogRequestHistoryInDBEnabled()
+    {
+        return storage.isJdbcLogRequestHistoryInDBEnabled();
+    }
+
+    @Override
+    public Set<Long> getLatestCompletedJobIds(int maxNum) throws DataAccessException
+    {
+        return storage.getLatestCompletedJobIds(maxNum);
+    }
+
+    @Override
+    public Set<Long> getLatestDoneJobIds(int maxNum) throws DataAccessException
+    {
+        return storage.getLatestDoneJobIds(maxNum);
+    }
+
+    @Override
+    public Set<Long> getLatestFailedJobIds(int maxNum) throws DataAccessException
+    {
+        return storage.getLatestFailedJobIds(maxNum);
+    }
+
+    @Override
+    public Set<Long> getLatestCanceledJobIds(int maxNum) throws DataAccessException
+    {
+        return storage.getLatestCanceledJobIds(maxNum);
+    }
+
+    @Override
+    public Set<J> getActiveJobs() throws DataAccessException
+    {
+        return storage.getActiveJobs();
+    }
+}
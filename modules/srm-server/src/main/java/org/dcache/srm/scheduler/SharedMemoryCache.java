@@ -1,19 +1,28 @@
 package org.dcache.srm.scheduler;
 
+import com.google.common.util.concurrent.Striped;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 
 import org.dcache.srm.request.Job;
 
 /**
+ * Cache of all jobs in active (non-final) state.
+ *
+ * Jobs are kept in a concurrent map by ID. In addition the cache
+ * maintains a partition per job type, so that the active jobs of a
+ * type can be retrieved without scanning all jobs.
+ *
+ * Lookups never block. Registration changes of a job are serialized
+ * by a lock striped by job ID, thus updates of unrelated jobs proceed
+ * concurrently.
  *
  * @author timur
  */
@@ -22,21 +31,26 @@ public class SharedMemoryCache {
     private static final Logger _log =
         LoggerFactory.getLogger(SharedMemoryCache.class);
 
+    private static final int STRIPES = 256;
+
+    private final ConcurrentMap<Long,Entry> jobs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>,Set<Job>> partitions = new ConcurrentHashMap<>();
+    private final Striped<Lock> locks = Striped.lock(STRIPES);
+
     /**
-     * This set is used to keep the Jobs that are in active
-     * (Non final) state in memory
-     * If the SRM application runs in the Terracotta clustered environment,
-     * the Set is used as a root, so all jobs that are added to this
-     * cache are shared between all instances of the SRM servers.
-     *
+     * A cached job together with the partition of its type.
      */
-   private  final ReentrantReadWriteLock sharedMemoryReadWriteLock =
-            new ReentrantReadWriteLock();
-    private  final ReadLock sharedMemoryReadLock = sharedMemoryReadWriteLock.readLock();
-    private  final WriteLock sharedMemoryWriteLock = sharedMemoryReadWriteLock.writeLock();
-    private  Map<Long,Job> sharedMemoryCache =
-            new HashMap<>();
+    private static class Entry
+    {
+        final Job job;
+        final Set<Job> partition;
 
+        Entry(Job job, Set<Job> partition)
+        {
+            this.job = job;
+            this.partition = partition;
+        }
+    }
 
     /**
      * Canonicalizes non-final jobs.
@@ -46,21 +60,28 @@ public class SharedMemoryCache {
      */
     public <T extends Job> T canonicalize(T job)
     {
-        sharedMemoryWriteLock.lock();
-        try {
-            Job other = sharedMemoryCache.get(job.getId());
-            if (other != null) {
-                if (!job.getClass().isInstance(other)) {
-                    throw new IllegalStateException("Conflicting types for request " + job.getId() + ": " + job.getClass() + " and " + other.getClass());
+        long id = job.getId();
+        Entry entry = jobs.get(id);
+        if (entry == null) {
+            if (job.getState().isFinal()) {
+                return job;
+            }
+            Lock lock = locks.get(id);
+            lock.lock();
+            try {
+                entry = jobs.get(id);
+                if (entry == null) {
+                    add(job);
+                    return job;
                 }
-                job = (T) other;
-            } else if (!job.getState().isFinal()) {
-                sharedMemoryCache.put(job.getId(), job);
+            } finally {
+                lock.unlock();
             }
-        } finally {
-            sharedMemoryWriteLock.unlock();
         }
-        return job;
+        if (!job.getClass().isInstance(entry.job)) {
+            throw new IllegalStateException("Conflicting types for request " + id + ": " + job.getClass() + " and " + entry.job.getClass());
+        }
+        return (T) entry.job;
     }
 
     /**
@@ -69,67 +90,95 @@ public class SharedMemoryCache {
      * A post-condition of this method is that job is in the cache if and only if
      * {@code job} is not final.
      *
+     * The caller is expected to hold the write lock of {@code job}, such that
+     * concurrent updates of the same job are applied in order.
+     *
      * @param job The canonical instance of a job
      * @throws IllegalArgumentException if {@code job} is not the canonical instance
      */
     public <T extends Job> void update(T job)
     {
-        sharedMemoryWriteLock.lock();
+        long id = job.getId();
+        boolean isFinal = job.getState().isFinal();
+        Lock lock = locks.get(id);
+        lock.lock();
         try {
-            Job other = sharedMemoryCache.get(job.getId());
-            if (other != null) {
-                if (other != job) {
-                    throw new IllegalArgumentException("Duplicate job #" + job.getId());
-                }
-                if (job.getState().isFinal()) {
-                    sharedMemoryCache.remove(job.getId());
+            Entry entry = jobs.get(id);
+            if (entry != null) {
+                if (entry.job != job) {
+                    throw new IllegalArgumentException("Duplicate job #" + id);
                 }
-            } else {
-                if (!job.getState().isFinal()) {
-                    sharedMemoryCache.put(job.getId(), job);
+                if (isFinal) {
+                    jobs.remove(id);
+                    entry.partition.remove(job);
                 }
+            } else if (!isFinal) {
+                add(job);
             }
         } finally {
-            sharedMemoryWriteLock.unlock();
+            lock.unlock();
         }
     }
 
-    public Job getJob(long jobId) {
-        _log.debug("getJob ( "+jobId + " ) ");
-       sharedMemoryReadLock.lock();
-       try {
-            return sharedMemoryCache.get(jobId);
-        } finally {
-            sharedMemoryReadLock.unlock();
+    private void add(Job job)
+    {
+        Set<Job> partition = getPartition(job.getClass());
+        jobs.put(job.getId(), new Entry(job, partition));
+        partition.add(job);
+    }
+
+    private Set<Job> getPartition(Class<?> type)
+    {
+        Set<Job> partition = partitions.get(type);
+        if (partition == null) {
+            Set<Job> newPartition =
+                    Collections.newSetFromMap(new ConcurrentHashMap<Job,Boolean>());
+            partition = partitions.putIfAbsent(type, newPartition);
+            if (partition == null) {
+                partition = newPartition;
+            }
         }
+        return partition;
+    }
 
+    public Job getJob(long jobId) {
+        _log.debug("getJob ( {} ) ", jobId);
+        Entry entry = jobs.get(jobId);
+        return (entry == null) ? null : entry.job;
     }
 
    /**
     * removes all values from the cache
     */
     public void clearCache() {
-        sharedMemoryWriteLock.lock();
+        for (int i = 0; i < locks.size(); i++) {
+            locks.getAt(i).lock();
+        }
         try {
-            sharedMemoryCache.clear();
-        }finally{
-            sharedMemoryWriteLock.unlock();
+            jobs.clear();
+            partitions.clear();
+        } finally {
+            for (int i = 0; i < locks.size(); i++) {
+                locks.getAt(i).unlock();
+            }
         }
     }
 
+    /**
+     * Returns the active jobs of exactly the given type.
+     */
     public <T extends Job> Set<T> getJobs(Class<T> jobType) {
-       sharedMemoryReadLock.lock();
-       try {
-           Set<T> results = new HashSet<>();
-           for(Job job: sharedMemoryCache.values()) {
-               if(job.getClass().equals(jobType)) {
-                   results.add((T)job);
-               }
-           }
-           return results;
-        } finally {
-            sharedMemoryReadLock.unlock();
+        Set<Job> partition = partitions.get(jobType);
+        if (partition == null) {
+            return new HashSet<>();
         }
+        return new HashSet<>((Set<T>) (Set<?>) partition);
+    }
 
+    /**
+     * Returns the number of active jobs.
+     */
+    public int size() {
+        return jobs.size();
     }
 }
@@ -194,6 +194,8 @@ public class Configuration {
     private String reserveSpacePriorityPolicyPlugin="DefaultJobAppraiser";
     private Integer maxQueuedJdbcTasksNum ; //null by default
     private Integer jdbcExecutionThreadNum;//null by default
+    private int jdbcBatchSize = 1;
+    private long jdbcBatchDelay = 10;
     private String credentialsDirectory="/opt/d-cache/credentials";
     private boolean overwrite = false;
     private boolean overwrite_by_default = false;
@@ -529,6 +531,8 @@ public class Configuration {
             sb.append(parameters);
         }
 
+        sb.append("\n\tjdbcBatchSize=").append(this.jdbcBatchSize);
+        sb.append("\n\tjdbcBatchDelay=").append(this.jdbcBatchDelay);
         sb.append("\n\tstorage_info_update_period=").append(this.storage_info_update_period);
         sb.append("\n\tqosPluginClass=").append(this.qosPluginClass);
         sb.append("\n\tqosConfigFile=").append(this.qosConfigFile);
@@ -961,6 +965,30 @@ public class Configuration {
         this.maxQueuedJdbcTasksNum = maxQueuedJdbcTasksNum;
     }
 
+    /**
+     * Returns the maximum number of requests written to the database in
+     * one transaction. A value of one disables batching.
+     */
+    public int getJdbcBatchSize() {
+        return jdbcBatchSize;
+    }
+
+    public void setJdbcBatchSize(int jdbcBatchSize) {
+        this.jdbcBatchSize = jdbcBatchSize;
+    }
+
+    /**
+     * Returns the time in milliseconds for which request updates are
+     * collected before being written to the database as a batch.
+     */
+    public long getJdbcBatchDelay() {
+        return jdbcBatchDelay;
+    }
+
+    public void setJdbcBatchDelay(long jdbcBatchDelay) {
+        this.jdbcBatchDelay = jdbcBatchDelay;
+    }
+
     public String getCredentialsDirectory() {
         return credentialsDirectory;
     }
@@ -0,0 +1,95 @@
+package org.dcache.srm.scheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.dcache.srm.request.Job;
+
+import static org.dcache.srm.scheduler.State.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.*;
+
+public class SharedMemoryCacheTests
+{
+    SharedMemoryCache cache;
+
+    private Job mockJob(long id, State state)
+    {
+        Job job = mock(Job.class);
+        given(job.getId()).willReturn(id);
+        given(job.getState()).willReturn(state);
+        return job;
+    }
+
+    @Before
+    public void setup()
+    {
+        cache = new SharedMemoryCache();
+    }
+
+    @Test
+    public void shouldCanonicalizeActiveJob()
+    {
+        Job job = mockJob(1, PENDING);
+        Job other = mockJob(1, PENDING);
+
+        assertThat(cache.canonicalize(job), is(sameInstance(job)));
+        assertThat(cache.canonicalize(other), is(sameInstance(job)));
+        assertThat(cache.getJob(1), is(sameInstance(job)));
+    }
+
+    @Test
+    public void shouldNotCacheFinalJob()
+    {
+        Job job = mockJob(1, DONE);
+
+        assertThat(cache.canonicalize(job), is(sameInstance(job)));
+        assertThat(cache.getJob(1), is(nullValue()));
+    }
+
+    @Test
+    public void shouldPartitionJobsByType()
+    {
+        Job pending = mockJob(1, PENDING);
+        Job running = mockJob(2, RUNNING);
+        cache.canonicalize(pending);
+        cache.canonicalize(running);
+
+        assertThat(cache.getJobs(pending.getClass()), containsInAnyOrder(pending, running));
+        assertThat(cache.getJobs(Job.class), is(empty()));
+    }
+
+    @Test
+    public void shouldKeepJobOnUpdateToActiveState()
+    {
+        Job job = mockJob(1, PENDING);
+        cache.canonicalize(job);
+
+        given(job.getState()).willReturn(RUNNING);
+        cache.update(job);
+
+        assertThat(cache.getJob(1), is(sameInstance(job)));
+        assertThat(cache.getJobs(job.getClass()), contains(job));
+    }
+
+    @Test
+    public void shouldRemoveJobOnUpdateToFinalState()
+    {
+        Job job = mockJob(1, PENDING);
+        cache.canonicalize(job);
+
+        given(job.getState()).willReturn(DONE);
+        cache.update(job);
+
+        assertThat(cache.getJob(1), is(nullValue()));
+        assertThat(cache.getJobs(job.getClass()), is(empty()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUpdateOfNonCanonicalJob()
+    {
+        cache.canonicalize(mockJob(1, PENDING));
+        cache.update(mockJob(1, RUNNING));
+    }
+}